@@ -28,5 +28,10 @@ public interface CacheStatistics extends AdminObject, DomainAware {
 	int getTotalEntries();
 	
 	int getRequestCount();
+	
+	/**
+	 * @return the number of hits answered from the cached results of a subsuming query
+	 */
+	int getSemanticHitCount();
 
 }
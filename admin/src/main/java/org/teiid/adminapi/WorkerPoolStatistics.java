@@ -70,4 +70,19 @@ public interface WorkerPoolStatistics extends AdminObject, DomainAware{
      * @return Returns the highest queue size
      */
     public int getHighestQueued();
+    
+    /**
+     * @return The median time in milliseconds that recently queued work waited before executing
+     */
+    long getQueueWaitMedian();
+    
+    /**
+     * @return The 90th percentile time in milliseconds that recently queued work waited before executing
+     */
+    long getQueueWait90thPercentile();
+    
+    /**
+     * @return The 99th percentile time in milliseconds that recently queued work waited before executing
+     */
+    long getQueueWait99thPercentile();
 }
@@ -30,6 +30,7 @@ public class CacheStatisticsMetadata extends AdminObjectImpl implements CacheSta
 	private double hitRatio;
 	private int totalEntries;
 	private int requestCount;
+	private int semanticHitCount;
 	
 	@Override
 	public int getRequestCount() {
@@ -40,6 +41,15 @@ public class CacheStatisticsMetadata extends AdminObjectImpl implements CacheSta
 		this.requestCount = count;
 	}
 
+	@Override
+	public int getSemanticHitCount() {
+		return semanticHitCount;
+	}
+	
+	public void setSemanticHitCount(int count) {
+		this.semanticHitCount = count;
+	}
+
 	@Override
 	public double getHitRatio() {
 		return this.hitRatio;
@@ -63,6 +73,7 @@ public class CacheStatisticsMetadata extends AdminObjectImpl implements CacheSta
 		sb.append("hitRatio=").append(hitRatio);//$NON-NLS-1$
 		sb.append("; totalEntries=").append(totalEntries); //$NON-NLS-1$
 		sb.append("; requestCount=").append(requestCount); //$NON-NLS-1$
+		sb.append("; semanticHitCount=").append(semanticHitCount); //$NON-NLS-1$
 		return sb.toString();
 	}
 }
@@ -50,6 +50,7 @@ public class SessionMetadata extends AdminObjectImpl implements Session {
     private int vdbVersion;
     private String sessionId;
     private String securityDomain;
+    private int clientMaxObjectSize;
     
     //server session state
     private transient VDBMetaData vdb;
@@ -214,4 +215,15 @@ public class SessionMetadata extends AdminObjectImpl implements Session {
 		this.clientHardwareAddress = clientHardwareAddress;
 	}
 	
+	/**
+	 * @return the max message size in bytes reported by the client, or 0 if unknown
+	 */
+	public int getClientMaxObjectSize() {
+		return clientMaxObjectSize;
+	}
+	
+	public void setClientMaxObjectSize(int clientMaxObjectSize) {
+		this.clientMaxObjectSize = clientMaxObjectSize;
+	}
+	
 }
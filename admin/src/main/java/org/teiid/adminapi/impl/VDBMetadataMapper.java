@@ -974,6 +974,7 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 		private static final String HITRATIO = "hit-ratio"; //$NON-NLS-1$
 		private static final String TOTAL_ENTRIES = "total-entries"; //$NON-NLS-1$
 		private static final String REQUEST_COUNT = "request-count"; //$NON-NLS-1$
+		private static final String SEMANTIC_HIT_COUNT = "semantic-hit-count"; //$NON-NLS-1$
 		
 		public static CacheStatisticsMetadataMapper INSTANCE = new CacheStatisticsMetadataMapper();
 		
@@ -984,6 +985,7 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			node.get(TOTAL_ENTRIES).set(object.getTotalEntries());
 			node.get(HITRATIO).set(object.getHitRatio());
 			node.get(REQUEST_COUNT).set(object.getRequestCount());
+			node.get(SEMANTIC_HIT_COUNT).set(object.getSemanticHitCount());
 			
 			wrapDomain(object, node);
 			return node;
@@ -997,6 +999,9 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			cache.setTotalEntries(node.get(TOTAL_ENTRIES).asInt());
 			cache.setHitRatio(node.get(HITRATIO).asDouble());
 			cache.setRequestCount(node.get(REQUEST_COUNT).asInt());
+			if (node.has(SEMANTIC_HIT_COUNT)) {
+				cache.setSemanticHitCount(node.get(SEMANTIC_HIT_COUNT).asInt());
+			}
 			
 			unwrapDomain(cache, node);
 			return cache;
@@ -1006,6 +1011,7 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			addAttribute(node, TOTAL_ENTRIES, ModelType.STRING, true);
 			addAttribute(node, HITRATIO, ModelType.STRING, true);
 			addAttribute(node, REQUEST_COUNT, ModelType.STRING, true);
+			addAttribute(node, SEMANTIC_HIT_COUNT, ModelType.STRING, true);
 			return node; 		
 		}
 	}	
@@ -1229,6 +1235,9 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 		private static final String TOTAL_COMPLETED = "total-completed"; //$NON-NLS-1$
 		private static final String HIGHEST_ACTIVE_THREADS = "highest-active-threads"; //$NON-NLS-1$
 		private static final String ACTIVE_THREADS = "active-threads"; //$NON-NLS-1$
+		private static final String QUEUE_WAIT_MEDIAN = "queue-wait-median"; //$NON-NLS-1$
+		private static final String QUEUE_WAIT_90TH_PERCENTILE = "queue-wait-90th-percentile"; //$NON-NLS-1$
+		private static final String QUEUE_WAIT_99TH_PERCENTILE = "queue-wait-99th-percentile"; //$NON-NLS-1$
 		
 		public static WorkerPoolStatisticsMetadataMapper INSTANCE = new WorkerPoolStatisticsMetadataMapper();
 		
@@ -1244,6 +1253,9 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			node.get(QUEUED).set(stats.getQueued());
 			node.get(HIGHEST_QUEUED).set(stats.getHighestQueued());
 			node.get(MAX_THREADS).set(stats.getMaxThreads());
+			node.get(QUEUE_WAIT_MEDIAN).set(stats.getQueueWaitMedian());
+			node.get(QUEUE_WAIT_90TH_PERCENTILE).set(stats.getQueueWait90thPercentile());
+			node.get(QUEUE_WAIT_99TH_PERCENTILE).set(stats.getQueueWait99thPercentile());
 			wrapDomain(stats, node);
 			return node;
 		}
@@ -1261,6 +1273,11 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			stats.setQueued(node.get(QUEUED).asInt());
 			stats.setHighestQueued(node.get(HIGHEST_QUEUED).asInt());
 			stats.setMaxThreads(node.get(MAX_THREADS).asInt());
+			if (node.get(QUEUE_WAIT_MEDIAN).isDefined()) {
+				stats.setQueueWaitMedian(node.get(QUEUE_WAIT_MEDIAN).asLong());
+				stats.setQueueWait90thPercentile(node.get(QUEUE_WAIT_90TH_PERCENTILE).asLong());
+				stats.setQueueWait99thPercentile(node.get(QUEUE_WAIT_99TH_PERCENTILE).asLong());
+			}
 			unwrapDomain(stats, node);
 			return stats;
 		}
@@ -1274,6 +1291,9 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			addAttribute(node, QUEUED, ModelType.INT, true);
 			addAttribute(node, HIGHEST_QUEUED, ModelType.INT, true);
 			addAttribute(node, MAX_THREADS, ModelType.INT, true);
+			addAttribute(node, QUEUE_WAIT_MEDIAN, ModelType.LONG, false);
+			addAttribute(node, QUEUE_WAIT_90TH_PERCENTILE, ModelType.LONG, false);
+			addAttribute(node, QUEUE_WAIT_99TH_PERCENTILE, ModelType.LONG, false);
 			return node;
 		}
 	}
@@ -39,6 +39,9 @@ public class WorkerPoolStatisticsMetadata extends AdminObjectImpl implements Wor
     private int highestActiveThreads;
     private long totalSubmitted;
     private long totalCompleted;
+    private long queueWaitMedian;
+    private long queueWait90thPercentile;
+    private long queueWait99thPercentile;
             
     @Override
     public int getActiveThreads() {
@@ -80,6 +83,21 @@ public class WorkerPoolStatisticsMetadata extends AdminObjectImpl implements Wor
 		return maxThreads;
 	}
 
+    @Override
+    public long getQueueWaitMedian() {
+		return queueWaitMedian;
+	}
+    
+    @Override
+    public long getQueueWait90thPercentile() {
+		return queueWait90thPercentile;
+	}
+    
+    @Override
+    public long getQueueWait99thPercentile() {
+		return queueWait99thPercentile;
+	}
+
 	public void setQueued(int queued) {
 		this.queued = queued;
 	}
@@ -108,6 +126,18 @@ public class WorkerPoolStatisticsMetadata extends AdminObjectImpl implements Wor
 		this.totalCompleted = totalCompleted;
 	}
 	
+	public void setQueueWaitMedian(long queueWaitMedian) {
+		this.queueWaitMedian = queueWaitMedian;
+	}
+
+	public void setQueueWait90thPercentile(long queueWait90thPercentile) {
+		this.queueWait90thPercentile = queueWait90thPercentile;
+	}
+
+	public void setQueueWait99thPercentile(long queueWait99thPercentile) {
+		this.queueWait99thPercentile = queueWait99thPercentile;
+	}
+	
     public void setQueueName(String name) {
 		setName(name);
 	}	
@@ -124,6 +154,9 @@ public class WorkerPoolStatisticsMetadata extends AdminObjectImpl implements Wor
         str.append("; highestActiveThreads = " + highestActiveThreads);     //$NON-NLS-1$
         str.append("; totalSubmitted = " + totalSubmitted);     //$NON-NLS-1$
         str.append("; totalCompleted = " + totalCompleted);     //$NON-NLS-1$
+        str.append("; queueWaitMedian = " + queueWaitMedian);     //$NON-NLS-1$
+        str.append("; queueWait90thPercentile = " + queueWait90thPercentile);     //$NON-NLS-1$
+        str.append("; queueWait99thPercentile = " + queueWait99thPercentile);     //$NON-NLS-1$
         return str.toString();
     }    
 
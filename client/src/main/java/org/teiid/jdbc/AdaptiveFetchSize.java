@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.teiid.jdbc;
+
+import java.util.concurrent.ExecutionException;
+
+import org.teiid.client.ResultsMessage;
+import org.teiid.client.util.ResultsFuture;
+
+/**
+ * Adjusts the number of rows requested per batch from the measured round trip time 
+ * and row throughput.  The request size grows until the transfer of a batch takes
+ * several round trips, so that large results are not dominated by latency.
+ * <br/>
+ * The size will not be less than the initial fetch size.  The server will further 
+ * limit the batch by the max rows fetch size and an estimated byte size.
+ */
+class AdaptiveFetchSize {
+	
+	static final int MAX_GROWTH = 32;
+	static final int ROUND_TRIPS_PER_BATCH = 4;
+	
+	private int minFetchSize;
+	private int maxFetchSize;
+	private int fetchSize;
+	private long minRoundTrip = Long.MAX_VALUE;
+	
+	AdaptiveFetchSize(int fetchSize) {
+		this.minFetchSize = Math.max(1, fetchSize);
+		this.maxFetchSize = (int)Math.min(Integer.MAX_VALUE, (long)this.minFetchSize * MAX_GROWTH);
+		this.fetchSize = this.minFetchSize;
+	}
+	
+	synchronized int getFetchSize() {
+		return fetchSize;
+	}
+	
+	/**
+	 * Measure the given request when its results are received.
+	 */
+	void track(ResultsFuture<ResultsMessage> results) {
+		final long start = System.nanoTime();
+		results.addCompletionListener(new ResultsFuture.CompletionListener<ResultsMessage>() {
+			@Override
+			public void onCompletion(ResultsFuture<ResultsMessage> future) {
+				long nanos = System.nanoTime() - start;
+				ResultsMessage message = null;
+				try {
+					message = future.get();
+				} catch (InterruptedException e) {
+					return;
+				} catch (ExecutionException e) {
+					return;
+				}
+				if (message.getException() != null || message.getResultsList() == null) {
+					return;
+				}
+				update(message.getResultsList().size(), nanos);
+			}
+		});
+	}
+
+	/**
+	 * @param rows the number of rows received
+	 * @param nanos the time between the request and the receipt of the rows
+	 */
+	synchronized void update(int rows, long nanos) {
+		if (rows <= 0) {
+			return;
+		}
+		this.minRoundTrip = Math.min(this.minRoundTrip, nanos);
+		long transfer = nanos - this.minRoundTrip;
+		long target = maxFetchSize;
+		if (transfer > 0) {
+			target = ROUND_TRIPS_PER_BATCH * this.minRoundTrip * rows / transfer;
+		}
+		//grow gradually, but shrink immediately
+		target = Math.min(target, 2l * this.fetchSize);
+		this.fetchSize = (int)Math.max(minFetchSize, Math.min(maxFetchSize, target));
+	}
+	
+}
@@ -473,12 +473,19 @@ public class ConnectionImpl extends WrapperImpl implements TeiidConnection {
      * @return String name of the database
      */
     public String getDatabaseName() {
-    	if (this.serverConn instanceof SocketServerConnection) {
+    	if (isRemote()) {
     		return SERVER_NAME;
     	}
     	return EMBEDDED_NAME;
     }
     
+    /**
+     * @return true if this connection communicates with the server over a socket
+     */
+    boolean isRemote() {
+    	return this.serverConn instanceof SocketServerConnection;
+    }
+    
     /**
      * Retrieves the current holdability of ResultSet objects created using this Connection object.
      * @param holdability int indicating the holdability
@@ -95,6 +95,11 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 	//results requested
 	private ResultsFuture<ResultsMessage> asynchResults;
     boolean asynch;
+    
+    //forward only remote results are requested ahead with an adaptive size
+    private AdaptiveFetchSize adaptiveFetchSize;
+    private ResultsFuture<ResultsMessage> pendingResults;
+    private int pendingBeginRow;
 
 	/**
 	 * Constructor.
@@ -132,6 +137,10 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 			rmetadata = new FilteredResultsMetadata(rmetadata, resultColumns);
 		}
 		this.fetchSize = statement.getFetchSize();
+		ConnectionImpl conn = statement.getMMConnection();
+		if (this.cursorType == ResultSet.TYPE_FORWARD_ONLY && conn != null && conn.isRemote()) {
+			this.adaptiveFetchSize = new AdaptiveFetchSize(this.fetchSize);
+		}
 		if (logger.isLoggable(Level.FINER)) {
 			logger.finer("Creating ResultSet requestID: " + requestID + " beginRow: " + resultsMsg.getFirstRow() + " resultsColumns: " + resultColumns + " parameters: " + parameters); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 		}
@@ -240,11 +249,28 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
     public boolean next() throws SQLException {
         checkClosed();
         if (hasNext()) {
-    		return batchResults.next();
+        	boolean result = batchResults.next();
+        	requestNextBatchAhead();
+    		return result;
     	}
         batchResults.next();
     	return false;
     }
+    
+    /**
+     * Request the next batch before it is needed, so that the round trip 
+     * overlaps the reading of the current batch.  Only one request may be 
+     * outstanding at a time.
+     */
+    private void requestNextBatchAhead() throws SQLException {
+    	if (this.adaptiveFetchSize == null || this.asynch || this.pendingResults != null 
+    			|| batchResults.getFinalRowNumber() != -1 || batchResults.isTailLast()) {
+    		return;
+    	}
+    	int beginRow = batchResults.getHighestRowNumber() + 1;
+    	this.pendingResults = submitRequestBatch(beginRow);
+    	this.pendingBeginRow = beginRow;
+    }
 
     public boolean previous() throws SQLException {
         checkClosed();
@@ -373,7 +399,7 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
     }
 
 	private ResultsFuture<ResultsMessage> submitRequestBatch(int beginRow)
-			throws TeiidSQLException {
+			throws SQLException {
 		ResultsFuture<ResultsMessage> results;
 		if (asynch) {
 			synchronized (this) {
@@ -384,14 +410,38 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 				}
 			}
 		}
+		if (this.pendingResults != null) {
+			results = this.pendingResults;
+			this.pendingResults = null;
+			if (this.pendingBeginRow == beginRow) {
+				return results;
+			}
+			//the server allows only one outstanding request
+			try {
+				getResults(results);
+			} catch (InterruptedException e) {
+				throw TeiidSQLException.create(e);
+			} catch (ExecutionException e) {
+				throw TeiidSQLException.create(e);
+			} catch (TimeoutException e) {
+				throw TeiidSQLException.create(e);
+			}
+		}
+		int requestSize = this.fetchSize;
+		if (this.adaptiveFetchSize != null) {
+			requestSize = this.adaptiveFetchSize.getFetchSize();
+		}
 		if (logger.isLoggable(Level.FINER)) {
-			logger.finer("requestBatch requestID: " + requestID + " beginRow: " + beginRow ); //$NON-NLS-1$ //$NON-NLS-2$
+			logger.finer("requestBatch requestID: " + requestID + " beginRow: " + beginRow + " fetchSize: " + requestSize); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		}
 		try {
-			results = statement.getDQP().processCursorRequest(requestID, beginRow, fetchSize);
+			results = statement.getDQP().processCursorRequest(requestID, beginRow, requestSize);
 		} catch (TeiidProcessingException e) {
 			throw TeiidSQLException.create(e);
 		}
+		if (this.adaptiveFetchSize != null) {
+			this.adaptiveFetchSize.track(results);
+		}
 		return results;
 	}
 
@@ -1301,6 +1351,9 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
         } else {
             this.fetchSize = rows;
         }
+        if (this.adaptiveFetchSize != null) {
+        	this.adaptiveFetchSize = new AdaptiveFetchSize(this.fetchSize);
+        }
 	}
 
 	public void updateArray(int columnIndex, Array x) throws SQLException {
@@ -52,6 +52,10 @@ public class TeiidURL {
 		public static final String CLIENT_IP_ADDRESS = "clientIpAddress"; //$NON-NLS-1$
 		public static final String CLIENT_HOSTNAME = "clientHostName"; //$NON-NLS-1$
 		public static final String CLIENT_MAC = "clientMAC"; //$NON-NLS-1$
+		/**
+		 * The max size in bytes of a message that the client will accept.
+		 */
+		public static final String CLIENT_MAX_OBJECT_SIZE = "clientMaxObjectSize"; //$NON-NLS-1$
 		/**
 		 * If true, will automatically select a new server instance after a communication exception.
 		 * @since 5.6
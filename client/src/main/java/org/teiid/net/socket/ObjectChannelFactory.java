@@ -35,4 +35,6 @@ public interface ObjectChannelFactory {
 	
 	int getSoTimeout();
 	
+	int getMaxObjectSize();
+	
 }
\ No newline at end of file
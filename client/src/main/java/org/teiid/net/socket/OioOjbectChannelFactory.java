@@ -205,6 +205,10 @@ public final class OioOjbectChannelFactory implements ObjectChannelFactory {
 	public void setMaxObjectSize(int maxObjectSize) {
 		this.maxObjectSize = maxObjectSize;
 	}
+	
+	public int getMaxObjectSize() {
+		return maxObjectSize;
+	}
 
 	public int getSoTimeout() {
 		return soTimeout;
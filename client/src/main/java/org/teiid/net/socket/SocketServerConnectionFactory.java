@@ -285,6 +285,8 @@ public class SocketServerConnectionFactory implements ServerConnectionFactory, S
 	public SocketServerConnection getConnection(Properties connectionProperties) throws CommunicationException, ConnectionException {
 		
 		updateConnectionProperties(connectionProperties);
+		//let the server size results messages for this client
+		connectionProperties.put(TeiidURL.CONNECTION.CLIENT_MAX_OBJECT_SIZE, String.valueOf(this.channelFactory.getMaxObjectSize()));
 		
 		TeiidURL url;
 		try {
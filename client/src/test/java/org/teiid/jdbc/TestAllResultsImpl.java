@@ -708,6 +708,51 @@ public class TestAllResultsImpl {
         cs.next();
     }
 	
+	@Test public void testPipelinedFetch() throws Exception {
+		StatementImpl stmt = TestResultSet.createMockStatement(TYPE_FORWARD_ONLY);
+		ConnectionImpl conn = mock(ConnectionImpl.class);
+		stub(conn.isRemote()).toReturn(true);
+		stub(stmt.getMMConnection()).toReturn(conn);
+		stub(stmt.getFetchSize()).toReturn(10);
+		final int totalLength = 1000;
+		final List<Integer> requests = new ArrayList<Integer>();
+		stub(stmt.getDQP().processCursorRequest(Matchers.eq(REQUEST_ID), Matchers.anyInt(), Matchers.anyInt())).toAnswer(new Answer<ResultsFuture<ResultsMessage>>() {
+			@Override
+			public ResultsFuture<ResultsMessage> answer(
+					InvocationOnMock invocation) throws Throwable {
+				ResultsFuture<ResultsMessage> nextBatch = new ResultsFuture<ResultsMessage>();
+				int begin = (Integer)invocation.getArguments()[1];
+				int length = Math.min(totalLength - begin + 1, (Integer)invocation.getArguments()[2]);
+				requests.add(begin);
+				nextBatch.getResultsReceiver().receiveResults(exampleResultsMsg4(begin, length, begin + length - 1 >= totalLength));
+				return nextBatch;
+			}
+		});
+		ResultsMessage msg = exampleResultsMsg4(1, 10, false);
+		ResultSetImpl cs = new ResultSetImpl(msg, stmt, new ResultSetMetaDataImpl(new MetadataProvider(DeferredMetadataProvider.loadPartialMetadata(msg.getColumnNames(), msg.getDataTypes())), null), 0);
+		assertTrue(cs.next());
+		//the next batch should already be requested
+		assertEquals(Arrays.asList(11), requests);
+		int i = 1;
+		while (cs.next()) {
+			assertEquals(++i, cs.getInt(1));
+		}
+		assertEquals(totalLength, i);
+	}
+	
+	@Test public void testAdaptiveFetchSize() {
+		AdaptiveFetchSize afs = new AdaptiveFetchSize(10);
+		//only latency is known
+		afs.update(10, 1000000);
+		assertEquals(20, afs.getFetchSize());
+		//transfer is fast relative to the round trip
+		afs.update(20, 1100000);
+		assertEquals(40, afs.getFetchSize());
+		//transfer is slow relative to the round trip
+		afs.update(40, 41000000);
+		assertEquals(10, afs.getFetchSize());
+	}
+	
 	static ResultSetImpl helpTestBatching(StatementImpl statement, final int fetchSize, final int batchLength,
 			final int totalLength) throws TeiidProcessingException, SQLException {
 		DQP dqp = statement.getDQP();
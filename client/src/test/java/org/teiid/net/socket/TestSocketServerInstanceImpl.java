@@ -107,6 +107,11 @@ public class TestSocketServerInstanceImpl {
 			return 1;
 		}
 		
+		@Override
+		public int getMaxObjectSize() {
+			return 1 << 25;
+		}
+		
 	}
 
 	@Test public void testHandshakeTimeout() throws Exception {
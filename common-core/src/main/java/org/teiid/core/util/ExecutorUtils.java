@@ -22,8 +22,10 @@
 
 package org.teiid.core.util;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -61,4 +63,18 @@ public class ExecutorUtils {
     public static Executor getDirectExecutor() {
     	return direct;
     }
+    
+    /**
+     * Creates an executor that runs each task on a new virtual thread.
+     * @return the executor or null if the JVM does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    	try {
+    		Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); //$NON-NLS-1$
+    		return (ExecutorService)m.invoke(null);
+    	} catch (Exception e) {
+    		//not available, preview only, or otherwise not allowed
+    		return null;
+    	}
+    }
 }
@@ -23,6 +23,7 @@
 package org.teiid.common.buffer;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.types.Streamable;
@@ -110,6 +111,30 @@ public interface BufferManager extends StorageManager, TupleBufferCache {
      */
     void releaseBuffers(int count);
     
+    /**
+     * Reserve count buffers, or none if they are not all available, without waiting.  
+     * Unlike {@link #reserveBuffers(int, BufferReserveMode)} the reservation is not attributed to
+     * the current thread, so it may be released by any thread with {@link #releaseOrphanedBuffers(int)}.
+     * @param count
+     * @return the number of buffers reserved
+     */
+    int reserveOrphanedBuffers(int count);
+    
+    /**
+     * Releases the buffers reserved by a call to {@link #reserveOrphanedBuffers(int)}
+     * @param count
+     */
+    void releaseOrphanedBuffers(int count);
+    
+    /**
+     * Account the reservations of the current thread to the given scope rather than to the thread.
+     * Processing that moves between threads, such as a parallel producer, should use its own scope 
+     * so that reservations may be released by a different thread than made them.
+     * @param scope the reservation count to use, or null for a new count
+     * @return the previous scope, which should be restored when the processing is done
+     */
+    AtomicInteger setReservationScope(AtomicInteger scope);
+    
     /**
      * Get the size estimate for the given schema.
      */
@@ -194,7 +194,38 @@ public abstract class FileStore implements Removable {
 	
 	protected abstract void removeDirect();
 	
+	/**
+	 * Get a read only view of the given range backed by a memory mapping.
+	 * @return the buffer or null if the range cannot be mapped
+	 * @throws IOException
+	 */
+	public ByteBuffer map(long start, int length) throws IOException {
+		return null;
+	}
+	
 	public InputStream createInputStream(final long start, final long length) {
+		if (length > 0 && length <= Integer.MAX_VALUE) {
+			try {
+				checkRemoved();
+				final ByteBuffer mapped = map(start, (int)length);
+				if (mapped != null) {
+					return new ExtensibleBufferedInputStream() {
+						private boolean read;
+						
+						@Override
+						protected ByteBuffer nextBuffer() throws IOException {
+							if (read) {
+								return null;
+							}
+							read = true;
+							return mapped;
+						}
+					};
+				}
+			} catch (IOException e) {
+				//fall back to a buffered read
+			}
+		}
 		return new ExtensibleBufferedInputStream() {
 			private long offset = start;
 			private long streamLength = length;
@@ -39,6 +39,7 @@ import org.teiid.client.BatchSerializer;
 import org.teiid.common.buffer.LobManager.ReferenceMode;
 import org.teiid.common.buffer.SPage.SearchResult;
 import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.query.QueryPlugin;
 import org.teiid.query.processor.relational.ListNestedSortComparator;
@@ -52,6 +53,8 @@ import org.teiid.query.processor.relational.ListNestedSortComparator;
 public class STree implements Cloneable {
 	
 	public enum InsertMode {ORDERED, NEW, UPDATE}
+	
+	public static final float DEFAULT_FILL_FACTOR = 1f;
 
 	private static final Random seedGenerator = new Random(0);
 
@@ -232,17 +235,20 @@ public class STree implements Cloneable {
 	 * Search each level to find the pointer to the next level
 	 * @param n
 	 * @param places
+	 * @param update true if the search is for a modification.  Only then are the
+	 * parent pointers corrected, so that reads do not write or lock.
 	 * @return
 	 * @throws IOException
 	 * @throws TeiidComponentException 
 	 */
-	List find(List n, List<SearchResult> places) throws TeiidComponentException {
+	List find(List n, List<SearchResult> places, boolean update) throws TeiidComponentException {
 		SPage x = null;
+		SPage[] header = this.header;
 		for (int i = header.length - 1; i >= 0; i--) {
 			if (x == null) {
 				x = header[i];
 			}
-			SearchResult s = SPage.search(x, n, places);
+			SearchResult s = SPage.search(x, n, update?places:null);
 			if (places != null) {
 				places.add(s);
 			}
@@ -269,7 +275,7 @@ public class STree implements Cloneable {
 	}
 	
 	public List find(List n) throws TeiidComponentException {
-		return find(n, new LinkedList<SearchResult>());
+		return find(n, null, false);
 	}
 	
 	public List insert(List tuple, InsertMode mode, int sizeHint) throws TeiidComponentException {
@@ -287,7 +293,7 @@ public class STree implements Cloneable {
 				places.add(new SearchResult(-batch.size() -1, last, batch));
 			}
 		} else {
-			match = find(tuple, places);
+			match = find(tuple, places, true);
 			if (match != null) {
 				if (mode != InsertMode.UPDATE) {
 					return match;
@@ -341,6 +347,105 @@ public class STree implements Cloneable {
 		return null;
 	}
 	
+	/**
+	 * Build the tree bottom-up from tuples in strictly ascending key order.
+	 * <br/>
+	 * Rather than inserting and splitting pages one row at a time, each leaf page is
+	 * filled to the fill factor and written once, then each key level is built from the 
+	 * first keys of the level below until a single page remains.  The tree must be empty.
+	 * @param source
+	 * @param fillFactor the fraction of each page to fill, values outside of (0, 1] use {@link #DEFAULT_FILL_FACTOR}.
+	 * A lower value leaves room for subsequent inserts without splitting.
+	 * @return null if all tuples were loaded, or the first tuple whose key was not greater than the 
+	 * previous key.  In the latter case the tree is valid and contains only the preceding tuples, 
+	 * and no further tuples are read from the source.
+	 * @throws TeiidComponentException
+	 * @throws TeiidProcessingException
+	 */
+	public List bulkLoad(TupleSource source, float fillFactor) throws TeiidComponentException, TeiidProcessingException {
+		if (rowCount.get() != 0) {
+			throw new AssertionError("Bulk load requires an empty tree"); //$NON-NLS-1$
+		}
+		if (fillFactor <= 0 || fillFactor > 1) {
+			fillFactor = DEFAULT_FILL_FACTOR;
+		}
+		int leafFill = Math.max(1, (int)(getPageSize(true) * fillFactor));
+		//key pages need at least two children for the levels to converge
+		int keyFill = Math.max(2, (int)(getPageSize(false) * fillFactor));
+		updateLock.lock();
+		try {
+			List<SPage> level = new ArrayList<SPage>();
+			List<List<?>> levelKeys = new ArrayList<List<?>>();
+			SPage page = header[0];
+			List<List<?>> values = page.getValues();
+			List previousKey = null;
+			List tuple = null;
+			while ((tuple = source.nextTuple()) != null) {
+				List key = extractKey(tuple);
+				if (previousKey != null && comparator.compare(previousKey, key) >= 0) {
+					break;
+				}
+				previousKey = key;
+				if (values.size() == leafFill) {
+					page.setValues(values);
+					page = newPage(page, true);
+					values = page.getValues();
+				}
+				if (values.isEmpty()) {
+					level.add(page);
+					levelKeys.add(key);
+				}
+				if (this.lobManager != null) {
+					this.lobManager.updateReferences(tuple, ReferenceMode.CREATE);
+				}
+				values.add(tuple);
+				rowCount.addAndGet(1);
+			}
+			page.setValues(values);
+			List<SPage> heads = new ArrayList<SPage>();
+			heads.add(header[0]);
+			while (level.size() > 1) {
+				List<SPage> children = level;
+				List<List<?>> childKeys = levelKeys;
+				level = new ArrayList<SPage>();
+				levelKeys = new ArrayList<List<?>>();
+				page = null;
+				values = null;
+				for (int i = 0; i < children.size(); i++) {
+					if (i % keyFill == 0) {
+						if (page != null) {
+							page.setValues(values);
+						}
+						page = newPage(page, false);
+						values = page.getValues();
+						level.add(page);
+						levelKeys.add(childKeys.get(i));
+					}
+					values.add(childKeys.get(i));
+					page.children.add(children.get(i));
+				}
+				page.setValues(values);
+				heads.add(level.get(0));
+			}
+			header = heads.toArray(new SPage[heads.size()]);
+			return tuple;
+		} finally {
+			updateLock.unlock();
+		}
+	}
+
+	/**
+	 * Create a new page linked after the given page
+	 */
+	private SPage newPage(SPage prev, boolean leaf) {
+		SPage page = new SPage(this, leaf);
+		if (prev != null) {
+			prev.next = page;
+			page.prev = prev;
+		}
+		return page;
+	}
+	
 	public int getExpectedHeight(int sizeHint) {
 		if (sizeHint == 0) {
 			return 0;
@@ -419,7 +524,7 @@ public class STree implements Cloneable {
 	
 	public List remove(List key) throws TeiidComponentException {
 		LinkedList<SearchResult> places = new LinkedList<SearchResult>();
-		List tuple = find(key, places);
+		List tuple = find(key, places, true);
 		if (tuple == null) {
 			return null;
 		}
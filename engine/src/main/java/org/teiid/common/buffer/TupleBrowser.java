@@ -101,7 +101,7 @@ public class TupleBrowser implements TupleSource {
 			if (!isPartialKey && lowerBound != null && this.tree.comparator.compare(upperBound, lowerBound) < 0) {
 				valid = false;
 			}
-			this.tree.find(upperBound, getPlaces());
+			this.tree.find(upperBound, getPlaces(), false);
 			SearchResult upper = places.get(places.size() - 1);
 			bound = upper.page;
 			boundIndex = upper.index;
@@ -143,7 +143,7 @@ public class TupleBrowser implements TupleSource {
 	}
 
 	private boolean setPage(List<?> lowerBound) throws TeiidComponentException {
-		this.tree.find(lowerBound, getPlaces());
+		this.tree.find(lowerBound, getPlaces(), false);
 		
 		SearchResult sr = places.get(places.size() - 1);
 		page = sr.page;
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.IOException;
+
+/**
+ * A pure Java LZ77 block compressor using the LZ4 block format.
+ * <br/>
+ * Favors speed over ratio - there is a single hash probe per position and 
+ * the scan accelerates through incompressible input.
+ */
+public final class BlockCompressor {
+	
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MF_LIMIT = 12;
+	private static final int MAX_DISTANCE = (1 << 16) - 1;
+	private static final int HASH_LOG = 12;
+	private static final int SKIP_TRIGGER = 6;
+	private static final int RUN_MASK = 15;
+	
+	private BlockCompressor() {
+		
+	}
+	
+	/**
+	 * @return the maximum compressed size of the given length
+	 */
+	public static int maxCompressedLength(int length) {
+		return length + length/255 + 16;
+	}
+	
+	/**
+	 * Compress the source into the destination, which must have at least {@link #maxCompressedLength(int)} bytes remaining
+	 * @return the compressed length
+	 */
+	public static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+		int end = srcOff + srcLen;
+		int matchLimit = end - LAST_LITERALS;
+		int mfLimit = end - MF_LIMIT;
+		int anchor = srcOff;
+		int op = destOff;
+		if (srcLen >= MF_LIMIT) {
+			//positions are stored + 1 so that 0 means empty
+			int[] table = new int[1 << HASH_LOG];
+			int ip = srcOff + 1;
+			int searchCount = 1 << SKIP_TRIGGER;
+			while (ip < mfLimit) {
+				int sequence = readInt(src, ip);
+				int h = hash(sequence);
+				int ref = table[h] - 1;
+				table[h] = ip + 1;
+				if (ref < srcOff || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+					ip += searchCount++ >>> SKIP_TRIGGER;
+					continue;
+				}
+				searchCount = 1 << SKIP_TRIGGER;
+				//extend backwards
+				while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+					ip--;
+					ref--;
+				}
+				int matchLength = MIN_MATCH;
+				while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+					matchLength++;
+				}
+				int tokenPos = op++;
+				op = writeLiterals(src, anchor, ip - anchor, dest, tokenPos, op);
+				int offset = ip - ref;
+				dest[op++] = (byte)offset;
+				dest[op++] = (byte)(offset >>> 8);
+				int length = matchLength - MIN_MATCH;
+				if (length >= RUN_MASK) {
+					dest[tokenPos] |= RUN_MASK;
+					op = writeLength(length - RUN_MASK, dest, op);
+				} else {
+					dest[tokenPos] |= length;
+				}
+				ip += matchLength;
+				anchor = ip;
+			}
+		}
+		int tokenPos = op++;
+		op = writeLiterals(src, anchor, end - anchor, dest, tokenPos, op);
+		return op - destOff;
+	}
+	
+	/**
+	 * Decompress the source into the destination
+	 * @return the decompressed length
+	 * @throws IOException if the source is not valid
+	 */
+	public static int decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) throws IOException {
+		int end = srcOff + srcLen;
+		int ip = srcOff;
+		int op = destOff;
+		try {
+			while (ip < end) {
+				int token = src[ip++] & 0xff;
+				int length = token >>> 4;
+				if (length == RUN_MASK) {
+					int b = 0;
+					do {
+						b = src[ip++] & 0xff;
+						length += b;
+					} while (b == 255);
+				}
+				System.arraycopy(src, ip, dest, op, length);
+				ip += length;
+				op += length;
+				if (ip >= end) {
+					break;
+				}
+				int offset = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+				ip += 2;
+				length = token & RUN_MASK;
+				if (length == RUN_MASK) {
+					int b = 0;
+					do {
+						b = src[ip++] & 0xff;
+						length += b;
+					} while (b == 255);
+				}
+				length += MIN_MATCH;
+				int ref = op - offset;
+				if (offset == 0 || ref < destOff) {
+					throw new IOException("Invalid compressed block"); //$NON-NLS-1$
+				}
+				if (offset >= length) {
+					System.arraycopy(dest, ref, dest, op, length);
+					op += length;
+				} else {
+					//overlapping copy
+					for (int i = 0; i < length; i++) {
+						dest[op++] = dest[ref++];
+					}
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Invalid compressed block"); //$NON-NLS-1$
+		}
+		return op - destOff;
+	}
+
+	private static int writeLiterals(byte[] src, int start, int length, byte[] dest, int tokenPos, int op) {
+		if (length >= RUN_MASK) {
+			dest[tokenPos] = (byte)(RUN_MASK << 4);
+			op = writeLength(length - RUN_MASK, dest, op);
+		} else {
+			dest[tokenPos] = (byte)(length << 4);
+		}
+		System.arraycopy(src, start, dest, op, length);
+		return op + length;
+	}
+
+	private static int writeLength(int length, byte[] dest, int op) {
+		while (length >= 255) {
+			dest[op++] = (byte)255;
+			length -= 255;
+		}
+		dest[op++] = (byte)length;
+		return op;
+	}
+	
+	private static int readInt(byte[] b, int i) {
+		return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | (b[i + 3] << 24);
+	}
+	
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+}
@@ -404,46 +404,50 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo>, Storage
 								//move the block if possible
 								InputStream is = blockStore.stores[segment].createInputStream(relativeBlockToMove * blockStore.blockSize, blockStore.blockSize);
 								DataInputStream dis = new DataInputStream(is);
-								Long gid = null;
-								Long oid = null;
 								try {
-									gid = dis.readLong();
-									oid = dis.readLong();
-								} catch (IOException e) {
-									continue; //can happen the bit was set and no data exists
-								}
-								dis.reset(); //move back to the beginning
-								Map<Long, PhysicalInfo> map = physicalMapping.get(gid);
-								if (map == null) {
-									continue;
-								}
-								PhysicalInfo info = map.get(oid);
-								if (info == null) {
-									continue;
-								}
-								int bitIndex = relativeBlockToMove + (segment * blockStore.blocksInUse.getBitsPerSegment());
-								synchronized (info) {
-									info.await(true, false);
-									if (info.block == EMPTY_ADDRESS) {
+									Long gid = null;
+									Long oid = null;
+									try {
+										gid = dis.readLong();
+										oid = dis.readLong();
+									} catch (IOException e) {
+										continue; //can happen the bit was set and no data exists
+									}
+									dis.reset(); //move back to the beginning
+									Map<Long, PhysicalInfo> map = physicalMapping.get(gid);
+									if (map == null) {
 										continue;
 									}
-									if (info.block != bitIndex) {
-										//we've marked a bit in use, but haven't yet written new data
+									PhysicalInfo info = map.get(oid);
+									if (info == null) {
 										continue;
 									}
-								}
-								int newBlock = blockStore.writeToStorageBlock(info, dis);
-								synchronized (info) {
-									info.await(true, true);
-									if (info.block == EMPTY_ADDRESS) {
-										//already removed;
-										if (newBlock != EMPTY_ADDRESS) {
-											blockStore.blocksInUse.clear(newBlock);
+									int bitIndex = relativeBlockToMove + (segment * blockStore.blocksInUse.getBitsPerSegment());
+									synchronized (info) {
+										info.await(true, false);
+										if (info.block == EMPTY_ADDRESS) {
+											continue;
 										}
-										continue;
+										if (info.block != bitIndex) {
+											//we've marked a bit in use, but haven't yet written new data
+											continue;
+										}
+									}
+									int newBlock = blockStore.writeToStorageBlock(info, dis);
+									synchronized (info) {
+										info.await(true, true);
+										if (info.block == EMPTY_ADDRESS) {
+											//already removed;
+											if (newBlock != EMPTY_ADDRESS) {
+												blockStore.blocksInUse.clear(newBlock);
+											}
+											continue;
+										}
+										info.block = newBlock;
+										blockStore.blocksInUse.clear(bitIndex);
 									}
-									info.block = newBlock;
-									blockStore.blocksInUse.clear(bitIndex);
+								} finally {
+									dis.close();
 								}
 								sleep = false;
 							} while (shouldDefrag(blockStore, segment));
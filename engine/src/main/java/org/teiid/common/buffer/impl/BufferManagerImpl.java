@@ -78,6 +78,13 @@ import org.teiid.query.sql.symbol.Expression;
 public class BufferManagerImpl implements BufferManager, ReplicatedObject<String> {
 
 	private static final int SYSTEM_OVERHEAD_MEGS = 150;
+	
+	public enum EvictionPolicy {
+		/** Least recently/frequently used */
+		LRFU,
+		/** Scan resistant probationary and main queues */
+		TWO_QUEUE
+	}
 
 	/**
 	 * Asynch cleaner attempts to age out old entries and to reduce the memory size when 
@@ -235,7 +242,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		@Override
 		public List<? extends List<?>> deserialize(ObjectInput ois)
 				throws IOException, ClassNotFoundException {
-			List<? extends List<?>> batch = BatchSerializer.readBatch(ois, types);
+			List<? extends List<?>> batch = spillSerializer.readBatch(ois, types);
 			if (lobManager != null) {
 				for (int i = batch.size() - 1; i >= 0; i--) {
 					try {
@@ -258,7 +265,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			}
 			try {
 				//it's expected that the containing structure has updated the lob manager
-				BatchSerializer.writeBatch(oos, types, obj);
+				spillSerializer.writeBatch(oos, types, obj);
 			} catch (RuntimeException e) {
 				//there is a chance of a concurrent persist while modifying 
 				//in which case we want to swallow this exception
@@ -281,14 +288,14 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.TRACE)) {
 				LogManager.logTrace(LogConstants.CTX_BUFFER_MGR, id, "getting batch", batch, "total reads", reads, "reference hits", referenceHit.get()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
-			CacheEntry ce = fastGet(batch, prefersMemory.get(), retain);
+			CacheEntry ce = fastGet(batch, prefersMemory.get(), retain, true);
 			if (ce != null) {
 				return (List<List<?>>)(!retain?ce.nullOut():ce.getObject());
 			}
 			//obtain a granular lock to prevent double memory loading
 			Object o = cache.lockForLoad(batch, this);
 			try {
-				ce = fastGet(batch, prefersMemory.get(), retain);
+				ce = fastGet(batch, prefersMemory.get(), retain, true);
 				if (ce != null) {
 					return (List<List<?>>)(!retain?ce.nullOut():ce.getObject());
 				}
@@ -357,23 +364,27 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     AtomicLong reserveBatchBytes = new AtomicLong();
     private int maxActivePlans = DQPConfiguration.DEFAULT_MAX_ACTIVE_PLANS; //used as a hint to set the reserveBatchKB
     private boolean useWeakReferences = true;
+    private SpillSerializer spillSerializer = new SpillSerializer();
     private boolean inlineLobs = true;
     private int targetBytesPerRow = TARGET_BYTES_PER_ROW;
     private int maxSoftReferences;
 
-    private ReentrantLock lock = new ReentrantLock(true);
+    //only used to wait for additional reservations, reserve and release are lock free
+    private ReentrantLock lock = new ReentrantLock();
     private Condition batchesFreed = lock.newCondition();
+    private AtomicInteger waitingForRelease = new AtomicInteger();
     
     AtomicLong activeBatchBytes = new AtomicLong();
     
     private AtomicLong readAttempts = new AtomicLong();
     //TODO: consider the size estimate in the weighting function
-    LrfuEvictionQueue<CacheEntry> evictionQueue = new LrfuEvictionQueue<CacheEntry>(readAttempts);
+    EvictionQueue<CacheEntry> evictionQueue = new LrfuEvictionQueue<CacheEntry>(readAttempts);
+    private EvictionPolicy evictionPolicy = EvictionPolicy.LRFU;
     ConcurrentHashMap<Long, CacheEntry> memoryEntries = new ConcurrentHashMap<Long, CacheEntry>(16, .75f, CONCURRENCY_LEVEL);
     
-    private ThreadLocal<Integer> reservedByThread = new ThreadLocal<Integer>() {
-    	protected Integer initialValue() {
-    		return 0;
+    private ThreadLocal<AtomicInteger> reservedByThread = new ThreadLocal<AtomicInteger>() {
+    	protected AtomicInteger initialValue() {
+    		return new AtomicInteger();
     	}
     };
     
@@ -403,6 +414,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     private AtomicLong readCount = new AtomicLong();
 	private AtomicLong writeCount = new AtomicLong();
 	private AtomicLong referenceHit = new AtomicLong();
+	private AtomicLong memoryHit = new AtomicLong();
 	
 	private static final Timer timer = new Timer("BufferManager Cleaner", true); //$NON-NLS-1$
 	
@@ -442,6 +454,113 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		return readAttempts.get();
 	}
 	
+	/**
+	 * @return the number of batch reads satisfied by the memory entries managed by the eviction policy
+	 */
+	public long getMemoryHitCount() {
+		return memoryHit.get();
+	}
+	
+	/**
+	 * @return the number of probationary entries promoted by a second access, or 0 if the eviction policy is not {@link EvictionPolicy#TWO_QUEUE}
+	 */
+	public long getPromotionCount() {
+		EvictionQueue<CacheEntry> queue = this.evictionQueue;
+		if (queue instanceof TwoQueueEvictionQueue<?>) {
+			return ((TwoQueueEvictionQueue<?>)queue).getPromotions();
+		}
+		return 0;
+	}
+	
+	/**
+	 * @return the number of re-added entries recognized as recently evicted, or 0 if the eviction policy is not {@link EvictionPolicy#TWO_QUEUE}
+	 */
+	public long getGhostHitCount() {
+		EvictionQueue<CacheEntry> queue = this.evictionQueue;
+		if (queue instanceof TwoQueueEvictionQueue<?>) {
+			return ((TwoQueueEvictionQueue<?>)queue).getGhostHits();
+		}
+		return 0;
+	}
+	
+	/**
+	 * @return the number of entries evicted from the probationary queue, or 0 if the eviction policy is not {@link EvictionPolicy#TWO_QUEUE}
+	 */
+	public long getProbationEvictionCount() {
+		EvictionQueue<CacheEntry> queue = this.evictionQueue;
+		if (queue instanceof TwoQueueEvictionQueue<?>) {
+			return ((TwoQueueEvictionQueue<?>)queue).getProbationEvictions();
+		}
+		return 0;
+	}
+	
+	/**
+	 * @return the number of batch reads satisfied by soft or weak references
+	 */
+	public long getReferenceHitCount() {
+		return referenceHit.get();
+	}
+	
+	public boolean isCompressBatches() {
+		return spillSerializer.isCompress();
+	}
+	
+	/**
+	 * Set to true to dictionary encode and block compress batches when they are written to the cache.
+	 * @param compressBatches
+	 */
+	public void setCompressBatches(boolean compressBatches) {
+		this.spillSerializer.setCompress(compressBatches);
+	}
+	
+	/**
+	 * @return the serialized size of the batches written to the cache prior to compression
+	 */
+	public long getUncompressedBytes() {
+		return spillSerializer.getUncompressedBytes();
+	}
+	
+	/**
+	 * @return the size of the batches written to the cache after compression
+	 */
+	public long getCompressedBytes() {
+		return spillSerializer.getCompressedBytes();
+	}
+	
+	/**
+	 * @return the time in milliseconds spent compressing and decompressing batches
+	 */
+	public long getCompressionTime() {
+		return TimeUnit.NANOSECONDS.toMillis(spillSerializer.getCompressionTimeNanos());
+	}
+	
+	/**
+	 * @return the number of batches written uncompressed since they did not compress well
+	 */
+	public long getUncompressedBatches() {
+		return spillSerializer.getUncompressedBatches();
+	}
+	
+	public EvictionPolicy getEvictionPolicy() {
+		return evictionPolicy;
+	}
+	
+	/**
+	 * Set the eviction policy for the memory entries.  Should be called prior to use. 
+	 * @param evictionPolicy
+	 */
+	public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+		switch (evictionPolicy) {
+		case TWO_QUEUE:
+			this.evictionQueue = new TwoQueueEvictionQueue<CacheEntry>(readAttempts);
+			break;
+		default:
+			this.evictionQueue = new LrfuEvictionQueue<CacheEntry>(readAttempts);
+			break;
+		}
+	}
+	
 	@Override
 	public int getMaxProcessingSize() {
 		return maxProcessingBytes;
@@ -593,16 +712,27 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     	if (count < 1) {
     		return;
     	}
-    	reservedByThread.set(reservedByThread.get() - count);
+    	reservedByThread.get().addAndGet(-count);
+    	releaseOrphanedBuffers(count);
+    }
+    
+    @Override
+    public void releaseOrphanedBuffers(int count) {
+    	if (count < 1) {
+    		return;
+    	}
     	if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.TRACE)) {
     		LogManager.logTrace(LogConstants.CTX_BUFFER_MGR, "Releasing buffer space", count); //$NON-NLS-1$
     	}
-    	lock.lock();
-    	try {
-        	this.reserveBatchBytes.addAndGet(count);
-	    	batchesFreed.signalAll();
-    	} finally {
-    		lock.unlock();
+    	this.reserveBatchBytes.addAndGet(count);
+    	//waiters register before checking the available space, so a waiter can't miss this signal
+    	if (waitingForRelease.get() > 0) {
+	    	lock.lock();
+	    	try {
+		    	batchesFreed.signalAll();
+	    	} finally {
+	    		lock.unlock();
+	    	}
     	}
     }
     
@@ -614,17 +744,24 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     	if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.TRACE)) {
     		LogManager.logTrace(LogConstants.CTX_BUFFER_MGR, "Reserving buffer space", additional, "WAIT"); //$NON-NLS-1$ //$NON-NLS-2$
     	}
-    	lock.lock();
+    	AtomicInteger reserved = reservedByThread.get();
     	try {
 			//don't wait for more than is available
-			int waitCount = Math.min(additional, this.getMaxReserveKB() - reservedByThread.get());
+			int waitCount = Math.min(additional, this.getMaxReserveKB() - reserved.get());
 			int committed = 0;
 	    	while (waitCount > 0 && waitCount > this.reserveBatchBytes.get() && committed < additional) {
 	    		long reserveBatchSample = this.reserveBatchBytes.get();
+	    		waitingForRelease.incrementAndGet();
+	    		lock.lock();
 	    		try {
-					batchesFreed.await(100, TimeUnit.MILLISECONDS);
+	    			if (reserveBatchSample >= this.reserveBatchBytes.get()) {
+	    				batchesFreed.await(100, TimeUnit.MILLISECONDS);
+	    			}
 				} catch (InterruptedException e) {
 					 throw new TeiidRuntimeException(QueryPlugin.Event.TEIID30053, e);
+				} finally {
+					lock.unlock();
+					waitingForRelease.decrementAndGet();
 				}
 				if (reserveBatchSample >= this.reserveBatchBytes.get()) {
 					waitCount >>= 3;
@@ -634,9 +771,9 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		    	int result = noWaitReserve(additional - committed, false);
 		    	committed += result;
 	    	}	
+	    	reserved.addAndGet(committed);
 	    	return committed;
     	} finally {
-    		lock.unlock();
     		persistBatchReferences();
     	}
     }
@@ -652,10 +789,27 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     	} else {
     		result = noWaitReserve(count, true);
     	}
-    	reservedByThread.set(reservedByThread.get() + result);
+    	reservedByThread.get().addAndGet(result);
 		persistBatchReferences();
     	return result;
     }
+    
+    @Override
+    public AtomicInteger setReservationScope(AtomicInteger scope) {
+    	AtomicInteger previous = reservedByThread.get();
+    	reservedByThread.set(scope != null ? scope : new AtomicInteger());
+    	return previous;
+    }
+
+    @Override
+    public int reserveOrphanedBuffers(int count) {
+    	if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.TRACE)) {
+    		LogManager.logTrace(LogConstants.CTX_BUFFER_MGR, "Reserving orphaned buffer space", count); //$NON-NLS-1$
+    	}
+    	int result = noWaitReserve(count, true);
+    	persistBatchReferences();
+    	return result;
+    }
 
 	private int noWaitReserve(int count, boolean allOrNothing) {
 		for (int i = 0; i < 2; i++) {
@@ -760,10 +914,15 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		reserveBatchBytes.addAndGet(- sizeEstimate);
 	}
 	
+	CacheEntry fastGet(Long batch, boolean prefersMemory, boolean retain) {
+		return fastGet(batch, prefersMemory, retain, false);
+	}
+	
 	/**
 	 * Get a CacheEntry without hitting storage
+	 * @param read true if the batch is being read, rather than removed or replaced
 	 */
-	CacheEntry fastGet(Long batch, boolean prefersMemory, boolean retain) {
+	CacheEntry fastGet(Long batch, boolean prefersMemory, boolean retain, boolean read) {
 		CacheEntry ce = null;
 		if (retain) {
 			ce = memoryEntries.get(batch);
@@ -771,6 +930,9 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			ce = memoryEntries.remove(batch);
 		}
 		if (ce != null) {
+			if (read) {
+				memoryHit.getAndIncrement();
+			}
 			synchronized (ce) {
 				if (retain) {
 					//there is a minute chance the batch was evicted
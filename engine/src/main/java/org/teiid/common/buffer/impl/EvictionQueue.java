@@ -0,0 +1,69 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.util.Collection;
+
+import org.teiid.common.buffer.BaseCacheEntry;
+
+/**
+ * An eviction policy for the memory entries held by the {@link BufferManagerImpl}.
+ * Implementations must be thread-safe.  Null values are not allowed.
+ * <br/>
+ * The BufferManager will synchronize on the value when calling add, remove, touch and recordAccess.
+ * @param <V>
+ */
+public interface EvictionQueue<V extends BaseCacheEntry> {
+	
+	/**
+	 * Add an entry that was not in the queue
+	 * @return true if the value was not already present
+	 */
+	boolean add(V value);
+	
+	/**
+	 * @return true if the value was present
+	 */
+	boolean remove(V value);
+	
+	/**
+	 * Update the position of an entry that is in the queue due to an access 
+	 */
+	void touch(V value);
+
+	/**
+	 * Update the key of an entry that is not in the queue due to an access, 
+	 * typically prior to adding it back
+	 */
+	void recordAccess(V value);
+	
+	/**
+	 * Get the next entry to evict
+	 * @param poll if true the entry is removed from the queue
+	 * @return the entry or null if the queue is empty
+	 */
+	V firstEntry(boolean poll);
+	
+	Collection<V> getEvictionQueue();
+
+}
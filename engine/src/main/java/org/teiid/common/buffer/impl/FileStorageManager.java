@@ -25,16 +25,28 @@ package org.teiid.common.buffer.impl;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.teiid.common.buffer.FileStore;
 import org.teiid.common.buffer.StorageManager;
 import org.teiid.core.TeiidComponentException;
+import org.teiid.core.util.ExecutorUtils;
+import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.logging.MessageLevel;
 import org.teiid.query.QueryPlugin;
@@ -47,12 +59,28 @@ public class FileStorageManager implements StorageManager {
 	
 	public static final int DEFAULT_MAX_OPEN_FILES = 64;
 	public static final long DEFAULT_MAX_BUFFERSPACE = 50L * 1024L * 1024L * 1024L;
+	public static final long DEFAULT_MAX_WRITE_BEHIND_BYTES = 64L * 1024L * 1024L;
+	/**
+	 * Files are mapped in whole regions of this size, which keeps each mapping under the 2GB limit
+	 * and the number of mappings well under typical OS limits for large spills
+	 */
+	static final int DEFAULT_LOG_MAP_REGION_SIZE = 26;
 	private static final String FILE_PREFIX = "b_"; //$NON-NLS-1$
 	
 	private long maxBufferSpace = DEFAULT_MAX_BUFFERSPACE;
 	private AtomicLong usedBufferSpace = new AtomicLong();
 	private AtomicInteger fileCounter = new AtomicInteger();
 	
+	private int writeBehindThreads;
+	private long maxWriteBehindBytes = DEFAULT_MAX_WRITE_BEHIND_BYTES;
+	private AtomicLong writeBehindBytes = new AtomicLong();
+	private AtomicLong writeBehindFlushes = new AtomicLong();
+	private ExecutorService writeBehindPool;
+	private boolean memoryMappedReads;
+	private AtomicLong mappedReads = new AtomicLong();
+	private AtomicInteger mappedRegions = new AtomicInteger();
+	private int logMapRegionSize = DEFAULT_LOG_MAP_REGION_SIZE;
+	
 	private class FileInfo {
     	private File file;
         private RandomAccessFile fileData;       // may be null if not open
@@ -85,6 +113,7 @@ public class FileStorageManager implements StorageManager {
         			fileData.close();
 				} catch (IOException e) {
 				}
+        		fileData = null;
         	}
         	file.delete();
         }
@@ -96,12 +125,88 @@ public class FileStorageManager implements StorageManager {
 	
 	public class DiskStore extends FileStore {
 	    private String name;
-		private FileInfo fileInfo; 
-	    
+		private FileInfo fileInfo;
+		//writes that have not yet been applied to the file, keyed by file offset.  entries do not overlap.
+		private TreeMap<Long, ByteBuffer> pending;
+		private long pendingBytes;
+		//writes being applied by the flush task outside of the store lock
+		private TreeMap<Long, ByteBuffer> flushing;
+		private long flushingBytes;
+		private boolean flushScheduled;
+		//a failed background write, reported to the next writer
+		private IOException writeFailure;
+		private boolean deleted;
+		private MappedByteBuffer[] regions;
+
+		private final Runnable flushTask = new Runnable() {
+			@Override
+			public void run() {
+				File file = null;
+				synchronized (DiskStore.this) {
+					if (deleted || pending == null || pending.isEmpty()) {
+						flushScheduled = false;
+						return;
+					}
+					file = fileInfo.file;
+					flushing = pending;
+					flushingBytes = pendingBytes;
+					pending = null;
+					pendingBytes = 0;
+				}
+				IOException failure = null;
+				RandomAccessFile flushAccess = null;
+				try {
+					//a separate handle has its own position, so the gathering writes do not affect 
+					//reads and writes of the shared handle under the store lock
+					flushAccess = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+					writeRuns(flushAccess.getChannel(), flushing);
+					writeBehindFlushes.incrementAndGet();
+				} catch (IOException e) {
+					failure = e;
+				} finally {
+					if (flushAccess != null) {
+						try {
+							flushAccess.close();
+						} catch (IOException e) {
+						}
+					}
+				}
+				synchronized (DiskStore.this) {
+					if (deleted) {
+						writeBehindBytes.addAndGet(-flushingBytes);
+						//the delete may not have succeeded while the file was open
+						fileInfo.delete();
+					} else if (failure != null) {
+						//overlapping writers wait on the flush, so the entries can simply be restored
+						for (ByteBuffer buffer : flushing.values()) {
+							buffer.rewind();
+						}
+						if (pending == null) {
+							pending = new TreeMap<Long, ByteBuffer>();
+						}
+						pending.putAll(flushing);
+						pendingBytes += flushingBytes;
+						writeFailure = failure;
+						LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, failure, "Error writing to", name); //$NON-NLS-1$
+					} else {
+						writeBehindBytes.addAndGet(-flushingBytes);
+					}
+					flushing = null;
+					flushingBytes = 0;
+					if (failure == null && !deleted && pending != null && !pending.isEmpty()) {
+						writeBehindPool.execute(this);
+					} else {
+						flushScheduled = false;
+					}
+					DiskStore.this.notifyAll();
+				}
+			}
+		};
+
 	    public DiskStore(String name) {
 			this.name = name;
 		}
-	    
+
 	    @Override
 	    public synchronized long getLength() {
 	    	if (fileInfo == null) {
@@ -109,7 +214,7 @@ public class FileStorageManager implements StorageManager {
 	    	}
 	    	return fileInfo.file.length();
 	    }
-	    
+
 	    @Override
 	    protected synchronized int readWrite(long fileOffset, byte[] b, int offSet,
 	    		int length, boolean write) throws IOException {
@@ -117,17 +222,26 @@ public class FileStorageManager implements StorageManager {
 	    		if (fileInfo == null) {
 	    			return -1;
 	    		}
+	    		//read your writes
+	    		awaitFlushing(fileOffset, fileOffset + length);
 				try {
 					RandomAccessFile fileAccess = fileInfo.open();
+					flushPending(fileAccess.getChannel(), fileOffset, fileOffset + length, false);
 			        fileAccess.seek(fileOffset);
 			        return fileAccess.read(b, offSet, length);
 				} finally {
 					fileInfo.close();
 				}
+	    	}
+	    	if (writeFailure != null) {
+	    		IOException e = writeFailure;
+	    		writeFailure = null;
+	    		throw e;
 	    	}
 			if (fileInfo == null) {
 				fileInfo = new FileInfo(createFile(name));
 	        }
+			awaitFlushing(fileOffset, fileOffset + length);
 			long bytesUsed = 0;
 	        try {
 	        	RandomAccessFile fileAccess = fileInfo.open();
@@ -142,6 +256,27 @@ public class FileStorageManager implements StorageManager {
 	            	fileAccess.setLength(newLength);
 	            	bytesUsed = 0;
 	            }
+	            if (writeBehindPool != null) {
+	            	flushPending(fileAccess.getChannel(), fileOffset, fileOffset + length, true);
+	            	if (writeBehindBytes.addAndGet(length) <= maxWriteBehindBytes) {
+	            		//copy since the caller is free to reuse the array
+	            		ByteBuffer buffer = ByteBuffer.allocate(length);
+	            		buffer.put(b, offSet, length);
+	            		buffer.flip();
+	            		if (pending == null) {
+	            			pending = new TreeMap<Long, ByteBuffer>();
+	            		}
+	            		pending.put(fileOffset, buffer);
+	            		pendingBytes += length;
+	            		if (!flushScheduled) {
+	            			flushScheduled = true;
+	            			writeBehindPool.execute(flushTask);
+	            		}
+	            		return length;
+	            	}
+	            	//too much is already in flight, write on this thread
+	            	writeBehindBytes.addAndGet(-length);
+	            }
 	            fileAccess.seek(fileOffset);
 	            fileAccess.write(b, offSet, length);
 	        } finally {
@@ -149,30 +284,198 @@ public class FileStorageManager implements StorageManager {
 	        		usedBufferSpace.addAndGet(-bytesUsed);
 	        	}
 	        	fileInfo.close();
-	        }	    		
+	        }
 	    	return length;
 	    }
+
+	    @Override
+	    public synchronized ByteBuffer map(long start, int length) throws IOException {
+	    	if (!memoryMappedReads || fileInfo == null || deleted) {
+	    		return null;
+	    	}
+	    	int region = (int)(start >> logMapRegionSize);
+	    	long regionStart = (long)region << logMapRegionSize;
+	    	int end = (int)(start - regionStart) + length;
+	    	if (length <= 0 || end > (1 << logMapRegionSize)) {
+	    		//crosses a region boundary, use a normal read
+	    		return null;
+	    	}
+	    	awaitFlushing(start, start + length);
+	    	try {
+	    		RandomAccessFile fileAccess = fileInfo.open();
+	    		flushPending(fileAccess.getChannel(), start, start + length, false);
+	    		MappedByteBuffer buffer = null;
+	    		if (regions != null && region < regions.length) {
+	    			buffer = regions[region];
+	    		}
+	    		if (buffer == null) {
+	    			//only whole regions are mapped, so that a mapping is never replaced as the file grows
+	    			if (fileAccess.length() < regionStart + (1 << logMapRegionSize)) {
+	    				return null;
+	    			}
+	    			if (regions == null || regions.length <= region) {
+	    				MappedByteBuffer[] newRegions = new MappedByteBuffer[region + 1];
+	    				if (regions != null) {
+	    					System.arraycopy(regions, 0, newRegions, 0, regions.length);
+	    				}
+	    				regions = newRegions;
+	    			}
+	    			buffer = fileAccess.getChannel().map(MapMode.READ_ONLY, regionStart, 1 << logMapRegionSize);
+	    			regions[region] = buffer;
+	    			mappedRegions.incrementAndGet();
+	    		}
+	    		ByteBuffer result = buffer.duplicate();
+	    		result.limit(end);
+	    		result.position(end - length);
+	    		mappedReads.incrementAndGet();
+	    		return result.slice();
+	    	} finally {
+	    		fileInfo.close();
+	    	}
+	    }
+	    
+	    /**
+	     * Stop using the mapped regions from the given offset.  The mappings are released
+	     * by garbage collection once no reader still holds a slice of them. 
+	     */
+	    private void releaseRegions(long offset) {
+	    	if (regions == null) {
+	    		return;
+	    	}
+	    	for (int i = (int)(offset >> logMapRegionSize); i < regions.length; i++) {
+	    		if (regions[i] != null) {
+	    			regions[i] = null;
+	    			mappedRegions.decrementAndGet();
+	    		}
+	    	}
+	    }
+	    
+	    /**
+	     * Wait for a background flush that overlaps the given range.  Must be called while holding 
+	     * the store lock, but not while the file is open.
+	     */
+	    private void awaitFlushing(long start, long end) throws IOException {
+	    	while (flushing != null && overlaps(flushing, start, end)) {
+	    		try {
+	    			wait();
+	    		} catch (InterruptedException e) {
+	    			Thread.currentThread().interrupt();
+	    			throw new InterruptedIOException();
+	    		}
+	    	}
+	    }
+	    
+	    private boolean overlaps(TreeMap<Long, ByteBuffer> writes, long start, long end) {
+	    	Map.Entry<Long, ByteBuffer> entry = writes.lowerEntry(end);
+	    	return entry != null && entry.getKey() + entry.getValue().remaining() > start;
+	    }
+
+	    /**
+	     * Write the pending buffers that overlap the given range.  If superseded, buffers
+	     * entirely within the range are dropped instead since they are about to be overwritten.
+	     * Must be called while holding the store lock.
+	     */
+	    private void flushPending(FileChannel channel, long start, long end, boolean superseded) throws IOException {
+	    	if (pending == null) {
+	    		return;
+	    	}
+	    	//pending entries do not overlap, so the overlapping entries are contiguous in the map
+	    	for (Iterator<Map.Entry<Long, ByteBuffer>> iter = pending.headMap(end, false).descendingMap().entrySet().iterator(); iter.hasNext();) {
+	    		Map.Entry<Long, ByteBuffer> entry = iter.next();
+	    		long entryStart = entry.getKey();
+	    		int entryLength = entry.getValue().remaining();
+	    		if (entryStart + entryLength <= start) {
+	    			break;
+	    		}
+	    		if (!superseded || entryStart < start || entryStart + entryLength > end) {
+	    			write(channel, entryStart, entry.getValue());
+	    		}
+	    		iter.remove();
+	    		pendingBytes -= entryLength;
+	    		writeBehindBytes.addAndGet(-entryLength);
+	    	}
+	    }
+	    
+	    /**
+	     * Write the buffer.  The position is restored so that the buffer may be written again after a failure.
+	     * Positional writes do not affect reads of the file under the store lock.
+	     */
+	    private void write(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+	    	try {
+		    	while (buffer.hasRemaining()) {
+		    		position += channel.write(buffer, position);
+		    	}
+	    	} finally {
+	    		buffer.rewind();
+	    	}
+	    }
 	    
+	    /**
+	     * Write the buffers, coalescing adjacent buffers into a single gathering write.
+	     * The channel position is used, so it must not be shared.
+	     */
+	    private void writeRuns(FileChannel channel, TreeMap<Long, ByteBuffer> writes) throws IOException {
+	    	List<ByteBuffer> run = new ArrayList<ByteBuffer>();
+	    	long runStart = 0;
+	    	long runEnd = 0;
+	    	for (Map.Entry<Long, ByteBuffer> entry : writes.entrySet()) {
+	    		if (!run.isEmpty() && entry.getKey() != runEnd) {
+	    			writeRun(channel, runStart, run);
+	    		}
+	    		if (run.isEmpty()) {
+	    			runStart = entry.getKey();
+	    			runEnd = runStart;
+	    		}
+	    		run.add(entry.getValue());
+	    		runEnd += entry.getValue().remaining();
+	    	}
+	    	writeRun(channel, runStart, run);
+	    }
+	    
+	    private void writeRun(FileChannel channel, long start, List<ByteBuffer> run) throws IOException {
+	    	ByteBuffer[] buffers = run.toArray(new ByteBuffer[run.size()]);
+	    	channel.position(start);
+	    	ByteBuffer last = buffers[buffers.length - 1];
+	    	while (last.hasRemaining()) {
+	    		channel.write(buffers);
+	    	}
+	    	run.clear();
+	    }
+
+	    private void clearPending() {
+	    	pending = null;
+	    	writeBehindBytes.addAndGet(-pendingBytes);
+	    	pendingBytes = 0;
+	    }
+
 	    @Override
 	    public synchronized void setLength(long length) throws IOException {
 	    	if (fileInfo == null) {
 				fileInfo = new FileInfo(createFile(name));
 	        }
+	    	//regions extending past the new length are no longer whole
+	    	releaseRegions(length);
+	    	awaitFlushing(0, Long.MAX_VALUE);
 	    	try {
-	    		fileInfo.open().setLength(length);
+	    		RandomAccessFile fileAccess = fileInfo.open();
+	    		flushPending(fileAccess.getChannel(), 0, Long.MAX_VALUE, false);
+	    		fileAccess.setLength(length);
 	    	} finally {
 	    		fileInfo.close();
 	    	}
 	    }
-		
+
 	    @Override
 		public synchronized void removeDirect() {
+	    	clearPending();
+	    	deleted = true;
+	    	releaseRegions(0);
 			usedBufferSpace.addAndGet(-getLength());
 			if (fileInfo != null){
 				fileInfo.delete();
 			}
 		}
-	    
+
 	}
 
     // Initialization
@@ -213,6 +516,9 @@ public class FileStorageManager implements StorageManager {
         	subDirectories[i] = new File(this.directory, "b" +i); //$NON-NLS-1$
         	makeDir(subDirectories[i]);
         }
+        if (this.writeBehindThreads > 0 && this.writeBehindPool == null) {
+        	this.writeBehindPool = ExecutorUtils.newFixedThreadPool(this.writeBehindThreads, "FileStore Writer"); //$NON-NLS-1$
+        }
     }
     
     private static void makeDir(File file) throws TeiidComponentException {
@@ -273,5 +579,84 @@ public class FileStorageManager implements StorageManager {
     public void setMaxBufferSpace(long maxBufferSpace) {
 		this.maxBufferSpace = maxBufferSpace;
 	}
+    
+    /**
+     * Set the number of threads used to write spilled data in the background.
+     * 0, the default, performs all writes on the calling thread.
+     * Must be set prior to {@link #initialize()}.
+     * @param writeBehindThreads
+     */
+    public void setWriteBehindThreads(int writeBehindThreads) {
+		this.writeBehindThreads = writeBehindThreads;
+	}
+    
+    public int getWriteBehindThreads() {
+		return writeBehindThreads;
+	}
+    
+    /**
+     * Set the max number of bytes that may be waiting to be written in the background.
+     * Once exceeded writes are performed on the calling thread.
+     * @param maxWriteBehindBytes
+     */
+    public void setMaxWriteBehindBytes(long maxWriteBehindBytes) {
+		this.maxWriteBehindBytes = maxWriteBehindBytes;
+	}
+    
+    public long getMaxWriteBehindBytes() {
+		return maxWriteBehindBytes;
+	}
+    
+    /**
+     * Get the number of bytes currently waiting to be written in the background
+     * @return
+     */
+    public long getWriteBehindBytes() {
+		return writeBehindBytes.get();
+	}
+    
+    /**
+     * Set to true to read spilled data through read only memory mappings
+     * rather than copying through heap buffers.  Mappings are made in 64MB regions
+     * once a region has been fully written.  They are dropped when the file is truncated
+     * or removed and then released by garbage collection.  Reads of a partial region or that span a region boundary fall back 
+     * to a normal read.
+     * @param memoryMappedReads
+     */
+    public void setMemoryMappedReads(boolean memoryMappedReads) {
+		this.memoryMappedReads = memoryMappedReads;
+	}
+    
+    public boolean isMemoryMappedReads() {
+		return memoryMappedReads;
+	}
+    
+    /**
+     * Get the number of reads served from memory mappings
+     * @return
+     */
+    public long getMappedReads() {
+		return mappedReads.get();
+	}
+    
+    /**
+     * Get the number of regions currently held for reads by the file stores
+     * @return
+     */
+    public int getMappedRegions() {
+		return mappedRegions.get();
+	}
+    
+    void setLogMapRegionSize(int logMapRegionSize) {
+		this.logMapRegionSize = logMapRegionSize;
+	}
+    
+    /**
+     * Get the number of background flushes performed
+     * @return
+     */
+    public long getWriteBehindFlushes() {
+		return writeBehindFlushes.get();
+	}
 
 }
@@ -36,7 +36,7 @@ import org.teiid.common.buffer.CacheKey;
  * Null values are not allowed.
  * @param <V>
  */
-public class LrfuEvictionQueue<V extends BaseCacheEntry> {
+public class LrfuEvictionQueue<V extends BaseCacheEntry> implements EvictionQueue<V> {
 	
 	private static final long DEFAULT_HALF_LIFE = 1<<17;
 	private static final long MIN_INTERVAL = 1<<10;
@@ -54,14 +54,17 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 		setHalfLife(DEFAULT_HALF_LIFE);
 	}
 
+	@Override
 	public boolean remove(V value) {
 		return evictionQueue.remove(value.getKey()) != null;
 	}
 	
+	@Override
 	public boolean add(V value) {
 		return evictionQueue.put(value.getKey(), value) == null;
 	}
 	
+	@Override
 	public void touch(V value) {
 		long tick = clock.get();
 		if (tick - MIN_INTERVAL < value.getKey().getLastAccess()) {
@@ -72,10 +75,12 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 		evictionQueue.put(value.getKey(), value);
 	}
 		
+	@Override
 	public Collection<V> getEvictionQueue() {
 		return evictionQueue.values();
 	}
 	
+	@Override
 	public V firstEntry(boolean poll) {
 		Map.Entry<CacheKey, V> entry = null;
 		if (poll) {
@@ -92,6 +97,7 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 	/**
      * Callers should be synchronized on value
      */
+	@Override
 	public void recordAccess(V value) {
 		CacheKey key = value.getKey();
 		long lastAccess = key.getLastAccess();
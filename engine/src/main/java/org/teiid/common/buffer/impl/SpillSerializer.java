@@ -0,0 +1,274 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.teiid.client.BatchSerializer;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.util.AccessibleByteArrayOutputStream;
+
+/**
+ * Writes and reads the serialized form of batches held by the {@link BufferManagerImpl}.
+ * <br/>
+ * When compression is enabled low cardinality string columns are dictionary encoded 
+ * and the serialized batch is block compressed.  Batches that do not compress well
+ * are written again directly, still with the dictionary encoding.
+ */
+final class SpillSerializer {
+	
+	private static final byte RAW = 0;
+	private static final byte COMPRESSED = 1;
+	
+	private static final String[] DICTIONARY_TYPES = new String[] {DataTypeManager.DefaultDataTypes.STRING};
+	private static final int MIN_DICTIONARY_ROWS = 16;
+	private static final int MAX_DICTIONARY_SIZE = 1 << 15;
+	
+	private boolean compress;
+	
+	private AtomicLong uncompressedBytes = new AtomicLong();
+	private AtomicLong compressedBytes = new AtomicLong();
+	private AtomicLong compressionTime = new AtomicLong();
+	private AtomicLong uncompressedBatches = new AtomicLong();
+	
+	/**
+	 * A view of the batch with the dictionary columns replaced by their codes
+	 */
+	private static final class EncodedBatch extends AbstractList<List<?>> {
+		private final List<? extends List<?>> batch;
+		private final Integer[][] codes;
+
+		private EncodedBatch(List<? extends List<?>> batch, Integer[][] codes) {
+			this.batch = batch;
+			this.codes = codes;
+		}
+
+		@Override
+		public List<?> get(final int row) {
+			final List<?> tuple = batch.get(row);
+			return new AbstractList<Object>() {
+				@Override
+				public Object get(int col) {
+					Integer[] columnCodes = codes[col];
+					if (columnCodes != null) {
+						return columnCodes[row];
+					}
+					return tuple.get(col);
+				}
+				
+				@Override
+				public int size() {
+					return tuple.size();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return batch.size();
+		}
+	}
+	
+	void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+	
+	boolean isCompress() {
+		return compress;
+	}
+	
+	void writeBatch(ObjectOutput out, String[] types, List<? extends List<?>> batch) throws IOException {
+		if (!compress) {
+			out.writeByte(RAW);
+			writeBody(out, types, batch, false);
+			return;
+		}
+		long start = System.nanoTime();
+		AccessibleByteArrayOutputStream baos = new AccessibleByteArrayOutputStream(1 << 10);
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		writeBody(oos, types, batch, true);
+		oos.close();
+		int length = baos.getCount();
+		byte[] compressed = new byte[BlockCompressor.maxCompressedLength(length)];
+		int compressedLength = BlockCompressor.compress(baos.getBuffer(), 0, length, compressed, 0);
+		uncompressedBytes.addAndGet(length);
+		//require at least a 1/8 savings to pay for decompression
+		if (compressedLength < length - (length >> 3)) {
+			out.writeByte(COMPRESSED);
+			out.writeInt(length);
+			out.writeInt(compressedLength);
+			out.write(compressed, 0, compressedLength);
+			compressedBytes.addAndGet(compressedLength);
+		} else {
+			//serialize directly rather than nesting the stream, so that it can be read without a copy
+			out.writeByte(RAW);
+			writeBody(out, types, batch, true);
+			compressedBytes.addAndGet(length);
+			uncompressedBatches.getAndIncrement();
+		}
+		compressionTime.addAndGet(System.nanoTime() - start);
+	}
+	
+	List<List<Object>> readBatch(ObjectInput in, String[] types) throws IOException, ClassNotFoundException {
+		byte mode = in.readByte();
+		if (mode == RAW) {
+			return readBody(in, types);
+		}
+		if (mode != COMPRESSED) {
+			throw new IOException("Invalid batch mode " + mode); //$NON-NLS-1$
+		}
+		int length = in.readInt();
+		byte[] bytes = new byte[length];
+		long start = System.nanoTime();
+		byte[] compressed = new byte[in.readInt()];
+		in.readFully(compressed);
+		if (BlockCompressor.decompress(compressed, 0, compressed.length, bytes, 0) != length) {
+			throw new IOException("Invalid compressed batch length"); //$NON-NLS-1$
+		}
+		compressionTime.addAndGet(System.nanoTime() - start);
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		return readBody(ois, types);
+	}
+	
+	private void writeBody(ObjectOutput out, String[] types, List<? extends List<?>> batch, boolean useDictionary) throws IOException {
+		Integer[][] codes = null;
+		List<List<?>> dictionaries = null;
+		if (useDictionary && batch.size() >= MIN_DICTIONARY_ROWS) {
+			for (int col = 0; col < types.length; col++) {
+				if (!DataTypeManager.DefaultDataTypes.STRING.equals(types[col])) {
+					continue;
+				}
+				List<List<?>> dictionary = new ArrayList<List<?>>();
+				Integer[] columnCodes = encode(batch, col, dictionary);
+				if (columnCodes == null) {
+					continue;
+				}
+				if (codes == null) {
+					codes = new Integer[types.length][];
+					dictionaries = new ArrayList<List<?>>();
+				}
+				codes[col] = columnCodes;
+				dictionaries.add(dictionary);
+			}
+		}
+		if (codes == null) {
+			out.writeInt(0);
+			BatchSerializer.writeBatch(out, types, batch);
+			return;
+		}
+		out.writeInt(dictionaries.size());
+		String[] encodedTypes = types.clone();
+		int index = 0;
+		for (int col = 0; col < types.length; col++) {
+			if (codes[col] != null) {
+				out.writeInt(col);
+				BatchSerializer.writeBatch(out, DICTIONARY_TYPES, (List<? extends List<?>>)dictionaries.get(index++));
+				encodedTypes[col] = DataTypeManager.DefaultDataTypes.INTEGER;
+			}
+		}
+		BatchSerializer.writeBatch(out, encodedTypes, new EncodedBatch(batch, codes));
+	}
+	
+	/**
+	 * Build the dictionary of distinct values as single column rows
+	 * @return the codes for each row or null if the column is not low cardinality 
+	 */
+	private Integer[] encode(List<? extends List<?>> batch, int col, List<List<?>> dictionary) {
+		int maxSize = Math.min(MAX_DICTIONARY_SIZE, batch.size() >> 2);
+		Map<Object, Integer> values = new HashMap<Object, Integer>();
+		Integer[] result = new Integer[batch.size()];
+		for (int row = 0; row < batch.size(); row++) {
+			Object value = batch.get(row).get(col);
+			if (value == null) {
+				continue;
+			}
+			Integer code = values.get(value);
+			if (code == null) {
+				if (dictionary.size() == maxSize) {
+					return null;
+				}
+				code = dictionary.size();
+				values.put(value, code);
+				dictionary.add(Arrays.asList(value));
+			}
+			result[row] = code;
+		}
+		return result;
+	}
+	
+	private List<List<Object>> readBody(ObjectInput in, String[] types) throws IOException, ClassNotFoundException {
+		int dictionaryCount = in.readInt();
+		if (dictionaryCount == 0) {
+			return BatchSerializer.readBatch(in, types);
+		}
+		String[] encodedTypes = types.clone();
+		int[] columns = new int[dictionaryCount];
+		List<List<List<Object>>> dictionaries = new ArrayList<List<List<Object>>>(dictionaryCount);
+		for (int i = 0; i < dictionaryCount; i++) {
+			columns[i] = in.readInt();
+			dictionaries.add(BatchSerializer.readBatch(in, DICTIONARY_TYPES));
+			encodedTypes[columns[i]] = DataTypeManager.DefaultDataTypes.INTEGER;
+		}
+		List<List<Object>> batch = BatchSerializer.readBatch(in, encodedTypes);
+		for (int i = 0; i < dictionaryCount; i++) {
+			int col = columns[i];
+			List<List<Object>> dictionary = dictionaries.get(i);
+			for (List<Object> tuple : batch) {
+				Integer code = (Integer)tuple.get(col);
+				if (code != null) {
+					tuple.set(col, dictionary.get(code).get(0));
+				}
+			}
+		}
+		return batch;
+	}
+	
+	long getUncompressedBytes() {
+		return uncompressedBytes.get();
+	}
+	
+	long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+	
+	long getCompressionTimeNanos() {
+		return compressionTime.get();
+	}
+	
+	long getUncompressedBatches() {
+		return uncompressedBatches.get();
+	}
+
+}
@@ -23,6 +23,7 @@
 package org.teiid.common.buffer.impl;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -139,6 +140,23 @@ public class SplittableStorageManager implements StorageManager {
 			len = length;
 	    }
 	    
+	    @Override
+	    public ByteBuffer map(long start, int length) throws IOException {
+	    	FileStore store = null;
+	    	synchronized (this) {
+	    		if (start + length > len) {
+	    			return null;
+	    		}
+	    		store = storageFiles.get((int)(start/maxFileSize));
+	    	}
+	    	long fileBegin = start%maxFileSize;
+	    	if (fileBegin + length > maxFileSize) {
+	    		//spans files
+	    		return null;
+	    	}
+	    	return store.map(fileBegin, length);
+	    }
+	    
 		public synchronized void removeDirect() {
 			for (int i = storageFiles.size() - 1; i >= 0; i--) {
 				this.storageFiles.remove(i).remove();
@@ -0,0 +1,235 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.teiid.common.buffer.BaseCacheEntry;
+import org.teiid.common.buffer.CacheKey;
+
+/**
+ * A scan resistant 2Q style eviction queue.
+ * <br/>
+ * New entries are held in a probationary queue.  An entry is promoted 
+ * to the main LRFU queue on its second access while in the probationary queue or if it is re-added 
+ * shortly after being evicted from the probationary queue, which is tracked by a bounded 
+ * set of ghost ids.  The first access is typically the read following the write of the entry, 
+ * so entries that are only used once, such as scan batches, cycle through the probationary 
+ * queue without displacing the frequently used entries.
+ * @param <V>
+ */
+public class TwoQueueEvictionQueue<V extends BaseCacheEntry> implements EvictionQueue<V> {
+	
+	private static final int MIN_GHOSTS = 1 << 10;
+	private static final int DEFAULT_PROBATION_PERCENT = 25;
+	
+	private NavigableMap<CacheKey, V> probation = new ConcurrentSkipListMap<CacheKey, V>();
+	private LrfuEvictionQueue<V> main;
+	private AtomicInteger probationSize = new AtomicInteger();
+	//ids of the probationary entries that have been accessed once
+	private Set<Long> accessed = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+	private AtomicInteger mainSize = new AtomicInteger();
+	private int probationPercent = DEFAULT_PROBATION_PERCENT;
+	
+	private Map<Long, Boolean> ghosts = Collections.synchronizedMap(new LinkedHashMap<Long, Boolean>(16, .75f, false) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<Long,Boolean> eldest) {
+			return size() > Math.max(MIN_GHOSTS, (probationSize.get() + mainSize.get())/2);
+		}
+	});
+	
+	private AtomicLong promotions = new AtomicLong();
+	private AtomicLong ghostHits = new AtomicLong();
+	private AtomicLong probationEvictions = new AtomicLong();
+	
+	public TwoQueueEvictionQueue(AtomicLong clock) {
+		this.main = new LrfuEvictionQueue<V>(clock);
+	}
+	
+	@Override
+	public boolean add(V value) {
+		if (ghosts.remove(value.getId()) != null) {
+			ghostHits.getAndIncrement();
+			return addMain(value);
+		}
+		if (probation.put(value.getKey(), value) == null) {
+			probationSize.getAndIncrement();
+			return true;
+		}
+		return false;
+	}
+
+	private boolean addMain(V value) {
+		if (main.add(value)) {
+			mainSize.getAndIncrement();
+			return true;
+		}
+		return false;
+	}
+	
+	@Override
+	public boolean remove(V value) {
+		if (probation.remove(value.getKey()) != null) {
+			probationSize.getAndDecrement();
+			accessed.remove(value.getId());
+			return true;
+		}
+		if (main.remove(value)) {
+			mainSize.getAndDecrement();
+			return true;
+		}
+		return false;
+	}
+	
+	@Override
+	public void touch(V value) {
+		if (probation.containsKey(value.getKey())) {
+			if (accessed.add(value.getId())) {
+				//the first access only marks the entry
+				if (!probation.containsKey(value.getKey())) {
+					//concurrently evicted
+					accessed.remove(value.getId());
+				}
+				return;
+			}
+			accessed.remove(value.getId());
+			if (probation.remove(value.getKey()) == null) {
+				return;
+			}
+			probationSize.getAndDecrement();
+			promotions.getAndIncrement();
+			main.recordAccess(value);
+			addMain(value);
+			return;
+		}
+		main.touch(value);
+	}
+	
+	@Override
+	public void recordAccess(V value) {
+		main.recordAccess(value);
+	}
+	
+	@Override
+	public V firstEntry(boolean poll) {
+		int probationCount = probationSize.get();
+		if (probationCount > 0 && (probationCount * 100 >= (probationCount + mainSize.get()) * probationPercent || mainSize.get() == 0)) {
+			Map.Entry<CacheKey, V> entry = poll?probation.pollFirstEntry():probation.firstEntry();
+			if (entry != null) {
+				if (poll) {
+					probationSize.getAndDecrement();
+					probationEvictions.getAndIncrement();
+					accessed.remove(entry.getKey().getId());
+					ghosts.put(entry.getKey().getId(), Boolean.TRUE);
+				}
+				return entry.getValue();
+			}
+		}
+		V value = main.firstEntry(poll);
+		if (value != null) {
+			if (poll) {
+				mainSize.getAndDecrement();
+			}
+			return value;
+		}
+		if (poll) {
+			return null;
+		}
+		//the main queue may have been emptied concurrently
+		Map.Entry<CacheKey, V> entry = probation.firstEntry();
+		if (entry != null) {
+			return entry.getValue();
+		}
+		return null;
+	}
+	
+	@Override
+	public Collection<V> getEvictionQueue() {
+		final Collection<V> first = probation.values();
+		final Collection<V> second = main.getEvictionQueue();
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				final Iterator<V> firstIter = first.iterator();
+				final Iterator<V> secondIter = second.iterator();
+				return new Iterator<V>() {
+					@Override
+					public boolean hasNext() {
+						return firstIter.hasNext() || secondIter.hasNext();
+					}
+					
+					@Override
+					public V next() {
+						if (firstIter.hasNext()) {
+							return firstIter.next();
+						}
+						return secondIter.next();
+					}
+					
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+			
+			@Override
+			public int size() {
+				return probationSize.get() + mainSize.get();
+			}
+		};
+	}
+	
+	/**
+	 * Set the target percentage of entries held in the probationary queue.
+	 * @param probationPercent
+	 */
+	public void setProbationPercent(int probationPercent) {
+		this.probationPercent = probationPercent;
+	}
+	
+	public long getPromotions() {
+		return promotions.get();
+	}
+	
+	public long getGhostHits() {
+		return ghostHits.get();
+	}
+	
+	public long getProbationEvictions() {
+		return probationEvictions.get();
+	}
+	
+}
@@ -26,15 +26,19 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.metadata.AbstractMetadataRecord;
+import org.teiid.metadata.Procedure;
 import org.teiid.metadata.Schema;
+import org.teiid.metadata.Table;
 import org.teiid.metadata.AbstractMetadataRecord.DataModifiable;
 import org.teiid.metadata.AbstractMetadataRecord.Modifiable;
 import org.teiid.query.metadata.TempMetadataID;
@@ -49,6 +53,8 @@ import org.teiid.query.util.CommandContext;
 public class AccessInfo implements Serializable {
 	
 	private static final long serialVersionUID = -2608267960584191359L;
+	private static final String TABLE = "table"; //$NON-NLS-1$
+	private static final String PROCEDURE = "procedure"; //$NON-NLS-1$
 	
 	private transient Set<Object> objectsAccessed;
 	private boolean sensitiveToMetadataChanges = true;
@@ -155,6 +161,64 @@ public class AccessInfo implements Serializable {
 		this.externalNames = null;
 	}
 	
+	/**
+	 * Describe the accessed tables and procedures so that they may be checked against the metadata 
+	 * of a redeployed vdb without holding references to the current metadata objects.
+	 * @param fingerprints cache of the fingerprints computed so far
+	 * @return the fingerprints keyed by the type, schema name, and name of each object, or null if 
+	 * something other than a table or procedure was accessed
+	 */
+	Map<List<String>, String> getAccessedFingerprints(Map<Object, String> fingerprints) {
+		if (this.objectsAccessed == null) {
+			return null;
+		}
+		Map<List<String>, String> result = new HashMap<List<String>, String>(this.objectsAccessed.size());
+		for (Object o : this.objectsAccessed) {
+			if (!(o instanceof Table) && !(o instanceof Procedure)) {
+				return null;
+			}
+			AbstractMetadataRecord record = (AbstractMetadataRecord)o;
+			if (record.getParent() == null) {
+				return null;
+			}
+			result.put(Arrays.asList(o instanceof Table?TABLE:PROCEDURE, record.getParent().getName(), record.getName()), getFingerprint(record, fingerprints));
+		}
+		return result;
+	}
+	
+	/**
+	 * @param accessed as returned by {@link #getAccessedFingerprints(Map)}
+	 * @param fingerprints cache of the fingerprints computed so far
+	 * @return true if every accessed object has an identical definition in the given metadata
+	 */
+	static boolean isUnchanged(Map<List<String>, String> accessed, TransformationMetadata metadata, Map<Object, String> fingerprints) {
+		for (Map.Entry<List<String>, String> entry : accessed.entrySet()) {
+			Schema s = metadata.getMetadataStore().getSchema(entry.getKey().get(1));
+			if (s == null) {
+				return false;
+			}
+			AbstractMetadataRecord replacement = null;
+			if (TABLE.equals(entry.getKey().get(0))) {
+				replacement = s.getTables().get(entry.getKey().get(2));
+			} else {
+				replacement = s.getProcedures().get(entry.getKey().get(2));
+			}
+			if (replacement == null || !entry.getValue().equals(getFingerprint(replacement, fingerprints))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static String getFingerprint(AbstractMetadataRecord record, Map<Object, String> fingerprints) {
+		String result = fingerprints.get(record);
+		if (result == null) {
+			result = MetadataFingerprint.getFingerprint(record);
+			fingerprints.put(record, result);
+		}
+		return result;
+	}
+	
 	boolean validate(boolean data, long modTime) {
 		if (this.objectsAccessed == null || modTime < 0) {
 			return true;
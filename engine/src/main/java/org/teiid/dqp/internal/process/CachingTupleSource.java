@@ -51,6 +51,7 @@ final class CachingTupleSource extends
 	private final CacheDirective cd;
 	private final Collection<GroupSymbol> accessedGroups;
 	DataTierTupleSource dtts;
+	int maxRows = -1;
 
 	CachingTupleSource(DataTierManagerImpl dataTierManagerImpl, TupleBuffer tb, DataTierTupleSource ts, CacheID cid,
 			RegisterRequestParameter parameterObject, CacheDirective cd,
@@ -73,6 +74,11 @@ final class CachingTupleSource extends
 		}
 		//TODO: the cache directive object needs synchronized for consistency
 		List<?> tuple = super.nextTuple();
+		if (tuple != null && maxRows >= 0 && tb.getRowCount() > maxRows) {
+			LogManager.logDetail(LogConstants.CTX_DQP, dtts.getAtomicRequestMessage().getAtomicRequestID(), "Not caching results larger than", maxRows, "rows"); //$NON-NLS-1$ //$NON-NLS-2$
+			removeTupleBuffer();
+			return tuple;
+		}
 		if (tuple == null && !dtts.errored) {
 			synchronized (cd) {
 				if (dtts.scope == Scope.NONE) {
@@ -95,14 +101,18 @@ final class CachingTupleSource extends
 		        }
 		        tb.setPrefersMemory(Boolean.TRUE.equals(cd.getPrefersMemory()));
 		    	Determinism determinismLevel = Determinism.SESSION_DETERMINISTIC;
-		    	if (dtts.scope != null) {
-		    		switch (dtts.scope) {
+		    	Scope scope = dtts.scope != null?dtts.scope:cd.getScope();
+		    	if (scope != null) {
+		    		switch (scope) {
 		    		case VDB:
 		    			determinismLevel = Determinism.VDB_DETERMINISTIC;
+		    			break;
 		    		case SESSION:
 		    			determinismLevel = Determinism.SESSION_DETERMINISTIC;
+		    			break;
 		    		case USER:
 		    			determinismLevel = Determinism.USER_DETERMINISTIC;
+		    			break;
 		    		}
 		    	}
 		        this.dataTierManagerImpl.requestMgr.getRsCache().put(cid, determinismLevel, cr, cd.getTtl()); 
@@ -132,7 +142,7 @@ final class CachingTupleSource extends
 					//we should also shut off any warnings, since the plan isn't consuming these tuples
 					//the approach would probably be to do more read-ahead
 					dtts.getAtomicRequestMessage().setSerial(true);
-					while (dtts.scope != Scope.NONE) { 
+					while (dtts.scope != Scope.NONE && tb != null) { 
 						try {
 							List<?> tuple = nextTuple();
 							if (tuple == null) {
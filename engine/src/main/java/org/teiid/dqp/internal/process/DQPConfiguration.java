@@ -49,6 +49,8 @@ public class DQPConfiguration{
     private int userRequestSourceConcurrency = DEFAULT_USER_REQUEST_SOURCE_CONCURRENCY;
     private boolean detectingChangeEvents = true;
     private long queryTimeout;
+    private String preparedPlanCacheSnapshotFile;
+    private boolean useVirtualThreads;
     
     private transient AuthorizationValidator authorizationValidator;
 
@@ -165,6 +167,33 @@ public class DQPConfiguration{
 		return queryTimeout;
 	}
 
+	public String getPreparedPlanCacheSnapshotFile() {
+		return preparedPlanCacheSnapshotFile;
+	}
+	
+	/**
+	 * Set the file used to save the statements of the prepared plan cache on stop
+	 * and to warm the cache from on start.  If null, no snapshot is taken.
+	 * @param preparedPlanCacheSnapshotFile
+	 */
+	public void setPreparedPlanCacheSnapshotFile(
+			String preparedPlanCacheSnapshotFile) {
+		this.preparedPlanCacheSnapshotFile = preparedPlanCacheSnapshotFile;
+	}
+
+	public boolean isUseVirtualThreads() {
+		return useVirtualThreads;
+	}
+	
+	/**
+	 * Set to true to run connector work on virtual threads rather than the 
+	 * engine thread pool.  Ignored if the JVM does not support virtual threads.
+	 * @param useVirtualThreads
+	 */
+	public void setUseVirtualThreads(boolean useVirtualThreads) {
+		this.useVirtualThreads = useVirtualThreads;
+	}
+
 	public TeiidExecutor getTeiidExecutor() {
 		return new ThreadReuseExecutor(DQPConfiguration.PROCESS_PLAN_QUEUE_NAME, getMaxThreads());
 	}
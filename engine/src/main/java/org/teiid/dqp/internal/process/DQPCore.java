@@ -22,18 +22,29 @@
 
 package org.teiid.dqp.internal.process;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -46,7 +57,9 @@ import org.teiid.adminapi.Request.ProcessingState;
 import org.teiid.adminapi.Request.ThreadState;
 import org.teiid.adminapi.VDB.Status;
 import org.teiid.adminapi.impl.RequestMetadata;
+import org.teiid.adminapi.impl.SessionMetadata;
 import org.teiid.adminapi.impl.TransactionMetadata;
+import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.adminapi.impl.WorkerPoolStatisticsMetadata;
 import org.teiid.client.DQP;
 import org.teiid.client.RequestMessage;
@@ -66,6 +79,7 @@ import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.Streamable;
 import org.teiid.core.util.ApplicationInfo;
 import org.teiid.core.util.ExecutorUtils;
+import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
 import org.teiid.dqp.internal.process.ThreadReuseExecutor.PrioritizedRunnable;
 import org.teiid.dqp.message.AtomicRequestMessage;
 import org.teiid.dqp.message.RequestID;
@@ -84,6 +98,7 @@ import org.teiid.query.processor.QueryProcessor;
 import org.teiid.query.tempdata.TempTableDataManager;
 import org.teiid.query.tempdata.TempTableStore;
 import org.teiid.query.tempdata.TempTableStore.TransactionMode;
+import org.teiid.vdb.runtime.VDBKey;
 
 /**
  * Implements the core DQP processing.
@@ -182,6 +197,7 @@ public class DQPCore implements DQP {
 	}
 	
 	private TeiidExecutor processWorkerPool;
+	private ExecutorService connectorWorkExecutor;
     
     // Resources
     private BufferManager bufferManager;
@@ -207,12 +223,18 @@ public class DQPCore implements DQP {
 	private AuthorizationValidator authorizationValidator;
 	
 	private EnhancedTimer cancellationTimer;
+	
+	private Map<VDBKey, List<CacheID>> planCacheSnapshot = new ConcurrentHashMap<VDBKey, List<CacheID>>();
     
     /**
      * perform a full shutdown and wait for 10 seconds for all threads to finish
      */
     public void stop() {
+    	savePlanCacheSnapshot();
     	processWorkerPool.shutdownNow();
+    	if (connectorWorkExecutor != null) {
+    		connectorWorkExecutor.shutdownNow();
+    	}
     	try {
 			processWorkerPool.awaitTermination(10, TimeUnit.SECONDS);
 		} catch (InterruptedException e) {
@@ -453,6 +475,17 @@ public class DQPCore implements DQP {
 		this.processWorkerPool.execute(work);
     }
     
+    /**
+     * Add source query work, which may be run on virtual threads
+     */
+    void addConnectorWork(FutureWork<?> work) {
+    	if (this.connectorWorkExecutor == null) {
+    		addWork(work);
+    		return;
+    	}
+    	this.connectorWorkExecutor.execute(new ThreadReuseExecutor.RunnableWrapper(work));
+    }
+    
     ScheduledFuture<?> scheduleWork(final Runnable r, int priority, long delay) {
 		return this.processWorkerPool.schedule(new FutureWork<Void>(new Callable<Void>() {
 			@Override
@@ -658,6 +691,12 @@ public class DQPCore implements DQP {
         this.chunkSize = config.getLobChunkSizeInKB() * 1024;
 
         this.processWorkerPool = config.getTeiidExecutor();
+        if (config.isUseVirtualThreads()) {
+        	this.connectorWorkExecutor = ExecutorUtils.newVirtualThreadPerTaskExecutor();
+        	if (this.connectorWorkExecutor == null) {
+        		LogManager.logWarning(LogConstants.CTX_DQP, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31136));
+        	}
+        }
         //we don't want cancellations waiting on normal processing, so they get a small dedicated pool
         //TODO: overflow to the worker pool
         Executor timeoutExecutor = ExecutorUtils.newFixedThreadPool(3, "Server Side Timeout"); //$NON-NLS-1$
@@ -711,10 +750,135 @@ public class DQPCore implements DQP {
 			}
 		});
         dataTierMgr.setEventDistributor(eventDistributor);
+        
+        loadPlanCacheSnapshot();
                 
         LogManager.logDetail(LogConstants.CTX_DQP, "DQPCore started maxThreads", this.config.getMaxThreads(), "maxActivePlans", this.maxActivePlans, "source concurrency", this.userRequestSourceConcurrency); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 	}
 	
+	/**
+	 * Read the statements saved by {@link #savePlanCacheSnapshot()}.  They are planned 
+	 * as each vdb is deployed by {@link #warmPreparedPlanCache(VDBMetaData)}
+	 */
+	@SuppressWarnings("unchecked")
+	private void loadPlanCacheSnapshot() {
+		String fileName = this.config.getPreparedPlanCacheSnapshotFile();
+		if (fileName == null || this.prepPlanCache == null) {
+			return;
+		}
+		File f = new File(fileName);
+		if (!f.exists()) {
+			return;
+		}
+		ObjectInputStream ois = null;
+		try {
+			ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f)));
+			this.planCacheSnapshot.putAll((Map<VDBKey, List<CacheID>>)ois.readObject());
+		} catch (Exception e) {
+			LogManager.logWarning(LogConstants.CTX_DQP, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31134, fileName));
+		} finally {
+			if (ois != null) {
+				try {
+					ois.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Save the statements for the vdb scoped entries of the prepared plan cache.  
+	 * Plans are not serializable, so only the statements are saved to be planned again on start.
+	 */
+	private void savePlanCacheSnapshot() {
+		String fileName = this.config != null?this.config.getPreparedPlanCacheSnapshotFile():null;
+		if (fileName == null || this.prepPlanCache == null) {
+			return;
+		}
+		//retain the entries of vdbs that have not been deployed since the snapshot was read
+		HashMap<VDBKey, List<CacheID>> snapshot = new HashMap<VDBKey, List<CacheID>>(this.planCacheSnapshot);
+		for (CacheID id : this.prepPlanCache.getVDBScopedIds()) {
+			List<CacheID> ids = snapshot.get(id.getVDBKey());
+			if (ids == null) {
+				ids = new ArrayList<CacheID>();
+				snapshot.put(id.getVDBKey(), ids);
+			}
+			ids.add(id);
+		}
+		ObjectOutputStream oos = null;
+		try {
+			oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+			oos.writeObject(snapshot);
+		} catch (IOException e) {
+			LogManager.logWarning(LogConstants.CTX_DQP, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31135, fileName));
+		} finally {
+			if (oos != null) {
+				try {
+					oos.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Asynchronously plan the statements saved in the prepared plan cache snapshot for the given vdb
+	 * and the statements that were unaffected by a redeploy, see {@link SessionAwareCache#revalidateForVDB(VDBMetaData)}.
+	 * Vdbs with data roles are not warmed, since the plans would be created without the 
+	 * authorization checks of the original users.
+	 */
+	public void warmPreparedPlanCache(final VDBMetaData vdb) {
+		if (this.prepPlanCache == null) {
+			return;
+		}
+		final Set<CacheID> ids = new LinkedHashSet<CacheID>(this.prepPlanCache.revalidateForVDB(vdb));
+		List<CacheID> saved = this.planCacheSnapshot.remove(new VDBKey(vdb.getName(), vdb.getVersion()));
+		if (saved != null) {
+			ids.addAll(saved);
+		}
+		if (ids.isEmpty()) {
+			return;
+		}
+		if (!vdb.getDataPolicies().isEmpty()) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "Not warming the prepared plan cache for", vdb.getName(), vdb.getVersion(), "since it has data roles"); //$NON-NLS-1$ //$NON-NLS-2$
+			return;
+		}
+		addWork(new Runnable() {
+			@Override
+			public void run() {
+				SessionMetadata session = TempTableDataManager.createTemporarySession(vdb.getName(), "prepared-plan-cache-warming", vdb); //$NON-NLS-1$
+				DQPWorkContext workContext = new DQPWorkContext();
+				workContext.setSession(session);
+				TempTableStore tempTableStore = new TempTableStore(session.getSessionId(), TransactionMode.NONE);
+				int planned = 0;
+				for (CacheID id : ids) {
+					RequestMessage requestMsg = new RequestMessage(id.getSql());
+					requestMsg.setStatementType(StatementType.PREPARED);
+					requestMsg.setAnsiQuotedIdentifiers(id.isAnsiIdentifiers());
+					requestMsg.setExecutionId(planned);
+					final PreparedStatementRequest request = new PreparedStatementRequest(prepPlanCache);
+					request.initialize(requestMsg, bufferManager, dataTierMgr, transactionService, tempTableStore, workContext, prepPlanCache);
+					request.setAuthorizationValidator(authorizationValidator);
+					request.setPlanOnly(true);
+					try {
+						workContext.runInContext(new Callable<Void>() {
+							@Override
+							public Void call() throws Exception {
+								request.initMetadata();
+								request.generatePlan(false);
+								return null;
+							}
+						});
+						planned++;
+					} catch (Throwable e) {
+						LogManager.logDetail(LogConstants.CTX_DQP, e, "Could not plan the snapshot statement", id.getSql()); //$NON-NLS-1$
+					}
+				}
+				LogManager.logDetail(LogConstants.CTX_DQP, "Warmed the prepared plan cache for", vdb.getName(), vdb.getVersion(), "with", planned, "plans"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+		});
+	}
+	
 	public void setBufferManager(BufferManager mgr) {
 		this.bufferManager = mgr;
 	}
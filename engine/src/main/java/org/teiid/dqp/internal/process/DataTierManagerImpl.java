@@ -111,6 +111,14 @@ import org.teiid.translator.TranslatorException;
 public class DataTierManagerImpl implements ProcessorDataManager {
 	
 	private static final int MAX_VALUE_LENGTH = 1 << 21;
+	
+	/**
+	 * Model properties that enable caching of the source query results for a model
+	 * when the translator does not supply a {@link CacheDirective}
+	 */
+	public static final String SOURCE_CACHE_TTL = "sourceCache.ttl"; //$NON-NLS-1$
+	public static final String SOURCE_CACHE_SCOPE = "sourceCache.scope"; //$NON-NLS-1$
+	public static final String SOURCE_CACHE_MAX_ROWS = "sourceCache.maxRows"; //$NON-NLS-1$
 
 	private enum SystemTables {
 		VIRTUALDATABASES,
@@ -668,6 +676,7 @@ public class DataTierManagerImpl implements ProcessorDataManager {
     	}
 		CacheID cid = null;
 		CacheDirective cd = null;
+		int maxCachedRows = -1;
 		if (workItem.getRsCache() != null && command.areResultsCachable()) {
 			CachableVisitor cv = new CachableVisitor();
 			PreOrPostOrderNavigator.doVisit(command, cv, PreOrPostOrderNavigator.PRE_ORDER, true);
@@ -677,13 +686,19 @@ public class DataTierManagerImpl implements ProcessorDataManager {
 				} catch (TranslatorException e) {
 					throw new TeiidProcessingException(QueryPlugin.Event.TEIID30504, e, aqr.getConnectorName() + ": " + e.getMessage()); //$NON-NLS-1$
 				}
+				ModelMetaData model = workItem.getDqpWorkContext().getVDB().getModel(modelName);
+				if (cd == null) {
+					cd = getModelCacheDirective(model);
+				}
+				maxCachedRows = getMaxCachedRows(model);
 				if (cd != null) {
 					if (cd.getScope() == Scope.NONE) {
 						parameterObject.doNotCache = true;
 					} else {
 						String cmdString = command.toString();
 						if (cmdString.length() < 100000) { //TODO: this check won't be needed if keys aren't exclusively held in memory
-							cid = new CacheID(workItem.getDqpWorkContext(), ParseInfo.DEFAULT_INSTANCE, cmdString);
+							//key by the source as well, since the same pushdown command may be issued against different sources
+							cid = new CacheID(workItem.getDqpWorkContext(), ParseInfo.DEFAULT_INSTANCE, getSourceKey(connectorManager, aqr) + cmdString);
 							cid.setParameters(cv.parameters);
 							CachedResults cr = workItem.getRsCache().get(cid);
 							if (cr != null && (cr.getRowLimit() == 0 || (parameterObject.limit > 0 && cr.getRowLimit() >= parameterObject.limit))) {
@@ -705,10 +720,62 @@ public class DataTierManagerImpl implements ProcessorDataManager {
 		DataTierTupleSource dtts = new DataTierTupleSource(aqr, workItem, work, this, parameterObject.limit);
         if (cid != null) {
         	TupleBuffer tb = getBufferManager().createTupleBuffer(aqr.getCommand().getProjectedSymbols(), aqr.getCommandContext().getConnectionId(), TupleSourceType.PROCESSOR);
-        	return new CachingTupleSource(this, tb, dtts, cid, parameterObject, cd, accessedGroups);
+        	CachingTupleSource cts = new CachingTupleSource(this, tb, dtts, cid, parameterObject, cd, accessedGroups);
+        	cts.maxRows = maxCachedRows;
+        	return cts;
         }
 		return dtts;
 	}
+	
+	private static String getSourceKey(ConnectorManager connectorManager, AtomicRequestMessage aqr) {
+		return "/*" + aqr.getConnectorName() + ":" + connectorManager.getTranslatorName() + ":" + connectorManager.getConnectionName() + "*/ "; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+	
+	/**
+	 * Get the cache directive defined by the {@link #SOURCE_CACHE_TTL} and {@link #SOURCE_CACHE_SCOPE} model properties.
+	 * @return the directive or null if source query caching is not enabled for the model
+	 */
+	static CacheDirective getModelCacheDirective(ModelMetaData model) {
+		if (model == null) {
+			return null;
+		}
+		String ttl = model.getPropertyValue(SOURCE_CACHE_TTL);
+		String scope = model.getPropertyValue(SOURCE_CACHE_SCOPE);
+		if (ttl == null && scope == null) {
+			return null;
+		}
+		CacheDirective cd = new CacheDirective();
+		//the connection may be user specific, so default to user scoping
+		cd.setScope(Scope.USER);
+		try {
+			if (ttl != null) {
+				cd.setTtl(Long.valueOf(ttl));
+			}
+			if (scope != null) {
+				cd.setScope(Scope.valueOf(scope.toUpperCase()));
+			}
+		} catch (IllegalArgumentException e) {
+			LogManager.logWarning(LogConstants.CTX_DQP, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31133, model.getName(), SOURCE_CACHE_TTL + "=" + ttl + ", " + SOURCE_CACHE_SCOPE + "=" + scope)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			return null;
+		}
+		return cd;
+	}
+	
+	static int getMaxCachedRows(ModelMetaData model) {
+		if (model == null) {
+			return -1;
+		}
+		String maxRows = model.getPropertyValue(SOURCE_CACHE_MAX_ROWS);
+		if (maxRows == null) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(maxRows);
+		} catch (NumberFormatException e) {
+			LogManager.logWarning(LogConstants.CTX_DQP, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31133, model.getName(), SOURCE_CACHE_MAX_ROWS + "=" + maxRows)); //$NON-NLS-1$
+			return -1;
+		}
+	}
 
 	/**
 	 * @param command
@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.lang.ref.WeakReference;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -74,6 +75,7 @@ import org.teiid.query.sql.lang.Command;
 import org.teiid.query.sql.lang.ProcedureContainer;
 import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.GroupSymbol;
+import org.teiid.query.util.CommandContext;
 import org.teiid.translator.CacheDirective.Scope;
 import org.teiid.translator.DataNotAvailableException;
 import org.teiid.translator.TranslatorException;
@@ -84,12 +86,26 @@ import org.teiid.util.XMLInputStream;
  * This tuple source impl can only be used once; once it is closed, it 
  * cannot be reopened and reused.
  * 
+ * When not serial, up to {@link org.teiid.query.util.Options#getSourceReadAhead()} batches may be fetched 
+ * ahead of processing.  The read ahead is bounded by buffer reservations and is 
+ * deepened when the source waits on processing, and reduced when processing waits on the source.
+ * 
  * TODO: the handling of DataNotAvailable is awkward.
  * In the multi-threaded case we'd like to not even
  * notify the parent plan and just schedule the next poll. 
  */
 public class DataTierTupleSource implements TupleSource, CompletionListener<AtomicResultsMessage> {
 	
+	private static final class ReadAheadBatch {
+		final AtomicResultsMessage results;
+		final int reserved;
+		
+		ReadAheadBatch(AtomicResultsMessage results, int reserved) {
+			this.results = results;
+			this.reserved = reserved;
+		}
+	}
+	
 	private static final class MoreWorkTask implements Runnable {
 
 		WeakReference<RequestWorkItem> ref;
@@ -137,6 +153,11 @@ public class DataTierTupleSource implements TupleSource, CompletionListener<Atom
     private volatile FutureWork<AtomicResultsMessage> futureResult;
     private volatile boolean running;
     
+    private LinkedList<ReadAheadBatch> readAhead = new LinkedList<ReadAheadBatch>();
+    private int maxReadAhead = 1;
+    private volatile int readAheadLimit = 1;
+    private int schemaSize;
+    
     boolean errored;
 	Scope scope; //this is to avoid synchronization
 	
@@ -161,6 +182,13 @@ public class DataTierTupleSource implements TupleSource, CompletionListener<Atom
 			this.convertToRuntimeType[i] = true;
 			this.isLob[i] = DataTypeManager.isLOB(this.schema[i]);
 		}
+		CommandContext context = this.aqr.getCommandContext();
+		if (context != null) {
+			this.maxReadAhead = Math.max(1, context.getOptions().getSourceReadAhead());
+		}
+		if (this.maxReadAhead > 1) {
+			this.schemaSize = dtm.getBufferManager().getSchemaSize(symbols);
+		}
         
     	Assertion.isNull(workItem.getConnectorRequest(aqr.getAtomicRequestID()));
         workItem.addConnectorRequest(aqr.getAtomicRequestID(), this);
@@ -174,10 +202,74 @@ public class DataTierTupleSource implements TupleSource, CompletionListener<Atom
 		futureResult = workItem.addWork(new Callable<AtomicResultsMessage>() {
 			@Override
 			public AtomicResultsMessage call() throws Exception {
-				return getResults();
+				return getReadAheadResults();
 			}
 		}, this, 100);
 	}
+	
+	/**
+	 * Fetch batches until the read ahead limit is reached.  All but the 
+	 * last batch are queued, the last is the result of the work.
+	 */
+	AtomicResultsMessage getReadAheadResults() throws BlockedException, TeiidComponentException, TranslatorException {
+		AtomicResultsMessage results = getResults();
+		while (results != null && results.getFinalRow() < 0 && queueReadAhead(results)) {
+			workItem.moreWork();
+			results = getResults();
+		}
+		return results;
+	}
+	
+	private boolean queueReadAhead(AtomicResultsMessage results) {
+		synchronized (readAhead) {
+			if (readAhead.size() + 1 >= readAheadLimit) {
+				if (readAheadLimit < maxReadAhead) {
+					//processing is slower than the source, so allow more to be read ahead
+					readAheadLimit = Math.min(maxReadAhead, readAheadLimit * 2);
+				}
+				return false;
+			}
+			BufferManager bm = dtm.getBufferManager();
+			int batches = Math.max(1, results.getResults().length / bm.getProcessorBatchSize());
+			//reserved on the connector thread, but released on the processing thread
+			int reserved = bm.reserveOrphanedBuffers(schemaSize * batches);
+			if (cancelAsynch || reserved < schemaSize * batches) {
+				bm.releaseOrphanedBuffers(reserved);
+				return false;
+			}
+			readAhead.add(new ReadAheadBatch(results, reserved));
+			return true;
+		}
+	}
+	
+	private AtomicResultsMessage pollReadAhead() {
+		synchronized (readAhead) {
+			ReadAheadBatch batch = readAhead.poll();
+			if (batch == null) {
+				return null;
+			}
+			dtm.getBufferManager().releaseOrphanedBuffers(batch.reserved);
+			return batch.results;
+		}
+	}
+	
+	/**
+	 * @return the number of batches currently read ahead of processing
+	 */
+	int getReadAheadCount() {
+		synchronized (readAhead) {
+			return readAhead.size();
+		}
+	}
+	
+	private void clearReadAhead() {
+		synchronized (readAhead) {
+			for (ReadAheadBatch batch : readAhead) {
+				dtm.getBufferManager().releaseOrphanedBuffers(batch.reserved);
+			}
+			readAhead.clear();
+		}
+	}
 
 	private List<?> correctTypes(List<Object> row) throws TransformationException, TeiidComponentException {
 		//TODO: add a proper intermediate schema
@@ -410,15 +502,33 @@ public class DataTierTupleSource implements TupleSource, CompletionListener<Atom
 	private AtomicResultsMessage asynchGet()
 			throws BlockedException, TeiidProcessingException,
 			TeiidComponentException, TranslatorException {
-		if (futureResult == null) {
+		FutureWork<AtomicResultsMessage> currentResults = futureResult;
+		//check done prior to polling, so that all of the queued batches of the work are seen
+		boolean workDone = currentResults != null && currentResults.isDone();
+		AtomicResultsMessage results = pollReadAhead();
+		if (results != null) {
+			if (workDone) {
+				continueReadAhead(currentResults);
+			}
+			return results;
+		}
+		if (currentResults == null) {
 			addWork();
+			currentResults = futureResult;
 		}
-		if (!futureResult.isDone()) {
+		if (!currentResults.isDone()) {
+			if (readAheadLimit > 1) {
+				//processing is waiting on the source, so there's no need to hold as much
+				readAheadLimit = Math.max(1, readAheadLimit / 2);
+			}
 			throw BlockedException.block(aqr.getAtomicRequestID(), "Blocking on source query", aqr.getAtomicRequestID()); //$NON-NLS-1$
 		}
-		FutureWork<AtomicResultsMessage> currentResults = futureResult;
+		results = pollReadAhead();
+		if (results != null) {
+			continueReadAhead(currentResults);
+			return results;
+		}
 		futureResult = null;
-		AtomicResultsMessage results = null;
 		try {
 			results = currentResults.get();
 			if (results.getFinalRow() < 0) {
@@ -445,6 +555,35 @@ public class DataTierTupleSource implements TupleSource, CompletionListener<Atom
 		return results;
 	}
 
+	/**
+	 * If the completed work has stopped with room to read ahead, then queue 
+	 * its result and resume fetching.  A failure is left to be seen in order.
+	 */
+	private void continueReadAhead(FutureWork<AtomicResultsMessage> currentResults) {
+		if (futureResult != currentResults) {
+			return;
+		}
+		AtomicResultsMessage last = null;
+		try {
+			last = currentResults.get();
+		} catch (InterruptedException e) {
+			return;
+		} catch (ExecutionException e) {
+			return;
+		}
+		if (last == null || last.getFinalRow() >= 0) {
+			return;
+		}
+		synchronized (readAhead) {
+			if (readAhead.size() + 1 >= readAheadLimit) {
+				return;
+			}
+			readAhead.add(new ReadAheadBatch(last, 0));
+		}
+		futureResult = null;
+		addWork();
+	}
+
 	AtomicResultsMessage getResults()
 			throws BlockedException, TeiidComponentException,
 			TranslatorException {
@@ -512,6 +651,7 @@ public class DataTierTupleSource implements TupleSource, CompletionListener<Atom
     	lobBuffer = null;
     	lobStore = null; //can still be referenced by lobs and will be cleaned-up by reference
     	cancelAsynch = true;
+    	clearReadAhead();
     	if (!explicitClose) {
         	fullyCloseSource();
     	}
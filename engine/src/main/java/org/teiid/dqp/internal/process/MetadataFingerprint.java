@@ -0,0 +1,191 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.dqp.internal.process;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.teiid.adminapi.DataPolicy;
+import org.teiid.adminapi.DataPolicy.DataPermission;
+import org.teiid.adminapi.Model;
+import org.teiid.adminapi.Translator;
+import org.teiid.adminapi.impl.DataPolicyMetadata;
+import org.teiid.adminapi.impl.ModelMetaData;
+import org.teiid.adminapi.impl.SourceMappingMetadata;
+import org.teiid.adminapi.impl.VDBMetaData;
+import org.teiid.adminapi.impl.VDBTranslatorMetaData;
+import org.teiid.metadata.AbstractMetadataRecord;
+import org.teiid.metadata.BaseColumn;
+import org.teiid.metadata.Column;
+import org.teiid.metadata.ColumnSet;
+import org.teiid.metadata.ForeignKey;
+import org.teiid.metadata.FunctionMethod;
+import org.teiid.metadata.FunctionParameter;
+import org.teiid.metadata.KeyRecord;
+import org.teiid.metadata.Procedure;
+import org.teiid.metadata.ProcedureParameter;
+import org.teiid.metadata.Schema;
+import org.teiid.metadata.Table;
+import org.teiid.query.metadata.TransformationMetadata;
+
+/**
+ * Computes a canonical description of the metadata that affects planning.
+ * Equal fingerprints indicate that a plan created against one definition
+ * is valid against the other.
+ */
+class MetadataFingerprint {
+
+	/**
+	 * Get the fingerprint of the vdb level settings that may affect any plan -
+	 * the models and sources, translator overrides, data roles, and functions.
+	 */
+	static String getFingerprint(VDBMetaData vdb) {
+		StringBuilder sb = new StringBuilder();
+		appendProperties(sb, vdb.getProperties());
+		for (Model m : vdb.getModels()) {
+			ModelMetaData model = (ModelMetaData)m;
+			sb.append("model:").append(model.getName()).append(',').append(model.getModelType()).append(',').append(model.isVisible()); //$NON-NLS-1$
+			appendProperties(sb, model.getProperties());
+			for (SourceMappingMetadata source : model.getSourceMappings()) {
+				sb.append("source:").append(source.getName()).append(',').append(source.getTranslatorName()).append(',').append(source.getConnectionJndiName()); //$NON-NLS-1$
+			}
+		}
+		for (Translator t : vdb.getOverrideTranslators()) {
+			VDBTranslatorMetaData translator = (VDBTranslatorMetaData)t;
+			sb.append("translator:").append(translator.getName()).append(',').append(translator.getType()); //$NON-NLS-1$
+			appendProperties(sb, translator.getProperties());
+		}
+		for (DataPolicy p : vdb.getDataPolicies()) {
+			DataPolicyMetadata policy = (DataPolicyMetadata)p;
+			sb.append("policy:").append(policy.getName()).append(',').append(policy.isAnyAuthenticated()).append(',').append(policy.isAllowCreateTemporaryTables()).append(',').append(policy.getMappedRoleNames()); //$NON-NLS-1$
+			for (DataPermission permission : policy.getPermissions()) {
+				sb.append(permission).append(',').append(permission.getCondition());
+			}
+		}
+		TransformationMetadata metadata = vdb.getAttachment(TransformationMetadata.class);
+		if (metadata != null) {
+			for (Schema schema : metadata.getMetadataStore().getSchemas().values()) {
+				for (FunctionMethod function : schema.getFunctions().values()) {
+					appendFunction(sb, function);
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Get the fingerprint of a table or procedure definition
+	 */
+	static String getFingerprint(AbstractMetadataRecord record) {
+		StringBuilder sb = new StringBuilder();
+		appendRecord(sb, record);
+		if (record instanceof Table) {
+			Table table = (Table)record;
+			sb.append(table.getTableType()).append(',').append(table.isVirtual()).append(',').append(table.isMaterialized()).append(',').append(table.supportsUpdate()).append(',').append(table.getCardinality());
+			sb.append(table.getSelectTransformation()).append(',').append(table.getInsertPlan()).append(',').append(table.getUpdatePlan()).append(',').append(table.getDeletePlan());
+			if (table.getMaterializedTable() != null) {
+				sb.append(table.getMaterializedTable().getFullName());
+			}
+			appendColumns(sb, table);
+			appendKey(sb, table.getPrimaryKey());
+			for (KeyRecord key : table.getUniqueKeys()) {
+				appendKey(sb, key);
+			}
+			for (KeyRecord key : table.getIndexes()) {
+				appendKey(sb, key);
+			}
+			for (KeyRecord key : table.getFunctionBasedIndexes()) {
+				appendKey(sb, key);
+			}
+			for (KeyRecord key : table.getAccessPatterns()) {
+				appendKey(sb, key);
+			}
+			for (ForeignKey key : table.getForeignKeys()) {
+				appendKey(sb, key);
+				if (key.getPrimaryKey() != null) {
+					sb.append(key.getPrimaryKey().getParent().getFullName());
+				}
+			}
+		} else if (record instanceof Procedure) {
+			Procedure proc = (Procedure)record;
+			sb.append(proc.getType()).append(',').append(proc.isVirtual()).append(',').append(proc.isFunction()).append(',').append(proc.getUpdateCount()).append(',').append(proc.getQueryPlan());
+			for (ProcedureParameter param : proc.getParameters()) {
+				appendColumn(sb, param);
+				sb.append(param.getType()).append(',').append(param.isVarArg()).append(',').append(param.isOptional());
+			}
+			if (proc.getResultSet() != null) {
+				appendColumns(sb, proc.getResultSet());
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendColumns(StringBuilder sb, ColumnSet<?> columns) {
+		for (Column column : columns.getColumns()) {
+			appendColumn(sb, column);
+			sb.append(column.isSelectable()).append(',').append(column.isUpdatable()).append(',').append(column.isAutoIncremented()).append(',').append(column.getSearchType())
+			.append(',').append(column.getNativeType()).append(',').append(column.getDistinctValues()).append(',').append(column.getNullValues());
+		}
+	}
+
+	private static void appendColumn(StringBuilder sb, BaseColumn column) {
+		appendRecord(sb, column);
+		sb.append(column.getRuntimeType()).append(',').append(column.getLength()).append(',').append(column.getPrecision()).append(',').append(column.getScale())
+		.append(',').append(column.getNullType()).append(',').append(column.getDefaultValue());
+	}
+
+	private static void appendKey(StringBuilder sb, KeyRecord key) {
+		if (key == null) {
+			return;
+		}
+		appendRecord(sb, key);
+		sb.append(key.getType());
+		for (Column column : key.getColumns()) {
+			sb.append(column.getName()).append(',');
+		}
+	}
+
+	private static void appendFunction(StringBuilder sb, FunctionMethod function) {
+		appendRecord(sb, function);
+		sb.append(function.getInvocationClass()).append(',').append(function.getInvocationMethod()).append(',').append(function.getPushdown()).append(',').append(function.getDeterminism())
+		.append(',').append(function.isNullOnNull()).append(',').append(function.isVarArgs());
+		for (FunctionParameter param : function.getInputParameters()) {
+			sb.append(param.getType()).append(',');
+		}
+		if (function.getOutputParameter() != null) {
+			sb.append(function.getOutputParameter().getType());
+		}
+	}
+
+	private static void appendRecord(StringBuilder sb, AbstractMetadataRecord record) {
+		sb.append('[').append(record.getName()).append(',').append(record.getNameInSource());
+		appendProperties(sb, record.getProperties());
+		sb.append(']');
+	}
+
+	private static void appendProperties(StringBuilder sb, Map<?, ?> props) {
+		if (props != null && !props.isEmpty()) {
+			sb.append(new TreeMap<Object, Object>(props));
+		}
+	}
+
+}
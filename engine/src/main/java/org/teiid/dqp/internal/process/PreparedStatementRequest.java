@@ -66,11 +66,20 @@ import org.teiid.query.util.CommandContext;
 public class PreparedStatementRequest extends Request {
     private SessionAwareCache<PreparedPlan> prepPlanCache;
     private PreparedPlan prepPlan;
+    private boolean planOnly;
     
     public PreparedStatementRequest(SessionAwareCache<PreparedPlan> prepPlanCache) {
     	this.prepPlanCache = prepPlanCache;
     }
     
+    /**
+     * If true, generating the plan will only create and cache the {@link PreparedPlan}
+     * without resolving parameter values.
+     */
+    void setPlanOnly(boolean planOnly) {
+		this.planOnly = planOnly;
+	}
+    
     @Override
     protected void checkReferences(List<Reference> references)
     		throws QueryValidatorException {
@@ -133,6 +142,10 @@ public class PreparedStatementRequest extends Request {
 	        }
         }
         
+        if (planOnly) {
+        	return;
+        }
+        
         if (requestMsg.isBatchedUpdate()) {
 	        handlePreparedBatchUpdate();
         } else {
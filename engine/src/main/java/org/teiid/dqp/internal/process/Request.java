@@ -235,6 +235,13 @@ public class Request implements SecurityFunctionEvaluator {
         Options options = new Options();
         options.setProperties(System.getProperties());
         PropertiesUtils.setBeanProperties(options, options.getProperties(), "org.teiid", true); //$NON-NLS-1$
+        String[] commands = this.requestMsg.getCommands();
+        if (commands != null && commands.length > 0) {
+        	int parallelSortThreshold = QueryParser.getQueryParser().parseParallelSortHint(commands[0]);
+        	if (parallelSortThreshold >= 0) {
+        		options.setParallelSortThreshold(parallelSortThreshold);
+        	}
+        }
         this.context.setOptions(options);
         this.context.setSession(workContext.getSession());
         this.context.setRequestId(this.requestId);
@@ -42,6 +42,7 @@ import org.teiid.client.metadata.ParameterInfo;
 import org.teiid.client.util.ResultsReceiver;
 import org.teiid.client.xa.XATransactionException;
 import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.BufferManager.TupleSourceType;
 import org.teiid.common.buffer.TupleBatch;
 import org.teiid.common.buffer.TupleBuffer;
@@ -72,6 +73,7 @@ import org.teiid.query.analysis.AnalysisRecord;
 import org.teiid.query.parser.ParseInfo;
 import org.teiid.query.parser.QueryParser;
 import org.teiid.query.processor.BatchCollector;
+import org.teiid.query.resolver.QueryResolver;
 import org.teiid.query.processor.QueryProcessor;
 import org.teiid.query.sql.lang.CacheHint;
 import org.teiid.query.sql.lang.Command;
@@ -86,6 +88,8 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	
 	//TODO: this could be configurable
 	private static final int OUTPUT_BUFFER_MAX_BATCHES = 20;
+	//half of the default client maxObjectSize, used if the client does not report its own
+	private static final int MAX_RESULTS_BYTES = 1 << 24;
 
 	private final class WorkWrapper<T> implements
 			DQPCore.CompletionListener<T> {
@@ -112,7 +116,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 				}
 			}
 			if (nextWork != null) {
-				dqpCore.addWork(nextWork.work);
+				dqpCore.addConnectorWork(nextWork.work);
 			}    		
 		}
 	}
@@ -135,6 +139,14 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
     private Request request; //provides the processing plan, held on a temporary basis
     private final int processorTimeslice;
 	private CacheID cid;
+	private CacheID inFlightId;
+	private boolean waitedForInFlight;
+	private ScheduledFuture<?> inFlightTimeout;
+	//the in-flight entry whose partial results are being produced or streamed by this request
+	private SessionAwareCache.InFlightEntry<CachedResults> inFlightResults;
+	private boolean inFlightRowsSent;
+	//the results were derived from, and are not shared with, the cache
+	private boolean derivedResults;
 	private final TransactionService transactionService;
 	private final DQPWorkContext dqpWorkContext;
 	boolean active;
@@ -164,7 +176,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	private ResultsReceiver<ResultsMessage> resultsReceiver;
 	private int begin;
 	private int end;
+	private boolean cursorRequest;
     private TupleBatch savedBatch;
+    private int maxResultsRows;
     private Map<Integer, LobWorkItem> lobStreams = Collections.synchronizedMap(new HashMap<Integer, LobWorkItem>(4));    
     
     /**The time when command begins processing on the server.*/
@@ -183,7 +197,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         this.dqpCore = dqpCore;
         this.request = request;
         this.dqpWorkContext = workContext;
-        this.requestResults(1, requestMsg.getFetchSize(), receiver);
+        this.requestResults(1, requestMsg.getFetchSize(), false, receiver);
     }
     
     private boolean isForwardOnly() {
@@ -194,14 +208,16 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	 * Ask for results.
 	 * @param beginRow
 	 * @param endRow
+	 * @param cursorRequest true if the results may span multiple buffered batches
 	 */
-    synchronized void requestResults(int beginRow, int endRow, ResultsReceiver<ResultsMessage> receiver) {
+    synchronized void requestResults(int beginRow, int endRow, boolean cursorRequest, ResultsReceiver<ResultsMessage> receiver) {
 		if (this.resultsReceiver != null) {
 			throw new IllegalStateException("Results already requested"); //$NON-NLS-1$\
 		}
 		this.resultsReceiver = receiver;
 		this.begin = beginRow;
 		this.end = endRow;
+		this.cursorRequest = cursorRequest;
 	}
     
 	@Override
@@ -379,6 +395,10 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	}
 
 	protected void processMore() throws BlockedException, TeiidException {
+		if (this.inFlightResults != null && this.processor == null && !doneProducingBatches) {
+			processInFlight();
+			return;
+		}
 		if (!doneProducingBatches) {
 			this.processor.getContext().setTimeSliceEnd(System.currentTimeMillis() + this.processorTimeslice);
 			sendResultsIfNeeded(null);
@@ -417,6 +437,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 		int rowcount = -1;
 		try {
 			cancelCancelTask();
+			SessionAwareCache.InFlightEntry<CachedResults> entry = this.inFlightResults;
+			//the results won't be cached, so release any waiting requests
+			endInFlight();
 			if (this.resultsBuffer != null) {
 				if (this.processor != null) {
 					this.processor.closeProcessing();
@@ -426,7 +449,14 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 				    }
 					rowcount = resultsBuffer.getRowCount();
 					if (this.cid == null || !this.doneProducingBatches) {
-						resultsBuffer.remove();
+						if (entry != null) {
+							//exclude readers of the partial results
+							synchronized (entry) {
+								resultsBuffer.remove();
+							}
+						} else {
+							resultsBuffer.remove();
+						}
 					} else {
 						try {
 							this.resultsBuffer.persistLobs();
@@ -441,6 +471,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 					
 					CommandContext cc = this.processor.getContext();
 					cc.close();
+				} else if (this.derivedResults) {
+					rowcount = resultsBuffer.getRowCount();
+					resultsBuffer.remove();
 				}
 	
 				this.resultsBuffer = null;
@@ -533,7 +566,13 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 							return;
 						}
 						LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Cached result command to be modified, will not use the cached results", cacheId); //$NON-NLS-1$
-					} 
+					} else if (cr == null && useSubsumingResults(rsCache, cacheId, pi)) {
+						doneProducingBatches();
+						return;
+					}
+					if (this.transactionState == TransactionState.NONE && checkInFlight(rsCache, cacheId, pi)) {
+						return;
+					}
 				} else {
 					LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Parameters are not serializable - cache cannot be used for", cacheId); //$NON-NLS-1$
 				}
@@ -549,14 +588,35 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         	this.cid = cacheId;
         	//turn on the collection of data objects used
         	request.processor.getContext().setDataObjects(new HashSet<Object>(4));
+        } else {
+        	endInFlight();
         }
 		processor = request.processor;
+		//allow exchange producers to wake this work item
+		request.context.setMoreWorkCallback(new Runnable() {
+			@Override
+			public void run() {
+				moreWork();
+			}
+		});
 		this.dqpCore.logMMCommand(this, Event.PLAN, null);
 		collector = new BatchCollector(processor, processor.getBufferManager(), this.request.context, isForwardOnly()) {
 			protected void flushBatchDirect(TupleBatch batch, boolean add) throws TeiidComponentException,TeiidProcessingException {
 				resultsBuffer = getTupleBuffer();
 				if (cid != null) {
-					super.flushBatchDirect(batch, add);
+					SessionAwareCache.InFlightEntry<CachedResults> entry = inFlightResults;
+					if (entry == null) {
+						super.flushBatchDirect(batch, add);
+					} else {
+						synchronized (entry) {
+							super.flushBatchDirect(batch, add);
+							if (batch.getTerminationFlag()) {
+								//finalize before the waiters are notified
+								resultsBuffer.close();
+							}
+						}
+						entry.moreResults();
+					}
 				}
 				if (batch.getTerminationFlag()) {
 					done();
@@ -611,6 +671,17 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	    this.returnsUpdateCount = request.returnsUpdateCount;
 	    if (this.returnsUpdateCount && this.requestMsg.getRequestOptions().isContinuous()) {
 			throw new IllegalStateException("Continuous requests are not allowed to be updates."); //$NON-NLS-1$
+	    }
+	    if (this.inFlightId != null && this.cid != null && !this.processor.hasFinalBuffer() && !this.resultsBuffer.isLobs() && !this.returnsUpdateCount) {
+	    	//let identical requests stream the results as they are produced
+	    	CachedResults cr = new CachedResults();
+	    	cr.setResults(this.resultsBuffer, null);
+	    	cr.setRowLimit(this.requestMsg.getRowLimit());
+	    	Determinism determinism = Determinism.SESSION_DETERMINISTIC;
+	    	if (this.originalCommand.getCacheHint() != null && this.originalCommand.getCacheHint().getDeterminism() != null) {
+	    		determinism = this.originalCommand.getCacheHint().getDeterminism();
+	    	}
+	    	this.inFlightResults = dqpCore.getRsCache().publishInFlight(this.inFlightId, cr, determinism);
 	    }
 		request = null;
 	}
@@ -625,6 +696,180 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 		}
 	}
 
+	/**
+	 * If identical results are already being produced for the cache by another request, 
+	 * stream them if they are visible to this request, or block until they are available 
+	 * or the in-flight wait has elapsed.  Otherwise register this request as the producer.
+	 * @return true if the results will be streamed from the other request
+	 */
+	private boolean checkInFlight(SessionAwareCache<CachedResults> rsCache, CacheID cacheId, ParseInfo pi) throws BlockedException, TeiidProcessingException, TeiidComponentException {
+		if (rsCache.getInFlightWait() <= 0) {
+			return false;
+		}
+		SessionAwareCache.InFlightEntry<CachedResults> entry = rsCache.startInFlight(cacheId);
+		if (entry == null) {
+			this.inFlightId = cacheId;
+			return false;
+		}
+		CachedResults cr = entry.getResults(cacheId);
+		if (cr != null && cr.getRowLimit() == requestMsg.getRowLimit()) {
+			request.initMetadata();
+			this.originalCommand = cr.getCommand(requestMsg.getCommandString(), request.metadata, pi);
+			if (!request.validateAccess(requestMsg.getCommands(), this.originalCommand, CommandType.CACHED)) {
+				LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Streaming the in-flight results of an identical request"); //$NON-NLS-1$
+				this.resultsBuffer = cr.getResults();
+				this.inFlightResults = entry;
+				return true;
+			}
+		}
+		if (this.waitedForInFlight) {
+			//already waited, just execute
+			return false;
+		}
+		this.waitedForInFlight = true;
+		Runnable wakeup = new Runnable() {
+			@Override
+			public void run() {
+				cancelInFlightTimeout();
+				moreWork();
+			}
+		};
+		synchronized (this) {
+			this.inFlightTimeout = dqpCore.scheduleWork(wakeup, 10, rsCache.getInFlightWait());
+		}
+		if (!entry.addWaiter(wakeup)) {
+			//completed in the meantime
+			wakeup.run();
+		}
+		//restart with the cache lookup when woken
+		this.state = ProcessingState.NEW;
+		throw BlockedException.block(requestID, "Waiting on the in-flight results of an identical request"); //$NON-NLS-1$
+	}
+	
+	/**
+	 * Send the rows streamed from the in-flight results of another request, blocking 
+	 * until the producer adds more.  If the producer fails before any rows have been sent, 
+	 * the request is executed instead.
+	 */
+	private void processInFlight() throws BlockedException, TeiidProcessingException, TeiidComponentException {
+		SessionAwareCache.InFlightEntry<CachedResults> entry = this.inFlightResults;
+		boolean failed = false;
+		synchronized (entry) {
+			if (this.resultsBuffer.isFinal()) {
+				doneProducingBatches();
+			} else if (entry.isDone()) {
+				failed = true;
+			}
+		}
+		if (failed) {
+			this.inFlightResults = null;
+			this.resultsBuffer = null;
+			if (this.inFlightRowsSent) {
+				throw new TeiidProcessingException(QueryPlugin.Event.TEIID31137, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31137, requestID));
+			}
+			this.state = ProcessingState.NEW;
+			moreWork();
+			return;
+		}
+		ResultsReceiver<ResultsMessage> receiver = this.resultsReceiver;
+		sendResultsIfNeeded(null);
+		if (receiver != null && receiver != this.resultsReceiver) {
+			this.inFlightRowsSent = true;
+		}
+		if (this.doneProducingBatches) {
+			return;
+		}
+		if (!entry.addWaiter(new Runnable() {
+			@Override
+			public void run() {
+				moreWork();
+			}
+		})) {
+			moreWork();
+		}
+		throw BlockedException.block(requestID, "Waiting on more in-flight results of an identical request"); //$NON-NLS-1$
+	}
+	
+	private synchronized void cancelInFlightTimeout() {
+		if (this.inFlightTimeout != null) {
+			this.inFlightTimeout.cancel(false);
+			this.inFlightTimeout = null;
+		}
+	}
+	
+	private void endInFlight() {
+		cancelInFlightTimeout();
+		if (this.inFlightId != null) {
+			dqpCore.getRsCache().endInFlight(this.inFlightId);
+			this.inFlightId = null;
+		}
+		this.inFlightResults = null;
+	}
+	
+	/**
+	 * Get the batch of the results containing the given row.  Partial results shared 
+	 * with identical requests are only accessed while holding the in-flight entry.
+	 */
+	private TupleBatch getResultsBatch(int row) throws TeiidComponentException {
+		SessionAwareCache.InFlightEntry<CachedResults> entry = this.inFlightResults;
+		if (entry == null) {
+			return this.resultsBuffer.getBatch(row);
+		}
+		synchronized (entry) {
+			if (this.resultsBuffer.isRemoved()) {
+				//the producer failed, check again in processInFlight
+				moreWork();
+				throw BlockedException.block(requestID, "In-flight results were removed"); //$NON-NLS-1$
+			}
+			return this.resultsBuffer.getBatch(row);
+		}
+	}
+	
+	/**
+	 * Attempt to answer the request by filtering the cached results of a less restrictive query.
+	 * @return true if the results buffer was created from cached results
+	 */
+	private boolean useSubsumingResults(SessionAwareCache<CachedResults> rsCache, CacheID cacheId, ParseInfo pi) throws TeiidComponentException, TeiidProcessingException {
+		SemanticCacheIndex index = rsCache.getSemanticIndex();
+		if (index == null || (requestMsg.getParameterValues() != null && !requestMsg.getParameterValues().isEmpty())) {
+			return false;
+		}
+		//avoid the parsing and resolving below unless a match is possible
+		if (!index.hasEntries(cacheId.getVDBKey()) || !SemanticCacheIndex.isCandidate(requestMsg.getCommandString())) {
+			return false;
+		}
+		request.initMetadata();
+		Command command = null;
+		try {
+			command = QueryParser.getQueryParser().parseCommand(requestMsg.getCommandString(), pi);
+			QueryResolver.resolveCommand(command, request.metadata);
+		} catch (TeiidException e) {
+			LogManager.logDetail(LogConstants.CTX_DQP, e, requestID, "Could not resolve the command for subsumption matching", cacheId); //$NON-NLS-1$
+			return false;
+		}
+		for (SemanticCacheIndex.Match match : index.getMatches(cacheId, command)) {
+			CachedResults cr = rsCache.getIfVisible(match.getId(), cacheId);
+			if (cr == null) {
+				index.remove(match.getId());
+				continue;
+			}
+			if (cr.getRowLimit() != 0 || cr.getResults().getLobCount() > 0) {
+				continue;
+			}
+			if (request.validateAccess(requestMsg.getCommands(), command, CommandType.CACHED)) {
+				LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Cached result command to be modified, will not use the cached results", cacheId); //$NON-NLS-1$
+				return false;
+			}
+			LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Using the cached results of a subsuming query", match.getId()); //$NON-NLS-1$
+			this.resultsBuffer = match.apply(cr.getResults(), command.getProjectedSymbols(), request.context, requestMsg.getRowLimit());
+			this.derivedResults = true;
+			this.originalCommand = command;
+			rsCache.recordSemanticHit();
+			return true;
+		}
+		return false;
+	}
+	
 	private CacheHint getCacheHint() {
 		if (requestMsg.getCommand() != null) {
 			return ((Command)requestMsg.getCommand()).getCacheHint();
@@ -661,6 +906,10 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 			LogManager.logInfo(LogConstants.CTX_DQP, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30008, originalCommand));
 		}
         dqpCore.getRsCache().put(cid, determinismLevel, cr, originalCommand.getCacheHint() != null?originalCommand.getCacheHint().getTtl():null);
+        endInFlight();
+        if (dqpCore.getRsCache().getSemanticIndex() != null && (requestMsg.getParameterValues() == null || requestMsg.getParameterValues().isEmpty()) && cr.getRowLimit() == 0) {
+        	dqpCore.getRsCache().getSemanticIndex().put(cid, originalCommand);
+        }
 	}
 	
 	public SessionAwareCache<CachedResults> getRsCache() {
@@ -686,13 +935,12 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 					LogManager.logDetail(LogConstants.CTX_DQP, "[RequestWorkItem.sendResultsIfNeeded] requestID:", requestID, "resultsID:", this.resultsBuffer, "done:", doneProducingBatches );   //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 				}
 		
-				//TODO: support fetching more than 1 batch
 				boolean fromBuffer = false;
 	    		if (batch == null || !(batch.containsRow(this.begin) || (batch.getTerminationFlag() && batch.getEndRow() <= this.begin))) {
 		    		if (savedBatch != null && savedBatch.containsRow(this.begin)) {
 		    			batch = savedBatch;
 		    		} else {
-		    			batch = resultsBuffer.getBatch(begin);
+		    			batch = getResultsBatch(begin);
 		    		}
 		    		savedBatch = null;
 		    		fromBuffer = true;
@@ -712,6 +960,8 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	                batch.setTerminationFlag(last);
 	    		} else if (!fromBuffer){
 	    			result = !isForwardOnly();
+	    		} else if (this.cursorRequest && batch.getRowCount() < count) {
+	    			batch = addBufferedBatches(batch);
 	    		}
 			} else {
 				result = false;
@@ -767,6 +1017,63 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         return result;
 	}
 
+	/**
+	 * Add the following buffered rows up to the requested end row, so that a fetch size 
+	 * larger than the processor batch size does not require additional round trips.
+	 * The rows are limited by an estimate of the results message size, but will always 
+	 * include the first requested row.
+	 * The initial results are not extended so that the first rows are returned promptly.
+	 */
+	private TupleBatch addBufferedBatches(TupleBatch batch) throws TeiidComponentException {
+		int endRow = Math.min(this.end, Math.max(this.begin, batch.getBeginRow() + getMaxResultsRows() - 1));
+		if (batch.getEndRow() > endRow) {
+			//the batch alone exceeds the estimate
+			if (isForwardOnly()) {
+				savedBatch = batch;
+			}
+			return new TupleBatch(batch.getBeginRow(), batch.getTuples().subList(0, endRow - batch.getBeginRow() + 1));
+		}
+		if (batch.getTerminationFlag() || batch.getEndRow() == endRow || batch.getEndRow() >= this.resultsBuffer.getRowCount()) {
+			return batch;
+		}
+		List<List<?>> rows = new ArrayList<List<?>>(batch.getTuples());
+		boolean last = false;
+		int nextRow = batch.getEndRow() + 1;
+		while (!last && nextRow <= endRow && nextRow <= this.resultsBuffer.getRowCount()) {
+			TupleBatch next = getResultsBatch(nextRow);
+			if (next.getBeginRow() > nextRow || next.getEndRow() < nextRow) {
+				break;
+			}
+			int toRow = Math.min(endRow, next.getEndRow());
+			rows.addAll(next.getTuples().subList(nextRow - next.getBeginRow(), toRow - next.getBeginRow() + 1));
+			if (toRow == next.getEndRow()) {
+				last = next.getTerminationFlag();
+			} else if (isForwardOnly()) {
+				savedBatch = next;
+			}
+			nextRow = toRow + 1;
+		}
+		TupleBatch result = new TupleBatch(batch.getBeginRow(), rows);
+		result.setTerminationFlag(last);
+		return result;
+	}
+	
+	private int getMaxResultsRows() {
+		if (this.maxResultsRows == 0) {
+			BufferManager bm = this.dqpCore.getBufferManager();
+			List<? extends Expression> schema = this.resultsBuffer.getSchema();
+			int rowBytes = Math.max(1, bm.getSchemaSize(schema) / bm.getProcessorBatchSize(schema));
+			int maxBytes = MAX_RESULTS_BYTES;
+			int clientMaxObjectSize = this.dqpWorkContext.getSession().getClientMaxObjectSize();
+			if (clientMaxObjectSize > 0) {
+				//leave room for the estimate to be low
+				maxBytes = clientMaxObjectSize / 2;
+			}
+			this.maxResultsRows = Math.max(1, maxBytes / rowBytes);
+		}
+		return this.maxResultsRows;
+	}
+
 	private void setWarnings(ResultsMessage response) {
 		// send any warnings with the response object
 		List<Throwable> responseWarnings = new ArrayList<Throwable>();
@@ -942,7 +1249,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
     }
     
     public void requestMore(int batchFirst, int batchLast, ResultsReceiver<ResultsMessage> receiver) {
-    	this.requestResults(batchFirst, batchLast, receiver);
+    	this.requestResults(batchFirst, batchLast, true, receiver);
     	this.doMoreWork(); 
     }
     
@@ -1048,7 +1355,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
     	work.addCompletionListener(listener);
     	synchronized (queue) {
         	if (totalThreads < dqpCore.getUserRequestSourceConcurrency()) {
-        		dqpCore.addWork(work);
+        		dqpCore.addConnectorWork(work);
         		totalThreads++;
         		wl.submitted = true;
         	} else {
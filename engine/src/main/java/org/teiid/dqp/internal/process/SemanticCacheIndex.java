@@ -0,0 +1,362 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.dqp.internal.process;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
+import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.query.eval.Evaluator;
+import org.teiid.query.sql.LanguageObject;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.From;
+import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.symbol.AggregateSymbol;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.WindowFunction;
+import org.teiid.query.sql.util.SymbolMap;
+import org.teiid.query.sql.visitor.AggregateSymbolCollectorVisitor;
+import org.teiid.query.sql.visitor.ElementCollectorVisitor;
+import org.teiid.query.sql.visitor.EvaluatableVisitor;
+import org.teiid.query.sql.visitor.ValueIteratorProviderCollectorVisitor;
+import org.teiid.query.sql.visitor.EvaluatableVisitor.EvaluationLevel;
+import org.teiid.query.util.CommandContext;
+import org.teiid.vdb.runtime.VDBKey;
+
+/**
+ * An index of result set cache entries by their FROM clause, used to answer a query from the 
+ * cached results of a less restrictive query.
+ * <br/>
+ * A cached query subsumes a new query over the same FROM clause if the new query's criteria 
+ * contain all of the cached conjuncts and its projection and remaining conjuncts 
+ * can be evaluated over the cached columns.  Only simple select, project, filter queries 
+ * without grouping, distinct, ordering, or limits are considered.
+ */
+public class SemanticCacheIndex {
+	
+	static final int MAX_KEYS = 256;
+	static final int MAX_ENTRIES_PER_KEY = 16;
+	
+	private static class IndexEntry {
+		CacheID id;
+		Set<Criteria> conjuncts;
+		Map<ElementSymbol, Integer> columns;
+	}
+	
+	/**
+	 * A cached entry that can produce the results of a query by filtering and projecting
+	 */
+	public static class Match {
+		private CacheID id;
+		private Map<ElementSymbol, Integer> columns;
+		private Criteria filter;
+		private List<Expression> projection;
+		
+		public CacheID getId() {
+			return id;
+		}
+		
+		/**
+		 * Create the results for the matched query from the cached results 
+		 * @param rowLimit the max number of rows or 0 for no limit
+		 */
+		public TupleBuffer apply(TupleBuffer cached, List<? extends Expression> schema, CommandContext context, int rowLimit) throws TeiidComponentException, TeiidProcessingException {
+			BufferManager bufferManager = context.getBufferManager();
+			Evaluator eval = new Evaluator(columns, null, context);
+			TupleBuffer result = bufferManager.createTupleBuffer(schema, context.getConnectionId(), TupleSourceType.FINAL);
+			TupleSource ts = cached.createIndexedTupleSource();
+			boolean success = false;
+			try {
+				List<?> tuple = null;
+				while ((tuple = ts.nextTuple()) != null && (rowLimit == 0 || result.getRowCount() < rowLimit)) {
+					if (filter != null && !eval.evaluate(filter, tuple)) {
+						continue;
+					}
+					List<Object> row = new ArrayList<Object>(projection.size());
+					for (Expression ex : projection) {
+						row.add(eval.evaluate(ex, tuple));
+					}
+					result.addTuple(row);
+				}
+				result.close();
+				success = true;
+			} finally {
+				ts.closeSource();
+				if (!success) {
+					result.remove();
+				}
+			}
+			return result;
+		}
+	}
+	
+	private Map<List<Object>, LinkedList<IndexEntry>> entries = new LinkedHashMap<List<Object>, LinkedList<IndexEntry>>(16, .75f, true) {
+		private static final long serialVersionUID = -2389011374651347916L;
+
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, LinkedList<IndexEntry>> eldest) {
+			if (size() > MAX_KEYS) {
+				adjustVdbCount(eldest.getKey(), -eldest.getValue().size());
+				return true;
+			}
+			return false;
+		}
+	};
+	
+	//the number of entries for each vdb, so that lookups can be skipped without parsing
+	private Map<Object, Integer> vdbCounts = new HashMap<Object, Integer>();
+	
+	/**
+	 * Index the cached results for the given command if they could answer other queries.
+	 */
+	public void put(CacheID id, Command command) {
+		if (!isCandidate(command)) {
+			return;
+		}
+		Query query = (Query)command;
+		IndexEntry entry = new IndexEntry();
+		entry.id = id;
+		entry.conjuncts = new HashSet<Criteria>(Criteria.separateCriteriaByAnd(query.getCriteria()));
+		entry.columns = new HashMap<ElementSymbol, Integer>();
+		List<Expression> projected = query.getProjectedSymbols();
+		for (int i = 0; i < projected.size(); i++) {
+			Expression ex = SymbolMap.getExpression(projected.get(i));
+			if (ex instanceof ElementSymbol && !entry.columns.containsKey(ex)) {
+				entry.columns.put((ElementSymbol)ex, i);
+			}
+		}
+		if (entry.columns.isEmpty()) {
+			return;
+		}
+		List<Object> key = getKey(id, query);
+		synchronized (this) {
+			LinkedList<IndexEntry> list = entries.get(key);
+			if (list == null) {
+				list = new LinkedList<IndexEntry>();
+				entries.put(key, list);
+			}
+			int delta = 1;
+			for (Iterator<IndexEntry> iter = list.iterator(); iter.hasNext();) {
+				if (iter.next().id.equals(id)) {
+					iter.remove();
+					delta--;
+				}
+			}
+			list.addFirst(entry);
+			if (list.size() > MAX_ENTRIES_PER_KEY) {
+				list.removeLast();
+				delta--;
+			}
+			adjustVdbCount(key, delta);
+		}
+	}
+	
+	/**
+	 * Find the cached entries, most recent first, that subsume the given command.
+	 * The caller should check that each entry is still valid and visible to the requesting user.
+	 */
+	public List<Match> getMatches(CacheID id, Command command) {
+		if (!isCandidate(command)) {
+			return Collections.emptyList();
+		}
+		Query query = (Query)command;
+		List<Criteria> conjuncts = Criteria.separateCriteriaByAnd(query.getCriteria());
+		List<IndexEntry> candidates = null;
+		synchronized (this) {
+			LinkedList<IndexEntry> list = entries.get(getKey(id, query));
+			if (list == null) {
+				return Collections.emptyList();
+			}
+			candidates = new ArrayList<IndexEntry>(list);
+		}
+		List<Expression> projection = new ArrayList<Expression>(query.getProjectedSymbols().size());
+		for (Expression ex : query.getProjectedSymbols()) {
+			projection.add(SymbolMap.getExpression(ex));
+		}
+		List<Match> result = new ArrayList<Match>(1);
+		for (IndexEntry entry : candidates) {
+			if (!conjuncts.containsAll(entry.conjuncts)) {
+				continue;
+			}
+			List<Criteria> remaining = new ArrayList<Criteria>(conjuncts);
+			remaining.removeAll(entry.conjuncts);
+			if (!isEvaluatable(remaining, entry.columns) || !isEvaluatable(projection, entry.columns)) {
+				continue;
+			}
+			Match match = new Match();
+			match.id = entry.id;
+			match.columns = entry.columns;
+			match.filter = Criteria.combineCriteria(remaining);
+			match.projection = projection;
+			result.add(match);
+		}
+		return result;
+	}
+	
+	/**
+	 * A cheap check, made before the command is parsed, of whether there are any 
+	 * entries that could match a query against the given vdb.
+	 */
+	public synchronized boolean hasEntries(VDBKey vdbKey) {
+		return vdbCounts.containsKey(vdbKey);
+	}
+	
+	public synchronized void remove(CacheID id) {
+		for (Iterator<Map.Entry<List<Object>, LinkedList<IndexEntry>>> iter = entries.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<List<Object>, LinkedList<IndexEntry>> mapEntry = iter.next();
+			LinkedList<IndexEntry> list = mapEntry.getValue();
+			for (Iterator<IndexEntry> entryIter = list.iterator(); entryIter.hasNext();) {
+				if (entryIter.next().id.equals(id)) {
+					entryIter.remove();
+					adjustVdbCount(mapEntry.getKey(), -1);
+				}
+			}
+			if (list.isEmpty()) {
+				iter.remove();
+			}
+		}
+	}
+	
+	public synchronized void clear() {
+		entries.clear();
+		vdbCounts.clear();
+	}
+	
+	public synchronized void clearForVDB(VDBKey vdbKey) {
+		for (Iterator<List<Object>> iter = entries.keySet().iterator(); iter.hasNext();) {
+			if (iter.next().get(0).equals(vdbKey)) {
+				iter.remove();
+			}
+		}
+		vdbCounts.remove(vdbKey);
+	}
+	
+	private void adjustVdbCount(List<Object> key, int delta) {
+		Object vdbKey = key.get(0);
+		Integer count = vdbCounts.get(vdbKey);
+		int value = (count == null?0:count) + delta;
+		if (value <= 0) {
+			vdbCounts.remove(vdbKey);
+		} else {
+			vdbCounts.put(vdbKey, value);
+		}
+	}
+	
+	synchronized int size() {
+		int size = 0;
+		for (LinkedList<IndexEntry> list : entries.values()) {
+			size += list.size();
+		}
+		return size;
+	}
+	
+	private static List<Object> getKey(CacheID id, Query query) {
+		return Arrays.asList(id.getVDBKey(), query.getFrom());
+	}
+	
+	/**
+	 * A cheap check of the command text, made before parsing, of whether 
+	 * the command could be a candidate query.
+	 */
+	static boolean isCandidate(String sql) {
+		if (sql == null) {
+			return false;
+		}
+		int i = 0;
+		int length = sql.length();
+		while (i < length) {
+			if (Character.isWhitespace(sql.charAt(i))) {
+				i++;
+			} else if (sql.startsWith("/*", i)) { //$NON-NLS-1$
+				//skip hint and other comments
+				int end = sql.indexOf("*/", i + 2); //$NON-NLS-1$
+				if (end < 0) {
+					return false;
+				}
+				i = end + 2;
+			} else {
+				break;
+			}
+		}
+		return sql.regionMatches(true, i, "SELECT", 0, 6); //$NON-NLS-1$
+	}
+	
+	static boolean isCandidate(Command command) {
+		if (!(command instanceof Query)) {
+			return false;
+		}
+		Query query = (Query)command;
+		if (query.getFrom() == null || query.getInto() != null || query.getGroupBy() != null 
+				|| query.getHaving() != null || query.getOrderBy() != null || query.getLimit() != null 
+				|| query.getSelect().isDistinct() || query.getOption() != null) {
+			return false;
+		}
+		Collection<AggregateSymbol> aggs = new ArrayList<AggregateSymbol>();
+		Collection<WindowFunction> windowFunctions = new ArrayList<WindowFunction>();
+		AggregateSymbolCollectorVisitor.getAggregates(query.getSelect(), aggs, null, null, windowFunctions, null);
+		if (!aggs.isEmpty() || !windowFunctions.isEmpty()) {
+			return false;
+		}
+		if (!ValueIteratorProviderCollectorVisitor.getValueIteratorProviders(query.getSelect()).isEmpty()) {
+			return false;
+		}
+		return query.getCriteria() == null || ValueIteratorProviderCollectorVisitor.getValueIteratorProviders(query.getCriteria()).isEmpty();
+	}
+	
+	/**
+	 * Determine if the objects can be evaluated using only the cached columns 
+	 */
+	private static boolean isEvaluatable(Collection<? extends LanguageObject> objects, Map<ElementSymbol, Integer> columns) {
+		for (LanguageObject obj : objects) {
+			EvaluatableVisitor ev = EvaluatableVisitor.needsEvaluation(obj);
+			if (ev.requiresEvaluation(EvaluationLevel.PROCESSING) || ev.getDeterminismLevel() == Determinism.NONDETERMINISTIC) {
+				return false;
+			}
+			for (ElementSymbol es : ElementCollectorVisitor.getElements(obj, true)) {
+				if (!columns.containsKey(es)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+}
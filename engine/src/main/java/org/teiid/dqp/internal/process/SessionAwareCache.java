@@ -25,11 +25,19 @@ package org.teiid.dqp.internal.process;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.teiid.adminapi.Admin;
+import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.cache.Cachable;
 import org.teiid.cache.Cache;
 import org.teiid.cache.CacheFactory;
@@ -37,9 +45,11 @@ import org.teiid.common.buffer.TupleBufferCache;
 import org.teiid.core.util.Assertion;
 import org.teiid.core.util.EquivalenceUtil;
 import org.teiid.core.util.HashCodeUtil;
+import org.teiid.core.util.LRUCache;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.query.metadata.TransformationMetadata;
 import org.teiid.query.parser.ParseInfo;
 import org.teiid.vdb.runtime.VDBKey;
 
@@ -50,6 +60,7 @@ import org.teiid.vdb.runtime.VDBKey;
 public class SessionAwareCache<T> {
 	public static final String REPL = "-repl"; //$NON-NLS-1$
 	public static final int DEFAULT_MAX_SIZE_TOTAL = 512;
+	public static final long PENDING_REVALIDATION_TTL = 600000;
 	public enum Type {
 		RESULTSET,
 		PREPAREDPLAN;
@@ -64,8 +75,109 @@ public class SessionAwareCache<T> {
 	private AtomicInteger cacheHit = new AtomicInteger();
 	private AtomicInteger totalRequests = new AtomicInteger();
 	private AtomicInteger cachePuts = new AtomicInteger();
+	private AtomicInteger semanticHits = new AtomicInteger();
 	
 	private TupleBufferCache bufferManager;
+	private SemanticCacheIndex semanticIndex;
+	
+	private Map<CacheID, InFlightEntry<T>> inFlight = new HashMap<CacheID, InFlightEntry<T>>();
+	private long inFlightWait;
+	private AtomicInteger inFlightWaits = new AtomicInteger();
+	
+	private ConcurrentHashMap<VDBKey, VDBCacheStatistics> vdbStats = new ConcurrentHashMap<VDBKey, VDBCacheStatistics>();
+	private Map<VDBKey, PendingRevalidation> pendingRevalidation = new LRUCache<VDBKey, PendingRevalidation>(16);
+	
+	/**
+	 * The statements of an undeployed vdb that may be planned again if it is redeployed
+	 */
+	private static class PendingRevalidation {
+		private long creationTime = System.currentTimeMillis();
+		private String vdbFingerprint;
+		private Map<CacheID, Map<List<String>, String>> accessed = new LinkedHashMap<CacheID, Map<List<String>, String>>();
+		
+		public PendingRevalidation(String vdbFingerprint) {
+			this.vdbFingerprint = vdbFingerprint;
+		}
+	}
+	
+	/**
+	 * Request and hit counts for a single vdb
+	 */
+	private static class VDBCacheStatistics {
+		private AtomicInteger cacheHit = new AtomicInteger();
+		private AtomicInteger totalRequests = new AtomicInteger();
+	}
+	
+	/**
+	 * Tracks results that are being produced for the cache so that identical requests 
+	 * may wait for, or stream from, them rather than executing again.
+	 * The producer and the readers of the partial results synchronize on the entry.
+	 */
+	public static class InFlightEntry<T> {
+		private CacheID id;
+		private List<Runnable> waiters = new ArrayList<Runnable>(2);
+		private boolean done;
+		private T results;
+		private Determinism determinism;
+		
+		private InFlightEntry(CacheID id) {
+			this.id = id;
+		}
+		
+		/**
+		 * Add a callback to be run when the producing request finishes or fails 
+		 * @return false if the entry has already completed
+		 */
+		public synchronized boolean addWaiter(Runnable waiter) {
+			if (done) {
+				return false;
+			}
+			waiters.add(waiter);
+			return true;
+		}
+		
+		/**
+		 * Get the partial results published by the producer.  The determinism of the results
+		 * is not known until they are complete, so they are only visible within the producer's 
+		 * session unless a wider determinism level was declared.
+		 * @return the results or null if there are none visible to the requester
+		 */
+		public synchronized T getResults(CacheID requester) {
+			if (results == null) {
+				return null;
+			}
+			if (determinism.compareTo(Determinism.SESSION_DETERMINISTIC) <= 0) {
+				return EquivalenceUtil.areEqual(id.originalSessionId, requester.originalSessionId)?results:null;
+			}
+			if (determinism == Determinism.USER_DETERMINISTIC && !EquivalenceUtil.areEqual(id.originalUserName, requester.originalUserName)) {
+				return null;
+			}
+			return results;
+		}
+		
+		public synchronized boolean isDone() {
+			return done;
+		}
+		
+		/**
+		 * Run the current waiters, which must add themselves again to be notified of further results 
+		 */
+		public void moreResults() {
+			List<Runnable> toRun = null;
+			synchronized (this) {
+				toRun = waiters;
+				waiters = new ArrayList<Runnable>(2);
+			}
+			for (Runnable waiter : toRun) {
+				waiter.run();
+			}
+		}
+		
+		private synchronized List<Runnable> complete() {
+			done = true;
+			return waiters;
+		}
+	}
 	
 	public SessionAwareCache (String cacheName, final CacheFactory cacheFactory, final Type type, int maxStaleness) {
 		assert (cacheFactory != null);
@@ -83,6 +195,9 @@ public class SessionAwareCache<T> {
 		}
 		this.modTime = maxStaleness * 1000;
 		this.type = type;
+		if (type == Type.RESULTSET) {
+			this.semanticIndex = new SemanticCacheIndex();
+		}
 		
 		assert (this.localCache != null);
 		assert (this.distributedCache != null);
@@ -91,6 +206,8 @@ public class SessionAwareCache<T> {
 	public T get(CacheID id){
 
 		this.totalRequests.getAndIncrement();
+		VDBCacheStatistics stats = getVDBStatistics(id.vdbInfo, true);
+		stats.totalRequests.getAndIncrement();
 		
 		id.setSessionId(id.originalSessionId);
 		T result = localCache.get(id);
@@ -114,31 +231,200 @@ public class SessionAwareCache<T> {
 			}
 		}
 		
+		result = validate(id, result);
 		if (result != null) {
-			if (result instanceof Cachable) {
-				Cachable c = (Cachable)result;
-				AccessInfo info = c.getAccessInfo();
-				if (info != null && !info.validate(type == Type.RESULTSET, modTime)) {
-					LogManager.logTrace(LogConstants.CTX_DQP, "Invalidating cache entry", id); //$NON-NLS-1$
-					if (id.getSessionId() == null) {
-						this.distributedCache.remove(id);
-					} else {
-						this.localCache.remove(id);
-					}
-					return null;
-				}
-			}
 			LogManager.logTrace(LogConstants.CTX_DQP, "Cache hit for", id); //$NON-NLS-1$
 			cacheHit.getAndIncrement();
+			stats.cacheHit.getAndIncrement();
 		} else {
 			LogManager.logTrace(LogConstants.CTX_DQP, "Cache miss for", id); //$NON-NLS-1$
 		}
 		return result;
 	}
 	
+	/**
+	 * Get the entry stored under an id previously put into this cache, but only 
+	 * if the scope of that entry is visible to the session and user of the request id.
+	 * Does not affect the hit or request counts.
+	 */
+	public T getIfVisible(CacheID cachedId, CacheID requestId) {
+		if (cachedId.getSessionId() != null && !cachedId.getSessionId().equals(requestId.originalSessionId)) {
+			return null;
+		}
+		if (cachedId.getUserName() != null && !cachedId.getUserName().equals(requestId.originalUserName)) {
+			return null;
+		}
+		T result = null;
+		if (cachedId.getSessionId() != null) {
+			result = localCache.get(cachedId);
+		} else {
+			result = distributedCache.get(cachedId);
+			if (result instanceof Cachable) {
+				Cachable c = (Cachable)result;
+				if (!c.restore(this.bufferManager)) {
+					result = null;
+				}
+			}
+		}
+		return validate(cachedId, result);
+	}
+
+	private T validate(CacheID id, T result) {
+		if (result instanceof Cachable) {
+			Cachable c = (Cachable)result;
+			AccessInfo info = c.getAccessInfo();
+			if (info != null && !info.validate(type == Type.RESULTSET, modTime)) {
+				LogManager.logTrace(LogConstants.CTX_DQP, "Invalidating cache entry", id); //$NON-NLS-1$
+				if (id.getSessionId() == null) {
+					this.distributedCache.remove(id);
+				} else {
+					this.localCache.remove(id);
+				}
+				if (this.semanticIndex != null) {
+					this.semanticIndex.remove(id);
+				}
+				return null;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Record a hit answered from the cached results of a subsuming query
+	 */
+	public void recordSemanticHit() {
+		this.semanticHits.getAndIncrement();
+		this.cacheHit.getAndIncrement();
+	}
+	
+	public int getSemanticHitCount() {
+		return semanticHits.get();
+	}
+	
+	/**
+	 * @return the index of entries that may answer subsumed queries, or null if this is not a result set cache
+	 */
+	public SemanticCacheIndex getSemanticIndex() {
+		return semanticIndex;
+	}
+	
+	/**
+	 * Register the caller as producing the results for the given id if no other 
+	 * request is already doing so.
+	 * @return null if the caller is now the producer, otherwise the existing entry 
+	 */
+	public InFlightEntry<T> startInFlight(CacheID id) {
+		CacheID key = new CacheID(id);
+		synchronized (inFlight) {
+			InFlightEntry<T> entry = inFlight.get(key);
+			if (entry != null) {
+				inFlightWaits.getAndIncrement();
+				return entry;
+			}
+			inFlight.put(key, new InFlightEntry<T>(key));
+			return null;
+		}
+	}
+	
+	/**
+	 * Called by the producer of the results for the given id to let identical requests 
+	 * stream the results while they are still being produced.  Waiting requests are notified.
+	 * @param determinism the declared determinism of the results, which limits the requests that may see them
+	 * @return the entry to synchronize on when adding to the results, or null if the id is not in flight
+	 */
+	public InFlightEntry<T> publishInFlight(CacheID id, T results, Determinism determinism) {
+		InFlightEntry<T> entry = null;
+		synchronized (inFlight) {
+			entry = inFlight.get(new CacheID(id));
+		}
+		if (entry == null) {
+			return null;
+		}
+		synchronized (entry) {
+			entry.results = results;
+			entry.determinism = determinism;
+		}
+		entry.moreResults();
+		return entry;
+	}
+	
+	/**
+	 * Called by the producer of the results for the given id when it has either 
+	 * added the results to the cache or will not produce them.  Waiting requests are notified.
+	 */
+	public void endInFlight(CacheID id) {
+		InFlightEntry<T> entry = null;
+		synchronized (inFlight) {
+			entry = inFlight.remove(new CacheID(id));
+		}
+		if (entry == null) {
+			return;
+		}
+		for (Runnable waiter : entry.complete()) {
+			waiter.run();
+		}
+	}
+	
+	/**
+	 * @return the max time in milliseconds that a request should wait for identical results 
+	 * already being produced, 0 indicates that requests should not wait.
+	 */
+	public long getInFlightWait() {
+		return inFlightWait;
+	}
+	
+	public void setInFlightWait(long inFlightWait) {
+		this.inFlightWait = inFlightWait;
+	}
+	
+	public int getInFlightWaitCount() {
+		return inFlightWaits.get();
+	}
+	
 	public int getCacheHitCount() {
 		return cacheHit.get();
 	}
+	
+	private VDBCacheStatistics getVDBStatistics(VDBKey vdbKey, boolean create) {
+		VDBCacheStatistics stats = this.vdbStats.get(vdbKey);
+		if (stats == null && create) {
+			stats = new VDBCacheStatistics();
+			VDBCacheStatistics existing = this.vdbStats.putIfAbsent(vdbKey, stats);
+			if (existing != null) {
+				stats = existing;
+			}
+		}
+		return stats;
+	}
+	
+	public int getCacheHitCount(String vdbName, int version) {
+		VDBCacheStatistics stats = getVDBStatistics(new VDBKey(vdbName, version), false);
+		return stats == null?0:stats.cacheHit.get();
+	}
+	
+	public int getRequestCount(String vdbName, int version) {
+		VDBCacheStatistics stats = getVDBStatistics(new VDBKey(vdbName, version), false);
+		return stats == null?0:stats.totalRequests.get();
+	}
+	
+	public int getTotalCacheEntries(String vdbName, int version) {
+		VDBKey vdbKey = new VDBKey(vdbName, version);
+		int count = countEntries(this.localCache, vdbKey);
+		if (this.localCache != this.distributedCache) {
+			count += countEntries(this.distributedCache, vdbKey);
+		}
+		return count;
+	}
+	
+	private int countEntries(Cache<CacheID, T> cache, VDBKey vdbKey) {
+		int count = 0;
+		for (CacheID key : cache.keySet()) {
+			if (key.vdbInfo.equals(vdbKey)) {
+				count++;
+			}
+		}
+		return count;
+	}
 		
 	public int getRequestCount() {
 		return this.totalRequests.get();
@@ -197,11 +483,106 @@ public class SessionAwareCache<T> {
 		this.totalRequests.set(0);
 		this.cacheHit.set(0);
 		this.cachePuts.set(0);
+		this.semanticHits.set(0);
+		this.inFlightWaits.set(0);
+		this.vdbStats.clear();
+		if (this.semanticIndex != null) {
+			this.semanticIndex.clear();
+		}
 	}	
 	
 	public void clearForVDB(String vdbName, int version) {
 		clearCache(this.localCache, vdbName, version);
 		clearCache(this.distributedCache, vdbName, version);
+		this.vdbStats.remove(new VDBKey(vdbName, version));
+		if (this.semanticIndex != null) {
+			this.semanticIndex.clearForVDB(new VDBKey(vdbName, version));
+		}
+	}
+	
+	/**
+	 * Remove the entries for a vdb that is being undeployed.  For prepared plans the statements of the 
+	 * vdb scoped entries are remembered, along with fingerprints of the tables and procedures they accessed, 
+	 * so that {@link #revalidateForVDB(VDBMetaData)} can determine what to plan again if the vdb is redeployed.
+	 * No plans or metadata objects are retained and the remembered statements are discarded
+	 * if the vdb is not redeployed within {@link #PENDING_REVALIDATION_TTL} milliseconds.
+	 */
+	public void removeForRedeploy(VDBMetaData vdb) {
+		VDBKey vdbKey = new VDBKey(vdb.getName(), vdb.getVersion());
+		if (type == Type.PREPAREDPLAN) {
+			PendingRevalidation pending = new PendingRevalidation(MetadataFingerprint.getFingerprint(vdb));
+			Map<Object, String> fingerprints = new IdentityHashMap<Object, String>();
+			for (CacheID key : getVDBScopedIds()) {
+				if (!key.vdbInfo.equals(vdbKey)) {
+					continue;
+				}
+				T result = this.distributedCache.get(key);
+				if (result instanceof Cachable) {
+					AccessInfo info = ((Cachable)result).getAccessInfo();
+					Map<List<String>, String> accessed = null;
+					if (info != null && (accessed = info.getAccessedFingerprints(fingerprints)) != null) {
+						pending.accessed.put(key, accessed);
+					}
+				}
+			}
+			synchronized (this.pendingRevalidation) {
+				removeExpiredRevalidations();
+				this.pendingRevalidation.put(vdbKey, pending);
+			}
+		}
+		clearForVDB(vdb.getName(), vdb.getVersion());
+	}
+	
+	/**
+	 * Determine which of the statements remembered by {@link #removeForRedeploy(VDBMetaData)} are 
+	 * unaffected by the redeploy.  The vdb level settings must be unchanged and every accessed table
+	 * and procedure must have an identical definition in the new metadata.  The cache does 
+	 * not retain the old plans, so the returned statements should be planned again against the new metadata. 
+	 * @param newVdb the vdb that replaced the removed vdb, with its metadata loaded
+	 * @return the ids of the unaffected statements
+	 */
+	public List<CacheID> revalidateForVDB(VDBMetaData newVdb) {
+		VDBKey vdbKey = new VDBKey(newVdb.getName(), newVdb.getVersion());
+		PendingRevalidation pending = null;
+		synchronized (this.pendingRevalidation) {
+			removeExpiredRevalidations();
+			pending = this.pendingRevalidation.remove(vdbKey);
+		}
+		TransformationMetadata metadata = newVdb.getAttachment(TransformationMetadata.class);
+		if (pending == null || metadata == null || !pending.vdbFingerprint.equals(MetadataFingerprint.getFingerprint(newVdb))) {
+			return Collections.emptyList();
+		}
+		Map<Object, String> fingerprints = new IdentityHashMap<Object, String>();
+		List<CacheID> result = new ArrayList<CacheID>();
+		for (Map.Entry<CacheID, Map<List<String>, String>> entry : pending.accessed.entrySet()) {
+			if (AccessInfo.isUnchanged(entry.getValue(), metadata, fingerprints)) {
+				result.add(entry.getKey());
+			}
+		}
+		LogManager.logDetail(LogConstants.CTX_DQP, result.size(), "of", pending.accessed.size(), "statements are unaffected by the redeploy of", vdbKey); //$NON-NLS-1$ //$NON-NLS-2$
+		return result;
+	}
+	
+	private void removeExpiredRevalidations() {
+		long now = System.currentTimeMillis();
+		for (Iterator<PendingRevalidation> iter = this.pendingRevalidation.values().iterator(); iter.hasNext();) {
+			if (now - iter.next().creationTime > PENDING_REVALIDATION_TTL) {
+				iter.remove();
+			}
+		}
+	}
+	
+	/**
+	 * @return the ids of the entries that are not scoped to a session or user
+	 */
+	public List<CacheID> getVDBScopedIds() {
+		List<CacheID> result = new ArrayList<CacheID>();
+		for (CacheID key : this.distributedCache.keySet()) {
+			if (key.getSessionId() == null && key.getUserName() == null) {
+				result.add(key);
+			}
+		}
+		return result;
 	}
 	
 	private void clearCache(Cache<CacheID, T> cache, String vdbName, int version) {
@@ -237,8 +618,28 @@ public class SessionAwareCache<T> {
 			this.originalSessionId = sessionId;
 			this.originalUserName = userName;
 		}
+		
+		/**
+		 * Create a copy without a session or user scope 
+		 */
+		private CacheID(CacheID id) {
+			this.sql = id.sql;
+			this.vdbInfo = id.vdbInfo;
+			this.ansiIdentifiers = id.ansiIdentifiers;
+			this.parameters = id.parameters;
+			this.originalSessionId = id.originalSessionId;
+			this.originalUserName = id.originalUserName;
+		}
 
 		
+		String getSql() {
+			return sql;
+		}
+		
+		boolean isAnsiIdentifiers() {
+			return ansiIdentifiers;
+		}
+		
 		public String getSessionId() {
 			return sessionId;
 		}
@@ -23,12 +23,15 @@
 package org.teiid.dqp.internal.process;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.FutureTask;
@@ -42,6 +45,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.resource.spi.work.Work;
 
+import org.teiid.adminapi.impl.SessionMetadata;
 import org.teiid.adminapi.impl.WorkerPoolStatisticsMetadata;
 import org.teiid.core.util.NamedThreadFactory;
 import org.teiid.logging.LogConstants;
@@ -65,6 +69,12 @@ import org.teiid.query.QueryPlugin;
  * backed {@link ThreadPoolExecutor}.
  * <br/>
  * There is also only a single master scheduling thread with actual executions deferred.
+ * <br/>
+ * Queued work is held in a fair share queue per user.  The next work is taken from the user with the 
+ * highest priority queued work, then the fewest running tasks, then the least recent processing time, 
+ * so that a single user flooding the pool cannot starve others.  The processing time decays with a
+ * half life of {@link #PROCESSING_TIME_HALF_LIFE} milliseconds, so that it is not forgotten as soon as 
+ * a user is briefly idle.  {@link PrioritizedRunnable#NO_WAIT_PRIORITY} work is taken before all others.
  * 
  * TODO: there is a race condition between retiring threads and adding work, which may create extra threads.  
  * That is a flaw with attempting to reuse, rather than create threads.  
@@ -226,18 +236,78 @@ public class ThreadReuseExecutor implements TeiidExecutor {
 	private Set<Thread> threads = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Thread, Boolean>()));
 	private Set<ScheduledFutureTask> scheduledTasks = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<ScheduledFutureTask, Boolean>()));
 	
-	private String poolName;
-	private int maximumPoolSize;
-	private Queue<PrioritizedRunnable> queue = new PriorityQueue<PrioritizedRunnable>(11, new Comparator<PrioritizedRunnable>() {
+	private static final Comparator<QueuedWork> QUEUED_COMPARATOR = new Comparator<QueuedWork>() {
 		@Override
-		public int compare(PrioritizedRunnable pr1, PrioritizedRunnable pr2) {
+		public int compare(QueuedWork qw1, QueuedWork qw2) {
+			PrioritizedRunnable pr1 = qw1.runnable;
+			PrioritizedRunnable pr2 = qw2.runnable;
 			int result = pr1.getPriority() - pr2.getPriority();
 			if (result == 0) {
 				return Long.signum(pr1.getCreationTime() - pr2.getCreationTime());
 			}
 			return result;
 		}
-	});
+	};
+	
+	private static final int QUEUE_WAIT_SAMPLES = 1024;
+	static final long PROCESSING_TIME_HALF_LIFE = 30000;
+	
+	private static class QueuedWork {
+		final PrioritizedRunnable runnable;
+		final FairShare share;
+		final long queuedTime = System.currentTimeMillis();
+		
+		QueuedWork(PrioritizedRunnable runnable, FairShare share) {
+			this.runnable = runnable;
+			this.share = share;
+		}
+	}
+	
+	/**
+	 * The queued work and decayed processing time of a single user.  Retained 
+	 * while the user has queued or running work, or processing time of at least a millisecond.
+	 */
+	private static class FairShare {
+		final Object owner;
+		final PriorityQueue<QueuedWork> queue = new PriorityQueue<QueuedWork>(11, QUEUED_COMPARATOR);
+		int running;
+		private double processingTime;
+		private long lastDecay = System.currentTimeMillis();
+		
+		FairShare(Object owner) {
+			this.owner = owner;
+		}
+		
+		double getProcessingTime(long now) {
+			decay(now);
+			return processingTime;
+		}
+		
+		void addProcessingTime(long time, long now) {
+			decay(now);
+			processingTime += time;
+		}
+		
+		private void decay(long now) {
+			long elapsed = now - lastDecay;
+			if (elapsed > 0) {
+				processingTime *= Math.pow(.5, (double)elapsed / PROCESSING_TIME_HALF_LIFE);
+				lastDecay = now;
+			}
+		}
+		
+		boolean isIdle() {
+			return running == 0 && queue.isEmpty();
+		}
+	}
+	
+	private String poolName;
+	private int maximumPoolSize;
+	private Map<Object, FairShare> shares = new HashMap<Object, FairShare>();
+	private PriorityQueue<QueuedWork> noWaitQueue = new PriorityQueue<QueuedWork>(11, QUEUED_COMPARATOR);
+	private volatile int queuedCount;
+	private long[] queueWaits = new long[QUEUE_WAIT_SAMPLES];
+	private long queueWaitCount;
 	private long warnWaitTime = 500;
 	
 	public ThreadReuseExecutor(String name, int maximumPoolSize) {
@@ -263,19 +333,27 @@ public class ThreadReuseExecutor implements TeiidExecutor {
 
 	private void executeDirect(final PrioritizedRunnable command) {
 		boolean atMaxThreads = false;
+		final FairShare initialShare;
 		synchronized (poolLock) {
 			checkForTermination();
 			submittedCount++;
+			initialShare = getShare(command);
 			atMaxThreads = activeCount == maximumPoolSize;
 			if (atMaxThreads) {
-				queue.add(command);
-				int queueSize = queue.size();
+				QueuedWork work = new QueuedWork(command, initialShare);
+				if (command.getPriority() == PrioritizedRunnable.NO_WAIT_PRIORITY) {
+					noWaitQueue.add(work);
+				} else {
+					initialShare.queue.add(work);
+				}
+				int queueSize = ++queuedCount;
 				if (queueSize > highestQueueSize) {
 					highestQueueSize = queueSize;
 				}
 			} else {
 				activeCount++;
 				highestActiveCount = Math.max(activeCount, highestActiveCount);
+				initialShare.running++;
 			}
 		}
 		if (atMaxThreads) {
@@ -292,19 +370,34 @@ public class ThreadReuseExecutor implements TeiidExecutor {
 					LogManager.logTrace(LogConstants.CTX_RUNTIME, "Beginning work with virtual worker", t.getName()); //$NON-NLS-1$ 
 				}
 				PrioritizedRunnable r = command;
+				FairShare share = initialShare;
 				while (r != null) {
 					boolean success = false;
+					long start = System.currentTimeMillis();
 					try {
 						r.run();
 						success = true;
 					} finally {
+						long waited = 0;
 						synchronized (poolLock) {
+							//charge the processing time to the user
+							long end = System.currentTimeMillis();
+							share.addProcessingTime(end - start, end);
+							share.running--;
+							r = null;
 							if (success) {
 								completedCount++;
 								//we only poll if successful, to let the exception handling happen immediately otherwise
-								r = queue.poll();
+								QueuedWork next = pollQueued();
+								if (next != null) {
+									r = next.runnable;
+									share = next.share;
+									share.running++;
+									waited = System.currentTimeMillis() - next.queuedTime;
+									queueWaits[(int)(queueWaitCount++ % QUEUE_WAIT_SAMPLES)] = waited;
+								}
 							}
-							if (!success || r == null) {
+							if (r == null) {
 								threads.remove(t);
 								activeCount--;
 								if (activeCount == 0 && terminated) {
@@ -314,7 +407,7 @@ public class ThreadReuseExecutor implements TeiidExecutor {
 						}
 						if (success) {
 							long warnTime = warnWaitTime;
-							if (r != null && System.currentTimeMillis() - r.getCreationTime() > warnTime) {
+							if (r != null && waited > warnTime) {
 								LogManager.logWarning(LogConstants.CTX_RUNTIME, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30009, maximumPoolSize, poolName, highestQueueSize, warnTime));
 								warnWaitTime*=2; //we don't really care if this is synchronized
 							}
@@ -326,6 +419,79 @@ public class ThreadReuseExecutor implements TeiidExecutor {
 		});
 	}
 
+	private FairShare getShare(PrioritizedRunnable command) {
+		Object owner = getOwner(command);
+		FairShare share = shares.get(owner);
+		if (share == null) {
+			share = new FairShare(owner);
+			shares.put(owner, share);
+		}
+		return share;
+	}
+	
+	/**
+	 * Work is owned by the user, or the session if there is no user.  
+	 * Work without a session shares a single owner.
+	 */
+	static Object getOwner(PrioritizedRunnable command) {
+		DQPWorkContext workContext = command.getDqpWorkContext();
+		if (workContext != null) {
+			SessionMetadata session = workContext.getSession();
+			if (session != null) {
+				if (session.getUserName() != null) {
+					return session.getUserName();
+				}
+				if (session.getSessionId() != null) {
+					return session.getSessionId();
+				}
+			}
+		}
+		return ""; //$NON-NLS-1$
+	}
+	
+	/**
+	 * Take the next work from the no wait queue or from the user with the highest 
+	 * priority work, then the fewest running tasks, then the least processing time.
+	 * Idle users whose processing time has decayed away are removed.
+	 * Must be called holding the poolLock.
+	 */
+	private QueuedWork pollQueued() {
+		long now = System.currentTimeMillis();
+		QueuedWork next = noWaitQueue.poll();
+		FairShare best = null;
+		int bestPriority = 0;
+		double bestTime = 0;
+		for (Iterator<FairShare> iter = shares.values().iterator(); iter.hasNext();) {
+			FairShare share = iter.next();
+			double time = share.getProcessingTime(now);
+			if (share.isIdle()) {
+				if (time < 1) {
+					iter.remove();
+				}
+				continue;
+			}
+			if (next != null || share.queue.isEmpty()) {
+				continue;
+			}
+			int priority = share.queue.peek().runnable.getPriority();
+			if (best == null || priority < bestPriority 
+					|| (priority == bestPriority && (share.running < best.running 
+							|| (share.running == best.running && time < bestTime)))) {
+				best = share;
+				bestPriority = priority;
+				bestTime = time;
+			}
+		}
+		if (next == null) {
+			if (best == null) {
+				return null;
+			}
+			next = best.queue.poll();
+		}
+		queuedCount--;
+		return next;
+	}
+	
 	private void checkForTermination() {
 		if (terminated) {
 			throw new RejectedExecutionException();
@@ -369,8 +535,18 @@ public class ThreadReuseExecutor implements TeiidExecutor {
 	public WorkerPoolStatisticsMetadata getStats() {
 		WorkerPoolStatisticsMetadata stats = new WorkerPoolStatisticsMetadata();
 		stats.setName(poolName);
-		stats.setQueued(queue.size());
+		stats.setQueued(queuedCount);
 		stats.setHighestQueued(highestQueueSize);
+		long[] waits = null;
+		synchronized (poolLock) {
+			waits = Arrays.copyOf(queueWaits, (int)Math.min(queueWaitCount, QUEUE_WAIT_SAMPLES));
+		}
+		if (waits.length > 0) {
+			Arrays.sort(waits);
+			stats.setQueueWaitMedian(waits[(waits.length - 1) / 2]);
+			stats.setQueueWait90thPercentile(waits[(int)Math.ceil(waits.length * .9) - 1]);
+			stats.setQueueWait99thPercentile(waits[(int)Math.ceil(waits.length * .99) - 1]);
+		}
 		stats.setActiveThreads(getActiveCount());
 		stats.setMaxThreads(this.maximumPoolSize);
 		stats.setTotalSubmitted(getSubmittedCount());
@@ -393,8 +569,18 @@ public class ThreadReuseExecutor implements TeiidExecutor {
 					t.interrupt();
 				}
 			}
-			List<Runnable> result = new ArrayList<Runnable>(queue);
-			queue.clear();
+			List<Runnable> result = new ArrayList<Runnable>(queuedCount);
+			for (QueuedWork work : noWaitQueue) {
+				result.add(work.runnable);
+			}
+			noWaitQueue.clear();
+			for (FairShare share : shares.values()) {
+				for (QueuedWork work : share.queue) {
+					result.add(work.runnable);
+				}
+				share.queue.clear();
+			}
+			queuedCount = 0;
 			return result;
 		}
 	}
@@ -545,5 +545,11 @@ public class QueryPlugin { // extends Plugin {
     	TEIID31129, 
     	TEIID31130, 
     	TEIID31131,
+    	TEIID31132,
+    	TEIID31133,
+    	TEIID31134,
+    	TEIID31135,
+    	TEIID31136,
+    	TEIID31137,
 	}
 }
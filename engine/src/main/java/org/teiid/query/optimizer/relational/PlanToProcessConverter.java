@@ -131,6 +131,9 @@ public class PlanToProcessConverter {
 				}
 				throw new QueryPlannerException(e);
 			}
+			if (context != null && context.getOptions().getMaxQueryParallelism() > 1) {
+				addExchanges(processNode);
+			}
 	        if(debug) {
 	            analysisRecord.println("\nPROCESS PLAN = \n" + processNode); //$NON-NLS-1$
 	            analysisRecord.println("============================================================================"); //$NON-NLS-1$
@@ -179,6 +182,28 @@ public class PlanToProcessConverter {
 		return convertedNode;
 	}
 
+	/**
+	 * Wrap the eligible union branches and join inputs with {@link ExchangeNode}s 
+	 * so that they may be processed on separate threads.
+	 */
+	private void addExchanges(RelationalNode node) {
+		RelationalNode[] children = node.getChildren();
+		boolean branches = (node instanceof UnionAllNode && children.length > 1 && children[1] != null) 
+				|| (node instanceof JoinNode && !(((JoinNode)node).getJoinStrategy() instanceof NestedTableJoinStrategy));
+		for (int i = 0; i < children.length && children[i] != null; i++) {
+			RelationalNode child = children[i];
+			if (branches && ExchangeNode.isParallelizable(child)) {
+				ExchangeNode exchange = new ExchangeNode(getID());
+				exchange.setElements(child.getElements());
+				children[i] = exchange;
+				exchange.addChild(child);
+				exchange.setParent(node);
+			} else {
+				addExchanges(child);
+			}
+		}
+	}
+
     protected int getID() {
         return idGenerator.nextInt();
     }
@@ -272,6 +297,12 @@ public class PlanToProcessConverter {
                     List rightExpressions = (List) node.getProperty(NodeConstants.Info.RIGHT_EXPRESSIONS);
                     jnode.setJoinExpressions(leftExpressions, rightExpressions);
                     joinCrits = (List) node.getProperty(NodeConstants.Info.NON_EQUI_JOIN_CRITERIA);
+                } else if (stype == JoinStrategyType.HASH) {
+                	jnode.setJoinStrategy(new HashJoinStrategy());
+                    List leftExpressions = (List) node.getProperty(NodeConstants.Info.LEFT_EXPRESSIONS);
+                    List rightExpressions = (List) node.getProperty(NodeConstants.Info.RIGHT_EXPRESSIONS);
+                    jnode.setJoinExpressions(leftExpressions, rightExpressions);
+                    joinCrits = (List) node.getProperty(NodeConstants.Info.NON_EQUI_JOIN_CRITERIA);
                 } else if (stype == JoinStrategyType.NESTED_TABLE) {
                 	NestedTableJoinStrategy ntjStrategy = new NestedTableJoinStrategy();
                 	jnode.setJoinStrategy(ntjStrategy);
@@ -470,6 +501,7 @@ public class PlanToProcessConverter {
 				if (orderBy != null) {
 			        gnode.setOrderBy(orderBy.getOrderByItems());
 				}
+				gnode.setHashGrouping(node.hasBooleanProperty(Info.IS_HASH_GROUPING));
 				processNode = gnode;
 				break;
 
@@ -70,6 +70,16 @@ public class NewCalculateCostUtil {
     private final static float readTime = .001f; //TODO: should come from the connector
     private final static float procNewRequestTime = 1; //TODO: should come from the connector
     
+    /**
+     * The minimum ratio of the probe side to the build side cardinality for a hash join
+     */
+    static final int HASH_JOIN_RATIO = 4;
+    
+    /**
+     * The minimum ratio of the input cardinality to the number of groups for hash aggregation
+     */
+    static final int HASH_AGGREGATION_RATIO = 8;
+    
     enum Stat {
     	NDV,
     	NNV
@@ -1015,6 +1025,49 @@ public class NewCalculateCostUtil {
     	&& usesKey(allElements, metadata);
     }
 
+    /**
+     * Determine if a hash join should be used rather than a sort based join. 
+     * Assumes that neither side will arrive sorted.  The build side must be 
+     * known to be much smaller than the probe side and the probe side must be 
+     * large enough that avoiding its sort is worthwhile.
+     */
+    static boolean isHashJoinPreferred(PlanNode joinNode, QueryMetadataInterface metadata, int processorBatchSize) throws QueryMetadataException, TeiidComponentException {
+    	float leftCost = computeCostForTree(joinNode.getFirstChild(), metadata);
+    	float rightCost = computeCostForTree(joinNode.getLastChild(), metadata);
+    	if (leftCost == UNKNOWN_VALUE || rightCost == UNKNOWN_VALUE) {
+    		return false;
+    	}
+    	float buildCost = rightCost;
+    	float probeCost = leftCost;
+    	if (joinNode.getProperty(NodeConstants.Info.JOIN_TYPE) == JoinType.JOIN_INNER && leftCost < rightCost) {
+    		buildCost = leftCost;
+    		probeCost = rightCost;
+    	}
+    	return probeCost > processorBatchSize && buildCost * HASH_JOIN_RATIO <= probeCost;
+    }
+
+    /**
+     * Determine if hash aggregation should be used rather than sorting the grouping input.
+     * The ndv of the grouping columns is used as the estimate of the number of groups, which should
+     * be much smaller than the input and small enough to be held in memory.   
+     */
+    static boolean isHashAggregationPreferred(PlanNode groupNode, QueryMetadataInterface metadata, int processorBatchSize) throws QueryMetadataException, TeiidComponentException {
+    	List<Expression> groupCols = (List<Expression>)groupNode.getProperty(NodeConstants.Info.GROUP_COLS);
+    	if (groupCols == null || groupCols.isEmpty()) {
+    		return false;
+    	}
+    	PlanNode child = groupNode.getFirstChild();
+    	float childCardinality = computeCostForTree(child, metadata);
+    	if (childCardinality == UNKNOWN_VALUE || childCardinality <= processorBatchSize) {
+    		return false;
+    	}
+    	float groups = getNDVEstimate(child, metadata, childCardinality, groupCols, false);
+    	if (groups == UNKNOWN_VALUE) {
+    		return false;
+    	}
+    	return groups * HASH_AGGREGATION_RATIO <= childCardinality;
+    }
+
 	static boolean isSingleTable(PlanNode planNode) {
 		return NodeEditor.findAllNodes(planNode, NodeConstants.Types.SOURCE, NodeConstants.Types.JOIN | NodeConstants.Types.SET_OP).size() == 1;
 	}
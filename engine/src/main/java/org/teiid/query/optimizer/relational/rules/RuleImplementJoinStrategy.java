@@ -44,6 +44,7 @@ import org.teiid.query.optimizer.relational.plantree.NodeEditor;
 import org.teiid.query.optimizer.relational.plantree.NodeFactory;
 import org.teiid.query.optimizer.relational.plantree.PlanNode;
 import org.teiid.query.optimizer.relational.plantree.NodeConstants.Info;
+import org.teiid.query.processor.relational.HashJoinStrategy;
 import org.teiid.query.processor.relational.RelationalNode;
 import org.teiid.query.processor.relational.JoinNode.JoinStrategyType;
 import org.teiid.query.processor.relational.MergeJoinStrategy.SortOption;
@@ -60,7 +61,7 @@ import org.teiid.query.util.CommandContext;
 
 
 /**
- * Inserts sort nodes for specific join strategies.
+ * Inserts sort nodes for specific join strategies and determines when a hash join can be used instead.
  */
 public class RuleImplementJoinStrategy implements OptimizerRule {
         
@@ -196,6 +197,11 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
 
 			boolean pushedRight = insertSort(joinNode.getLastChild(), rightExpressions, joinNode, metadata, capabilitiesFinder, pushRight);
 			
+			if (!pushedLeft && !pushedRight && useHashJoin(joinNode, metadata, context)) {
+				joinNode.setProperty(NodeConstants.Info.JOIN_STRATEGY, JoinStrategyType.HASH);
+				continue;
+			}
+			
         	if (joinNode.getProperty(NodeConstants.Info.JOIN_TYPE) == JoinType.JOIN_INNER && (!pushedRight || !pushedLeft)) {
         		joinNode.setProperty(NodeConstants.Info.JOIN_STRATEGY, JoinStrategyType.ENHANCED_SORT);
         	}
@@ -204,6 +210,21 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
         return plan;
     }
 
+    /**
+     * A hash join is used in place of sorting when neither side will arrive sorted and one side is much smaller.
+     */
+    private static boolean useHashJoin(PlanNode joinNode, QueryMetadataInterface metadata, CommandContext context) throws QueryMetadataException, TeiidComponentException {
+    	JoinType jt = (JoinType)joinNode.getProperty(NodeConstants.Info.JOIN_TYPE);
+    	return context != null
+    		&& (jt == JoinType.JOIN_INNER || jt == JoinType.JOIN_LEFT_OUTER)
+    		&& joinNode.getProperty(NodeConstants.Info.SORT_LEFT) == SortOption.SORT
+    		&& joinNode.getProperty(NodeConstants.Info.SORT_RIGHT) == SortOption.SORT
+    		&& joinNode.getProperty(NodeConstants.Info.DEPENDENT_VALUE_SOURCE) == null
+    		&& !joinNode.hasBooleanProperty(Info.IS_SEMI_DEP)
+    		&& HashJoinStrategy.isHashable()
+    		&& NewCalculateCostUtil.isHashJoinPreferred(joinNode, metadata, context.getProcessorBatchSize());
+    }
+
     /**
      * Insert a sort node under the merge join node.  If necessary, also insert a project
      * node to handle function evaluation.  
@@ -37,6 +37,7 @@ import org.teiid.query.optimizer.relational.plantree.NodeConstants;
 import org.teiid.query.optimizer.relational.plantree.NodeConstants.Info;
 import org.teiid.query.optimizer.relational.plantree.NodeEditor;
 import org.teiid.query.optimizer.relational.plantree.PlanNode;
+import org.teiid.query.processor.relational.HashJoinStrategy;
 import org.teiid.query.processor.relational.JoinNode.JoinStrategyType;
 import org.teiid.query.processor.relational.MergeJoinStrategy.SortOption;
 import org.teiid.query.sql.lang.OrderBy;
@@ -167,10 +168,18 @@ public class RulePlanSorts implements OptimizerRule {
 			}
 			//TODO: check the join interesting order
 			parentBlocking = true;
+			if (context != null
+					&& node.getProperty(Info.SORT_ORDER) == null 
+					&& !node.hasBooleanProperty(NodeConstants.Info.IS_DUP_REMOVAL)
+					&& HashJoinStrategy.isHashable()
+					&& NewCalculateCostUtil.isHashAggregationPreferred(node, metadata, context.getProcessorBatchSize())) {
+				node.setProperty(Info.IS_HASH_GROUPING, true);
+			}
 			break;
 		case NodeConstants.Types.JOIN:
 			if (node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_LOOP 
-					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE) {
+					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE
+					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.HASH) {
 				break;
 			}
 			/*
@@ -174,6 +174,17 @@ public class QueryParser implements Parser {
         }        
         return SQLParserUtil.getQueryCacheOption(sql);        
 	}	
+	
+	/**
+	 * Get the parallel sort threshold from a leading parallel_sort or parallel_sort(threshold) hint comment.
+	 * @return the threshold, or -1 if there is no hint
+	 */
+	public int parseParallelSortHint(String sql) {
+		if (sql == null || sql.length() == 0) {
+			return -1;
+		}
+		return SQLParserUtil.getParallelSortThreshold(sql);
+	}
 
     /**
      * Takes a SQL string representing an SQL criteria (i.e. just the WHERE
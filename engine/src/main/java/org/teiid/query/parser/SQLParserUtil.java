@@ -290,6 +290,23 @@ public class SQLParserUtil {
     	return null;
     }
 
+	private static Pattern PARALLEL_SORT_HINT = Pattern.compile("(\\s*/\\*[^\\*]*\\*\\/)*\\s*/\\*\\+?\\s*parallel_sort(\\(\\s*(\\d{1,9})\\s*\\))?[^\\*]*\\*\\/.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL); //$NON-NLS-1$
+	
+	/**
+	 * @return the threshold from a leading parallel_sort hint, 0 if the hint has no threshold, or -1 if there is no hint
+	 */
+	static int getParallelSortThreshold(String query) {
+		Matcher match = PARALLEL_SORT_HINT.matcher(query);
+		if (!match.matches()) {
+			return -1;
+		}
+		String threshold = match.group(3);
+		if (threshold != null) {
+			return Integer.parseInt(threshold);
+		}
+		return 0;
+	}
+
     int getOperator(String opString) {
         if (opString.equals("=")) { //$NON-NLS-1$
             return CompareCriteria.EQ;
@@ -43,6 +43,9 @@ import org.teiid.common.buffer.TupleSource;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.dqp.internal.process.multisource.MultiSourceElementReplacementVisitor;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
 import org.teiid.query.QueryPlugin;
 import org.teiid.query.eval.Evaluator;
 import org.teiid.query.metadata.QueryMetadataInterface;
@@ -66,12 +69,16 @@ import org.teiid.query.sql.symbol.ScalarSubquery;
 import org.teiid.query.sql.util.SymbolMap;
 import org.teiid.query.sql.visitor.ValueIteratorProviderCollectorVisitor;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 
 public class AccessNode extends SubqueryAwareRelationalNode {
 
     private static final Object[] NO_PROJECTION = new Object[0];
-	private static final int MAX_CONCURRENT = 10; //TODO: this could be settable via a property
+	/**
+	 * Model property to override {@link Options#DEPENDENT_JOIN_MAX_CONCURRENT} for the model's sources
+	 */
+	public static final String DEPENDENT_JOIN_MAX_CONCURRENT = "dependentJoin.maxConcurrent"; //$NON-NLS-1$
 	// Initialization state
     private Command command;
     private String modelName;
@@ -81,6 +88,12 @@ public class AccessNode extends SubqueryAwareRelationalNode {
 
     // Processing state
 	private ArrayList<TupleSource> tupleSources = new ArrayList<TupleSource>();
+	private ArrayList<Long> sourceStartTimes = new ArrayList<Long>();
+	private int maxConcurrent = -1;
+	//source query latency stats
+	private int sourceQueries;
+	private long totalSourceTime;
+	private long maxSourceTime;
 	private boolean isUpdate = false;
     private boolean returnedRows = false;
     protected Command nextCommand;
@@ -113,6 +126,11 @@ public class AccessNode extends SubqueryAwareRelationalNode {
     public void reset() {
         super.reset();
         this.tupleSources.clear();
+        this.sourceStartTimes.clear();
+        maxConcurrent = -1;
+        sourceQueries = 0;
+        totalSourceTime = 0;
+        maxSourceTime = 0;
 		isUpdate = false;
         returnedRows = false;
         nextCommand = null;
@@ -194,8 +212,54 @@ public class AccessNode extends SubqueryAwareRelationalNode {
 			if(needProcessing) {
 				registerRequest(atomicCommand);
 			}
-			//We hardcode an upper limit on currency because these commands have potentially large in-memory value sets
-        } while (!processCommandsIndividually() && hasNextCommand() && this.tupleSources.size() < Math.min(MAX_CONCURRENT, this.getContext().getUserRequestSourceConcurrency()));
+			//limit the concurrency because these commands have potentially large in-memory value sets
+        } while (!processCommandsIndividually() && hasNextCommand() && canRegisterConcurrently());
+	}
+	
+	/**
+	 * Determine if another source query may be opened while others are being drained.
+	 * Concurrency is bounded by the model/option max and adapts to memory pressure, 
+	 * since each concurrent source holds its own batch.
+	 */
+	private boolean canRegisterConcurrently() {
+		if (maxConcurrent < 0) {
+			maxConcurrent = Math.max(1, Math.min(getMaxConcurrent(), this.getContext().getUserRequestSourceConcurrency()));
+		}
+		if (this.tupleSources.size() >= maxConcurrent) {
+			return false;
+		}
+		if (this.tupleSources.isEmpty()) {
+			return true;
+		}
+		int reserve = getBufferManager().reserveBuffers(schemaSize, BufferReserveMode.NO_WAIT);
+		if (reserve < schemaSize) {
+			getBufferManager().releaseBuffers(reserve);
+			LogManager.logDetail(LogConstants.CTX_DQP, "Limiting node", getID(), "to", this.tupleSources.size(), "concurrent source queries due to memory pressure"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			return false;
+		}
+		reserved += reserve;
+		return true;
+	}
+	
+	private int getMaxConcurrent() {
+		int max = this.getContext().getOptions().getDependentJoinMaxConcurrent();
+		VDBMetaData vdb = getContext().getVdb();
+		if (vdb == null) {
+			return max;
+		}
+		ModelMetaData model = vdb.getModel(getModelName());
+		if (model == null) {
+			return max;
+		}
+		String value = model.getPropertyValue(DEPENDENT_JOIN_MAX_CONCURRENT);
+		if (value != null) {
+			try {
+				max = Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				LogManager.logDetail(LogConstants.CTX_DQP, "Ignoring the invalid", DEPENDENT_JOIN_MAX_CONCURRENT, value, "for model", getModelName()); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		return max;
 	}
 	
 	public boolean isShouldEvaluate() {
@@ -325,7 +389,8 @@ public class AccessNode extends SubqueryAwareRelationalNode {
 	        		
                 	//end of source
                     tupleSource.closeSource();
-                    tupleSources.remove(i--);
+                    tupleSources.remove(i);
+                    recordSourceTime(sourceStartTimes.remove(i--));
             		if (reserved > 0) {
                     	reserved -= schemaSize;
                     	getBufferManager().releaseBuffers(schemaSize);
@@ -410,11 +475,19 @@ public class AccessNode extends SubqueryAwareRelationalNode {
 		param.fetchSize = this.getBatchSize();
 		RowBasedSecurityHelper.checkConstraints(atomicCommand, getEvaluator(Collections.emptyMap()));
 		tupleSources.add(getDataManager().registerRequest(getContext(), atomicCommand, modelName, param));
-		if (tupleSources.size() > 1) {
+		sourceStartTimes.add(System.currentTimeMillis());
+		if (tupleSources.size() > 1 && reserved < (tupleSources.size() - 1) * schemaSize) {
         	reserved += getBufferManager().reserveBuffers(schemaSize, BufferReserveMode.FORCE);
 		}
 	}
 	
+	private void recordSourceTime(long start) {
+		long time = System.currentTimeMillis() - start;
+		sourceQueries++;
+		totalSourceTime += time;
+		maxSourceTime = Math.max(maxSourceTime, time);
+	}
+	
 	protected boolean processCommandsIndividually() {
 		return false;
 	}
@@ -426,6 +499,9 @@ public class AccessNode extends SubqueryAwareRelationalNode {
 	public void closeDirect() {
     	getBufferManager().releaseBuffers(reserved);
     	reserved = 0;
+    	if (sourceQueries > 1 && LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+    		LogManager.logDetail(LogConstants.CTX_DQP, "Node", getID(), "executed", sourceQueries, "source queries with an average latency of", totalSourceTime/sourceQueries, "ms and a max latency of", maxSourceTime, "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    	}
 		super.closeDirect();
         closeSources();            
 	}
@@ -435,6 +511,7 @@ public class AccessNode extends SubqueryAwareRelationalNode {
     		ts.closeSource();			
 		}
     	this.tupleSources.clear();
+    	this.sourceStartTimes.clear();
 	}
 
 	protected void getNodeString(StringBuffer str) {
@@ -479,6 +556,13 @@ public class AccessNode extends SubqueryAwareRelationalNode {
         if (this.info != null) {
         	props.addProperty(PROP_SHARING_ID, String.valueOf(this.info.id));
         }
+        if (this.sourceQueries > 1 && this.getContext() != null && this.getContext().getCollectNodeStatistics()) {
+        	List<String> stats = new ArrayList<String>(3);
+        	stats.add("Source Queries: " + this.sourceQueries); //$NON-NLS-1$
+        	stats.add("Source Query Average Latency: " + this.totalSourceTime/this.sourceQueries); //$NON-NLS-1$
+        	stats.add("Source Query Max Latency: " + this.maxSourceTime); //$NON-NLS-1$
+        	props.addProperty(PROP_SOURCE_QUERY_STATS, stats);
+        }
         return props;
     }
 
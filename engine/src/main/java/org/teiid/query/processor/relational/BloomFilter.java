@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.processor.relational;
+
+/**
+ * A simple bloom filter over hashable values used to locally prune rows 
+ * that cannot match a set of dependent join values.
+ * <br/>
+ * Membership checks may return false positives, but never false negatives.
+ */
+public class BloomFilter {
+	
+	static final int MAX_BITS = 1 << 27;
+	
+	private long[] bits;
+	private int numBits;
+	private int numHashes;
+	private int count;
+	
+	/**
+	 * @param expectedCount the expected number of distinct values
+	 * @param falsePositiveRate the desired false positive rate
+	 */
+	public BloomFilter(int expectedCount, double falsePositiveRate) {
+		expectedCount = Math.max(1, expectedCount);
+		long m = (long)Math.ceil(-expectedCount * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		this.numBits = (int)Math.max(64, Math.min(MAX_BITS, m));
+		this.numHashes = Math.max(1, (int)Math.round((double)numBits / expectedCount * Math.log(2)));
+		this.bits = new long[(numBits + 63) >>> 6];
+	}
+	
+	public void add(Object value) {
+		int hash = value.hashCode();
+		int h1 = mix(hash);
+		int h2 = mix(h1 ^ hash);
+		for (int i = 0; i < numHashes; i++) {
+			int index = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+			bits[index >>> 6] |= 1l << index;
+		}
+		count++;
+	}
+	
+	public boolean mightContain(Object value) {
+		int hash = value.hashCode();
+		int h1 = mix(hash);
+		int h2 = mix(h1 ^ hash);
+		for (int i = 0; i < numHashes; i++) {
+			int index = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+			if ((bits[index >>> 6] & (1l << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the number of values added
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the size of the filter in bits
+	 */
+	public int getNumBits() {
+		return numBits;
+	}
+	
+	/**
+	 * murmur3 finalization mix
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+}
@@ -25,15 +25,18 @@ package org.teiid.query.processor.relational;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.util.Assertion;
+import org.teiid.query.processor.relational.DependentCriteriaProcessor.SetState;
 import org.teiid.query.sql.lang.Command;
 import org.teiid.query.sql.lang.Criteria;
 import org.teiid.query.sql.lang.DependentSetCriteria;
 import org.teiid.query.sql.lang.Query;
 import org.teiid.query.sql.lang.QueryCommand;
+import org.teiid.query.sql.symbol.Expression;
 
 
 /**
@@ -53,6 +56,8 @@ public class DependentAccessNode extends AccessNode {
     private DependentCriteriaProcessor criteriaProcessor;
     private Criteria dependentCrit;
     private boolean sort = true;
+    private int[] bloomFilterIndexes;
+    private BloomFilter[] bloomFilters;
     /**
      * Cached rewritten command to be used as the base for all dependent queries.
      */
@@ -79,6 +84,8 @@ public class DependentAccessNode extends AccessNode {
         dependentCrit = null;
         sort = true;
         rewrittenCommand = null;
+        bloomFilterIndexes = null;
+        bloomFilters = null;
     }
     
     @Override
@@ -162,6 +169,10 @@ public class DependentAccessNode extends AccessNode {
             dependentCrit = criteriaProcessor.prepareCriteria();
         }
         
+        if (this.bloomFilters == null) {
+        	initBloomFilters();
+        }
+        
         query.setCriteria(dependentCrit);
         
         if (sort && query.getOrderBy() != null && criteriaProcessor.hasNextCommand()) {
@@ -191,6 +202,43 @@ public class DependentAccessNode extends AccessNode {
         return result;
     }
 
+    /**
+     * Use the bloom filters of dependent values that are not being pushed as criteria
+     * to prune the rows returned by the source.  Only simple column references in 
+     * the output can be checked.
+     */
+    private void initBloomFilters() {
+    	Map<Expression, Integer> elementMap = createLookupMap(getElements());
+    	List<Integer> indexes = new ArrayList<Integer>(1);
+    	List<BloomFilter> filters = new ArrayList<BloomFilter>(1);
+    	for (SetState state : criteriaProcessor.getBloomFilterStates()) {
+    		Integer index = elementMap.get(state.expression);
+    		if (index != null) {
+    			indexes.add(index);
+    			filters.add(state.bloomFilter);
+    		}
+    	}
+    	this.bloomFilterIndexes = new int[indexes.size()];
+    	for (int i = 0; i < bloomFilterIndexes.length; i++) {
+			bloomFilterIndexes[i] = indexes.get(i);
+		}
+    	this.bloomFilters = filters.toArray(new BloomFilter[filters.size()]);
+    }
+    
+    @Override
+    protected void addBatchRow(List<?> row) {
+    	if (this.bloomFilters != null) {
+    		for (int i = 0; i < this.bloomFilters.length; i++) {
+    			Object value = row.get(this.bloomFilterIndexes[i]);
+    			if (value == null || !this.bloomFilters[i].mightContain(value)) {
+    				//cannot match any of the independent values
+    				return;
+    			}
+    		}
+    	}
+    	super.addBatchRow(row);
+    }
+
     /**
      * @see org.teiid.query.processor.relational.AccessNode#hasNextCommand()
      */
@@ -56,6 +56,10 @@ public class DependentCriteriaProcessor {
         Collection<Object> replacement = new LinkedHashSet<Object>();
 
         Expression valueExpression;
+        
+        Expression expression;
+        
+        BloomFilter bloomFilter;
 
         ValueIterator valueIterator;
 
@@ -72,6 +76,8 @@ public class DependentCriteriaProcessor {
     	}
         
         long valueCount = 1;
+        
+        int distinctCount = -1;
 
     }
 
@@ -113,56 +119,127 @@ public class DependentCriteriaProcessor {
                 }
             	for (SetState setState : dependentSetStates) {
                     setState.valueIterator = dvs.getValueIterator(setState.valueExpression);
-                    int distinctCount = dvs.getTupleBuffer().getRowCount();
-                    if (setState.maxNdv <= 0 || setState.maxNdv >= distinctCount) {
+                    setState.distinctCount = -1;
+                    if (setState.maxNdv <= 0 || setState.maxNdv >= dvs.getTupleBuffer().getRowCount()) {
                     	continue;
                     }
-                    if (dvs.getTupleBuffer().getSchema().size() > 1 && dependentSetStates.size() > 1) {
-	                    distinctCount = 0;
-	                	ValueIterator vi = dvs.getValueIterator(setState.valueExpression);
-                    	if (setState.valueExpression.equals(dependentSetStates.get(0).valueExpression)) {
-        	            	Object last = null;
-	                    	while (vi.hasNext()) {
-    	                		Object next = vi.next();
-        	            		if (next != null && (last == null || Constant.COMPARATOR.compare(next, last) != 0)) {
-            	        			distinctCount++;
-                	    		}
-                    			last = next;
-                    		}
-                    	} else {
-                    		//secondary attributes are not in sorted order, so we use an approximate count
-                    		Set<Object> set = null;
-                    		int maxSize = Math.min(10000, dvs.getTupleBuffer().getRowCount());
-                    		List<Object> buffer = Arrays.asList(new Object[maxSize]);
-                    		if (!DataTypeManager.isHashable(setState.valueExpression.getType())) {
-                        		set = new TreeSet<Object>(Constant.COMPARATOR);
-                    		} else {
-                    			set = new HashSet<Object>();
-                    		}
-                    		int i = 0;
-	                    	while (vi.hasNext()) {
-    	                		Object next = vi.next();
-    	                		if (next == null) {
-    	                			continue;
-    	                		}
-        	            		if (set.add(next)) {
-            	        			distinctCount++;
-                	    		}
-        	            		Object old = buffer.set(i++%maxSize, next);
-        	            		if (set.size() > maxSize) {
-        	            			set.remove(old);
-        	            		}
-                    		}
-                    	}
-                	}
+                    int distinctCount = getDistinctCount(setState);
                 	if (!setState.overMax && distinctCount > setState.maxNdv) {
                 		LogManager.logWarning(LogConstants.CTX_DQP, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30011, valueSource, setState.valueExpression, setState.maxNdv));
                 		setState.overMax = true;
                 	}
     			}
+            	checkMaxQueries();
+            	for (SetState setState : dependentSetStates) {
+            		if (setState.overMax) {
+            			buildBloomFilter(setState);
+            		}
+            	}
             }
         }
         
+        /**
+         * Get the number of distinct non-null values for the set state.  The count for 
+         * secondary attributes of a multi-attribute source is approximate.
+         */
+        private int getDistinctCount(SetState setState) throws TeiidComponentException {
+        	if (setState.distinctCount >= 0) {
+        		return setState.distinctCount;
+        	}
+        	int distinctCount = dvs.getTupleBuffer().getRowCount();
+        	if (dvs.getTupleBuffer().getSchema().size() > 1 && dependentSetStates.size() > 1) {
+        		distinctCount = 0;
+        		ValueIterator vi = dvs.getValueIterator(setState.valueExpression);
+        		if (setState.valueExpression.equals(dependentSetStates.get(0).valueExpression)) {
+        			Object last = null;
+        			while (vi.hasNext()) {
+        				Object next = vi.next();
+        				if (next != null && (last == null || Constant.COMPARATOR.compare(next, last) != 0)) {
+        					distinctCount++;
+        				}
+        				last = next;
+        			}
+        		} else {
+        			//secondary attributes are not in sorted order, so we use an approximate count
+        			Set<Object> set = null;
+        			int maxSize = Math.min(10000, dvs.getTupleBuffer().getRowCount());
+        			List<Object> buffer = Arrays.asList(new Object[maxSize]);
+        			if (!isHashable(setState.valueExpression.getType())) {
+        				set = new TreeSet<Object>(Constant.COMPARATOR);
+        			} else {
+        				set = new HashSet<Object>();
+        			}
+        			int i = 0;
+        			while (vi.hasNext()) {
+        				Object next = vi.next();
+        				if (next == null) {
+        					continue;
+        				}
+        				if (set.add(next)) {
+        					distinctCount++;
+        				}
+        				Object old = buffer.set(i++%maxSize, next);
+        				if (set.size() > maxSize) {
+        					set.remove(old);
+        				}
+        			}
+        		}
+        	}
+        	setState.distinctCount = distinctCount;
+        	return distinctCount;
+        }
+        
+        /**
+         * Fetch without the value criteria if the values would be split into more 
+         * than the max number of dependent queries.
+         */
+        private void checkMaxQueries() throws TeiidComponentException {
+        	int maxQueries = dependentNode.getContext().getOptions().getDependentJoinMaxQueries();
+        	if (maxQueries < 0 || maxSetSize <= 0 || !canOmitCriteria()) {
+        		return;
+        	}
+        	long predicates = 0;
+        	for (SetState setState : dependentSetStates) {
+        		if (setState.overMax) {
+        			return;
+        		}
+        		long values = (long)getDistinctCount(setState) * setState.valueCount;
+        		predicates += values/maxSetSize + (values%maxSetSize!=0?1:0);
+        	}
+        	int predicatesPerQuery = Math.max(1, Math.max(maxPredicates, setStates.size()));
+        	long queries = predicates/predicatesPerQuery + (predicates%predicatesPerQuery!=0?1:0);
+        	if (queries <= maxQueries) {
+        		return;
+        	}
+        	LogManager.logDetail(LogConstants.CTX_DQP, "Dependent values from", valueSource, "would require", queries, "queries, fetching without the dependent criteria instead"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        	for (SetState setState : dependentSetStates) {
+        		setState.overMax = true;
+        	}
+        }
+        
+        /**
+         * Build a bloom filter of the independent values so that the rows fetched 
+         * without the dependent criteria can be pruned locally.
+         */
+        private void buildBloomFilter(SetState setState) throws TeiidComponentException {
+        	if (!dependentNode.getContext().getOptions().isDependentJoinBloomFilter() 
+        			|| setState.valueCount > 1 
+        			|| setState.expression == null
+        			|| setState.expression.getType() != setState.valueExpression.getType()
+        			|| !isHashable(setState.valueExpression.getType())) {
+        		return;
+        	}
+        	BloomFilter bloomFilter = new BloomFilter(getDistinctCount(setState), BLOOM_FILTER_FALSE_POSITIVE_RATE);
+        	ValueIterator vi = dvs.getValueIterator(setState.valueExpression);
+        	while (vi.hasNext()) {
+        		Object next = vi.next();
+        		if (next != null) {
+        			bloomFilter.add(next);
+        		}
+        	}
+        	setState.bloomFilter = bloomFilter;
+        }
+        
         public void close() {
             if (dvs != null) {
             	sortUtility = null;
@@ -180,7 +257,15 @@ public class DependentCriteriaProcessor {
     }
     
     private static final int SORT = 2;
+    private static final double BLOOM_FILTER_FALSE_POSITIVE_RATE = .01;
     private static final int SET_PROCESSING = 3;
+    
+    /**
+     * Hashing the values is only valid for hashable types with the default comparison semantics
+     */
+    static boolean isHashable(Class<?> type) {
+    	return HashJoinStrategy.isHashable() && DataTypeManager.isHashable(type);
+    }
 
     //constructor state
     private int maxSetSize;
@@ -235,6 +320,7 @@ public class DependentCriteriaProcessor {
                 SetState state = new SetState();
                 setStates.put(i, state);
                 state.valueExpression = dsc.getValueExpression();
+                state.expression = dsc.getExpression();
                 if (dsc.hasMultipleAttributes()) {
                 	state.valueCount = ((Array)dsc.getExpression()).getExpressions().size();
                 }
@@ -421,6 +507,27 @@ public class DependentCriteriaProcessor {
         return hasNextCommand;
     }
     
+    /**
+     * @return true if the dependent criteria may be replaced by fetching all rows
+     */
+    protected boolean canOmitCriteria() {
+    	return true;
+    }
+    
+    /**
+     * @return the states fetched without their dependent criteria that have a bloom filter 
+     * of the independent values.  Only valid after the first call to {@link #prepareCriteria()}
+     */
+    List<SetState> getBloomFilterStates() {
+    	List<SetState> result = new ArrayList<SetState>(1);
+    	for (SetState state : setStates.values()) {
+    		if (state.overMax && state.bloomFilter != null) {
+    			result.add(state);
+    		}
+    	}
+    	return result;
+    }
+    
     public Criteria replaceDependentCriteria(AbstractSetCriteria crit, SetState state) throws TeiidComponentException {
     	if (state.overMax) {
             DependentValueSource originalVs = (DependentValueSource)dependentNode.getContext().getVariableContext().getGlobalValue(((DependentSetCriteria)crit).getContextSymbol());
@@ -57,6 +57,12 @@ public class DependentProcedureCriteriaProcessor extends DependentCriteriaProces
         this.inputReferences = references;
     }
     
+    @Override
+    protected boolean canOmitCriteria() {
+    	//the values are procedure inputs
+    	return false;
+    }
+    
     protected boolean prepareNextCommand(VariableContext context) throws BlockedException,
                                           TeiidComponentException, TeiidProcessingException {
 
@@ -0,0 +1,376 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.TeiidRuntimeException;
+import org.teiid.dqp.service.TransactionContext;
+import org.teiid.dqp.service.TransactionContext.Scope;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.query.processor.QueryProcessor;
+import org.teiid.query.sql.visitor.ValueIteratorProviderCollectorVisitor;
+import org.teiid.query.util.CommandContext;
+
+/**
+ * Processes its child subtree on a separate worker thread.
+ *
+ * The child batches are passed to the parent through a small bounded queue.  The producer
+ * is only resubmitted by the processing thread, so that a blocked producer does not hold
+ * a worker thread.  If a thread or the queue memory cannot be reserved, the node simply
+ * passes through the child batches.
+ * <br/>
+ * The child subtree uses its own {@link CommandContext} and buffer reservation scope, since 
+ * it may be opened, processed, and closed on different threads.
+ */
+public class ExchangeNode extends RelationalNode {
+
+	private static final int MAX_QUEUED_BATCHES = 2;
+
+	private enum ProducerState {IDLE, QUEUED, RUNNING, DONE}
+
+	private boolean parallel;
+	private int reserved;
+	private LinkedList<TupleBatch> queue = new LinkedList<TupleBatch>();
+	private ProducerState state = ProducerState.IDLE;
+	private boolean rerun;
+	private boolean closing;
+	private boolean closeHandedOff;
+	private Throwable failure;
+	private CommandContext producerContext;
+	private AtomicInteger reservations = new AtomicInteger();
+
+	private Runnable producer = new Runnable() {
+		@Override
+		public void run() {
+			produce();
+		}
+	};
+
+	public ExchangeNode(int nodeID) {
+		super(nodeID);
+	}
+
+	@Override
+	public void reset() {
+		synchronized (this) {
+			//a cancelled producer may still be closing the subtree
+			while (state == ProducerState.RUNNING) {
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		super.reset();
+		this.parallel = false;
+		this.reserved = 0;
+		this.queue.clear();
+		this.state = ProducerState.IDLE;
+		this.rerun = false;
+		this.closing = false;
+		this.closeHandedOff = false;
+		this.failure = null;
+		this.producerContext = null;
+		this.reservations = new AtomicInteger();
+	}
+
+	@Override
+	public void open() throws TeiidComponentException,
+			TeiidProcessingException {
+		CommandContext context = getContext();
+		if (!reserveParallel(context)) {
+			super.open();
+			return;
+		}
+		this.parallel = true;
+		this.producerContext = context.clone();
+		setContext(getChildren()[0], this.producerContext);
+		AtomicInteger previous = getBufferManager().setReservationScope(this.reservations);
+		try {
+			super.open();
+		} finally {
+			getBufferManager().setReservationScope(previous);
+		}
+		this.state = ProducerState.QUEUED;
+		context.getExecutor().execute(producer);
+	}
+
+	private boolean reserveParallel(CommandContext context) {
+		if (context.getMoreWorkCallback() == null || requiresThreadAffinity(context) || !context.reserveParallelThread()) {
+			return false;
+		}
+		int schemaSize = getBufferManager().getSchemaSize(getOutputElements());
+		this.reserved = getBufferManager().reserveBuffers(MAX_QUEUED_BATCHES * schemaSize, BufferReserveMode.NO_WAIT);
+		if (this.reserved < MAX_QUEUED_BATCHES * schemaSize) {
+			getBufferManager().releaseBuffers(this.reserved);
+			this.reserved = 0;
+			context.releaseParallelThread();
+			LogManager.logDetail(LogConstants.CTX_DQP, "Not enough memory to process node", getID(), "in parallel"); //$NON-NLS-1$ //$NON-NLS-2$
+			return false;
+		}
+		return true;
+	}
+
+	private static void setContext(RelationalNode node, CommandContext context) {
+		node.setContext(context);
+		for (RelationalNode child : node.getChildren()) {
+			if (child == null) {
+				break;
+			}
+			setContext(child, context);
+		}
+	}
+
+	private boolean requiresThreadAffinity(CommandContext context) {
+		TransactionContext tc = context.getTransactionContext();
+		return tc != null && tc.getTransactionType() != Scope.NONE;
+	}
+
+	@Override
+	protected TupleBatch nextBatchDirect() throws BlockedException,
+			TeiidComponentException, TeiidProcessingException {
+		if (!parallel) {
+			return getChildren()[0].nextBatch();
+		}
+		TupleBatch batch = null;
+		boolean resubmit = false;
+		synchronized (this) {
+			batch = queue.poll();
+			if (batch == null && failure != null) {
+				rethrow(failure);
+			}
+			if (state == ProducerState.IDLE) {
+				state = ProducerState.QUEUED;
+				resubmit = true;
+			} else if (state == ProducerState.RUNNING) {
+				rerun = true;
+			}
+		}
+		if (resubmit) {
+			getContext().getExecutor().execute(producer);
+		}
+		if (batch == null) {
+			throw BlockedException.block(getContext().getRequestId(), "Blocking on exchange", getID()); //$NON-NLS-1$
+		}
+		return batch;
+	}
+
+	private void rethrow(Throwable t) throws TeiidComponentException,
+			TeiidProcessingException {
+		if (t instanceof TeiidComponentException) {
+			throw (TeiidComponentException)t;
+		}
+		if (t instanceof TeiidProcessingException) {
+			throw (TeiidProcessingException)t;
+		}
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException)t;
+		}
+		if (t instanceof Error) {
+			throw (Error)t;
+		}
+		throw new TeiidRuntimeException(t);
+	}
+
+	/**
+	 * Called on a worker thread to fill the queue
+	 */
+	void produce() {
+		synchronized (this) {
+			if (state != ProducerState.QUEUED) {
+				return;
+			}
+			state = ProducerState.RUNNING;
+		}
+		AtomicInteger previous = getBufferManager().setReservationScope(this.reservations);
+		boolean wake = false;
+		try {
+			while (true) {
+				synchronized (this) {
+					if (closing || queue.size() >= MAX_QUEUED_BATCHES) {
+						state = ProducerState.IDLE;
+						return;
+					}
+					rerun = false;
+				}
+				TupleBatch batch = null;
+				try {
+					batch = getChildren()[0].nextBatch();
+				} catch (BlockedException e) {
+					synchronized (this) {
+						if (rerun && !closing) {
+							continue;
+						}
+						//the source completion will wake the processing thread, which will resubmit
+						state = ProducerState.IDLE;
+						return;
+					}
+				} catch (QueryProcessor.ExpiredTimeSliceException e) {
+					//let the processing thread start a new time slice
+					synchronized (this) {
+						state = ProducerState.IDLE;
+					}
+					wake = true;
+					return;
+				}
+				synchronized (this) {
+					queue.add(batch);
+					wake = true;
+					if (batch.getTerminationFlag()) {
+						state = ProducerState.DONE;
+						return;
+					}
+				}
+				wakeProcessor();
+				wake = false;
+			}
+		} catch (Throwable t) {
+			synchronized (this) {
+				failure = t;
+				state = ProducerState.DONE;
+			}
+			wake = true;
+		} finally {
+			boolean close = false;
+			synchronized (this) {
+				if (closeHandedOff) {
+					close = true;
+					state = ProducerState.DONE;
+				}
+				this.notifyAll();
+			}
+			if (close) {
+				closeSubtree();
+				getContext().releaseParallelThread();
+			} else if (wake) {
+				wakeProcessor();
+			}
+			getBufferManager().setReservationScope(previous);
+		}
+	}
+
+	private void wakeProcessor() {
+		Runnable r = getContext().getMoreWorkCallback();
+		if (r != null) {
+			r.run();
+		}
+	}
+
+	@Override
+	public void closeDirect() {
+		if (!parallel) {
+			return;
+		}
+		synchronized (this) {
+			closing = true;
+			queue.clear();
+			//rather than waiting, a running producer closes the subtree once its current batch completes
+			closeHandedOff = state == ProducerState.RUNNING;
+			if (!closeHandedOff) {
+				state = ProducerState.DONE;
+			}
+		}
+		getBufferManager().releaseBuffers(reserved);
+		reserved = 0;
+		if (!closeHandedOff) {
+			getContext().releaseParallelThread();
+		}
+		parallel = false;
+	}
+	
+	@Override
+	protected void closeChildren() throws TeiidComponentException {
+		if (closeHandedOff) {
+			return;
+		}
+		if (producerContext == null) {
+			super.closeChildren();
+			return;
+		}
+		AtomicInteger previous = getBufferManager().setReservationScope(this.reservations);
+		try {
+			super.closeChildren();
+		} finally {
+			getBufferManager().setReservationScope(previous);
+		}
+	}
+	
+	/**
+	 * Called by a cancelled producer, which already has the reservation scope
+	 */
+	private void closeSubtree() {
+		try {
+			super.closeChildren();
+		} catch (TeiidComponentException e) {
+			LogManager.logDetail(LogConstants.CTX_DQP, e, "Error closing the subtree of node", getID()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Determine if the given subtree may be processed by an {@link ExchangeNode}.
+	 * Only simple non-shared access, project, select, limit, and union subtrees
+	 * without subqueries are eligible.
+	 */
+	public static boolean isParallelizable(RelationalNode node) {
+		Class<?> clazz = node.getClass();
+		if (clazz == AccessNode.class) {
+			if (((AccessNode)node).info != null) {
+				return false;
+			}
+		} else if (clazz != ProjectNode.class && clazz != SelectNode.class
+				&& clazz != LimitNode.class && clazz != NullNode.class && clazz != UnionAllNode.class) {
+			return false;
+		}
+		if (node instanceof SubqueryAwareRelationalNode
+				&& !ValueIteratorProviderCollectorVisitor.getValueIteratorProviders(((SubqueryAwareRelationalNode)node).getObjects()).isEmpty()) {
+			return false;
+		}
+		for (RelationalNode child : node.getChildren()) {
+			if (child == null) {
+				break;
+			}
+			if (!isParallelizable(child)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Object clone() {
+		ExchangeNode clonedNode = new ExchangeNode(getID());
+		copyTo(clonedNode);
+		return clonedNode;
+	}
+
+}
@@ -39,9 +39,14 @@ import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.TupleBatch;
 import org.teiid.common.buffer.TupleBuffer;
 import org.teiid.common.buffer.TupleSource;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.language.SortSpecification.NullOrdering;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
 import org.teiid.query.eval.Evaluator;
 import org.teiid.query.function.aggregate.*;
 import org.teiid.query.processor.BatchCollector;
@@ -87,11 +92,85 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 		    return exprTuple;
 		}
 	}
+    
+    /**
+     * An open addressed (linear probing) table of group keys to the aggregate 
+     * state for that group.
+     */
+    static class GroupTable {
+    	private List<?>[] keys;
+    	private AggregateFunction[][] values;
+    	private int size;
+    	
+    	GroupTable(int initialCapacity) {
+    		int capacity = Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1;
+    		this.keys = new List<?>[capacity];
+    		this.values = new AggregateFunction[capacity][];
+    	}
+    	
+    	private int slot(List<?> key, List<?>[] table) {
+    		int h = key.hashCode();
+    		h ^= (h >>> 20) ^ (h >>> 12);
+    		h ^= (h >>> 7) ^ (h >>> 4);
+    		int mask = table.length - 1;
+    		int i = h & mask;
+    		while (table[i] != null && !table[i].equals(key)) {
+    			i = (i + 1) & mask;
+    		}
+    		return i;
+    	}
+    	
+    	AggregateFunction[] get(List<?> key) {
+    		return values[slot(key, keys)];
+    	}
+    	
+    	void put(List<?> key, AggregateFunction[] value) {
+    		if ((size + 1) << 1 > keys.length) {
+    			resize();
+    		}
+    		int i = slot(key, keys);
+    		if (keys[i] == null) {
+    			size++;
+    		}
+    		keys[i] = key;
+    		values[i] = value;
+    	}
+    	
+    	private void resize() {
+    		List<?>[] oldKeys = keys;
+    		AggregateFunction[][] oldValues = values;
+    		keys = new List<?>[oldKeys.length << 1];
+    		values = new AggregateFunction[keys.length][];
+    		for (int j = 0; j < oldKeys.length; j++) {
+    			if (oldKeys[j] != null) {
+    				int i = slot(oldKeys[j], keys);
+    				keys[i] = oldKeys[j];
+    				values[i] = oldValues[j];
+    			}
+    		}
+    	}
+    	
+    	int size() {
+    		return size;
+    	}
+    	
+    	int capacity() {
+    		return keys.length;
+    	}
+    	
+    	/**
+    	 * @return the aggregate state at the given slot, or null if the slot is empty
+    	 */
+    	AggregateFunction[] valueAt(int i) {
+    		return values[i];
+    	}
+    }
 
 	// Grouping columns set by the planner 
 	private List<OrderByItem> orderBy;
 	private boolean removeDuplicates;
 	private SymbolMap outputMapping;
+	private boolean hashGrouping;
     
     // Collection phase
     private int phase = COLLECTION;
@@ -104,14 +183,29 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     private TupleBuffer sortBuffer;
     private TupleSource groupTupleSource;
     
+    // Hash phase
+    private GroupTable groupTable;
+    private TupleSource hashTupleSource;
+    private TupleBuffer overflowBuffer;
+    private int reserved;
+    private boolean hashFull;
+    private int hashOutputIndex = -1;
+    
     // Group phase
     private AggregateFunction[] functions;
     private List<?> lastRow;
 	private List<?> currentGroupTuple;
 
+    /**
+     * Object header and fields of a typical {@link AggregateFunction}
+     */
+    private static final int AGGREGATE_FUNCTION_SIZE = 64;
+
     private static final int COLLECTION = 1;
     private static final int SORT = 2;
     private static final int GROUP = 3;
+    private static final int HASH = 4;
+    private static final int DONE = 5;
 	private int[] indexes;
 
 	public GroupingNode(int nodeID) {
@@ -129,6 +223,12 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         lastRow = null;
         currentGroupTuple = null;
         
+        groupTable = null;
+        hashTupleSource = null;
+        overflowBuffer = null;
+        hashFull = false;
+        hashOutputIndex = -1;
+        
         if (this.functions != null) {
 	    	for (AggregateFunction function : this.functions) {
 				function.reset();
@@ -147,6 +247,19 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     public void setOutputMapping(SymbolMap outputMapping) {
 		this.outputMapping = outputMapping;
 	}
+    
+    /**
+     * Use hash based rather than sort based grouping.  Should only be set
+     * if the output does not need to be ordered by the grouping columns.
+     * @param hashGrouping
+     */
+    public void setHashGrouping(boolean hashGrouping) {
+		this.hashGrouping = hashGrouping;
+	}
+    
+    public boolean isHashGrouping() {
+		return hashGrouping;
+	}
 
 	@Override
 	public void initialize(CommandContext context, BufferManager bufferManager,
@@ -176,7 +289,11 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         }
         
         // Construct aggregate function state accumulators
-        functions = new AggregateFunction[getElements().size()];
+        functions = createFunctions();
+    }
+
+	private AggregateFunction[] createFunctions() {
+		AggregateFunction[] result = new AggregateFunction[getElements().size()];
         for(int i=0; i<getElements().size(); i++) {
             Expression symbol = getElements().get(i);
             if (this.outputMapping != null) {
@@ -185,14 +302,15 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
             Class<?> outputType = symbol.getType();
             if(symbol instanceof AggregateSymbol) {
             	AggregateSymbol aggSymbol = (AggregateSymbol) symbol;
-            	functions[i] = initAccumulator(aggSymbol, this, this.collectedExpressions);
+            	result[i] = initAccumulator(aggSymbol, this, this.collectedExpressions);
             } else {
-                functions[i] = new ConstantFunction();
-                functions[i].setArgIndexes(new int[] {this.collectedExpressions.get(symbol)});
-                functions[i].initialize(outputType, new Class<?>[]{symbol.getType()});
+                result[i] = new ConstantFunction();
+                result[i].setArgIndexes(new int[] {this.collectedExpressions.get(symbol)});
+                result[i].initialize(outputType, new Class<?>[]{symbol.getType()});
             }
         }
-    }
+        return result;
+	}
 	
 	static Integer getIndex(Expression ex, LinkedHashMap<Expression, Integer> expressionIndexes) {
 		Integer index = expressionIndexes.get(ex);
@@ -308,6 +426,14 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         if(this.phase == COLLECTION) {
             collectionPhase();
         }
+        
+        // Aggregate into the group table, then output the groups
+        if(this.phase == HASH) {
+        	TupleBatch batch = hashPhase();
+        	if (batch != null) {
+        		return batch;
+        	}
+        }
 
         // If necessary, sort to determine groups (if no group cols, no need to sort)
         if(this.phase == SORT) {
@@ -359,11 +485,142 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         		sortIndexes[i] = i; 
         	}
         	this.indexes = Arrays.copyOf(sortIndexes, orderBy.size());
+        	if (useHashGrouping()) {
+        		this.hashTupleSource = getCollectionTupleSource();
+        		this.groupTable = new GroupTable(getBatchSize());
+        		this.phase = HASH;
+        		return;
+        	}
             this.sortUtility = new SortUtility(getCollectionTupleSource(), removeDuplicates?Mode.DUP_REMOVE_SORT:Mode.SORT, getBufferManager(),
                     getConnectionID(), new ArrayList<Expression>(collectedExpressions.keySet()), sortTypes, nullOrdering, sortIndexes);
             this.phase = SORT;
         }
     }
+    
+    /**
+     * Hash grouping requires independent aggregate state per group, which 
+     * is not supported for the sorting (distinct or ordered) aggregates.
+     */
+    private boolean useHashGrouping() {
+    	if (!this.hashGrouping || this.removeDuplicates) {
+    		return false;
+    	}
+    	for (AggregateFunction function : this.functions) {
+			if (function instanceof SortingFilter) {
+				return false;
+			}
+		}
+    	return true;
+    }
+    
+    /**
+     * Accumulate each input row into the state for its group.  Once the memory reserved from the 
+     * {@link BufferManager} is exhausted, rows for groups not already in the table are 
+     * saved to an overflow buffer, which is then grouped with a sort after the table is output.  
+     * 
+     * @return a full batch or null if the hash phase is complete
+     */
+    private TupleBatch hashPhase() throws BlockedException, TeiidComponentException, TeiidProcessingException {
+    	if (this.hashOutputIndex == -1) {
+    		BufferManager bm = getBufferManager();
+    		//the output row estimate covers the key and results, add the aggregate state of a batch of groups
+    		int schemaSize = bm.getSchemaSize(getOutputElements()) + getBatchSize() * getGroupStateSize();
+    		int maxGroups = this.groupTable.size();
+    		while (true) {
+    			if (currentGroupTuple == null) {
+	    			currentGroupTuple = this.hashTupleSource.nextTuple();
+	    			if (currentGroupTuple == null) {
+	    				break;
+	    			}
+    			}
+    			List<?> key = RelationalNodeUtil.getKey(currentGroupTuple, indexes, true);
+    			AggregateFunction[] groupFunctions = this.groupTable.get(key);
+    			if (groupFunctions == null) {
+    				if (!hashFull && this.groupTable.size() >= maxGroups) {
+    					//reserve in the same manner as the sort utility
+    					int reserve = bm.reserveBuffers(schemaSize, (reserved + schemaSize <= bm.getMaxProcessingSize())?BufferReserveMode.FORCE:BufferReserveMode.NO_WAIT);
+    					reserved += reserve;
+    					if (reserve != schemaSize) {
+    						hashFull = true;
+    					} else {
+    						maxGroups += getBatchSize();
+    					}
+    				}
+    				if (hashFull) {
+    					if (this.overflowBuffer == null) {
+    						this.overflowBuffer = getBufferManager().createTupleBuffer(new ArrayList<Expression>(collectedExpressions.keySet()), getConnectionID(), TupleSourceType.PROCESSOR);
+    						this.overflowBuffer.setForwardOnly(true);
+    					}
+    					this.overflowBuffer.addTuple(currentGroupTuple);
+    					currentGroupTuple = null;
+    					continue;
+    				}
+    				groupFunctions = createFunctions();
+    				this.groupTable.put(key, groupFunctions);
+    			}
+    			for (AggregateFunction function : groupFunctions) {
+    				function.addInput(currentGroupTuple, getContext());
+    			}
+    			currentGroupTuple = null;
+    		}
+    		this.hashTupleSource.closeSource();
+    		this.hashTupleSource = null;
+    		this.hashOutputIndex = 0;
+    	}
+    	for (; this.hashOutputIndex < this.groupTable.capacity(); this.hashOutputIndex++) {
+    		AggregateFunction[] groupFunctions = this.groupTable.valueAt(this.hashOutputIndex);
+    		if (groupFunctions == null) {
+    			continue;
+    		}
+    		List<Object> row = new ArrayList<Object>(groupFunctions.length);
+            for(int i=0; i<groupFunctions.length; i++) {
+                row.add( groupFunctions[i].getResult(getContext()) );
+            }
+            addBatchRow(row);
+            if (this.isBatchFull()) {
+            	this.hashOutputIndex++;
+            	return pullBatch();
+            }
+    	}
+    	this.groupTable = null;
+    	releaseReserved();
+    	if (this.overflowBuffer == null) {
+    		this.phase = DONE;
+    		return null;
+    	}
+    	if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+    		LogManager.logDetail(LogConstants.CTX_DQP, "Hash grouping exceeded the reserved memory, sorting", this.overflowBuffer.getRowCount(), "overflow rows"); //$NON-NLS-1$ //$NON-NLS-2$
+    	}
+    	this.overflowBuffer.close();
+    	List<Boolean> sortTypes = new ArrayList<Boolean>(orderBy.size());
+    	List<NullOrdering> nullOrdering = new ArrayList<NullOrdering>(orderBy.size());
+    	for (OrderByItem item : this.orderBy) {
+    		nullOrdering.add(item.getNullOrdering());
+			sortTypes.add(item.isAscending());
+		}
+    	this.sortUtility = new SortUtility(this.overflowBuffer.createIndexedTupleSource(true), Mode.SORT, getBufferManager(),
+                getConnectionID(), new ArrayList<Expression>(collectedExpressions.keySet()), sortTypes, nullOrdering, indexes);
+    	this.overflowBuffer = null;
+    	this.phase = SORT;
+    	return null;
+    }
+    
+    /**
+     * @return an estimate of the heap used by the {@link AggregateFunction}s of a single group
+     * and the group table slots that reference them
+     */
+    private int getGroupStateSize() {
+    	int count = getElements().size();
+    	//assume 64-bit - array header, a reference per function, and slots at half load
+    	return 16 + 8*count + 32 + count * AGGREGATE_FUNCTION_SIZE;
+    }
+    
+	private void releaseReserved() {
+		if (this.reserved > 0) {
+			getBufferManager().releaseBuffers(this.reserved);
+			this.reserved = 0;
+		}
+	}
 
     private void sortPhase() throws BlockedException, TeiidComponentException, TeiidProcessingException {
         this.sortBuffer = this.sortUtility.sort();
@@ -442,6 +699,16 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     		this.sortBuffer.remove();
     		this.sortBuffer = null;
     	}
+    	if (this.overflowBuffer != null) {
+    		this.overflowBuffer.remove();
+    		this.overflowBuffer = null;
+    	}
+    	if (this.hashTupleSource != null) {
+    		this.hashTupleSource.closeSource();
+    		this.hashTupleSource = null;
+    	}
+    	this.groupTable = null;
+    	releaseReserved();
     }
 
 	protected void getNodeString(StringBuffer str) {
@@ -458,6 +725,7 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 		clonedNode.removeDuplicates = removeDuplicates;
 		clonedNode.outputMapping = outputMapping;
 		clonedNode.orderBy = orderBy;
+		clonedNode.hashGrouping = hashGrouping;
 		return clonedNode;
 	}
 
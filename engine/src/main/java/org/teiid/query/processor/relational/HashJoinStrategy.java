@@ -0,0 +1,482 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
+import org.teiid.query.optimizer.relational.rules.NewCalculateCostUtil;
+import org.teiid.query.processor.relational.SourceState.ImplicitBuffer;
+import org.teiid.query.sql.lang.JoinType;
+import org.teiid.query.sql.symbol.Constant;
+
+
+/**
+ * An equi-join that builds an in memory hash table over one side and streams the other side as the probe.
+ *
+ * The build side is read directly into the table.  If the table would exceed the max processing size, then 
+ * both sides are instead partitioned by the join key hash into {@link TupleBuffer}s, which are managed (and spilled to disk as needed)
+ * by the {@link BufferManager}.  Each partition pair is then joined with an in memory table (grace hash join).  
+ * A partition that is still too large, such as from skewed keys, is recursively repartitioned with a different hash.
+ *
+ * Only for use with Inner and Left Outer joins.  For a Left Outer join the right side is always the build side.
+ *
+ * Keys are matched with equals/hashCode semantics, so the planner should only choose this strategy
+ * when those match the comparison semantics - see {@link #isHashable()}
+ */
+public class HashJoinStrategy extends JoinStrategy {
+
+	/**
+	 * Account for the additional space of the hash table entries and key lists
+	 */
+	private static final float TABLE_OVERHEAD = 1.5f;
+
+	static final int MAX_PARTITIONS = 64;
+	
+	/**
+	 * Used when the build side cardinality is not known 
+	 */
+	static final int DEFAULT_PARTITIONS = 16;
+	
+	/**
+	 * The maximum number of times a partition will be repartitioned
+	 */
+	static final int MAX_LEVELS = 3;
+	
+	private static class Partition {
+		TupleBuffer build;
+		TupleBuffer probe;
+		int level;
+		
+		Partition(TupleBuffer build, TupleBuffer probe, int level) {
+			this.build = build;
+			this.probe = probe;
+			this.level = level;
+		}
+	}
+
+	private SourceState buildSource;
+	private SourceState probeSource;
+	private boolean outer;
+
+	private int reserved;
+	private int batchSize;
+	private int batchReserve;
+	private Map<List<?>, List<List<?>>> table;
+	private TupleSource buildTs;
+	private int tableRows;
+
+	private TupleBuffer[] buildPartitions;
+	private TupleBuffer[] probePartitions;
+	private LinkedList<Partition> partitions;
+
+	private TupleSource probeTs;
+	private List<?> probeTuple;
+	private List<List<?>> matches;
+	private int matchIndex;
+	private boolean matched;
+
+	public HashJoinStrategy() {
+	}
+
+	/**
+	 * Hashing is only valid if the default comparison semantics are in effect
+	 */
+	public static boolean isHashable() {
+		return Constant.COLLATION_LOCALE == null;
+	}
+
+	@Override
+	public void close() {
+		if (joinNode == null) {
+			return;
+		}
+		super.close();
+		releaseReserved();
+		if (this.probeTs != null && this.partitions != null) {
+			this.probeTs.closeSource();
+		}
+		removePartitions(this.buildPartitions);
+		removePartitions(this.probePartitions);
+		if (this.partitions != null) {
+			for (Partition partition : this.partitions) {
+				partition.build.remove();
+				partition.probe.remove();
+			}
+		}
+		this.buildPartitions = null;
+		this.probePartitions = null;
+		this.partitions = null;
+		this.table = null;
+		this.tableRows = 0;
+		this.buildTs = null;
+		this.probeTs = null;
+		this.probeTuple = null;
+		this.matches = null;
+		this.buildSource = null;
+		this.probeSource = null;
+	}
+
+	private void removePartitions(TupleBuffer[] partitions) {
+		if (partitions == null) {
+			return;
+		}
+		for (TupleBuffer tb : partitions) {
+			if (tb != null) {
+				tb.remove();
+			}
+		}
+	}
+
+	private void releaseReserved() {
+		this.joinNode.getBufferManager().releaseBuffers(this.reserved);
+		this.reserved = 0;
+	}
+
+	@Override
+	protected void loadLeft() throws TeiidComponentException,
+			TeiidProcessingException {
+		if (this.joinNode.isDependent()) {
+			this.leftSource.getTupleBuffer();
+		}
+	}
+
+	/**
+	 * Read the build side into the table, or into partitions once the table exceeds the max processing size.
+	 * The build side may block, so this is resumable.
+	 */
+	@Override
+	protected void loadRight() throws TeiidComponentException,
+			TeiidProcessingException {
+		if (this.buildSource == null) {
+			this.outer = this.joinNode.getJoinType() == JoinType.JOIN_LEFT_OUTER;
+			if (!outer && (this.leftSource.hasBuffer() || buildLeft())) {
+				this.buildSource = this.leftSource;
+				this.probeSource = this.rightSource;
+			} else {
+				this.buildSource = this.rightSource;
+				this.probeSource = this.leftSource;
+			}
+			//the build side is only read once, so it does not need to be buffered first
+			this.buildSource.setImplicitBuffer(ImplicitBuffer.NONE);
+			this.probeSource.setImplicitBuffer(ImplicitBuffer.NONE);
+			BufferManager bm = this.joinNode.getBufferManager();
+			this.batchSize = this.buildSource.getSource().getBatchSize();
+			this.batchReserve = (int)Math.min(Integer.MAX_VALUE, (long)(bm.getSchemaSize(this.buildSource.getSource().getOutputElements()) * TABLE_OVERHEAD));
+			this.table = new HashMap<List<?>, List<List<?>>>();
+			this.buildTs = this.buildSource.getIterator();
+		}
+		if (this.buildTs == null) {
+			return;
+		}
+		BufferManager bm = this.joinNode.getBufferManager();
+		int[] indexes = this.buildSource.getExpressionIndexes();
+		List<?> tuple = null;
+		while ((tuple = this.buildTs.nextTuple()) != null) {
+			List<?> key = RelationalNodeUtil.getKey(tuple, indexes);
+			if (key == null) {
+				continue; //can't match
+			}
+			if (this.buildPartitions == null && this.tableRows++ % this.batchSize == 0) {
+				if (this.reserved + this.batchReserve <= bm.getMaxProcessingSize()) {
+					this.reserved += bm.reserveBuffers(this.batchReserve, BufferReserveMode.FORCE);
+				} else {
+					partitionTable();
+				}
+			}
+			if (this.buildPartitions != null) {
+				this.buildPartitions[partition(key, this.buildPartitions.length, 0)].addTuple(tuple);
+				continue;
+			}
+			addToTable(key, tuple);
+		}
+		this.buildTs = null;
+		if (this.buildPartitions == null) {
+			return;
+		}
+		this.probePartitions = createPartitions(this.probeSource, this.buildPartitions.length);
+	}
+
+	/**
+	 * Move the table entries read so far into new partitions
+	 */
+	private void partitionTable() throws TeiidComponentException {
+		long rows = DEFAULT_PARTITIONS * (long)this.tableRows;
+		Number cardinality = this.buildSource.getSource().getEstimateNodeCardinality();
+		if (cardinality != null && cardinality.floatValue() != NewCalculateCostUtil.UNKNOWN_VALUE) {
+			rows = Math.max(this.tableRows, cardinality.longValue());
+		}
+		int partitionCount = getPartitionCount(rows);
+		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "partitioning hash join", this.joinNode.getID(), "into", partitionCount, "partitions"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		this.buildPartitions = createPartitions(this.buildSource, partitionCount);
+		for (Map.Entry<List<?>, List<List<?>>> entry : this.table.entrySet()) {
+			TupleBuffer tb = this.buildPartitions[partition(entry.getKey(), partitionCount, 0)];
+			for (List<?> tuple : entry.getValue()) {
+				tb.addTuple(tuple);
+			}
+		}
+		this.table = null;
+		releaseReserved();
+	}
+
+	private int getPartitionCount(long rows) {
+		long needed = getNeeded(rows);
+		return (int)Math.min(MAX_PARTITIONS, Math.max(2, needed / Math.max(1, this.joinNode.getBufferManager().getMaxProcessingSize()) + 1));
+	}
+
+	private long getNeeded(long rows) {
+		return (long)this.batchReserve * (rows / this.batchSize + 1);
+	}
+
+	/**
+	 * Build on the left only if it's estimated to be the smaller side
+	 */
+	private boolean buildLeft() {
+		Number leftCardinality = this.leftSource.getSource().getEstimateNodeCardinality();
+		Number rightCardinality = this.rightSource.getSource().getEstimateNodeCardinality();
+		if (leftCardinality == null || leftCardinality.floatValue() == NewCalculateCostUtil.UNKNOWN_VALUE) {
+			return false;
+		}
+		if (rightCardinality == null || rightCardinality.floatValue() == NewCalculateCostUtil.UNKNOWN_VALUE) {
+			return true;
+		}
+		return leftCardinality.floatValue() < rightCardinality.floatValue();
+	}
+
+	private TupleBuffer[] createPartitions(SourceState state, int partitionCount) throws TeiidComponentException {
+		TupleBuffer[] result = new TupleBuffer[partitionCount];
+		for (int i = 0; i < partitionCount; i++) {
+			result[i] = state.createSourceTupleBuffer();
+			result[i].setForwardOnly(true);
+		}
+		return result;
+	}
+
+	private void buildTable(TupleSource ts) throws TeiidComponentException, TeiidProcessingException {
+		this.table = new HashMap<List<?>, List<List<?>>>();
+		int[] indexes = this.buildSource.getExpressionIndexes();
+		List<?> tuple = null;
+		while ((tuple = ts.nextTuple()) != null) {
+			addToTable(RelationalNodeUtil.getKey(tuple, indexes), tuple);
+		}
+		ts.closeSource();
+	}
+
+	private void addToTable(List<?> key, List<?> tuple) {
+		List<List<?>> values = this.table.get(key);
+		if (values == null) {
+			values = new ArrayList<List<?>>(1);
+			this.table.put(key, values);
+		}
+		values.add(tuple);
+	}
+
+	@Override
+	protected void process() throws TeiidComponentException,
+			TeiidProcessingException {
+		if (this.probePartitions != null) {
+			partitionProbe();
+		}
+		while (true) {
+			if (this.probeTs == null) {
+				if (this.partitions == null) {
+					this.probeTs = this.probeSource.getIterator();
+				} else if (!nextPartition()) {
+					return;
+				}
+			}
+			if (this.probeTuple == null) {
+				this.probeTuple = this.probeTs.nextTuple();
+				if (this.probeTuple == null) {
+					if (this.partitions == null) {
+						return;
+					}
+					this.probeTs.closeSource();
+					this.probeTs = null;
+					continue;
+				}
+				List<?> key = RelationalNodeUtil.getKey(this.probeTuple, this.probeSource.getExpressionIndexes());
+				this.matches = key == null ? null : this.table.get(key);
+				this.matchIndex = 0;
+				this.matched = false;
+			}
+			if (this.matches != null && this.matchIndex < this.matches.size()) {
+				List<?> buildTuple = this.matches.get(this.matchIndex++);
+				List outputTuple = null;
+				if (this.buildSource == this.leftSource) {
+					outputTuple = outputTuple(buildTuple, this.probeTuple);
+				} else {
+					outputTuple = outputTuple(this.probeTuple, buildTuple);
+				}
+				if (this.joinNode.matchesCriteria(outputTuple)) {
+					this.matched = true;
+					this.joinNode.addBatchRow(outputTuple);
+				}
+				continue;
+			}
+			List<?> tuple = this.probeTuple;
+			this.probeTuple = null;
+			if (this.outer && !this.matched) {
+				this.joinNode.addBatchRow(outputTuple(tuple, this.rightSource.getOuterVals()));
+			}
+		}
+	}
+
+	/**
+	 * Read the probe side into partitions.  The probe may block, so this is resumable.
+	 */
+	private void partitionProbe() throws TeiidComponentException,
+			TeiidProcessingException {
+		TupleSource ts = this.probeSource.getIterator();
+		int[] indexes = this.probeSource.getExpressionIndexes();
+		List<?> tuple = null;
+		while ((tuple = ts.nextTuple()) != null) {
+			addToPartition(this.probePartitions, tuple, RelationalNodeUtil.getKey(tuple, indexes), 0);
+		}
+		this.partitions = new LinkedList<Partition>();
+		addPartitions(this.buildPartitions, this.probePartitions, 0);
+		this.buildPartitions = null;
+		this.probePartitions = null;
+	}
+
+	private void addToPartition(TupleBuffer[] partitions, List<?> tuple, List<?> key, int level) throws TeiidComponentException {
+		if (key == null) {
+			if (this.outer) {
+				//still needed for the outer result
+				partitions[0].addTuple(tuple);
+			}
+			return;
+		}
+		partitions[partition(key, partitions.length, level)].addTuple(tuple);
+	}
+
+	/**
+	 * Queue the partition pairs that can produce results
+	 */
+	private void addPartitions(TupleBuffer[] build, TupleBuffer[] probe, int level) throws TeiidComponentException {
+		for (int i = 0; i < build.length; i++) {
+			build[i].close();
+			probe[i].close();
+			if (probe[i].getRowCount() == 0 || (!this.outer && build[i].getRowCount() == 0)) {
+				build[i].remove();
+				probe[i].remove();
+				continue;
+			}
+			this.partitions.add(new Partition(build[i], probe[i], level));
+		}
+	}
+
+	private boolean nextPartition() throws TeiidComponentException, TeiidProcessingException {
+		this.table = null;
+		releaseReserved();
+		BufferManager bm = this.joinNode.getBufferManager();
+		while (!this.partitions.isEmpty()) {
+			Partition partition = this.partitions.removeLast();
+			long needed = getNeeded(partition.build.getRowCount());
+			if (needed > bm.getMaxProcessingSize() && partition.level < MAX_LEVELS) {
+				repartition(partition);
+				continue;
+			}
+			this.reserved = bm.reserveBuffers((int)Math.min(Integer.MAX_VALUE, needed), BufferReserveMode.FORCE);
+			buildTable(partition.build.createIndexedTupleSource(true));
+			this.probeTs = partition.probe.createIndexedTupleSource(true);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Split an oversized partition pair using the hash for the next level.  If that does not
+	 * reduce the build size, e.g. when most of the rows share a key, then the sub partitions
+	 * are not split further.
+	 */
+	private void repartition(Partition partition) throws TeiidComponentException, TeiidProcessingException {
+		int rowCount = partition.build.getRowCount();
+		int partitionCount = getPartitionCount(rowCount);
+		int level = partition.level + 1;
+		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "repartitioning hash join", this.joinNode.getID(), "partition of", rowCount, "rows into", partitionCount, "partitions"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		}
+		TupleBuffer[] build = split(this.buildSource, partition.build, partitionCount, level);
+		TupleBuffer[] probe = split(this.probeSource, partition.probe, partitionCount, level);
+		for (TupleBuffer tb : build) {
+			if (tb.getRowCount() == rowCount) {
+				level = MAX_LEVELS;
+				break;
+			}
+		}
+		addPartitions(build, probe, level);
+	}
+
+	private TupleBuffer[] split(SourceState state, TupleBuffer buffer, int partitionCount, int level) throws TeiidComponentException, TeiidProcessingException {
+		TupleBuffer[] result = createPartitions(state, partitionCount);
+		int[] indexes = state.getExpressionIndexes();
+		TupleSource ts = buffer.createIndexedTupleSource(true);
+		List<?> tuple = null;
+		while ((tuple = ts.nextTuple()) != null) {
+			addToPartition(result, tuple, RelationalNodeUtil.getKey(tuple, indexes), level);
+		}
+		ts.closeSource();
+		return result;
+	}
+
+	/**
+	 * Spread the hash differently than the {@link HashMap} so that
+	 * the entries for a partition do not collide within the table.  Each level
+	 * uses a different hash so that a repartitioned partition is spread out.
+	 */
+	static int partition(List<?> key, int partitionCount, int level) {
+		int h = key.hashCode() + level * 0x9E3779B9;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return (h >>> 1) % partitionCount;
+	}
+
+	@Override
+	public HashJoinStrategy clone() {
+		return new HashJoinStrategy();
+	}
+
+	@Override
+	public String toString() {
+		return "HASH JOIN"; //$NON-NLS-1$
+	}
+
+}
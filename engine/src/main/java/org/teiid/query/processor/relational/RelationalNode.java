@@ -336,17 +336,24 @@ public abstract class RelationalNode implements Cloneable, BatchProducer {
 
         if (!this.getProcessingState().closed) {
         	closeDirect();
-            for(int i=0; i<children.length; i++) {
-                if(children[i] != null) {
-                    children[i].close();
-                } else {
-                    break;
-                }
-            }
+        	closeChildren();
             this.getProcessingState().closed = true;
         }
     }
 	
+	/**
+	 * Close the children after {@link #closeDirect()}
+	 */
+	protected void closeChildren() throws TeiidComponentException {
+        for(int i=0; i<children.length; i++) {
+            if(children[i] != null) {
+                children[i].close();
+            } else {
+                break;
+            }
+        }
+	}
+	
 	public void closeDirect() {
 		
 	}
@@ -22,8 +22,13 @@
 
 package org.teiid.query.processor.relational;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
 import org.teiid.api.exception.query.ExpressionEvaluationException;
 import org.teiid.core.TeiidComponentException;
+import org.teiid.core.types.DataTypeManager;
 import org.teiid.query.eval.Evaluator;
 import org.teiid.query.sql.lang.Command;
 import org.teiid.query.sql.lang.Criteria;
@@ -178,5 +183,53 @@ public class RelationalNodeUtil {
                commandType == Command.TYPE_UPDATE ||
                commandType == Command.TYPE_DELETE;
     }
+    
+    /**
+     * Get the hash key for the given tuple, or null if the key contains a null value.
+     */
+    static List<?> getKey(List<?> tuple, int[] indexes) {
+        return getKey(tuple, indexes, false);
+    }
+
+    /**
+     * Get the hash key for the given tuple
+     * @param nullEquals if false, then null is returned if the key contains a null value
+     */
+    static List<?> getKey(List<?> tuple, int[] indexes, boolean nullEquals) {
+        Object[] key = new Object[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            Object value = tuple.get(indexes[i]);
+            if (value == null) {
+                if (!nullEquals) {
+                    return null;
+                }
+                continue;
+            }
+            key[i] = normalize(value);
+        }
+        return Arrays.asList(key);
+    }
+
+    /**
+     * Convert values whose equals is stricter than compareTo into a canonical form
+     */
+    static Object normalize(Object value) {
+        if (value instanceof BigDecimal) {
+            BigDecimal bd = (BigDecimal)value;
+            if (bd.signum() == 0) {
+                return BigDecimal.ZERO;
+            }
+            return bd.stripTrailingZeros();
+        }
+        if (DataTypeManager.PAD_SPACE && value instanceof String) {
+            String s = (String)value;
+            int end = s.length();
+            while (end > 0 && s.charAt(end - 1) == ' ') {
+                end--;
+            }
+            return s.substring(0, end);
+        }
+        return value;
+    }
 
 }
@@ -98,6 +98,9 @@ public class SortNode extends RelationalNode {
     	if (this.sortUtility == null) {
 	        this.sortUtility = new SortUtility(new BatchIterator(getChildren()[0]), items, this.mode, getBufferManager(),
 	                                            getConnectionID(), getChildren()[0].getElements());
+	        if (getContext() != null && getContext().getOptions().getParallelSortThreshold() >= 0) {
+	        	this.sortUtility.setParallel(getContext(), getContext().getOptions().getParallelSortThreshold());
+	        }
 		}
 		this.output = this.sortUtility.sort();
 		if (this.outputTs == null) {
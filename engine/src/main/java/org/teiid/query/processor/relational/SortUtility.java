@@ -28,6 +28,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
@@ -38,7 +44,9 @@ import org.teiid.common.buffer.BufferManager.BufferReserveMode;
 import org.teiid.common.buffer.BufferManager.TupleSourceType;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.util.Assertion;
+import org.teiid.dqp.internal.process.DQPWorkContext;
 import org.teiid.language.SortSpecification.NullOrdering;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
@@ -46,6 +54,7 @@ import org.teiid.logging.MessageLevel;
 import org.teiid.query.sql.lang.OrderBy;
 import org.teiid.query.sql.lang.OrderByItem;
 import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.util.CommandContext;
 
 
 /**
@@ -110,6 +119,16 @@ public class SortUtility {
     private static final int MERGE = 2;
     private static final int DONE = 3;
 	private Collection<List<?>> workingTuples;
+	
+	//parallel state
+	private Executor executor;
+	private DQPWorkContext workContext;
+	private Runnable moreWork;
+	private int parallelThreshold = -1;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private List<FutureTask<Void>> pending;
+	private int pendingReserved;
+	private Runnable pendingCompletion;
     
     public SortUtility(TupleSource sourceID, List<OrderByItem> items, Mode mode, BufferManager bufferMgr,
                         String groupName, List<? extends Expression> schema) {
@@ -177,8 +196,36 @@ public class SortUtility {
 		this(ts, new OrderBy(expressions, types).getOrderByItems(), mode, bufferManager, connectionID, schema);
 	}
 
+    /**
+     * Enable generating the sorted sublists and merging independent groups of sublists
+     * on multiple threads.  The calling thread always participates, so tasks that 
+     * have not been picked up by the executor will be run inline.
+     * <br/>
+     * Pool tasks run in the {@link DQPWorkContext} of the context.  If the context
+     * has a more work callback, then the calling thread will not wait on pool tasks, 
+     * but will instead throw a {@link BlockedException} and be notified through the callback. 
+     * @param context supplies the executor, work context, and more work callback
+     * @param threshold the minimum number of collected rows before the initial sort is split 
+     */
+    public void setParallel(CommandContext context, int threshold) {
+    	if (this.mode == Mode.DUP_REMOVE || context == null || context.getExecutor() == null || threshold < 0) {
+    		//dup removal incrementally maintains the output buffer
+    		return;
+    	}
+		this.executor = context.getExecutor();
+		this.workContext = context.getDQPWorkContext();
+		this.moreWork = context.getMoreWorkCallback();
+		this.parallelThreshold = Math.max(threshold, 2 * this.batchSize);
+	}
+    
+    void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+    
     public TupleBuffer sort()
         throws TeiidComponentException, TeiidProcessingException {
+    	
+    	awaitPending();
 
         if(this.phase == INITIAL_SORT) {
             initialSort();
@@ -196,6 +243,8 @@ public class SortUtility {
     public List<TupleBuffer> onePassSort() throws TeiidComponentException, TeiidProcessingException {
     	assert this.mode != Mode.DUP_REMOVE;
     	
+    	awaitPending();
+    	
     	if(this.phase == INITIAL_SORT) {
             initialSort();
         }
@@ -270,6 +319,16 @@ public class SortUtility {
 		        	break;
 		        }
 			
+		        if (executor != null && mode == Mode.SORT) {
+		        	List<List<?>> tuples = (List<List<?>>)workingTuples;
+		        	workingTuples = null;
+		        	//the reservation is held until the slices have been written
+		        	int reserved = totalReservedBuffers;
+		        	totalReservedBuffers = 0;
+		        	parallelSort(tuples, reserved);
+		        	continue;
+		        }
+		        
 		        TupleBuffer sublist = createTupleBuffer();
 		        activeTupleBuffers.add(sublist);
 		        if (this.mode == Mode.SORT) {
@@ -298,8 +357,6 @@ public class SortUtility {
     	while(this.activeTupleBuffers.size() > 1) {    		
     		ArrayList<SortedSublist> sublists = new ArrayList<SortedSublist>(activeTupleBuffers.size());
             
-            TupleBuffer merged = createTupleBuffer();
-
             int desiredSpace = activeTupleBuffers.size() * schemaSize;
             int reserved = Math.min(desiredSpace, Math.max(2*schemaSize, this.bufferManager.getMaxProcessingSize()));
             bufferManager.reserveBuffers(reserved, BufferReserveMode.FORCE);
@@ -315,6 +372,11 @@ public class SortUtility {
 	        	if (LogManager.isMessageToBeRecorded(org.teiid.logging.LogConstants.CTX_DQP, MessageLevel.TRACE)) {
 	            	LogManager.logTrace(org.teiid.logging.LogConstants.CTX_DQP, "Merging", maxSortIndex, "sublists out of", activeTupleBuffers.size()); //$NON-NLS-1$ //$NON-NLS-2$
 	            }
+	        	if (executor != null && this.output == null && activeTupleBuffers.size() >= 2 * maxSortIndex) {
+	        		parallelMerge(maxSortIndex);
+	        		continue;
+	        	}
+	        	TupleBuffer merged = createTupleBuffer();
 	        	// initialize the sublists with the min value
 	            for(int i = 0; i<maxSortIndex; i++) { 
 	             	TupleBuffer activeID = activeTupleBuffers.get(i);
@@ -378,6 +440,200 @@ public class SortUtility {
     	this.phase = INITIAL_SORT;
     }
 
+	/**
+	 * Sort the collected tuples as several slices, each into its own sublist.
+	 */
+	private void parallelSort(List<List<?>> tuples, int reserved) throws TeiidComponentException, TeiidProcessingException {
+		int slices = 1;
+		if (tuples.size() >= this.parallelThreshold) {
+			slices = Math.max(1, Math.min(this.parallelism, tuples.size() / this.batchSize));
+		}
+		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.TRACE)) {
+			LogManager.logTrace(LogConstants.CTX_DQP, "Sorting", tuples.size(), "rows as", slices, "slices"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(slices);
+		int sliceSize = (tuples.size() + slices - 1) / slices;
+		for (int i = 0; i < tuples.size(); i += sliceSize) {
+			final List<List<?>> slice = tuples.subList(i, Math.min(tuples.size(), i + sliceSize));
+			final TupleBuffer sublist = createTupleBuffer();
+			activeTupleBuffers.add(sublist);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					Collections.sort(slice, comparator);
+					for (List<?> tuple : slice) {
+						sublist.addTuple(tuple);
+					}
+					sublist.saveBatch();
+					return null;
+				}
+			});
+		}
+		runAll(tasks, reserved, null);
+	}
+	
+	/**
+	 * Merge as many independent groups of maxSortIndex sublists as can be reserved.
+	 * The first group uses the reservation already held by the caller.
+	 */
+	private void parallelMerge(int maxSortIndex) throws TeiidComponentException, TeiidProcessingException {
+		int groups = Math.min(this.parallelism, activeTupleBuffers.size() / maxSortIndex);
+		int reserved = 0;
+		try {
+			int count = 1;
+			for (; count < groups; count++) {
+				int additional = bufferManager.reserveBuffers(maxSortIndex * schemaSize, BufferReserveMode.NO_WAIT);
+				if (additional == 0) {
+					break;
+				}
+				reserved += additional;
+			}
+			if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.TRACE)) {
+				LogManager.logTrace(LogConstants.CTX_DQP, "Merging", count, "groups of", maxSortIndex, "sublists"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(count);
+			final List<TupleBuffer> mergedBuffers = new ArrayList<TupleBuffer>(count);
+			for (int i = 0; i < count; i++) {
+				final List<TupleBuffer> group = new ArrayList<TupleBuffer>(activeTupleBuffers.subList(i * maxSortIndex, (i + 1) * maxSortIndex));
+				final TupleBuffer merged = createTupleBuffer();
+				mergedBuffers.add(merged);
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						mergeGroup(group, merged);
+						return null;
+					}
+				});
+			}
+			final int merged = count * maxSortIndex;
+			//the additional reservation is held until the groups have been merged
+			int held = reserved;
+			reserved = 0;
+			runAll(tasks, held, new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < merged; i++) {
+						activeTupleBuffers.remove(0).remove();
+					}
+					activeTupleBuffers.addAll(mergedBuffers);
+				}
+			});
+		} finally {
+			bufferManager.releaseBuffers(reserved);
+		}
+	}
+	
+	private void mergeGroup(List<TupleBuffer> group, TupleBuffer merged) throws TeiidComponentException, TeiidProcessingException {
+		ArrayList<SortedSublist> sublists = new ArrayList<SortedSublist>(group.size());
+		for (int i = 0; i < group.size(); i++) {
+			SortedSublist sortedSublist = new SortedSublist();
+			sortedSublist.its = group.get(i).createIndexedTupleSource();
+			sortedSublist.index = i;
+			incrementWorkingTuple(sublists, sortedSublist);
+		}
+		while (sublists.size() > 0) {
+			SortedSublist sortedSublist = sublists.remove(sublists.size() - 1);
+			merged.addTuple(sortedSublist.tuple);
+			incrementWorkingTuple(sublists, sortedSublist);
+		}
+		merged.saveBatch();
+	}
+	
+	/**
+	 * Run the tasks using the executor.  The calling thread runs the first task and then
+	 * any task that has not yet been started, so that progress does not depend upon 
+	 * the availability of pool threads.
+	 * @param reserved buffers to release once all of the tasks have completed
+	 * @param completion run by the calling thread once all of the tasks have completed successfully
+	 */
+	private void runAll(List<Callable<Void>> tasks, int reserved, Runnable completion) throws TeiidComponentException, TeiidProcessingException {
+		final AtomicInteger remaining = new AtomicInteger(tasks.size());
+		List<FutureTask<Void>> futures = new ArrayList<FutureTask<Void>>(tasks.size());
+		for (Callable<Void> task : tasks) {
+			futures.add(new FutureTask<Void>(task) {
+				@Override
+				protected void done() {
+					if (remaining.decrementAndGet() == 0 && moreWork != null) {
+						moreWork.run();
+					}
+				}
+			});
+		}
+		this.pending = futures;
+		this.pendingReserved = reserved;
+		this.pendingCompletion = completion;
+		for (int i = 1; i < futures.size(); i++) {
+			final FutureTask<Void> future = futures.get(i);
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						if (workContext != null) {
+							workContext.runInContext(future);
+						} else {
+							future.run();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				//will be run inline
+			}
+		}
+		awaitPending();
+	}
+	
+	/**
+	 * Run inline any pending task that has not yet been started.  If tasks are still running
+	 * on pool threads, then block until the last one calls back to signal more work.
+	 */
+	private void awaitPending() throws TeiidComponentException, TeiidProcessingException {
+		if (this.pending == null) {
+			return;
+		}
+		for (FutureTask<Void> future : this.pending) {
+			future.run();
+		}
+		Throwable failure = null;
+		for (FutureTask<Void> future : this.pending) {
+			if (!future.isDone() && moreWork != null) {
+				throw BlockedException.block("Waiting on parallel sort tasks"); //$NON-NLS-1$
+			}
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			} catch (InterruptedException e) {
+				throw new TeiidComponentException(e);
+			}
+		}
+		Runnable completion = this.pendingCompletion;
+		this.pending = null;
+		this.pendingCompletion = null;
+		this.bufferManager.releaseBuffers(this.pendingReserved);
+		this.pendingReserved = 0;
+		if (failure == null) {
+			if (completion != null) {
+				completion.run();
+			}
+			return;
+		}
+		if (failure instanceof TeiidComponentException) {
+			throw (TeiidComponentException)failure;
+		}
+		if (failure instanceof TeiidProcessingException) {
+			throw (TeiidProcessingException)failure;
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException)failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error)failure;
+		}
+		throw new TeiidRuntimeException(failure);
+	}
+
 	private void incrementWorkingTuple(ArrayList<SortedSublist> subLists, SortedSublist sortedSublist) throws TeiidComponentException, TeiidProcessingException {
 		while (true) {
 			sortedSublist.tuple = null;
@@ -50,6 +50,13 @@ public interface GlobalTableStore {
 	Serializable getAddress();
 	
 	List<?> updateMatViewRow(String matTableName, List<?> tuple, boolean delete) throws TeiidComponentException;
+	
+	/**
+	 * Apply a batch of upserts or deletes as a single change visible to new readers.
+	 * Existing readers retain their snapshot.
+	 * @return the number of rows affected
+	 */
+	int updateMatViewRows(String matTableName, List<? extends List<?>> tuples, boolean delete) throws TeiidComponentException;
 
 	TempTable createMatTable(String tableName, GroupSymbol group)
 	throws TeiidComponentException, QueryMetadataException, TeiidProcessingException;
@@ -61,7 +68,18 @@ public interface GlobalTableStore {
 	boolean needsLoading(String matTableName, Serializable loadingAddress,
 			boolean firstPass, boolean refresh, boolean invalidate);
 	
+	/**
+	 * Swap in a fully loaded table.  The change version of the {@link MatTableInfo} should 
+	 * already be set, so that it is pushed with the table state.
+	 */
 	@Replicated(replicateState=ReplicationMode.PUSH)
 	void loaded(String matTableName, TempTable table);
+	
+	/**
+	 * Mark the table as loaded after an incremental refresh.  The row changes
+	 * are distributed separately, so the table state is not pushed.
+	 */
+	@Replicated
+	void refreshed(String matTableName);
 
 }
@@ -93,6 +93,8 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		private long ttl = -1;
 		private boolean valid;
 		private boolean asynch; //sub state of loading
+		private Object changeVersion;
+		private int refreshCount;
 		
 		protected MatTableInfo() {}
 		
@@ -175,6 +177,25 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 			return ttl;
 		}
 		
+		/**
+		 * The highest version column value loaded or applied by an incremental refresh, 
+		 * or null if unknown
+		 */
+		public synchronized Object getChangeVersion() {
+			return changeVersion;
+		}
+		
+		public synchronized void setChangeVersion(Object changeVersion) {
+			this.changeVersion = changeVersion;
+		}
+		
+		/**
+		 * The number of incremental refreshes since the last full load
+		 */
+		public synchronized int getRefreshCount() {
+			return refreshCount;
+		}
+		
 	}
 	
 	private ConcurrentHashMap<String, MatTableInfo> matTables = new ConcurrentHashMap<String, MatTableInfo>();
@@ -364,7 +385,20 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 	@Override
 	public void loaded(String matTableName, TempTable table) {
 		swapTempTable(matTableName, table);
-		this.getMatTableInfo(matTableName).setState(MatState.LOADED, true);
+		MatTableInfo info = this.getMatTableInfo(matTableName);
+		synchronized (info) {
+			info.refreshCount = 0;
+			info.setState(MatState.LOADED, true);
+		}
+	}
+	
+	@Override
+	public void refreshed(String matTableName) {
+		MatTableInfo info = this.getMatTableInfo(matTableName);
+		synchronized (info) {
+			info.refreshCount++;
+			info.setState(MatState.LOADED, true);
+		}
 	}
 	
 	private void swapTempTable(String tempTableName, TempTable tempTable) {
@@ -378,11 +412,23 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		if (tempTable != null) {
 			TempMetadataID id = tableStore.getMetadataStore().getTempGroupID(matTableName);
 			synchronized (id) {
-				boolean clone = tempTable.getActive().get() != 0;
+				//another update may have already replaced the table
+				tempTable = tableStore.getTempTable(matTableName);
+				if (tempTable == null) {
+					return null;
+				}
+				boolean clone = tempTable.getActive().get() != 0 || !tempTable.startUpdate();
 				if (clone) {
 					tempTable = tempTable.clone();
 				}
-				List<?> result = tempTable.updateTuple(tuple, delete);
+				List<?> result;
+				try {
+					result = tempTable.updateTuple(tuple, delete);
+				} finally {
+					if (!clone) {
+						tempTable.endUpdate();
+					}
+				}
 				if (clone) {
 					swapTempTable(matTableName, tempTable);
 				}
@@ -392,6 +438,44 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		return null;
 	}
 
+	@Override
+	public int updateMatViewRows(String matTableName,
+			List<? extends List<?>> tuples, boolean delete)
+			throws TeiidComponentException {
+		TempTable tempTable = tableStore.getTempTable(matTableName);
+		if (tempTable == null) {
+			return 0;
+		}
+		TempMetadataID id = tableStore.getMetadataStore().getTempGroupID(matTableName);
+		synchronized (id) {
+			tempTable = tableStore.getTempTable(matTableName);
+			if (tempTable == null) {
+				return 0;
+			}
+			boolean clone = tempTable.getActive().get() != 0 || !tempTable.startUpdate();
+			if (clone) {
+				tempTable = tempTable.clone();
+			}
+			int count = 0;
+			try {
+				for (List<?> tuple : tuples) {
+					List<?> result = tempTable.updateTuple(tuple, delete);
+					if (!delete || result != null) {
+						count++;
+					}
+				}
+			} finally {
+				if (!clone) {
+					tempTable.endUpdate();
+				}
+			}
+			if (clone) {
+				swapTempTable(matTableName, tempTable);
+			}
+			return count;
+		}
+	}
+
 	@Override
 	public TempTableStore getTempTableStore() {
 		return this.tableStore;
@@ -411,6 +495,8 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		}
 		TempTable table = getTempTableStore().addTempTable(tableName, create, bufferManager, false, null);
 		table.setUpdatable(false);
+		//updates are made in place only without readers, see updateMatViewRow
+		table.setSnapshotReads(true);
 		CacheHint hint = table.getCacheHint();
 		if (hint != null) {
 			table.setPreferMemory(hint.isPrefersMemory());
@@ -511,6 +597,7 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		oos.writeLong(info.updateTime);
 		oos.writeObject(info.loadingAddress);
 		oos.writeObject(info.state);
+		oos.writeObject(info.changeVersion);
 		tempTable.writeTo(oos);
 	}
 
@@ -535,6 +622,7 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		long updateTime = ois.readLong();
 		Serializable loadingAddress = (Serializable) ois.readObject();
 		MatState state = (MatState)ois.readObject();
+		Object changeVersion = ois.readObject();
 		GroupSymbol group = new GroupSymbol(stateId);
 		if (stateId.startsWith(RelationalPlanner.MAT_PREFIX)) {
 			String viewName = stateId.substring(RelationalPlanner.MAT_PREFIX.length());
@@ -558,6 +646,8 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 			info.setState(state, true);
 			info.updateTime = updateTime;
 			info.loadingAddress = loadingAddress;
+			info.changeVersion = changeVersion;
+			info.refreshCount = 0;
 		}
 	}
 
@@ -170,6 +170,8 @@ public class TempTable implements Cloneable, SearchableTable {
 		private final int[] indexes;
 		private int reserved;
 		private TupleBrowser browser;
+		private boolean locked;
+		private boolean pinned;
 
 		private QueryTupleSource(TupleBrowser browser, Map map,
 				List<? extends Expression> projectedCols, Criteria condition) {
@@ -180,7 +182,12 @@ public class TempTable implements Cloneable, SearchableTable {
 			this.project = shouldProject();
 			this.reserved = reserveBuffers();
 			if (updatable) {
-				lock.readLock().lock();
+				if (snapshotReads && pin()) {
+					pinned = true;
+				} else {
+					lock.readLock().lock();
+					locked = true;
+				}
 			}
 		}
 
@@ -206,8 +213,13 @@ public class TempTable implements Cloneable, SearchableTable {
 		
 		@Override
 		public void closeSource() {
-			if (updatable) {
+			if (locked) {
 				lock.readLock().unlock();
+				locked = false;
+			}
+			if (pinned) {
+				readers.decrementAndGet();
+				pinned = false;
 			}
 			bm.releaseBuffers(reserved);
 			reserved = 0;
@@ -333,8 +345,15 @@ public class TempTable implements Cloneable, SearchableTable {
 	private int[] notNull;
 	private Map<Integer, AtomicInteger> sequences;
 	private int uniqueColIndex;
+	//for index tables, the positions of the index columns in the parent table
+	private int[] indexProjection;
+	//the page fill factor used for bulk loads
+	private float fillFactor = STree.DEFAULT_FILL_FACTOR;
 	
 	private AtomicInteger activeReaders = new AtomicInteger();
+	//for snapshot reads, the count of open readers or -1 while an update is made in place
+	private AtomicInteger readers = new AtomicInteger();
+	private boolean snapshotReads;
 
 	TempTable(TempMetadataID tid, BufferManager bm, List<ElementSymbol> columns, int primaryKeyLength, String sessionID) {
 		this.tid = tid;
@@ -383,11 +402,13 @@ public class TempTable implements Cloneable, SearchableTable {
 		try {
 			TempTable clone = (TempTable) super.clone();
 			clone.lock = new ReentrantReadWriteLock();
+			clone.readers = new AtomicInteger();
 			if (clone.indexTables != null) {
 				clone.indexTables = new LinkedHashMap<List<ElementSymbol>, TempTable>(clone.indexTables);
 				for (Map.Entry<List<ElementSymbol>, TempTable> entry : clone.indexTables.entrySet()) {
 					TempTable indexClone = entry.getValue().clone();
 					indexClone.lock = clone.lock;
+					indexClone.readers = clone.readers;
 					entry.setValue(indexClone);
 				}
 			}
@@ -405,36 +426,94 @@ public class TempTable implements Cloneable, SearchableTable {
 		return activeReaders;
 	}
 	
+	/**
+	 * Have readers of an updatable table pin it rather than take the read lock
+	 * and buffer their results.  Updates must then go through {@link #startUpdate()}
+	 * and be applied to a clone if that fails.
+	 */
+	void setSnapshotReads(boolean snapshotReads) {
+		this.snapshotReads = snapshotReads;
+		if (this.indexTables != null) {
+			for (TempTable index : this.indexTables.values()) {
+				index.snapshotReads = snapshotReads;
+			}
+		}
+	}
+	
+	private boolean pin() {
+		for (;;) {
+			int count = readers.get();
+			if (count < 0) {
+				//an update is in progress, so fall back to the read lock
+				return false;
+			}
+			if (readers.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * @return true if there are no snapshot readers and the table may be updated in place
+	 * until {@link #endUpdate()}
+	 */
+	boolean startUpdate() {
+		return readers.compareAndSet(0, -1);
+	}
+	
+	void endUpdate() {
+		readers.set(0);
+	}
+	
 	void addIndex(List<ElementSymbol> indexColumns, boolean unique) throws TeiidComponentException, TeiidProcessingException {
+		addIndex(indexColumns, unique, null);
+	}
+	
+	/**
+	 * Add a secondary index keyed by the index columns and the primary key.
+	 * @param includedColumns additional non-key columns stored in the index so that
+	 * queries projecting them can be answered without a primary lookup, may be null
+	 */
+	void addIndex(List<ElementSymbol> indexColumns, boolean unique, List<ElementSymbol> includedColumns) throws TeiidComponentException, TeiidProcessingException {
 		List<ElementSymbol> keyColumns = columns.subList(0, tree.getKeyLength());
 		if (keyColumns.equals(indexColumns) || (indexTables != null && indexTables.containsKey(indexColumns))) {
 			return;
 		}
-		TempTable indexTable = createIndexTable(indexColumns, unique);
-		//TODO: ordered insert optimization
+		TempTable indexTable = createIndexTable(indexColumns, unique, includedColumns);
 		TupleSource ts = createTupleSource(indexTable.getColumns(), null, null);
-		indexTable.insert(ts, indexTable.getColumns(), false, null);
-		indexTable.getTree().compact();
+		indexTable.bulkLoad(ts, indexTable.getColumns());
 	}
 
 	private TempTable createIndexTable(List<ElementSymbol> indexColumns,
-			boolean unique) {
+			boolean unique, List<ElementSymbol> includedColumns) {
 		List<ElementSymbol> allColumns = new ArrayList<ElementSymbol>(indexColumns);
 		for (ElementSymbol elementSymbol : columns.subList(0, tree.getKeyLength())) {
 			if (allColumns.indexOf(elementSymbol) < 0) {
 				allColumns.add(elementSymbol);
 			}
 		}
-		TempTable indexTable = new TempTable(new TempMetadataID("idx", Collections.EMPTY_LIST), this.bm, allColumns, allColumns.size(), this.sessionID); //$NON-NLS-1$
+		int keyLength = allColumns.size();
+		if (includedColumns != null) {
+			for (ElementSymbol elementSymbol : includedColumns) {
+				if (allColumns.indexOf(elementSymbol) < 0) {
+					allColumns.add(elementSymbol);
+				}
+			}
+		}
+		TempTable indexTable = new TempTable(new TempMetadataID("idx", Collections.EMPTY_LIST), this.bm, allColumns, keyLength, this.sessionID); //$NON-NLS-1$
 		indexTable.setPreferMemory(this.tree.isPreferMemory());
+		indexTable.fillFactor = this.fillFactor;
 		indexTable.lock = this.lock;
+		indexTable.readers = this.readers;
+		indexTable.snapshotReads = this.snapshotReads;
+		indexTable.indexProjection = RelationalNode.getProjectionIndexes(this.columnMap, allColumns);
 		if (unique) {
 			indexTable.uniqueColIndex = indexColumns.size();
 		}
 		if (indexTables == null) {
 			indexTables = new LinkedHashMap<List<ElementSymbol>, TempTable>();
-			indexTables.put(indexColumns, indexTable);
 		}
+		indexTables.put(indexColumns, indexTable);
 		indexTable.setUpdatable(this.updatable);
 		return indexTable;
 	}
@@ -502,7 +581,7 @@ public class TempTable implements Cloneable, SearchableTable {
 			final Criteria condition, OrderBy orderBy, IndexInfo ii, boolean agg)
 			throws TeiidComponentException, TeiidProcessingException {
 		TupleBrowser browser = ii.createTupleBrowser();
-		TupleSource ts = new QueryTupleSource(browser, columnMap, agg?getColumns():projectedCols, condition);
+		QueryTupleSource ts = new QueryTupleSource(browser, columnMap, agg?getColumns():projectedCols, condition);
 		
 		boolean usingQueryTupleSource = false;
 		try {
@@ -516,7 +595,7 @@ public class TempTable implements Cloneable, SearchableTable {
 					count++;
 				}
 				return new CollectionTupleSource(Arrays.asList(Collections.nCopies(projectedCols.size(), count)).iterator());
-			} else if (updatable) {
+			} else if (ts.locked) {
 				tb = bm.createTupleBuffer(projectedCols, sessionID, TupleSourceType.PROCESSOR);
 				List<?> next = null;
 				while ((next = ts.nextTuple()) != null) {
@@ -659,6 +738,119 @@ public class TempTable implements Cloneable, SearchableTable {
         return CollectionTupleSource.createUpdateCountTupleSource(updateCount);
     }
 	
+	/**
+	 * Load an empty table by building its tree bottom-up rather than with individual inserts.
+	 * Tuples are loaded as they arrive while they are in primary key order.  Only if an out of 
+	 * order tuple is found are the loaded and remaining tuples sorted and loaded again.
+	 * Falls back to a normal insert if the table already has rows or secondary indexes, or
+	 * if a value is not supplied for every column, since auto increment values would then 
+	 * need to be generated.
+	 * Pages are filled according to the fill factor, see {@link STree#bulkLoad(TupleSource, float)}
+	 * @return the row count
+	 */
+	int bulkLoad(final TupleSource tuples, final List<ElementSymbol> variables) throws TeiidComponentException, TeiidProcessingException {
+		List<ElementSymbol> cols = getColumns();
+		final int[] indexes = new int[cols.size()];
+		boolean canBulkLoad = tree.getRowCount() == 0 && indexTables == null;
+		for (int i = 0; i < cols.size(); i++) {
+			indexes[i] = variables.indexOf(cols.get(i));
+			canBulkLoad &= (indexes[i] != -1);
+		}
+		if (!canBulkLoad) {
+			insert(tuples, variables, false, null);
+			tree.compact();
+			return tree.getRowCount();
+		}
+		TupleSource ts = new TupleSource() {
+			
+			@Override
+			public List<?> nextTuple() throws TeiidComponentException,
+					TeiidProcessingException {
+				List<?> tuple = tuples.nextTuple();
+				if (tuple == null) {
+					return null;
+				}
+				List<Object> newTuple = new ArrayList<Object>(columns.size());
+				if (rowId != null) {
+					newTuple.add(rowId.getAndIncrement());
+				}
+				for (int i = 0; i < indexes.length; i++) {
+					newTuple.add(tuple.get(indexes[i]));
+				}
+				for (int i = 0; i < notNull.length; i++) {
+					if (newTuple.get(notNull[i]) == null) {
+						 throw new TeiidProcessingException(QueryPlugin.Event.TEIID30236, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30236, columns.get(notNull[i])));
+					}
+				}
+				return newTuple;
+			}
+			
+			@Override
+			public void closeSource() {
+				tuples.closeSource();
+			}
+		};
+		TupleBuffer sorted = null;
+		int reserved = reserveBuffers();
+		lock.writeLock().lock();
+		try {
+			final List<?> outOfOrder = tree.bulkLoad(ts, fillFactor);
+			if (outOfOrder != null) {
+				//sort the loaded tuples with the rest
+				final TupleBrowser loaded = new TupleBrowser(tree, null, null, true);
+				final TupleSource remaining = ts;
+				TupleSource all = new TupleSource() {
+					boolean browsing = true;
+					
+					@Override
+					public List<?> nextTuple() throws TeiidComponentException,
+							TeiidProcessingException {
+						if (browsing) {
+							List<?> tuple = loaded.nextTuple();
+							if (tuple != null) {
+								return tuple;
+							}
+							browsing = false;
+							return outOfOrder;
+						}
+						return remaining.nextTuple();
+					}
+					
+					@Override
+					public void closeSource() {
+						loaded.closeSource();
+					}
+				};
+				int[] keyIndexes = new int[tree.getKeyLength()];
+				for (int i = 0; i < keyIndexes.length; i++) {
+					keyIndexes[i] = i;
+				}
+				SortUtility sort = new SortUtility(all, Mode.SORT, bm, sessionID, columns, Collections.nCopies(keyIndexes.length, OrderBy.ASC), null, keyIndexes);
+				sorted = sort.sort();
+				all.closeSource();
+				ts.closeSource();
+				tree.truncate(true);
+				ts = sorted.createIndexedTupleSource(true);
+				if (tree.bulkLoad(ts, fillFactor) != null) {
+					tree.truncate(true);
+					throw new TeiidProcessingException(QueryPlugin.Event.TEIID30238, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30238, this.tid.getID()));
+				}
+			}
+		} finally {
+			bm.releaseBuffers(reserved);
+			lock.writeLock().unlock();
+			ts.closeSource();
+			if (sorted != null) {
+				sorted.remove();
+			}
+		}
+		tree.compact();
+		int rowCount = tree.getRowCount();
+		tid.setCardinality(rowCount);
+		tid.getTableData().dataModified(rowCount);
+		return rowCount;
+	}
+	
 	public TupleSource update(Criteria crit, final SetClauseList update) throws TeiidComponentException, ExpressionEvaluationException, TeiidProcessingException {
 		final boolean primaryKeyChangePossible = canChangePrimaryKey(update);
 		final TupleBrowser browser = createTupleBrower(crit, OrderBy.ASC);
@@ -684,6 +876,7 @@ public class TempTable implements Cloneable, SearchableTable {
     				changeSet.addTuple(newTuple);
     			} else {
     				browser.update(newTuple);
+    				updateIndexes(tuple, newTuple);
     			}
 			}
 			
@@ -761,12 +954,33 @@ public class TempTable implements Cloneable, SearchableTable {
 		if (tree.insert(list, ordered?InsertMode.ORDERED:InsertMode.NEW, -1) != null) {
 			 throw new TeiidProcessingException(QueryPlugin.Event.TEIID30238, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30238, this.tid.getID()));
 		}
+		updateIndexes(null, list);
 	}
 	
 	private void deleteTuple(List<?> tuple) throws TeiidComponentException {
 		if (tree.remove(tuple) == null) {
 			throw new AssertionError("Delete failed"); //$NON-NLS-1$
 		}
+		updateIndexes(tuple, null);
+	}
+	
+	/**
+	 * Keep the secondary indexes in sync with a change to the primary tree
+	 * @param oldTuple the previous row value or null if inserted
+	 * @param newTuple the new row value or null if deleted
+	 */
+	private void updateIndexes(List<?> oldTuple, List<?> newTuple) throws TeiidComponentException {
+		if (indexTables == null) {
+			return;
+		}
+		for (TempTable index : this.indexTables.values()) {
+			if (oldTuple != null) {
+				index.tree.remove(RelationalNode.projectTuple(index.indexProjection, oldTuple));
+			}
+			if (newTuple != null) {
+				index.tree.insert(RelationalNode.projectTuple(index.indexProjection, newTuple), InsertMode.NEW, -1);
+			}
+		}
 	}
 	
 	void writeTo(ObjectOutputStream oos) throws TeiidComponentException, IOException {
@@ -778,12 +992,18 @@ public class TempTable implements Cloneable, SearchableTable {
 			} else {
 				oos.writeInt(this.indexTables.size());
 				for (Map.Entry<List<ElementSymbol>, TempTable> entry : this.indexTables.entrySet()) {
-					oos.writeBoolean(entry.getValue().uniqueColIndex > 0);
+					TempTable index = entry.getValue();
+					oos.writeBoolean(index.uniqueColIndex > 0);
 					oos.writeInt(entry.getKey().size());
 					for (ElementSymbol es : entry.getKey()) {
 						oos.writeInt(this.columnMap.get(es));
 					}
-					entry.getValue().writeTo(oos);
+					List<ElementSymbol> included = index.columns.subList(index.tree.getKeyLength(), index.columns.size());
+					oos.writeInt(included.size());
+					for (ElementSymbol es : included) {
+						oos.writeInt(this.columnMap.get(es));
+					}
+					index.writeTo(oos);
 				}
 			}
 		} finally {
@@ -802,7 +1022,12 @@ public class TempTable implements Cloneable, SearchableTable {
 				int colIndex = ois.readInt();
 				indexColumns.add(this.columns.get(colIndex));
 			}
-			TempTable tt = this.createIndexTable(indexColumns, unique);
+			int numIncluded = ois.readInt();
+			ArrayList<ElementSymbol> includedColumns = new ArrayList<ElementSymbol>(numIncluded);
+			for (int j = 0; j < numIncluded; j++) {
+				includedColumns.add(this.columns.get(ois.readInt()));
+			}
+			TempTable tt = this.createIndexTable(indexColumns, unique, includedColumns);
 			tt.readFrom(ois);
 		}
 	}
@@ -815,22 +1040,12 @@ public class TempTable implements Cloneable, SearchableTable {
 				if (result == null) {
 					return null;
 				}
-				if (indexTables != null) {
-					for (TempTable index : this.indexTables.values()) {
-						tuple = RelationalNode.projectTuple(RelationalNode.getProjectionIndexes(index.getColumnMap(), index.columns), result);
-						index.tree.remove(tuple);
-					}
-				}
+				updateIndexes(result, null);
 				tid.getTableData().dataModified(1);
 				return result;
 			} 
 			List<?> result = tree.insert(tuple, InsertMode.UPDATE, -1);
-			if (indexTables != null) {
-				for (TempTable index : this.indexTables.values()) {
-					tuple = RelationalNode.projectTuple(RelationalNode.getProjectionIndexes(index.getColumnMap(), index.columns), tuple);
-					index.tree.insert(tuple, InsertMode.UPDATE, -1);
-				}
-			}
+			updateIndexes(result, tuple);
 			tid.getTableData().dataModified(1);
 			return result;
 		} finally {
@@ -839,9 +1054,15 @@ public class TempTable implements Cloneable, SearchableTable {
 	}
 	
 	private void updateTuple(List<?> tuple) throws TeiidComponentException {
-		if (tree.insert(tuple, InsertMode.UPDATE, -1) == null) {
+		List<?> old = tree.insert(tuple, InsertMode.UPDATE, -1);
+		if (old == null) {
 			throw new AssertionError("Update failed"); //$NON-NLS-1$
 		}
+		updateIndexes(old, tuple);
+	}
+	
+	void setFillFactor(float fillFactor) {
+		this.fillFactor = fillFactor;
 	}
 	
 	void setPreferMemory(boolean preferMemory) {
@@ -25,6 +25,7 @@ package org.teiid.query.tempdata;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -38,6 +39,7 @@ import org.teiid.api.exception.query.QueryValidatorException;
 import org.teiid.client.security.SessionToken;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.STree;
 import org.teiid.common.buffer.TupleBuffer;
 import org.teiid.common.buffer.TupleSource;
 import org.teiid.core.CoreConstants;
@@ -56,6 +58,7 @@ import org.teiid.language.SQLConstants;
 import org.teiid.language.SQLConstants.Reserved;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
+import org.teiid.metadata.AbstractMetadataRecord;
 import org.teiid.metadata.FunctionMethod.Determinism;
 import org.teiid.query.QueryPlugin;
 import org.teiid.query.eval.Evaluator;
@@ -76,6 +79,7 @@ import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.GroupSymbol;
 import org.teiid.query.sql.symbol.Reference;
+import org.teiid.query.sql.visitor.SQLStringVisitor;
 import org.teiid.query.tempdata.GlobalTableStoreImpl.MatTableInfo;
 import org.teiid.query.util.CommandContext;
 
@@ -94,6 +98,39 @@ public class TempTableDataManager implements ProcessorDataManager {
 	private static final String REFRESHMATVIEWROW = ".refreshmatviewrow"; //$NON-NLS-1$
 	private static final String REFRESHMATVIEW = ".refreshmatview"; //$NON-NLS-1$
 	public static final String CODE_PREFIX = "#CODE_"; //$NON-NLS-1$
+	/**
+	 * Index extension property listing the comma separated columns to store in a materialized index 
+	 */
+	public static final String INDEX_INCLUDE = AbstractMetadataRecord.RELATIONAL_URI + "include"; //$NON-NLS-1$
+	/**
+	 * View extension property naming a column whose value increases with every change to a row.
+	 * If set and the materialized table is updatable, a refresh applies only the changed rows.
+	 * The changes are applied in batches, each of which is visible to new readers once applied. 
+	 */
+	public static final String MATVIEW_VERSION_COLUMN = AbstractMetadataRecord.RELATIONAL_URI + "matview-version-column"; //$NON-NLS-1$
+	/**
+	 * View extension property naming a change table containing the primary key and version columns of the view.
+	 * It is used to find the changed, including deleted, keys for an incremental refresh.
+	 */
+	public static final String MATVIEW_CHANGE_TABLE = AbstractMetadataRecord.RELATIONAL_URI + "matview-change-table"; //$NON-NLS-1$
+	/**
+	 * View extension property naming the key column of the {@link #MATVIEW_CHANGE_TABLE}.  
+	 * Defaults to the name of the primary key column of the view. 
+	 */
+	public static final String MATVIEW_CHANGE_KEY_COLUMN = AbstractMetadataRecord.RELATIONAL_URI + "matview-change-key-column"; //$NON-NLS-1$
+	/**
+	 * View extension property for the fraction, in (0, 1], of each page to fill when loading the materialized table.
+	 * Updatable tables may use a lower value to leave room for changes without page splits.
+	 */
+	public static final String MATVIEW_FILL_FACTOR = AbstractMetadataRecord.RELATIONAL_URI + "matview-fill-factor"; //$NON-NLS-1$
+	/**
+	 * View extension property for the number of incremental refreshes to perform between full loads.
+	 * Without a {@link #MATVIEW_CHANGE_TABLE} rows deleted from the source are only removed by a full load,
+	 * so the default is {@link #DEFAULT_FULL_REFRESH_COUNT}.  With a change table the default is to never force a full load. 
+	 */
+	public static final String MATVIEW_FULL_REFRESH_COUNT = AbstractMetadataRecord.RELATIONAL_URI + "matview-full-refresh-count"; //$NON-NLS-1$
+	public static final int DEFAULT_FULL_REFRESH_COUNT = 10;
+	private static final int MAX_KEYS_PER_QUERY = 256;
 	private static String REFRESH_SQL = SQLConstants.Reserved.CALL + ' ' + CoreConstants.SYSTEM_ADMIN_MODEL + REFRESHMATVIEW + "(?, ?)"; //$NON-NLS-1$
 
 	private ProcessorDataManager processorDataManager;
@@ -439,15 +476,64 @@ public class TempTableDataManager implements ProcessorDataManager {
 		});
 	}
 
+	/**
+	 * Get the columns named by the {@link #INDEX_INCLUDE} property of the index
+	 */
+	static List<ElementSymbol> getIncludedColumns(List<ElementSymbol> allColumns, Object index) {
+		if (!(index instanceof AbstractMetadataRecord)) {
+			return null;
+		}
+		String include = ((AbstractMetadataRecord)index).getProperty(INDEX_INCLUDE, false);
+		if (include == null) {
+			return null;
+		}
+		List<ElementSymbol> result = new ArrayList<ElementSymbol>();
+		for (String name : StringUtil.split(include, ",")) { //$NON-NLS-1$
+			name = name.trim();
+			for (ElementSymbol es : allColumns) {
+				if (es.getShortName().equalsIgnoreCase(name)) {
+					result.add(es);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static float getFillFactor(GroupSymbol group) {
+		if (group.getMetadataID() instanceof TempMetadataID) {
+			Object viewId = ((TempMetadataID)group.getMetadataID()).getOriginalMetadataID();
+			if (viewId instanceof AbstractMetadataRecord) {
+				String fillFactor = ((AbstractMetadataRecord)viewId).getProperty(MATVIEW_FILL_FACTOR, false);
+				if (fillFactor != null) {
+					try {
+						return Float.parseFloat(fillFactor);
+					} catch (NumberFormatException e) {
+						//use the default
+					}
+				}
+			}
+		}
+		return STree.DEFAULT_FILL_FACTOR;
+	}
+
 	private int loadGlobalTable(CommandContext context,
 			GroupSymbol group, final String tableName, GlobalTableStore globalStore)
 			throws TeiidComponentException, TeiidProcessingException {
+		TempTable current = globalStore.getTempTableStore().getTempTable(tableName);
+		if (current != null && current.isUpdatable() && globalStore.getMatTableInfo(tableName).isValid()) {
+			int rowCount = refreshGlobalTable(context, group, tableName, globalStore);
+			if (rowCount >= 0) {
+				return rowCount;
+			}
+		}
 		LogManager.logInfo(LogConstants.CTX_MATVIEWS, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30013, tableName));
 		QueryMetadataInterface metadata = context.getMetadata();
 		List<ElementSymbol> allColumns = ResolverUtil.resolveElementsInGroup(group, metadata); 
 		TempTable table = globalStore.createMatTable(tableName, group);
 		table.setUpdatable(false);
 		int rowCount = -1;
+		final Object[] maxVersion = new Object[1];
 		try {
 			String fullName = metadata.getFullName(group.getMetadataID());
 			String transformation = metadata.getVirtualPlan(group.getMetadataID()).getQuery();
@@ -455,14 +541,34 @@ public class TempTableDataManager implements ProcessorDataManager {
 			qp.setNonBlocking(true);
 			qp.getContext().setDataObjects(null);
 			TupleSource ts = new BatchCollector.BatchProducerTupleSource(qp);
+			final int versionIndex = getVersionIndex(group, allColumns);
+			if (versionIndex != -1) {
+				//track the high water mark for the next incremental refresh as the rows are loaded
+				final TupleSource source = ts;
+				ts = new TupleSource() {
+					
+					@Override
+					public List<?> nextTuple() throws TeiidComponentException, TeiidProcessingException {
+						List<?> tuple = source.nextTuple();
+						if (tuple != null) {
+							updateMaxVersion(maxVersion, tuple.get(versionIndex));
+						}
+						return tuple;
+					}
+					
+					@Override
+					public void closeSource() {
+						source.closeSource();
+					}
+				};
+			}
 			
-			table.insert(ts, allColumns, false, null);
-			table.getTree().compact();
-			rowCount = table.getRowCount();
+			table.setFillFactor(getFillFactor(group));
+			rowCount = table.bulkLoad(ts, allColumns);
 			//TODO: could pre-process indexes to remove overlap
 			for (Object index : metadata.getIndexesInGroup(group.getMetadataID())) {
 				List<ElementSymbol> columns = GlobalTableStoreImpl.resolveIndex(metadata, allColumns, index);
-				table.addIndex(columns, false);
+				table.addIndex(columns, false, getIncludedColumns(allColumns, index));
 			}
 			for (Object key : metadata.getUniqueKeysInGroup(group.getMetadataID())) {
 				List<ElementSymbol> columns = GlobalTableStoreImpl.resolveIndex(metadata, allColumns, key);
@@ -482,6 +588,7 @@ public class TempTableDataManager implements ProcessorDataManager {
 			if (rowCount == -1) {
 				globalStore.failedLoad(tableName);
 			} else {
+				globalStore.getMatTableInfo(tableName).setChangeVersion(maxVersion[0]);
 				globalStore.loaded(tableName, table);
 				LogManager.logInfo(LogConstants.CTX_MATVIEWS, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30014, tableName, rowCount));
 			}
@@ -489,6 +596,237 @@ public class TempTableDataManager implements ProcessorDataManager {
 		return rowCount;
 	}
 
+	/**
+	 * Incrementally refresh the table using the {@link #MATVIEW_VERSION_COLUMN} and 
+	 * optional {@link #MATVIEW_CHANGE_TABLE} of the view.
+	 * <br/>
+	 * Using only the version column, rows deleted from the source are not detected.  They 
+	 * will remain until the next full load, which happens every {@link #MATVIEW_FULL_REFRESH_COUNT} refreshes.
+	 * <br/>
+	 * The refresh is not atomic.  Each batch of changes is visible to new readers once applied, 
+	 * while existing readers keep their snapshot.  If the refresh fails, the applied batches remain, 
+	 * but the change version is not advanced.  The retry then applies the same changes again, which 
+	 * is safe since they are upserts and deletes by key.
+	 * @return the number of rows applied or -1 if a full load is needed
+	 */
+	private int refreshGlobalTable(CommandContext context, GroupSymbol group,
+			String tableName, GlobalTableStore globalStore)
+			throws TeiidComponentException, TeiidProcessingException {
+		if (!(group.getMetadataID() instanceof TempMetadataID)) {
+			return -1;
+		}
+		Object viewId = ((TempMetadataID)group.getMetadataID()).getOriginalMetadataID();
+		if (!(viewId instanceof AbstractMetadataRecord)) {
+			return -1;
+		}
+		AbstractMetadataRecord view = (AbstractMetadataRecord)viewId;
+		QueryMetadataInterface metadata = context.getMetadata();
+		List<ElementSymbol> allColumns = ResolverUtil.resolveElementsInGroup(group, metadata);
+		int versionIndex = getVersionIndex(group, allColumns);
+		if (versionIndex == -1) {
+			return -1;
+		}
+		MatTableInfo info = globalStore.getMatTableInfo(tableName);
+		//the high water mark is recorded by the load, so a missing value means there were no versioned rows
+		Object version = info.getChangeVersion();
+		if (version == null) {
+			return -1;
+		}
+		String versionColumn = SQLStringVisitor.escapeSinglePart(allColumns.get(versionIndex).getShortName());
+		String matViewName = metadata.getFullName(viewId);
+		String changeTable = view.getProperty(MATVIEW_CHANGE_TABLE, false);
+		int fullRefreshCount = changeTable == null?DEFAULT_FULL_REFRESH_COUNT:-1;
+		String fullRefreshCountString = view.getProperty(MATVIEW_FULL_REFRESH_COUNT, false);
+		if (fullRefreshCountString != null) {
+			try {
+				fullRefreshCount = Integer.parseInt(fullRefreshCountString);
+			} catch (NumberFormatException e) {
+				//use the default
+			}
+		}
+		if (fullRefreshCount >= 0 && info.getRefreshCount() >= fullRefreshCount) {
+			//deletes without a change table are only detected by a full load
+			return -1;
+		}
+		Object keyId = null;
+		if (changeTable != null) {
+			Object pk = metadata.getPrimaryKey(viewId);
+			if (pk == null) {
+				 throw new QueryProcessingException(QueryPlugin.Event.TEIID30230, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30230, matViewName));
+			}
+			List<?> ids = metadata.getElementIDsInKey(pk);
+			if (ids.size() > 1) {
+				 throw new QueryProcessingException(QueryPlugin.Event.TEIID30231, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30231, matViewName));
+			}
+			keyId = ids.get(0);
+		}
+		LogManager.logDetail(LogConstants.CTX_MATVIEWS, "incrementally refreshing", matViewName, "from version", version); //$NON-NLS-1$ //$NON-NLS-2$
+		long start = System.currentTimeMillis();
+		int rowCount = -1;
+		try {
+			int count = 0;
+			Object[] maxVersion = new Object[] {version};
+			if (keyId == null) {
+				//the version column identifies the changed rows
+				String queryString = Reserved.SELECT + " * " + Reserved.FROM + ' ' + escapeName(matViewName) + ' ' + Reserved.WHERE + ' ' + //$NON-NLS-1$
+					escapeName(matViewName) + ElementSymbol.SEPARATOR + versionColumn + " > ?" + ' ' + Reserved.OPTION + ' ' + Reserved.NOCACHE; //$NON-NLS-1$
+				TupleSource ts = executeMatViewQuery(context, queryString, matViewName, version);
+				List<List<?>> batch = new ArrayList<List<?>>();
+				List<?> tuple = null;
+				while ((tuple = ts.nextTuple()) != null) {
+					updateMaxVersion(maxVersion, tuple.get(versionIndex));
+					batch.add(new ArrayList<Object>(tuple)); //ensure the list is serializable
+					if (batch.size() >= bufferManager.getProcessorBatchSize()) {
+						count += applyMatViewRows(context, globalStore, tableName, viewId, batch, false);
+						batch.clear();
+					}
+				}
+				count += applyMatViewRows(context, globalStore, tableName, viewId, batch, false);
+			} else {
+				//the change table identifies the changed keys
+				String keyColumn = view.getProperty(MATVIEW_CHANGE_KEY_COLUMN, false);
+				if (keyColumn == null) {
+					keyColumn = metadata.getName(keyId);
+				}
+				String queryString = Reserved.SELECT + ' ' + SQLStringVisitor.escapeSinglePart(keyColumn) + ", " + versionColumn + ' ' + Reserved.FROM + ' ' + escapeName(changeTable) + ' ' + Reserved.WHERE + ' ' +  //$NON-NLS-1$
+					versionColumn + " > ?"; //$NON-NLS-1$
+				TupleSource ts = executeMatViewQuery(context, queryString, matViewName, version);
+				Class<?> keyType = DataTypeManager.getDataTypeClass(metadata.getElementType(keyId));
+				int keyIndex = metadata.getPosition(keyId) - 1;
+				String keyName = metadata.getFullName(keyId);
+				//refresh the keys in chunks as they are read so that the changes are never held in memory all at once
+				LinkedHashSet<Object> keys = new LinkedHashSet<Object>();
+				List<?> tuple = null;
+				while ((tuple = ts.nextTuple()) != null) {
+					updateMaxVersion(maxVersion, tuple.get(1));
+					keys.add(DataTypeManager.transformValue(tuple.get(0), keyType));
+					if (keys.size() >= MAX_KEYS_PER_QUERY) {
+						count += refreshMatViewKeys(context, globalStore, tableName, viewId, matViewName, keyName, keyIndex, keys);
+						keys.clear();
+					}
+				}
+				count += refreshMatViewKeys(context, globalStore, tableName, viewId, matViewName, keyName, keyIndex, keys);
+			}
+			long elapsed = Math.max(1, System.currentTimeMillis() - start);
+			long rowsPerSecond = count * 1000L / elapsed;
+			info.setChangeVersion(maxVersion[0]);
+			rowCount = count;
+			LogManager.logInfo(LogConstants.CTX_MATVIEWS, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31132, tableName, count, rowsPerSecond));
+		} finally {
+			if (rowCount == -1) {
+				//the applied batches remain visible, the retry will start again from the prior version
+				globalStore.failedLoad(tableName);
+			} else {
+				globalStore.refreshed(tableName);
+			}
+		}
+		return rowCount;
+	}
+	
+	/**
+	 * @return the index of the {@link #MATVIEW_VERSION_COLUMN} or -1 if there isn't one
+	 */
+	private static int getVersionIndex(GroupSymbol group, List<ElementSymbol> allColumns) {
+		if (!(group.getMetadataID() instanceof TempMetadataID)) {
+			return -1;
+		}
+		Object viewId = ((TempMetadataID)group.getMetadataID()).getOriginalMetadataID();
+		if (!(viewId instanceof AbstractMetadataRecord)) {
+			return -1;
+		}
+		String versionColumn = ((AbstractMetadataRecord)viewId).getProperty(MATVIEW_VERSION_COLUMN, false);
+		if (versionColumn == null) {
+			return -1;
+		}
+		for (int i = 0; i < allColumns.size(); i++) {
+			if (allColumns.get(i).getShortName().equalsIgnoreCase(versionColumn)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Escape each part of a possibly qualified name for use in generated sql
+	 */
+	private static String escapeName(String name) {
+		StringBuilder sb = new StringBuilder();
+		for (String part : StringUtil.split(name, ElementSymbol.SEPARATOR)) {
+			if (sb.length() > 0) {
+				sb.append(ElementSymbol.SEPARATOR);
+			}
+			sb.append(SQLStringVisitor.escapeSinglePart(part));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reload the rows for the given keys, removing those that no longer exist.
+	 * A key repeated in a later chunk is simply reloaded again. 
+	 */
+	private int refreshMatViewKeys(CommandContext context, GlobalTableStore globalStore, String tableName, Object viewId, 
+			String matViewName, String keyName, int keyIndex, LinkedHashSet<Object> keys) throws TeiidComponentException, TeiidProcessingException {
+		if (keys.isEmpty()) {
+			return 0;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(Reserved.SELECT).append(" * ").append(Reserved.FROM).append(' ').append(escapeName(matViewName)).append(' ').append(Reserved.WHERE).append(' ') //$NON-NLS-1$
+			.append(escapeName(keyName)).append(' ').append(Reserved.IN).append(" ("); //$NON-NLS-1$
+		for (int i = 0; i < keys.size(); i++) {
+			if (i > 0) {
+				sb.append(", "); //$NON-NLS-1$
+			}
+			sb.append('?');
+		}
+		sb.append(") ").append(Reserved.OPTION).append(' ').append(Reserved.NOCACHE); //$NON-NLS-1$
+		TupleSource ts = executeMatViewQuery(context, sb.toString(), matViewName, keys.toArray());
+		List<List<?>> batch = new ArrayList<List<?>>();
+		List<?> tuple = null;
+		while ((tuple = ts.nextTuple()) != null) {
+			keys.remove(tuple.get(keyIndex));
+			batch.add(new ArrayList<Object>(tuple));
+		}
+		int count = applyMatViewRows(context, globalStore, tableName, viewId, batch, false);
+		//the remaining keys no longer exist
+		batch.clear();
+		for (Object key : keys) {
+			batch.add(Arrays.asList(key));
+		}
+		return count + applyMatViewRows(context, globalStore, tableName, viewId, batch, true);
+	}
+
+	private TupleSource executeMatViewQuery(CommandContext context,
+			String queryString, String matViewName, Object... params) throws TeiidComponentException, TeiidProcessingException {
+		QueryProcessor qp = context.getQueryProcessorFactory().createQueryProcessor(queryString, matViewName.toUpperCase(), context, params);
+		qp.setNonBlocking(true);
+		qp.getContext().setDataObjects(null);
+		return new BatchCollector.BatchProducerTupleSource(qp);
+	}
+	
+	private int applyMatViewRows(CommandContext context, GlobalTableStore globalStore, String tableName, Object viewId, 
+			List<List<?>> rows, boolean delete) throws TeiidComponentException {
+		if (rows.isEmpty()) {
+			return 0;
+		}
+		int result = globalStore.updateMatViewRows(tableName, rows, delete);
+		if (eventDistributor != null) {
+			QueryMetadataInterface metadata = context.getMetadata();
+			String schemaName = metadata.getName(metadata.getModelID(viewId));
+			String viewName = metadata.getName(viewId);
+			for (List<?> tuple : rows) {
+				this.eventDistributor.updateMatViewRow(context.getVdbName(), context.getVdbVersion(), schemaName, viewName, tuple, delete);
+			}
+		}
+		return result;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static void updateMaxVersion(Object[] maxVersion, Object value) {
+		if (value != null && (maxVersion[0] == null || ((Comparable<Object>)value).compareTo(maxVersion[0]) > 0)) {
+			maxVersion[0] = value;
+		}
+	}
+	
 	public Object lookupCodeValue(CommandContext context, String codeTableName,
 			String returnElementName, String keyElementName, Object keyValue)
 			throws BlockedException, TeiidComponentException,
@@ -28,6 +28,7 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.security.auth.Subject;
@@ -148,6 +149,8 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 	    private Options options = null;
 	    private boolean returnAutoGeneratedKeys;
 	    private GeneratedKeysImpl generatedKeys;
+	    private volatile Runnable moreWorkCallback;
+	    private AtomicInteger parallelThreads = new AtomicInteger();
 	}
 	
 	private GlobalState globalState = new GlobalState();
@@ -563,8 +566,11 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 	}
 	
 	public void accessedDataObject(Object id) {
-		if (this.dataObjects != null) {
-			this.dataObjects.add(id);
+		HashSet<Object> objects = this.dataObjects;
+		if (objects != null) {
+			synchronized (objects) {
+				objects.add(id);
+			}
 		}
 	}
 	
@@ -647,6 +653,45 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 		this.globalState.executor = e;
 	}
 	
+	public Runnable getMoreWorkCallback() {
+		return this.globalState.moreWorkCallback;
+	}
+	
+	/**
+	 * Set the callback used to wake the processing work item from other threads.
+	 */
+	public void setMoreWorkCallback(Runnable moreWorkCallback) {
+		this.globalState.moreWorkCallback = moreWorkCallback;
+	}
+	
+	/**
+	 * Reserve an additional processing thread for this query.
+	 * @return true if the reservation is within {@link Options#getMaxQueryParallelism()}
+	 */
+	public boolean reserveParallelThread() {
+		int max = getOptions().getMaxQueryParallelism() - 1;
+		while (true) {
+			int current = this.globalState.parallelThreads.get();
+			if (current >= max) {
+				return false;
+			}
+			if (this.globalState.parallelThreads.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	public void releaseParallelThread() {
+		this.globalState.parallelThreads.decrementAndGet();
+	}
+	
+	/**
+	 * @return true if other threads may be processing this query
+	 */
+	public boolean isParallel() {
+		return this.globalState.parallelThreads.get() > 0;
+	}
+	
 	public ReusableExecution<?> getReusableExecution(String nodeId) {
 		synchronized (this.globalState) {
 			if (this.globalState.reusableExecutions == null) {
@@ -715,6 +760,10 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 	
 	public static DecimalFormat getDecimalFormat(CommandContext context, String format) {
 		DecimalFormat result = null;
+		if (context != null && context.isParallel()) {
+			//the cached formats are not thread-safe
+			context = null;
+		}
 		if (context != null) {
 			if (context.globalState.decimalFormatCache == null) {
 				context.globalState.decimalFormatCache = new LRUCache<String, DecimalFormat>(32);
@@ -734,6 +783,10 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 	
 	public static SimpleDateFormat getDateFormat(CommandContext context, String format) {
 		SimpleDateFormat result = null;
+		if (context != null && context.isParallel()) {
+			//the cached formats are not thread-safe
+			context = null;
+		}
 		if (context != null) {
 			if (context.globalState.dateFormatCache == null) {
 				context.globalState.dateFormatCache = new LRUCache<String, SimpleDateFormat>(32);
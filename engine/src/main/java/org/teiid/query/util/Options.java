@@ -25,18 +25,35 @@ package org.teiid.query.util;
 import java.util.Properties;
 
 /**
- * A holder for options
+ * A holder for options.
+ * <br/>
+ * Each request's options are populated from the org.teiid prefixed system properties, 
+ * so they apply to all queries.  The parallel sort threshold may also be set for a 
+ * single query with a leading parallel_sort hint.  Tests may instead set them directly 
+ * on the {@link CommandContext}.
  */
 public class Options {
 
 	public static final String UNNEST_DEFAULT = "org.teiid.subqueryUnnestDefault"; //$NON-NLS-1$
 	public static final String PUSHDOWN_DEFAULT_NULL_ORDER = "org.teiid.pushdownDefaultNullOrder"; //$NON-NLS-1$
 	public static final String IMPLICIT_MULTISOURCE_JOIN = "org.teiid.implicitMultiSourceJoin"; //$NON-NLS-1$
+	public static final String PARALLEL_SORT_THRESHOLD = "org.teiid.parallelSortThreshold"; //$NON-NLS-1$
+	public static final String DEPENDENT_JOIN_MAX_QUERIES = "org.teiid.dependentJoinMaxQueries"; //$NON-NLS-1$
+	public static final String DEPENDENT_JOIN_BLOOM_FILTER = "org.teiid.dependentJoinBloomFilter"; //$NON-NLS-1$
+	public static final String DEPENDENT_JOIN_MAX_CONCURRENT = "org.teiid.dependentJoinMaxConcurrent"; //$NON-NLS-1$
+	public static final String MAX_QUERY_PARALLELISM = "org.teiid.maxQueryParallelism"; //$NON-NLS-1$
+	public static final String SOURCE_READ_AHEAD = "org.teiid.sourceReadAhead"; //$NON-NLS-1$
 
 	private Properties properties;
 	private boolean subqueryUnnestDefault;
 	private boolean pushdownDefaultNullOrder;
 	private boolean implicitMultiSourceJoin = true;
+	private int parallelSortThreshold = -1;
+	private int dependentJoinMaxQueries = -1;
+	private boolean dependentJoinBloomFilter = true;
+	private int dependentJoinMaxConcurrent = 10;
+	private int maxQueryParallelism = 1;
+	private int sourceReadAhead = 1;
 	
 	public Properties getProperties() {
 		return properties;
@@ -85,4 +102,106 @@ public class Options {
 		return this;
 	}
 
+	public int getParallelSortThreshold() {
+		return parallelSortThreshold;
+	}
+	
+	/**
+	 * The number of rows a sort must collect before generating its 
+	 * sorted sublists and merging on multiple threads.  -1 disables parallel sorting.
+	 */
+	public void setParallelSortThreshold(int parallelSortThreshold) {
+		this.parallelSortThreshold = parallelSortThreshold;
+	}
+	
+	public Options parallelSortThreshold(int i) {
+		this.parallelSortThreshold = i;
+		return this;
+	}
+
+	public int getDependentJoinMaxQueries() {
+		return dependentJoinMaxQueries;
+	}
+	
+	/**
+	 * The max number of source queries a dependent join may split its values into before 
+	 * fetching the dependent side without the value criteria.  -1 indicates no limit.
+	 */
+	public void setDependentJoinMaxQueries(int dependentJoinMaxQueries) {
+		this.dependentJoinMaxQueries = dependentJoinMaxQueries;
+	}
+	
+	public Options dependentJoinMaxQueries(int i) {
+		this.dependentJoinMaxQueries = i;
+		return this;
+	}
+	
+	public boolean isDependentJoinBloomFilter() {
+		return dependentJoinBloomFilter;
+	}
+	
+	/**
+	 * Whether a dependent join that fetches without the value criteria should 
+	 * prune the fetched rows with a bloom filter of the independent values.
+	 */
+	public void setDependentJoinBloomFilter(boolean dependentJoinBloomFilter) {
+		this.dependentJoinBloomFilter = dependentJoinBloomFilter;
+	}
+	
+	public Options dependentJoinBloomFilter(boolean b) {
+		this.dependentJoinBloomFilter = b;
+		return this;
+	}
+
+	public int getDependentJoinMaxConcurrent() {
+		return dependentJoinMaxConcurrent;
+	}
+	
+	/**
+	 * The max number of source queries a dependent join may have open at the same time.  
+	 * Further limited by the user request source concurrency and available memory.
+	 */
+	public void setDependentJoinMaxConcurrent(int dependentJoinMaxConcurrent) {
+		this.dependentJoinMaxConcurrent = dependentJoinMaxConcurrent;
+	}
+	
+	public Options dependentJoinMaxConcurrent(int i) {
+		this.dependentJoinMaxConcurrent = i;
+		return this;
+	}
+
+	public int getMaxQueryParallelism() {
+		return maxQueryParallelism;
+	}
+	
+	/**
+	 * The max number of threads a single query may use to process independent 
+	 * union and join branches.  1 disables intra-query parallelism.
+	 */
+	public void setMaxQueryParallelism(int maxQueryParallelism) {
+		this.maxQueryParallelism = maxQueryParallelism;
+	}
+	
+	public Options maxQueryParallelism(int i) {
+		this.maxQueryParallelism = i;
+		return this;
+	}
+
+	public int getSourceReadAhead() {
+		return sourceReadAhead;
+	}
+	
+	/**
+	 * The max number of source batches a non-transactional source query may fetch ahead 
+	 * of processing.  1 allows only a single outstanding fetch.
+	 */
+	public void setSourceReadAhead(int sourceReadAhead) {
+		this.sourceReadAhead = sourceReadAhead;
+	}
+	
+	public Options sourceReadAhead(int i) {
+		this.sourceReadAhead = i;
+		return this;
+	}
+
 }
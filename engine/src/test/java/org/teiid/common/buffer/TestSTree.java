@@ -24,9 +24,14 @@ package org.teiid.common.buffer;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 import org.teiid.common.buffer.STree.InsertMode;
@@ -105,6 +110,119 @@ public class TestSTree {
 				
 	}
 	
+	@Test public void testBulkLoad() throws TeiidComponentException, TeiidProcessingException {
+		BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+		bm.setProcessorBatchSize(4);
+		
+		ElementSymbol e1 = new ElementSymbol("x");
+		e1.setType(Integer.class);
+		List<ElementSymbol> elements = Arrays.asList(e1);
+		STree map = bm.createSTree(elements, "1", 1);
+		
+		int size = (1<<16)+(1<<4)+1;
+		List<List<?>> tuples = new ArrayList<List<?>>(size);
+		for (int i = 0; i < size; i++) {
+			tuples.add(Arrays.asList(i*2));
+		}
+		assertNull(map.bulkLoad(new CollectionTupleSource(tuples.iterator()), .5f));
+		assertEquals(size, map.getRowCount());
+		
+		for (int i = 0; i < size; i++) {
+			assertNotNull(map.find(Arrays.asList(i*2)));
+			assertNull(map.find(Arrays.asList(i*2+1)));
+		}
+		
+		TupleBrowser tb = new TupleBrowser(map, null, null, true);
+		for (int i = 0; i < size; i++) {
+			assertEquals(Arrays.asList(i*2), tb.nextTuple());
+		}
+		assertNull(tb.nextTuple());
+		
+		//the partially filled pages should absorb inserts
+		for (int i = 0; i < size; i++) {
+			assertNull(map.insert(Arrays.asList(i*2+1), InsertMode.NEW, -1));
+		}
+		assertEquals(size*2, map.getRowCount());
+		
+		for (int i = 0; i < size*2; i++) {
+			assertNotNull(map.remove(Arrays.asList(i)));
+		}
+		assertEquals(0, map.getRowCount());
+	}
+	
+	@Test public void testBulkLoadOutOfOrder() throws TeiidComponentException, TeiidProcessingException {
+		BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+		bm.setProcessorBatchSize(4);
+		
+		ElementSymbol e1 = new ElementSymbol("x");
+		e1.setType(Integer.class);
+		List<ElementSymbol> elements = Arrays.asList(e1);
+		STree map = bm.createSTree(elements, "1", 1);
+		
+		List<List<?>> tuples = new ArrayList<List<?>>();
+		for (int i = 0; i < 100; i++) {
+			tuples.add(Arrays.asList(i));
+		}
+		tuples.add(Arrays.asList(50));
+		tuples.add(Arrays.asList(101));
+		CollectionTupleSource source = new CollectionTupleSource(tuples.iterator());
+		assertEquals(Arrays.asList(50), map.bulkLoad(source, 1));
+		//the preceding tuples are loaded and the rest are not read
+		assertEquals(100, map.getRowCount());
+		assertEquals(Arrays.asList(101), source.nextTuple());
+		TupleBrowser tb = new TupleBrowser(map, null, null, true);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Arrays.asList(i), tb.nextTuple());
+		}
+		assertNull(tb.nextTuple());
+		assertNotNull(map.insert(Arrays.asList(1), InsertMode.NEW, -1));
+		assertNull(map.insert(Arrays.asList(100), InsertMode.NEW, -1));
+	}
+	
+	@Test public void testConcurrentReads() throws Exception {
+		BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+		bm.setProcessorBatchSize(4);
+		
+		ElementSymbol e1 = new ElementSymbol("x");
+		e1.setType(Integer.class);
+		List<ElementSymbol> elements = Arrays.asList(e1);
+		final STree map = bm.createSTree(elements, "1", 1);
+		
+		final int size = 1<<12;
+		for (int i = size - 1; i >= 0; i--) {
+			assertNull(map.insert(Arrays.asList(i), InsertMode.NEW, -1));
+		}
+		final String tree = map.toString();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < 8; t++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						for (int i = 0; i < size; i++) {
+							assertEquals(Arrays.asList(i), map.find(Arrays.asList(i)));
+						}
+						TupleBrowser tb = new TupleBrowser(map, null, null, true);
+						for (int i = 0; i < size; i++) {
+							assertEquals(Arrays.asList(i), tb.nextTuple());
+						}
+						assertNull(tb.nextTuple());
+						return null;
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		//reads should not have modified the structure
+		assertEquals(tree, map.toString());
+	}
+	
 	@Test public void testStorageWrites() throws TeiidComponentException {
 		BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
 		bm.setProcessorBatchSize(32);
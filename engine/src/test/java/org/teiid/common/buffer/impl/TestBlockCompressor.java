@@ -0,0 +1,77 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestBlockCompressor {
+	
+	private int helpTestRoundTrip(byte[] bytes) throws Exception {
+		byte[] compressed = new byte[BlockCompressor.maxCompressedLength(bytes.length)];
+		int length = BlockCompressor.compress(bytes, 0, bytes.length, compressed, 0);
+		byte[] result = new byte[bytes.length];
+		assertEquals(bytes.length, BlockCompressor.decompress(compressed, 0, length, result, 0));
+		assertTrue(Arrays.equals(bytes, result));
+		return length;
+	}
+	
+	@Test public void testEmpty() throws Exception {
+		assertEquals(1, helpTestRoundTrip(new byte[0]));
+	}
+	
+	@Test public void testShort() throws Exception {
+		helpTestRoundTrip("abcabcabc".getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+	
+	@Test public void testRepetitive() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("value ").append(i%10); //$NON-NLS-1$
+		}
+		byte[] bytes = sb.toString().getBytes("UTF-8"); //$NON-NLS-1$
+		assertTrue(helpTestRoundTrip(bytes) < bytes.length/10);
+	}
+	
+	@Test public void testRuns() throws Exception {
+		byte[] bytes = new byte[100000];
+		Arrays.fill(bytes, 50000, 100000, (byte)1);
+		assertTrue(helpTestRoundTrip(bytes) < 1000);
+	}
+	
+	@Test public void testRandom() throws Exception {
+		byte[] bytes = new byte[1 << 16];
+		new Random(1).nextBytes(bytes);
+		assertTrue(helpTestRoundTrip(bytes) <= BlockCompressor.maxCompressedLength(bytes.length));
+	}
+	
+	@Test(expected=java.io.IOException.class) public void testInvalid() throws Exception {
+		byte[] bytes = new byte[] {0x0F, 0x10, 0x00};
+		BlockCompressor.decompress(bytes, 0, bytes.length, new byte[100], 0);
+	}
+
+}
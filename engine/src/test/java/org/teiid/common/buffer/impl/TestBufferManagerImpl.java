@@ -0,0 +1,154 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.impl.BufferManagerImpl.EvictionPolicy;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.sql.symbol.ElementSymbol;
+
+public class TestBufferManagerImpl {
+	
+	@Test public void testReserveAndRelease() throws Exception {
+		BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(1 << 20, 2);
+		assertEquals(1000, bm.reserveBuffers(1000, BufferReserveMode.NO_WAIT));
+		assertEquals((1 << 20) - 1000, bm.getReserveBatchBytes());
+		assertEquals(0, bm.reserveBuffers(1 << 20, BufferReserveMode.NO_WAIT));
+		bm.releaseBuffers(1000);
+		assertEquals(1 << 20, bm.getReserveBatchBytes());
+	}
+	
+	@Test public void testReservationScope() throws Exception {
+		final BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(1 << 20, 2);
+		final AtomicInteger scope = new AtomicInteger();
+		Thread t = new Thread() {
+			public void run() {
+				AtomicInteger previous = bm.setReservationScope(scope);
+				bm.reserveBuffers(1000, BufferReserveMode.FORCE);
+				bm.setReservationScope(previous);
+			}
+		};
+		t.start();
+		t.join();
+		assertEquals(1000, scope.get());
+		AtomicInteger previous = bm.setReservationScope(scope);
+		bm.releaseBuffers(1000);
+		assertSame(scope, bm.setReservationScope(previous));
+		assertEquals(0, scope.get());
+		assertEquals(1 << 20, bm.getReserveBatchBytes());
+	}
+	
+	@Test public void testReserveAdditionalWaitsForRelease() throws Exception {
+		final BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(1 << 20, 2);
+		Thread t = new Thread() {
+			public void run() {
+				bm.reserveBuffers(1 << 20, BufferReserveMode.FORCE);
+			}
+		};
+		t.start();
+		t.join();
+		assertEquals(0, bm.getReserveBatchBytes());
+		t = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+				}
+				bm.releaseBuffers(1 << 20);
+			}
+		};
+		t.start();
+		assertEquals(1000, bm.reserveAdditionalBuffers(1000));
+		t.join();
+		bm.releaseBuffers(1000);
+		assertEquals(1 << 20, bm.getReserveBatchBytes());
+	}
+
+	@Test public void testMemoryHitCountsOnlyReads() throws Exception {
+		BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+		ElementSymbol x = new ElementSymbol("x"); //$NON-NLS-1$
+		x.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+		TupleBuffer tb = bm.createTupleBuffer(Arrays.asList(x), "x", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+		tb.addTuple(Arrays.asList(1));
+		tb.saveBatch();
+		tb.getBatch(1);
+		assertEquals(1, bm.getMemoryHitCount());
+		//removal is not a read
+		tb.remove();
+		assertEquals(1, bm.getMemoryHitCount());
+		assertEquals(0, bm.getPromotionCount());
+	}
+	
+	@Test public void testTwoQueueScanResistance() throws Exception {
+		BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(1 << 20, 2);
+		bm.setEvictionPolicy(EvictionPolicy.TWO_QUEUE);
+		ElementSymbol x = new ElementSymbol("x"); //$NON-NLS-1$
+		x.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+		int batchSize = 100;
+		int hotBatches = 20;
+		TupleBuffer hot = bm.createTupleBuffer(Arrays.asList(x), "x", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+		hot.setBatchSize(batchSize);
+		for (int i = 0; i < hotBatches; i++) {
+			for (int j = 0; j < batchSize; j++) {
+				hot.addTuple(Arrays.asList(j));
+			}
+			hot.saveBatch();
+			//promoted by the second read
+			hot.getBatch(i * batchSize + 1);
+			hot.getBatch(i * batchSize + 1);
+		}
+		assertEquals(hotBatches, bm.getPromotionCount());
+		
+		//a scan many times larger than memory, with each batch read once after it is written
+		TupleBuffer scan = bm.createTupleBuffer(Arrays.asList(x), "x", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+		scan.setBatchSize(batchSize);
+		for (int i = 0; i < 1000; i++) {
+			for (int j = 0; j < batchSize; j++) {
+				scan.addTuple(Arrays.asList(j));
+			}
+			scan.saveBatch();
+			scan.getBatch(i * batchSize + 1);
+		}
+		assertEquals(hotBatches, bm.getPromotionCount());
+		assertTrue(bm.getProbationEvictionCount() > 0);
+		
+		//the hot batches are all still in memory
+		long memoryHits = bm.getMemoryHitCount();
+		for (int i = 0; i < hotBatches; i++) {
+			hot.getBatch(i * batchSize + 1);
+		}
+		assertEquals(hotBatches, bm.getMemoryHitCount() - memoryHits);
+		scan.remove();
+		hot.remove();
+	}
+
+}
@@ -24,10 +24,12 @@ package org.teiid.common.buffer.impl;
 
 import static org.junit.Assert.*;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -114,6 +116,153 @@ public class TestFileStorageManager {
     	fsos.close();
     }
 
+    @Test public void testWriteBehind() throws Exception {
+    	FileStorageManager sm = new FileStorageManager();
+    	sm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+    	sm.setWriteBehindThreads(1);
+    	sm.initialize();
+    	FileStore store = sm.createFileStore("0");
+    	//read your writes
+    	byte[] expectedBytes = writeBytes(store, 0);
+    	writeBytes(store, 2048);
+    	writeBytes(store, 1024);
+    	assertEquals(4096, sm.getUsedBufferSpace());
+    	byte[] bytesRead = new byte[1024];
+    	store.readFully(0, bytesRead, 0, bytesRead.length);
+    	assertArrayEquals(Arrays.copyOf(expectedBytes, 1024), bytesRead);
+    	for (int i = 0; i < 100 && sm.getWriteBehindBytes() > 0; i++) {
+    		Thread.sleep(10);
+    	}
+    	assertEquals(0, sm.getWriteBehindBytes());
+    	store.remove();
+    	assertEquals(0, sm.getUsedBufferSpace());
+    }
+    
+    @Test public void testWriteBehindOverwrite() throws Exception {
+    	FileStorageManager sm = new FileStorageManager();
+    	sm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+    	sm.setWriteBehindThreads(1);
+    	sm.initialize();
+    	FileStore store = sm.createFileStore("0");
+    	for (int i = 0; i < 10; i++) {
+    		//reused blocks are overwritten while the earlier writes may still be pending or in flight
+    		writeBytes(store, 0);
+    		writeBytes(store, 2048);
+    	}
+    	byte[] expectedBytes = writeBytes(store, 1024);
+    	byte[] bytesRead = new byte[2048];
+    	store.readFully(1024, bytesRead, 0, bytesRead.length);
+    	assertArrayEquals(expectedBytes, bytesRead);
+    	for (int i = 0; i < 100 && sm.getWriteBehindBytes() > 0; i++) {
+    		Thread.sleep(10);
+    	}
+    	assertEquals(0, sm.getWriteBehindBytes());
+    	store.readFully(1024, bytesRead, 0, bytesRead.length);
+    	assertArrayEquals(expectedBytes, bytesRead);
+    	store.remove();
+    	assertEquals(0, sm.getUsedBufferSpace());
+    }
+
+    @Test public void testWriteBehindMaxBytes() throws Exception {
+    	FileStorageManager sm = new FileStorageManager();
+    	sm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+    	sm.setWriteBehindThreads(1);
+    	sm.setMaxWriteBehindBytes(0);
+    	sm.initialize();
+    	FileStore store = sm.createFileStore("0");
+    	writeBytes(store);
+    	assertEquals(0, sm.getWriteBehindBytes());
+    	assertEquals(0, sm.getWriteBehindFlushes());
+    	store.remove();
+    }
+
+    private FileStorageManager getMappedStorageManager() throws TeiidComponentException {
+    	FileStorageManager sm = new FileStorageManager();
+    	sm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+    	sm.setMemoryMappedReads(true);
+    	sm.setWriteBehindThreads(1);
+    	sm.setLogMapRegionSize(11);
+    	sm.initialize();
+    	return sm;
+    }
+
+    @Test public void testMemoryMappedReads() throws Exception {
+    	FileStorageManager sm = getMappedStorageManager();
+    	FileStore store = sm.createFileStore("0");
+    	byte[] expectedBytes = writeBytes(store, 0);
+    	//pending writes must be visible through the mapping
+    	byte[] moreBytes = new byte[2048];
+    	r.nextBytes(moreBytes);
+    	store.write(2048, moreBytes, 0, moreBytes.length);
+    	byte[] bytesRead = new byte[2048];
+    	DataInputStream dis = new DataInputStream(store.createInputStream(2048, 2048));
+    	dis.readFully(bytesRead);
+    	assertEquals(-1, dis.read());
+    	assertArrayEquals(moreBytes, bytesRead);
+    	dis = new DataInputStream(store.createInputStream(0, 2048));
+    	dis.readFully(bytesRead);
+    	assertArrayEquals(expectedBytes, bytesRead);
+    	assertEquals(2, sm.getMappedReads());
+    	assertEquals(2, sm.getMappedRegions());
+    	//spans a region boundary
+    	assertNull(store.map(1024, 2048));
+    	//beyond the end of the file
+    	assertNull(store.map(4096, 1024));
+    	store.remove();
+    	assertEquals(0, sm.getUsedBufferSpace());
+    }
+    
+    @Test public void testMemoryMappedPartialRegion() throws Exception {
+    	FileStorageManager sm = getMappedStorageManager();
+    	FileStore store = sm.createFileStore("0");
+    	writeBytes(store, 0);
+    	store.write(2048, new byte[1024], 0, 1024);
+    	//the second region is not fully written and may still grow
+    	assertNull(store.map(2048, 1024));
+    	assertEquals(0, sm.getMappedRegions());
+    	store.remove();
+    }
+    
+    @Test public void testRemoveMappedStore() throws Exception {
+    	FileStorageManager sm = getMappedStorageManager();
+    	FileStore store = sm.createFileStore("0");
+    	byte[] expectedBytes = writeBytes(store, 0);
+    	writeBytes(store, 2048);
+    	ByteBuffer buffer = store.map(0, 1024);
+    	assertNotNull(buffer);
+    	assertNotNull(store.map(2048, 1024));
+    	assertEquals(2, sm.getMappedRegions());
+    	store.remove();
+    	assertEquals(0, sm.getMappedRegions());
+    	assertEquals(0, sm.getUsedBufferSpace());
+    	assertNull(store.map(0, 1024));
+    	//a reader holding a slice is unaffected by the removal
+    	byte[] bytesRead = new byte[1024];
+    	buffer.get(bytesRead);
+    	assertArrayEquals(Arrays.copyOf(expectedBytes, 1024), bytesRead);
+    }
+    
+    @Test public void testTruncateMappedStore() throws Exception {
+    	FileStorageManager sm = getMappedStorageManager();
+    	FileStore store = sm.createFileStore("0");
+    	byte[] expectedBytes = writeBytes(store, 0);
+    	writeBytes(store, 2048);
+    	assertNotNull(store.map(0, 2048));
+    	assertNotNull(store.map(2048, 2048));
+    	assertEquals(2, sm.getMappedRegions());
+    	store.setLength(3072);
+    	assertEquals(1, sm.getMappedRegions());
+    	assertNull(store.map(2048, 1024));
+    	DataInputStream dis = new DataInputStream(store.createInputStream(0, 2048));
+    	byte[] bytesRead = new byte[2048];
+    	dis.readFully(bytesRead);
+    	assertEquals(-1, dis.read());
+    	assertArrayEquals(expectedBytes, bytesRead);
+    	assertEquals(3, sm.getMappedReads());
+    	store.remove();
+    	assertEquals(0, sm.getMappedRegions());
+    }
+
     static Random r = new Random();
     
 	static void writeBytes(FileStore store) throws IOException {
@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.util.AccessibleByteArrayOutputStream;
+
+@SuppressWarnings("nls")
+public class TestSpillSerializer {
+	
+	private static final String[] TYPES = new String[] {DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.STRING};
+
+	private int helpTestRoundTrip(SpillSerializer serializer, List<List<?>> batch) throws Exception {
+		AccessibleByteArrayOutputStream baos = new AccessibleByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(baos);
+		serializer.writeBatch(out, TYPES, batch);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.getBuffer(), 0, baos.getCount()));
+		assertEquals(batch, serializer.readBatch(in, TYPES));
+		return baos.getCount();
+	}
+	
+	private List<List<?>> sampleBatch() {
+		List<List<?>> batch = new ArrayList<List<?>>();
+		for (int i = 0; i < 1000; i++) {
+			batch.add(Arrays.asList(i, i%3==0?null:"status " + i%5, "unique value " + i));
+		}
+		return batch;
+	}
+	
+	@Test public void testCompressed() throws Exception {
+		SpillSerializer serializer = new SpillSerializer();
+		int raw = helpTestRoundTrip(serializer, sampleBatch());
+		serializer.setCompress(true);
+		int compressed = helpTestRoundTrip(serializer, sampleBatch());
+		assertTrue(compressed < raw/2);
+		assertTrue(serializer.getCompressedBytes() < serializer.getUncompressedBytes());
+		assertEquals(0, serializer.getStoredBatches());
+	}
+	
+	@Test public void testSmallBatch() throws Exception {
+		SpillSerializer serializer = new SpillSerializer();
+		serializer.setCompress(true);
+		List<List<?>> batch = new ArrayList<List<?>>();
+		batch.add(Arrays.asList(1, "a", null));
+		helpTestRoundTrip(serializer, batch);
+		assertEquals(1, serializer.getStoredBatches());
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.teiid.common.buffer.BaseCacheEntry;
+import org.teiid.common.buffer.CacheKey;
+
+public class TestTwoQueueEvictionQueue {
+	
+	private AtomicLong clock = new AtomicLong();
+	
+	private BaseCacheEntry add(TwoQueueEvictionQueue<BaseCacheEntry> q, long id) {
+		BaseCacheEntry entry = new BaseCacheEntry(new CacheKey(id, clock.getAndIncrement(), 0));
+		assertTrue(q.add(entry));
+		return entry;
+	}
+	
+	@Test public void testScanResistance() {
+		TwoQueueEvictionQueue<BaseCacheEntry> q = new TwoQueueEvictionQueue<BaseCacheEntry>(clock);
+		BaseCacheEntry hot = add(q, 0);
+		clock.addAndGet(1 << 11);
+		q.touch(hot);
+		//the first access does not promote
+		assertEquals(0, q.getPromotions());
+		q.touch(hot);
+		assertEquals(1, q.getPromotions());
+		for (long i = 1; i < 10; i++) {
+			//scan entries are read once
+			q.touch(add(q, i));
+		}
+		assertEquals(1, q.getPromotions());
+		//the scan entries are evicted before the hot entry
+		for (long i = 1; i < 10; i++) {
+			assertEquals(Long.valueOf(i), q.firstEntry(true).getId());
+		}
+		assertSame(hot, q.firstEntry(true));
+		assertNull(q.firstEntry(true));
+		assertEquals(9, q.getProbationEvictions());
+	}
+	
+	@Test public void testGhostPromotion() {
+		TwoQueueEvictionQueue<BaseCacheEntry> q = new TwoQueueEvictionQueue<BaseCacheEntry>(clock);
+		BaseCacheEntry entry = add(q, 1);
+		assertSame(entry, q.firstEntry(true));
+		//re-adding a recently evicted entry places it in the main queue
+		q.recordAccess(entry);
+		assertTrue(q.add(entry));
+		assertEquals(1, q.getGhostHits());
+		add(q, 2);
+		assertEquals(2, q.getEvictionQueue().size());
+		assertEquals(Long.valueOf(2), q.firstEntry(true).getId());
+		assertTrue(q.remove(entry));
+		assertNull(q.firstEntry(false));
+	}
+
+}
@@ -27,6 +27,7 @@ import static org.junit.Assert.*;
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
@@ -36,10 +37,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 import javax.resource.spi.work.Work;
 
 import org.junit.Test;
+import org.teiid.adminapi.impl.SessionMetadata;
 import org.teiid.adminapi.impl.WorkerPoolStatisticsMetadata;
+import org.teiid.dqp.internal.process.DQPWorkContext;
 import org.teiid.dqp.internal.process.TeiidExecutor;
 import org.teiid.dqp.internal.process.ThreadReuseExecutor;
 import org.teiid.dqp.internal.process.DQPCore.FutureWork;
+import org.teiid.dqp.internal.process.ThreadReuseExecutor.PrioritizedRunnable;
 
 /**
  */
@@ -224,5 +228,138 @@ public class TestThreadReuseExecutor {
     	assertEquals(Integer.valueOf(2), order.remove());
     	assertEquals(Integer.valueOf(4), order.remove());
     }
+    
+    @Test public void testFairShare() throws Exception {
+    	final ThreadReuseExecutor pool = new ThreadReuseExecutor("test", 1); //$NON-NLS-1$
+    	final ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<String>();
+    	final CountDownLatch latch = new CountDownLatch(1);
+    	//the heavy user occupies the only thread and floods the queue
+    	pool.execute(new UserWork("heavy", order) { //$NON-NLS-1$
+    		@Override
+    		public void run() {
+    			try {
+    				latch.await();
+    				Thread.sleep(10);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+    		}
+    	});
+    	for (int i = 0; i < 3; i++) {
+    		pool.execute(new UserWork("heavy", order)); //$NON-NLS-1$
+    	}
+    	pool.execute(new UserWork("light", order)); //$NON-NLS-1$
+    	latch.countDown();
+    	pool.shutdown();
+    	pool.awaitTermination(1000, TimeUnit.MILLISECONDS);
+    	assertEquals("light", order.remove()); //$NON-NLS-1$
+    	assertEquals(3, order.size());
+    	WorkerPoolStatisticsMetadata stats = pool.getStats();
+    	assertEquals(0, stats.getQueued());
+    	assertTrue(stats.getQueueWait99thPercentile() >= stats.getQueueWaitMedian());
+    }
+    
+    @Test public void testFairSharePriority() throws Exception {
+    	final ThreadReuseExecutor pool = new ThreadReuseExecutor("test", 1); //$NON-NLS-1$
+    	final ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<String>();
+    	final CountDownLatch latch = new CountDownLatch(1);
+    	pool.execute(new UserWork("heavy", order) { //$NON-NLS-1$
+    		@Override
+    		public void run() {
+    			try {
+    				latch.await();
+    				Thread.sleep(10);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+    		}
+    	});
+    	pool.execute(new UserWork("light", order)); //$NON-NLS-1$
+    	//higher priority work is taken first, even from a user with more processing time
+    	pool.execute(new UserWork("heavy", order, 10)); //$NON-NLS-1$
+    	latch.countDown();
+    	pool.shutdown();
+    	pool.awaitTermination(1000, TimeUnit.MILLISECONDS);
+    	assertEquals("heavy", order.remove()); //$NON-NLS-1$
+    	assertEquals("light", order.remove()); //$NON-NLS-1$
+    }
+    
+    @Test public void testFairShareIdle() throws Exception {
+    	final ThreadReuseExecutor pool = new ThreadReuseExecutor("test", 1); //$NON-NLS-1$
+    	final ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<String>();
+    	final CountDownLatch latch = new CountDownLatch(1);
+    	final CountDownLatch done = new CountDownLatch(1);
+    	pool.execute(new UserWork("heavy", order) { //$NON-NLS-1$
+    		@Override
+    		public void run() {
+    			try {
+    				Thread.sleep(20);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+    			done.countDown();
+    		}
+    	});
+    	done.await();
+    	//the heavy user is now idle, but its processing time is retained
+    	pool.execute(new UserWork("blocker", order) { //$NON-NLS-1$
+    		@Override
+    		public void run() {
+    			try {
+    				latch.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+    		}
+    	});
+    	pool.execute(new UserWork("heavy", order)); //$NON-NLS-1$
+    	pool.execute(new UserWork("light", order)); //$NON-NLS-1$
+    	latch.countDown();
+    	pool.shutdown();
+    	pool.awaitTermination(1000, TimeUnit.MILLISECONDS);
+    	assertEquals("light", order.remove()); //$NON-NLS-1$
+    	assertEquals("heavy", order.remove()); //$NON-NLS-1$
+    }
+    
+    static class UserWork implements PrioritizedRunnable {
+    	private DQPWorkContext workContext = new DQPWorkContext();
+    	private long creationTime = System.currentTimeMillis();
+    	private String user;
+    	private ConcurrentLinkedQueue<String> order;
+    	private int priority = 1000;
+    	
+    	public UserWork(String user, ConcurrentLinkedQueue<String> order, int priority) {
+    		this(user, order);
+    		this.priority = priority;
+    	}
+    	
+    	public UserWork(String user, ConcurrentLinkedQueue<String> order) {
+    		SessionMetadata session = new SessionMetadata();
+    		session.setUserName(user);
+    		this.workContext.setSession(session);
+    		this.user = user;
+    		this.order = order;
+		}
+    	
+    	@Override
+    	public void run() {
+    		order.add(user);
+    	}
+    	
+    	@Override
+    	public long getCreationTime() {
+    		return creationTime;
+    	}
+    	
+    	@Override
+    	public int getPriority() {
+    		return priority;
+    	}
+    	
+    	@Override
+    	public DQPWorkContext getDqpWorkContext() {
+    		return workContext;
+    	}
+    }
         
 }
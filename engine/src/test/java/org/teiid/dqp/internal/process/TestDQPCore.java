@@ -27,6 +27,7 @@ import static org.junit.Assert.*;
 import java.sql.ResultSet;
 import java.util.HashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -51,6 +52,7 @@ import org.teiid.common.buffer.BufferManagerFactory;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.BlobType;
+import org.teiid.core.util.ExecutorUtils;
 import org.teiid.dqp.internal.datamgr.ConnectorManagerRepository;
 import org.teiid.dqp.internal.datamgr.FakeTransactionService;
 import org.teiid.dqp.internal.process.AbstractWorkItem.ThreadState;
@@ -158,6 +160,41 @@ public class TestDQPCore {
     	helpExecute("SELECT IntKey FROM BQT1.SmallA", "a"); //$NON-NLS-1$ //$NON-NLS-2$
     }
     
+    /**
+     * Falls back to the engine thread pool if virtual threads are not supported
+     */
+    @Test public void testVirtualThreadConnectorWork() throws Exception {
+    	core.stop();
+    	config.setUseVirtualThreads(true);
+    	core.start(config);
+    	helpExecute("SELECT IntKey FROM BQT1.SmallA", "a"); //$NON-NLS-1$ //$NON-NLS-2$
+    	Thread executeThread = agds.getExecuteThread();
+    	assertNotNull(executeThread);
+    	ExecutorService virtualExecutor = ExecutorUtils.newVirtualThreadPerTaskExecutor();
+    	if (virtualExecutor != null) {
+    		virtualExecutor.shutdown();
+    		assertTrue(isVirtual(executeThread));
+    	} else {
+    		assertFalse(isVirtual(executeThread));
+    		assertTrue(executeThread.getName(), executeThread.getName().contains(DQPConfiguration.PROCESS_PLAN_QUEUE_NAME));
+    	}
+    }
+    
+    @Test public void testConnectorWorkUsesEnginePool() throws Exception {
+    	helpExecute("SELECT IntKey FROM BQT1.SmallA", "a"); //$NON-NLS-1$ //$NON-NLS-2$
+    	Thread executeThread = agds.getExecuteThread();
+    	assertFalse(isVirtual(executeThread));
+    	assertTrue(executeThread.getName(), executeThread.getName().contains(DQPConfiguration.PROCESS_PLAN_QUEUE_NAME));
+    }
+    
+    private static boolean isVirtual(Thread thread) throws Exception {
+    	try {
+    		return (Boolean)Thread.class.getMethod("isVirtual").invoke(thread); //$NON-NLS-1$
+    	} catch (NoSuchMethodException e) {
+    		return false;
+    	}
+    }
+    
     @Test public void testHasRole() throws Exception {
         String sql = "SELECT hasRole('foo')"; //$NON-NLS-1$
         String userName = "logon"; //$NON-NLS-1$
@@ -341,6 +378,64 @@ public class TestDQPCore {
         assertEquals(100, item.resultsBuffer.getRowCount());
     }
     
+    @Test public void testFetchMultipleBatches() throws Exception {
+    	//the sql should return 100 rows
+        String sql = "SELECT A.IntKey FROM BQT1.SmallA as A, BQT1.SmallA as B ORDER BY A.IntKey"; //$NON-NLS-1$
+        String userName = "1"; //$NON-NLS-1$
+        String sessionid = "1"; //$NON-NLS-1$
+        
+        RequestMessage reqMsg = exampleRequestMessage(sql);
+        reqMsg.setCursorType(ResultSet.TYPE_FORWARD_ONLY);
+        DQPWorkContext.getWorkContext().getSession().setSessionId(sessionid);
+        DQPWorkContext.getWorkContext().getSession().setUserName(userName);
+        ((BufferManagerImpl)core.getBufferManager()).setProcessorBatchSize(1);
+        Future<ResultsMessage> message = core.executeRequest(reqMsg.getExecutionId(), reqMsg);
+        ResultsMessage rm = message.get(500000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(8, rm.getResultsList().size());
+        
+        //should span several batches
+        message = core.processCursorRequest(reqMsg.getExecutionId(), 9, 50);
+        rm = message.get(500000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(58, rm.getLastRow());
+        
+        message = core.processCursorRequest(reqMsg.getExecutionId(), 59, 50);
+        rm = message.get(500000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(100, rm.getLastRow());
+        assertEquals(100, rm.getFinalRow());
+    }
+    
+    @Test public void testFetchClientMaxObjectSize() throws Exception {
+        String sql = "SELECT A.IntKey FROM BQT1.SmallA as A, BQT1.SmallA as B ORDER BY A.IntKey"; //$NON-NLS-1$
+        String userName = "1"; //$NON-NLS-1$
+        String sessionid = "1"; //$NON-NLS-1$
+        
+        RequestMessage reqMsg = exampleRequestMessage(sql);
+        reqMsg.setCursorType(ResultSet.TYPE_FORWARD_ONLY);
+        DQPWorkContext.getWorkContext().getSession().setSessionId(sessionid);
+        DQPWorkContext.getWorkContext().getSession().setUserName(userName);
+        //too small for even a single row
+        DQPWorkContext.getWorkContext().getSession().setClientMaxObjectSize(2);
+        ((BufferManagerImpl)core.getBufferManager()).setProcessorBatchSize(1);
+        Future<ResultsMessage> message = core.executeRequest(reqMsg.getExecutionId(), reqMsg);
+        ResultsMessage rm = message.get(500000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(8, rm.getResultsList().size());
+        
+        //limited to a single row
+        message = core.processCursorRequest(reqMsg.getExecutionId(), 9, 50);
+        rm = message.get(500000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(9, rm.getLastRow());
+        
+        message = core.processCursorRequest(reqMsg.getExecutionId(), 10, 50);
+        rm = message.get(500000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(10, rm.getLastRow());
+    }
+    
     @Test public void testFinalRow() throws Exception {
         String sql = "SELECT A.IntKey FROM BQT1.SmallA as A"; //$NON-NLS-1$
         String userName = "1"; //$NON-NLS-1$
@@ -551,6 +646,60 @@ public class TestDQPCore {
         assertEquals(1, this.core.getRsCache().getCacheHitCount());
     }
     
+    @Test public void testRsCacheInFlight() throws Exception {
+    	core.getRsCache().setInFlightWait(10000);
+    	agds.setSleep(500);
+        String sql = "SELECT IntKey FROM BQT1.SmallA"; //$NON-NLS-1$
+        DQPWorkContext.getWorkContext().getSession().setSessionId("1"); //$NON-NLS-1$
+        DQPWorkContext.getWorkContext().getSession().setUserName("A"); //$NON-NLS-1$
+        RequestMessage reqMsg = exampleRequestMessage(sql);
+        reqMsg.setUseResultSetCache(true);
+        Future<ResultsMessage> message = core.executeRequest(reqMsg.getExecutionId(), reqMsg);
+        RequestMessage reqMsg1 = exampleRequestMessage(sql);
+        reqMsg1.setUseResultSetCache(true);
+        reqMsg1.setExecutionId(101);
+        Future<ResultsMessage> message1 = core.executeRequest(reqMsg1.getExecutionId(), reqMsg1);
+        
+        ResultsMessage rm = message.get(500000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(10, rm.getResultsList().size());
+        rm = message1.get(500000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(10, rm.getResultsList().size());
+        
+        //the second request, in the same session, streamed the results of the first
+        //it may have found the first before and after its results were published
+        assertEquals(1, agds.getExecuteCount().get());
+        assertTrue(core.getRsCache().getInFlightWaitCount() >= 1);
+        assertEquals(0, core.getRsCache().getCacheHitCount());
+    }
+    
+    @Test public void testRsCacheSubsumption() throws Exception {
+        String sql = "select intkey, stringkey FROM BQT1.SmallA where intkey < 5"; //$NON-NLS-1$
+        RequestMessage reqMsg = exampleRequestMessage(sql);
+        reqMsg.setUseResultSetCache(true);
+        ResultsMessage rm = execute("A", 1, reqMsg); //$NON-NLS-1$
+        assertEquals(10, rm.getResultsList().size());
+        int executeCount = agds.getExecuteCount().get();
+        
+        //the generated values are all 0, so filtering the cached results removes every row
+        sql = "select stringkey FROM BQT1.SmallA where intkey < 5 and intkey > 0"; //$NON-NLS-1$
+        reqMsg = exampleRequestMessage(sql);
+        reqMsg.setUseResultSetCache(true);
+        rm = execute("A", 1, reqMsg); //$NON-NLS-1$
+        assertEquals(0, rm.getResultsList().size());
+        assertEquals(1, this.core.getRsCache().getSemanticHitCount());
+        assertEquals(executeCount, agds.getExecuteCount().get());
+        
+        //not subsumed, since the cached criteria is not implied
+        sql = "select stringkey FROM BQT1.SmallA where intkey > 0"; //$NON-NLS-1$
+        reqMsg = exampleRequestMessage(sql);
+        reqMsg.setUseResultSetCache(true);
+        rm = execute("A", 1, reqMsg); //$NON-NLS-1$
+        assertEquals(10, rm.getResultsList().size());
+        assertEquals(1, this.core.getRsCache().getSemanticHitCount());
+    }
+    
     @Test public void testLobConcurrency() throws Exception {
     	RequestMessage reqMsg = exampleRequestMessage("select to_bytes(stringkey, 'utf-8') FROM BQT1.SmallA"); 
         reqMsg.setTxnAutoWrapMode(RequestMessage.TXN_WRAP_OFF);
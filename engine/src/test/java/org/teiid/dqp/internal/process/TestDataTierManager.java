@@ -66,6 +66,7 @@ import org.teiid.query.resolver.QueryResolver;
 import org.teiid.query.sql.lang.Command;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 import org.teiid.translator.CacheDirective;
 
 @SuppressWarnings("nls")
@@ -79,6 +80,7 @@ public class TestDataTierManager {
     private RequestWorkItem workItem;
     private int limit = -1;
     private boolean serial = false;
+    private Options options;
     
     @Before public void setUp() {
     	limit = -1;
@@ -118,6 +120,9 @@ public class TestDataTierManager {
         context.setProcessorID(requestID);
         context.setVdbName("test"); //$NON-NLS-1$
         context.setVdbVersion(1);
+        if (options != null) {
+        	context.setOptions(options);
+        }
         context.setQueryProcessorFactory(new QueryProcessorFactoryImpl(dtm.getBufferManager(), dtm, new DefaultCapabilitiesFinder(), null, metadata));
         workItem = TestDQPCoreRequestHandling.addRequest(rm, original, requestID, null, workContext);
         
@@ -254,6 +259,31 @@ public class TestDataTierManager {
     	}
     }
     
+    @Test public void testReadAhead() throws Exception {
+    	this.options = new Options().sourceReadAhead(4);
+    	this.connectorManager.setRows(100);
+    	this.connectorManager.batchSize = 10;
+    	DataTierTupleSource info = helpSetup(1);
+    	int rows = 0;
+    	int maxReadAhead = 0;
+    	while (true) {
+    		try {
+    			if (info.nextTuple() == null) {
+    				break;
+    			}
+    			rows++;
+    		} catch (BlockedException e) {
+    			Thread.sleep(10);
+    		}
+    		maxReadAhead = Math.max(maxReadAhead, info.getReadAheadCount());
+    	}
+    	assertEquals(100, rows);
+    	//batches were queued while processing was still working on prior batches
+    	assertTrue(maxReadAhead > 0);
+    	info.closeSource();
+    	assertEquals(0, info.getReadAheadCount());
+    }
+    
     @Test public void testAsynch() throws Exception {
     	this.connectorManager.dataNotAvailable = 10;
     	this.serial = true;
@@ -352,6 +382,55 @@ public class TestDataTierManager {
     	assertEquals(2, this.rm.getRsCache().getTotalCacheEntries());
     }
     
+    @Test public void testModelCaching() throws Exception {
+    	QueryMetadataInterface metadata = RealMetadataFactory.exampleBQTCached();
+    	vdb.getModel("BQT1").addProperty(DataTierManagerImpl.SOURCE_CACHE_SCOPE, "vdb");
+    	vdb.getModel("BQT1").addProperty(DataTierManagerImpl.SOURCE_CACHE_TTL, "100000");
+    	helpSetupDataTierManager();
+    	Command command = helpSetupRequest("SELECT stringkey from bqt1.smalla", 1, metadata).getCommand();
+    	RegisterRequestParameter rrp = new RegisterRequestParameter();
+    	rrp.connectorBindingId = "x";
+    	TupleSource ts = dtm.registerRequest(context, command, "BQT1", rrp);
+    	assertTrue(ts instanceof CachingTupleSource);
+    	assertEquals(10, pullTuples(ts, -1));
+    	ts.closeSource();
+    	assertEquals(1, this.rm.getRsCache().getTotalCacheEntries());
+    	
+    	//vdb scoped, so a different session should use the cached results
+    	command = helpSetupRequest("SELECT stringkey from bqt1.smalla", 1, metadata).getCommand();
+    	this.context.getSession().setSessionId("different");
+    	rrp = new RegisterRequestParameter();
+    	rrp.connectorBindingId = "x";
+    	ts = dtm.registerRequest(context, command, "BQT1", rrp);
+    	assertFalse(ts instanceof CachingTupleSource);
+    	assertEquals(10, pullTuples(ts, -1));
+    	assertEquals(1, connectorManager.getExecuteCount().get());
+    	
+    	//a different source is not a cache hit
+    	command = helpSetupRequest("SELECT stringkey from bqt1.smalla", 1, metadata).getCommand();
+    	rrp = new RegisterRequestParameter();
+    	rrp.connectorBindingId = "y";
+    	ts = dtm.registerRequest(context, command, "BQT1", rrp);
+    	assertTrue(ts instanceof CachingTupleSource);
+    	ts.closeSource();
+    	assertEquals(2, connectorManager.getExecuteCount().get());
+    }
+    
+    @Test public void testModelCachingMaxRows() throws Exception {
+    	QueryMetadataInterface metadata = RealMetadataFactory.exampleBQTCached();
+    	vdb.getModel("BQT1").addProperty(DataTierManagerImpl.SOURCE_CACHE_TTL, "100000");
+    	vdb.getModel("BQT1").addProperty(DataTierManagerImpl.SOURCE_CACHE_MAX_ROWS, "5");
+    	helpSetupDataTierManager();
+    	Command command = helpSetupRequest("SELECT stringkey from bqt1.smalla", 1, metadata).getCommand();
+    	RegisterRequestParameter rrp = new RegisterRequestParameter();
+    	rrp.connectorBindingId = "x";
+    	TupleSource ts = dtm.registerRequest(context, command, "BQT1", rrp);
+    	assertTrue(ts instanceof CachingTupleSource);
+    	assertEquals(10, pullTuples(ts, -1));
+    	ts.closeSource();
+    	assertEquals(0, this.rm.getRsCache().getCachePutCount());
+    }
+    
     @Test public void testTypeConversion() throws Exception {
     	BufferManager bm = BufferManagerFactory.getStandaloneBufferManager();
     	
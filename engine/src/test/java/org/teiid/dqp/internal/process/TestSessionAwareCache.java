@@ -21,11 +21,17 @@
  */
 package org.teiid.dqp.internal.process;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.times;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.teiid.adminapi.impl.SessionMetadata;
@@ -33,8 +39,13 @@ import org.teiid.cache.Cachable;
 import org.teiid.cache.DefaultCacheFactory;
 import org.teiid.common.buffer.BufferManager;
 import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
+import org.teiid.dqp.internal.process.SessionAwareCache.InFlightEntry;
 import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.query.metadata.TransformationMetadata;
 import org.teiid.query.parser.ParseInfo;
+import org.teiid.query.resolver.TestResolver;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.unittest.RealMetadataFactory;
 
 
 @SuppressWarnings("nls")
@@ -138,6 +149,149 @@ public class TestSessionAwareCache {
 		assertNull(cache.get(id));
 	}
 
+	@Test
+	public void testInFlight() {
+		SessionAwareCache<Cachable> cache = new SessionAwareCache<Cachable>("resultset", DefaultCacheFactory.INSTANCE, SessionAwareCache.Type.RESULTSET, 0);
+		
+		CacheID id = new CacheID(buildWorkContext(), new ParseInfo(), "SELECT * FROM FOO");
+		assertNull(cache.startInFlight(id));
+		
+		//the producer's id may be scoped by the time it is put into the cache
+		cache.put(id, Determinism.SESSION_DETERMINISTIC, Mockito.mock(Cachable.class), null);
+		
+		final AtomicInteger notified = new AtomicInteger();
+		Runnable waiter = new Runnable() {
+			@Override
+			public void run() {
+				notified.getAndIncrement();
+			}
+		};
+		InFlightEntry<Cachable> entry = cache.startInFlight(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT * FROM FOO"));
+		assertNotNull(entry);
+		assertTrue(entry.addWaiter(waiter));
+		assertNull(cache.startInFlight(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT * FROM BAR")));
+		
+		cache.endInFlight(id);
+		assertEquals(1, notified.get());
+		assertFalse(entry.addWaiter(waiter));
+		assertEquals(1, cache.getInFlightWaitCount());
+		
+		assertNull(cache.startInFlight(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT * FROM FOO")));
+	}
+	
+	@Test
+	public void testInFlightResults() {
+		SessionAwareCache<Cachable> cache = new SessionAwareCache<Cachable>("resultset", DefaultCacheFactory.INSTANCE, SessionAwareCache.Type.RESULTSET, 0);
+		
+		CacheID id = new CacheID(new ParseInfo(), "SELECT * FROM FOO", "vdb-name", 1, "1", "foo");
+		assertNull(cache.startInFlight(id));
+		
+		CacheID sameSession = new CacheID(new ParseInfo(), "SELECT * FROM FOO", "vdb-name", 1, "1", "foo");
+		CacheID sameUser = new CacheID(new ParseInfo(), "SELECT * FROM FOO", "vdb-name", 1, "2", "foo");
+		CacheID otherUser = new CacheID(new ParseInfo(), "SELECT * FROM FOO", "vdb-name", 1, "3", "bar");
+		
+		final AtomicInteger notified = new AtomicInteger();
+		Runnable waiter = new Runnable() {
+			@Override
+			public void run() {
+				notified.getAndIncrement();
+			}
+		};
+		InFlightEntry<Cachable> entry = cache.startInFlight(sameSession);
+		assertNull(entry.getResults(sameSession));
+		assertTrue(entry.addWaiter(waiter));
+		
+		Cachable results = Mockito.mock(Cachable.class);
+		assertTrue(entry == cache.publishInFlight(id, results, Determinism.SESSION_DETERMINISTIC));
+		assertEquals(1, notified.get());
+		assertTrue(results == entry.getResults(sameSession));
+		assertNull(entry.getResults(sameUser));
+		
+		cache.publishInFlight(id, results, Determinism.USER_DETERMINISTIC);
+		assertTrue(results == entry.getResults(sameUser));
+		assertNull(entry.getResults(otherUser));
+		
+		cache.publishInFlight(id, results, Determinism.VDB_DETERMINISTIC);
+		assertTrue(results == entry.getResults(otherUser));
+		
+		//waiters must add themselves again
+		entry.moreResults();
+		assertEquals(1, notified.get());
+		assertTrue(entry.addWaiter(waiter));
+		entry.moreResults();
+		assertEquals(2, notified.get());
+		
+		cache.endInFlight(id);
+		assertTrue(entry.isDone());
+		assertNull(cache.publishInFlight(id, results, Determinism.VDB_DETERMINISTIC));
+	}
+	
+	@Test
+	public void testSemanticIndexRemove() {
+		SemanticCacheIndex index = new SemanticCacheIndex();
+		String sql = "SELECT e1, e2 FROM pm1.g1 WHERE e2 < 5";
+		index.put(new CacheID(buildWorkContext(), new ParseInfo(), sql), TestResolver.helpResolve(sql, RealMetadataFactory.example1Cached()));
+		
+		String subsumed = "SELECT e1 FROM pm1.g1 WHERE e2 < 5 AND e1 = 'a'";
+		CacheID id = new CacheID(buildWorkContext(), new ParseInfo(), subsumed);
+		Command command = TestResolver.helpResolve(subsumed, RealMetadataFactory.example1Cached());
+		assertEquals(1, index.getMatches(id, command).size());
+		
+		//removal, as by cache validation, uses an equal but distinct id
+		index.remove(new CacheID(buildWorkContext(), new ParseInfo(), sql));
+		assertEquals(0, index.getMatches(id, command).size());
+	}
+
+	@Test
+	public void testSemanticIndexPreParseChecks() {
+		SemanticCacheIndex index = new SemanticCacheIndex();
+		String sql = "SELECT e1, e2 FROM pm1.g1 WHERE e2 < 5";
+		CacheID id = new CacheID(buildWorkContext(), new ParseInfo(), sql);
+		assertFalse(index.hasEntries(id.getVDBKey()));
+		index.put(id, TestResolver.helpResolve(sql, RealMetadataFactory.example1Cached()));
+		assertTrue(index.hasEntries(id.getVDBKey()));
+		index.remove(id);
+		assertFalse(index.hasEntries(id.getVDBKey()));
+
+		assertTrue(SemanticCacheIndex.isCandidate("/*+ cache */ select e1 from pm1.g1"));
+		assertTrue(SemanticCacheIndex.isCandidate(sql));
+		assertFalse(SemanticCacheIndex.isCandidate("exec pm1.sq1()"));
+		assertFalse(SemanticCacheIndex.isCandidate("/*+ cache select e1 from pm1.g1"));
+	}
+
+	@Test
+	public void testPreparedPlanRevalidation() throws Exception {
+		SessionAwareCache<PreparedPlan> cache = new SessionAwareCache<PreparedPlan>("preparedplan", DefaultCacheFactory.INSTANCE, SessionAwareCache.Type.PREPAREDPLAN, 0);
+		
+		TransformationMetadata oldMetadata = RealMetadataFactory.fromDDL("create foreign table t (x integer); create foreign table u (y string);", "vdb-name", "m");
+		TransformationMetadata newMetadata = RealMetadataFactory.fromDDL("create foreign table t (x integer); create foreign table u (y integer);", "vdb-name", "m");
+		
+		CacheID unchanged = new CacheID(buildWorkContext(), new ParseInfo(), "SELECT x FROM t");
+		PreparedPlan plan = new PreparedPlan();
+		plan.getAccessInfo().addAccessedObject(oldMetadata.getMetadataStore().getSchema("m").getTables().get("t"));
+		cache.put(unchanged, Determinism.VDB_DETERMINISTIC, plan, null);
+		
+		CacheID changed = new CacheID(buildWorkContext(), new ParseInfo(), "SELECT y FROM u");
+		plan = new PreparedPlan();
+		plan.getAccessInfo().addAccessedObject(oldMetadata.getMetadataStore().getSchema("m").getTables().get("u"));
+		cache.put(changed, Determinism.VDB_DETERMINISTIC, plan, null);
+		
+		assertNotNull(cache.get(unchanged));
+		assertNull(cache.get(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT 1")));
+		assertEquals(2, cache.getRequestCount("vdb-name", 1));
+		assertEquals(1, cache.getCacheHitCount("vdb-name", 1));
+		assertEquals(0, cache.getRequestCount("other", 1));
+		
+		cache.removeForRedeploy(oldMetadata.getVdbMetaData());
+		
+		//no plans referencing the old metadata are retained
+		assertEquals(0, cache.getTotalCacheEntries("vdb-name", 1));
+		List<CacheID> ids = cache.revalidateForVDB(newMetadata.getVdbMetaData());
+		assertEquals(1, ids.size());
+		assertEquals("SELECT x FROM t", ids.get(0).getSql());
+		//only a single redeploy is revalidated
+		assertEquals(0, cache.revalidateForVDB(newMetadata.getVdbMetaData()).size());
+	}
 	
 	public static DQPWorkContext buildWorkContext() {
 		DQPWorkContext workContext = new DQPWorkContext();
@@ -69,12 +69,14 @@ public class AutoGenDataService extends ConnectorManager{
 	public boolean strict;
 	public int sleep;
     private final AtomicInteger executeCount = new AtomicInteger();
+    private volatile Thread executeThread;
     private final AtomicInteger closeCount = new AtomicInteger();
     private boolean useIntCounter;
 	public boolean addWarning;
 	public boolean copyLobs;
 	public CacheDirective cacheDirective;
 	public boolean dataAvailable;
+	public int batchSize;
 
     public AutoGenDataService() {
     	super("FakeConnector","FakeConnector"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -110,12 +112,14 @@ public class AutoGenDataService extends ConnectorManager{
         	results = new List[] {Arrays.asList(1)};
         }
                 
+        final List[] allResults = results;
         final AtomicResultsMessage msg = ConnectorWorkItem.createResultsMessage(results);
         msg.setFinalRow(rows);
         return new ConnectorWork() {
         	
         	RequestWorkItem item;
         	boolean returnedInitial;
+        	int batchStart;
         	
         	@Override
         	public boolean isDataAvailable() {
@@ -144,6 +148,16 @@ public class AutoGenDataService extends ConnectorManager{
 				if (addWarning) {
 					msg.setWarnings(Arrays.asList(new Exception()));
 				}
+				if (batchSize > 0) {
+					//return the rows over multiple batches
+					int end = Math.min(allResults.length, batchStart + batchSize);
+					AtomicResultsMessage batch = ConnectorWorkItem.createResultsMessage(Arrays.copyOfRange(allResults, batchStart, end));
+					batchStart = end;
+					if (end == allResults.length) {
+						batch.setFinalRow(end);
+					}
+					return batch;
+				}
 				if (!returnedInitial) {
 					returnedInitial = true;
 					return msg;
@@ -154,6 +168,7 @@ public class AutoGenDataService extends ConnectorManager{
 			@Override
 			public void execute() throws TranslatorException {
 				executeCount.incrementAndGet();
+				executeThread = Thread.currentThread();
 				if (sleep > 0) {
 					try {
 						Thread.sleep(sleep);
@@ -198,6 +213,13 @@ public class AutoGenDataService extends ConnectorManager{
 		return executeCount;
 	}
     
+    /**
+     * @return the thread that last executed a source query
+     */
+    public Thread getExecuteThread() {
+		return executeThread;
+	}
+    
     public AtomicInteger getCloseCount() {
 		return closeCount;
 	}
@@ -33,6 +33,7 @@ import org.teiid.query.optimizer.capabilities.FakeCapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.SourceCapabilities.Capability;
 import org.teiid.query.processor.ProcessorPlan;
 import org.teiid.query.processor.relational.EnhancedSortMergeJoinStrategy;
+import org.teiid.query.processor.relational.HashJoinStrategy;
 import org.teiid.query.unittest.RealMetadataFactory;
 
 @SuppressWarnings("nls")
@@ -74,7 +75,26 @@ public class TestPartitionedJoinPlanning {
             0       // UnionAll
         });  
         checkNodeTypes(plan, new int[] {1}, new Class[] {EnhancedSortMergeJoinStrategy.class});
-    }    
+    }
+    
+    @Test public void testUseHashJoin() throws Exception {
+        String sql = "SELECT pm1.g1.e1 FROM pm1.g1, pm1.g2 WHERE pm1.g1.e1 = pm1.g2.e1";//$NON-NLS-1$
 
+        FakeCapabilitiesFinder capFinder = new FakeCapabilitiesFinder();
+        BasicSourceCapabilities caps = new BasicSourceCapabilities();
+        caps.setCapabilitySupport(Capability.CRITERIA_COMPARE_EQ, true);
+        caps.setCapabilitySupport(Capability.QUERY_FROM_GROUP_ALIAS, true);
+        caps.setSourceProperty(Capability.MAX_IN_CRITERIA_SIZE, 100);
+        capFinder.addCapabilities("pm1", caps); //$NON-NLS-1$
+
+        QueryMetadataInterface metadata = RealMetadataFactory.example1();
+        RealMetadataFactory.setCardinality("pm1.g1", BufferManager.DEFAULT_PROCESSOR_BATCH_SIZE * 2, metadata);
+        RealMetadataFactory.setCardinality("pm1.g2", BufferManager.DEFAULT_PROCESSOR_BATCH_SIZE * 16, metadata);
+    
+        ProcessorPlan plan = helpPlan(sql, metadata,  
+            null, capFinder,
+            new String[] { "SELECT pm1.g1.e1 FROM pm1.g1", "SELECT pm1.g2.e1 FROM pm1.g2" }, SHOULD_SUCCEED); //$NON-NLS-1$ //$NON-NLS-2$
+        checkNodeTypes(plan, new int[] {1, 0}, new Class[] {HashJoinStrategy.class, EnhancedSortMergeJoinStrategy.class});
+    }
 
 }
@@ -1089,4 +1089,13 @@ public class TestOptionsAndHints {
         assertEquals("(SELECT /*+sh KEEP ALIASES:'foo' oracle KEEP ALIASES:'leading' */ a FROM x LIMIT 1) UNION ALL SELECT 1", QueryParser.getQueryParser().parseCommand(sql, new ParseInfo()).toString());
     }
 
+    @Test public void testParallelSortHint() throws QueryParserException {
+        QueryParser parser = QueryParser.getQueryParser();
+        assertEquals(0, parser.parseParallelSortHint("/*+ parallel_sort */ SELECT a FROM x ORDER BY a")); //$NON-NLS-1$
+        assertEquals(5000, parser.parseParallelSortHint("/*+ cache */ /*+ PARALLEL_SORT( 5000 ) */ SELECT a FROM x ORDER BY a")); //$NON-NLS-1$
+        assertEquals(-1, parser.parseParallelSortHint("SELECT /*+ parallel_sort */ a FROM x ORDER BY a")); //$NON-NLS-1$
+        assertEquals(-1, parser.parseParallelSortHint("/*+ cache */ SELECT a FROM x ORDER BY a")); //$NON-NLS-1$
+        assertEquals("SELECT a FROM x ORDER BY a", parser.parseCommand("/*+ parallel_sort */ SELECT a FROM x ORDER BY a", new ParseInfo()).toString()); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
 }
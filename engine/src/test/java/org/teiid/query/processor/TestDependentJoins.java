@@ -47,6 +47,7 @@ import org.teiid.query.processor.relational.RelationalPlan;
 import org.teiid.query.sql.lang.Command;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 import org.teiid.translator.ExecutionFactory.NullOrder;
 
 @SuppressWarnings({"unchecked", "nls"})
@@ -700,6 +701,11 @@ public class TestDependentJoins {
     	helpTestLargeSetInDepAccessMultiJoinCriteria(1, -1, 4, 4);
     }
     
+    @Test public void testLargeSetInDepAccessMultiJoinCriteriaMaxConcurrent() throws Exception {
+    	//limited by the dependent join max rather than the source concurrency
+    	helpTestLargeSetInDepAccessMultiJoinCriteria(1, -1, 4, 3, new Options().dependentJoinMaxConcurrent(3));
+    }
+    
     @Test public void testLargeSetInDepAccessMultiJoinCriteriaCompound() throws Exception {
     	//max predicates forces multiple queries
     	helpTestLargeSetInDepAccessMultiJoinCriteria(1, 4, 3, 3);
@@ -748,10 +754,92 @@ public class TestDependentJoins {
         TestProcessor.helpProcess(plan, cc, dataManager, expected);
     }
     
+    @Test public void testDependentJoinMaxQueries() throws Exception {
+        String sql = "SELECT pm1.g1.e1 FROM (pm1.g2 cross join pm1.g1) inner join pm2.g1 makedep ON pm1.g1.e1=pm2.g1.e1 AND pm1.g1.e2=pm2.g1.e2 AND pm1.g2.e4 = pm2.g1.e4 order by e1"; //$NON-NLS-1$
+        FakeDataManager dataManager = new FakeDataManager();
+        TestProcessor.sampleData1(dataManager);
+
+        FakeCapabilitiesFinder capFinder = new FakeCapabilitiesFinder();
+        BasicSourceCapabilities depcaps = new BasicSourceCapabilities();
+        depcaps.setCapabilitySupport(Capability.CRITERIA_IN, true);
+        depcaps.setSourceProperty(Capability.MAX_IN_CRITERIA_SIZE, 1);
+
+        BasicSourceCapabilities caps = new BasicSourceCapabilities();
+        caps.setCapabilitySupport(Capability.CRITERIA_IN, true);
+
+        capFinder.addCapabilities("pm1", caps); //$NON-NLS-1$
+        capFinder.addCapabilities("pm2", depcaps); //$NON-NLS-1$
+
+        List[] expected = new List[] {
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("b"), //$NON-NLS-1$
+        	}; 
+
+        Command command = TestProcessor.helpParse(sql);
+        ProcessorPlan plan = TestProcessor.helpGetPlan(command, RealMetadataFactory.example1Cached(), capFinder);
+        CommandContext cc = TestProcessor.createCommandContext();
+        cc.setOptions(new Options().dependentJoinMaxQueries(1));
+        TestProcessor.helpProcess(plan, cc, dataManager, expected);
+        
+        //note that the dependent rows were fetched in a single query and filtered locally
+        assertTrue(dataManager.getQueries().contains("SELECT pm2.g1.e1, pm2.g1.e2, pm2.g1.e4 FROM pm2.g1")); //$NON-NLS-1$
+    }
+    
+    @Test public void testDependentJoinMaxQueriesCountsDistinctValues() throws Exception {
+        String sql = "SELECT pm1.g1.e1 FROM (pm1.g2 cross join pm1.g1) inner join pm2.g1 makedep ON pm1.g1.e1=pm2.g1.e1 AND pm1.g1.e2=pm2.g1.e2 AND pm1.g2.e4 = pm2.g1.e4 order by e1"; //$NON-NLS-1$
+        FakeDataManager dataManager = new FakeDataManager();
+        TestProcessor.sampleData1(dataManager);
+
+        FakeCapabilitiesFinder capFinder = new FakeCapabilitiesFinder();
+        BasicSourceCapabilities depcaps = new BasicSourceCapabilities();
+        depcaps.setCapabilitySupport(Capability.CRITERIA_IN, true);
+        depcaps.setSourceProperty(Capability.MAX_IN_CRITERIA_SIZE, 1);
+
+        BasicSourceCapabilities caps = new BasicSourceCapabilities();
+        caps.setCapabilitySupport(Capability.CRITERIA_IN, true);
+
+        capFinder.addCapabilities("pm1", caps); //$NON-NLS-1$
+        capFinder.addCapabilities("pm2", depcaps); //$NON-NLS-1$
+
+        List[] expected = new List[] {
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("b"), //$NON-NLS-1$
+        	}; 
+
+        Command command = TestProcessor.helpParse(sql);
+        ProcessorPlan plan = TestProcessor.helpGetPlan(command, RealMetadataFactory.example1Cached(), capFinder);
+        CommandContext cc = TestProcessor.createCommandContext();
+        cc.setOptions(new Options().dependentJoinMaxQueries(10));
+        TestProcessor.helpProcess(plan, cc, dataManager, expected);
+        
+        //there are 25 distinct value rows, but only 11 distinct values over the three attributes
+        assertFalse(dataManager.getQueries().contains("SELECT pm2.g1.e1, pm2.g1.e2, pm2.g1.e4 FROM pm2.g1")); //$NON-NLS-1$
+    }
+    
     /**
      * concurrentOpen will be minimum of 2 to gather the pm1 results.
      */
     public void helpTestLargeSetInDepAccessMultiJoinCriteria(int maxInSize, int maxPredicates, int maxConcurrency, int concurrentOpen) throws Exception {
+    	helpTestLargeSetInDepAccessMultiJoinCriteria(maxInSize, maxPredicates, maxConcurrency, concurrentOpen, null);
+    }
+    
+    public void helpTestLargeSetInDepAccessMultiJoinCriteria(int maxInSize, int maxPredicates, int maxConcurrency, int concurrentOpen, Options options) throws Exception {
         //     Create query 
         String sql = "SELECT pm1.g1.e1 FROM (pm1.g2 cross join pm1.g1) inner join pm2.g1 makedep ON pm1.g1.e1=pm2.g1.e1 AND pm1.g1.e2=pm2.g1.e2 AND pm1.g2.e4 = pm2.g1.e4 order by e1"; //$NON-NLS-1$
         // Construct data manager with data
@@ -793,6 +881,9 @@ public class TestDependentJoins {
         }, plan);
         CommandContext cc = TestProcessor.createCommandContext();
         cc.setUserRequestSourceConcurrency(maxConcurrency);
+        if (options != null) {
+        	cc.setOptions(options);
+        }
         FakeTupleSource.resetStats();
         // Run query
         TestProcessor.helpProcess(plan, cc, dataManager, expected);
@@ -35,6 +35,8 @@ import org.junit.Test;
 import org.teiid.cache.DefaultCacheFactory;
 import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.CoreConstants;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.dqp.internal.process.CachedResults;
 import org.teiid.dqp.internal.process.QueryProcessorFactoryImpl;
@@ -44,6 +46,9 @@ import org.teiid.query.metadata.TempMetadataAdapter;
 import org.teiid.query.optimizer.capabilities.CapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
 import org.teiid.query.optimizer.relational.RelationalPlanner;
+import org.teiid.query.sql.lang.SPParameter;
+import org.teiid.query.sql.lang.StoredProcedure;
+import org.teiid.query.sql.symbol.Constant;
 import org.teiid.query.tempdata.GlobalTableStoreImpl;
 import org.teiid.query.tempdata.TempTableDataManager;
 import org.teiid.query.tempdata.TempTableStore;
@@ -88,6 +93,20 @@ public class TestMaterialization {
 		cc.setQueryProcessorFactory(new QueryProcessorFactoryImpl(BufferManagerFactory.getStandaloneBufferManager(), dataManager, finder, null, metadata));
 		TestProcessor.doProcess(previousPlan, dataManager, expectedResults, cc);
 	}
+	
+	private int refresh(String viewName) throws Exception {
+		CommandContext cc = TestProcessor.createCommandContext();
+		cc.setTempTableStore(tempStore);
+		cc.setGlobalTableStore(globalStore);
+		cc.setMetadata(metadata);
+		cc.setQueryProcessorFactory(new QueryProcessorFactoryImpl(BufferManagerFactory.getStandaloneBufferManager(), dataManager, new DefaultCapabilitiesFinder(), null, metadata));
+		StoredProcedure proc = new StoredProcedure();
+		proc.setProcedureName(CoreConstants.SYSTEM_ADMIN_MODEL + ".refreshMatView");
+		proc.setParameter(new SPParameter(2, new Constant(viewName)));
+		proc.setParameter(new SPParameter(3, new Constant(Boolean.FALSE)));
+		TupleSource ts = dataManager.registerRequest(cc, proc, CoreConstants.SYSTEM_ADMIN_MODEL, new RegisterRequestParameter());
+		return (Integer)ts.nextTuple().get(0);
+	}
 
 	@Test public void testPopulate() throws Exception {
 		execute("SELECT * from vgroup3 where x = 'one'", Arrays.asList("one", "zne"));
@@ -169,5 +188,53 @@ public class TestMaterialization {
 	@Test public void testPrimaryKeyOnOtherColumn() throws Exception {
 		execute("SELECT * from vgroup7 where y is null", Arrays.asList("1", null, 1));
 	}
+	
+	@Test public void testMultipleSecondaryIndexes() throws Exception {
+		//covered by the included column
+		execute("SELECT x, w from vgroup8 where y = 'zne'", Arrays.asList("one", "onew"));
+		execute("SELECT y from vgroup8 where z = 1 order by y", Arrays.asList((String)null), Arrays.asList("zhree"), Arrays.asList("zne"), Arrays.asList("zwo"));
+		execute("SELECT * from vgroup8 where y is null and z = 1", Arrays.asList(null, null, 1, null));
+		assertEquals(1, hdm.getCommandHistory().size());
+	}
+	
+	@Test public void testIncrementalRefresh() throws Exception {
+		execute("SELECT * from vgroup9 order by e2", Arrays.asList("a", 1), Arrays.asList("a", 2));
+		hdm.addData("SELECT MatTable.info.e1, MatTable.info.e2 FROM MatTable.info", new List[] {Arrays.asList("a", 1), Arrays.asList("a", 2), Arrays.asList("b", 3)});
+		hdm.addData("SELECT MatTable.info.e1, MatTable.info.e2 FROM MatTable.info WHERE MatTable.info.e2 > 2", new List[] {Arrays.asList("b", 3)});
+		MatTableInfo info = globalStore.getMatTableInfo(RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP9");
+		assertEquals(2, info.getChangeVersion());
+		assertEquals(1, refresh("MatView.VGroup9"));
+		execute("SELECT * from vgroup9 order by e2", Arrays.asList("a", 1), Arrays.asList("a", 2), Arrays.asList("b", 3));
+		assertEquals(3, info.getChangeVersion());
+		assertEquals(1, info.getRefreshCount());
+		//the delete is not seen incrementally, so the next refresh is a full load
+		hdm.addData("SELECT MatTable.info.e1, MatTable.info.e2 FROM MatTable.info", new List[] {Arrays.asList("a", 2), Arrays.asList("b", 3)});
+		assertEquals(2, refresh("MatView.VGroup9"));
+		execute("SELECT * from vgroup9 order by e2", Arrays.asList("a", 2), Arrays.asList("b", 3));
+		assertEquals(0, info.getRefreshCount());
+	}
+	
+	@Test public void testIncrementalRefreshChangeTable() throws Exception {
+		hdm.addData("SELECT MatTable.info.e3, MatTable.info.e2 FROM MatTable.info", new List[] {Arrays.asList("a", 1), Arrays.asList("b", 2)});
+		execute("SELECT * from vgroup10 order by e3", Arrays.asList("a", 1), Arrays.asList("b", 2));
+		//a is deleted and b is updated
+		hdm.addData("SELECT MatTable.changes.k, MatTable.changes.e2 FROM MatTable.changes WHERE MatTable.changes.e2 > 2", new List[] {Arrays.asList("a", 3), Arrays.asList("b", 4)});
+		hdm.addData("SELECT MatTable.info.e3, MatTable.info.e2 FROM MatTable.info WHERE MatTable.info.e3 IN ('a', 'b')", new List[] {Arrays.asList("b", 4)});
+		assertEquals(2, refresh("MatView.VGroup10"));
+		execute("SELECT * from vgroup10 order by e3", Arrays.asList("b", 4));
+		MatTableInfo info = globalStore.getMatTableInfo(RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP10");
+		assertEquals(4, info.getChangeVersion());
+		assertEquals(1, info.getRefreshCount());
+	}
+	
+	@Test public void testReadWriteIncludedColumns() throws Exception {
+		execute("SELECT x, w from vgroup8 where y = 'zwo'", Arrays.asList("two", "twow"));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		String matTableName = RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP8";
+		this.globalStore.getState(matTableName, baos);
+		this.globalStore.failedLoad(matTableName);
+		this.globalStore.setState(matTableName, new ByteArrayInputStream(baos.toByteArray()));
+		execute("SELECT x, w from vgroup8 where y = 'zwo'", Arrays.asList("two", "twow"));
+	}
     
 }
@@ -30,6 +30,11 @@ import java.math.BigInteger;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.teiid.cache.DefaultCacheFactory;
@@ -91,6 +96,7 @@ import org.teiid.query.tempdata.TempTableStore.TransactionMode;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.unittest.TimestampUtil;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 import org.teiid.query.validator.Validator;
 import org.teiid.query.validator.ValidatorReport;
 import org.teiid.translator.SourceSystemFunctions;
@@ -7751,5 +7757,62 @@ public class TestProcessor {
         helpProcess(plan, fdm, new List[] {Arrays.asList(11)});
     }
     
+    @Test public void testParallelUnion() throws Exception {
+        String sql = "select count(*) from (select e1 from pm1.g1 union all select e1 from pm2.g1) as x"; //$NON-NLS-1$
+
+        CommandContext cc = createCommandContext();
+        cc.setOptions(new Options().maxQueryParallelism(3));
+        //wake the processing thread as the request work item would
+        final Semaphore moreWork = new Semaphore(0);
+        final AtomicInteger wakeCount = new AtomicInteger();
+        cc.setMoreWorkCallback(new Runnable() {
+			@Override
+			public void run() {
+				wakeCount.incrementAndGet();
+				moreWork.release();
+			}
+		});
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        cc.setExecutor(executor);
+        BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+        cc.setBufferManager(bm);
+        try {
+	        ProcessorPlan plan = helpGetPlan(helpParse(sql), RealMetadataFactory.example1Cached(), new DefaultCapabilitiesFinder(), cc);
+	        assertTrue(plan.toString().contains("ExchangeNode")); //$NON-NLS-1$
+	        FakeDataManager fdm = new FakeDataManager();
+	        fdm.setRecordingCommands(false);
+	        //have the sources block so that the producers must be resubmitted
+	        fdm.setBlockOnce();
+	        sampleData2a(fdm);
+	        for (int i = 0; i < 2; i++) {
+	        	QueryProcessor processor = new QueryProcessor(plan, cc, bm, fdm);
+	        	BatchCollector collector = processor.createBatchCollector();
+	        	long end = System.currentTimeMillis() + 10000;
+	        	TupleBuffer tb = null;
+	        	while (tb == null) {
+	        		try {
+	        			tb = collector.collectTuples();
+	        		} catch (BlockedException e) {
+	        			if (System.currentTimeMillis() > end) {
+	        				fail("did not complete processing"); //$NON-NLS-1$
+	        			}
+	        			//there is no source notification when a fake source blocks, so also retry periodically
+	        			moreWork.tryAcquire(50, TimeUnit.MILLISECONDS);
+	        		}
+	        	}
+	        	try {
+	        		examineResults(new List[] {Arrays.asList(7)}, bm, tb);
+	        	} finally {
+	        		tb.remove();
+	        	}
+	        	assertFalse(cc.isParallel());
+	        	plan.reset();
+	        }
+	        assertTrue(wakeCount.get() > 0);
+        } finally {
+        	executor.shutdownNow();
+        }
+    }
+    
     private static final boolean DEBUG = false;
 }
@@ -76,4 +76,20 @@ public class TestDependentCriteriaProcessor {
 		assertFalse(dcp.hasNextCommand());
 	}
 	
+	@Test public void testBloomFilter() {
+		BloomFilter filter = new BloomFilter(1000, .01);
+		for (int i = 0; i < 1000; i++) {
+			filter.add(i * 2);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(filter.mightContain(i * 2));
+			if (filter.mightContain(i * 2 + 1)) {
+				falsePositives++;
+			}
+		}
+		assertEquals(1000, filter.getCount());
+		assertTrue(falsePositives < 50);
+	}
+	
 }
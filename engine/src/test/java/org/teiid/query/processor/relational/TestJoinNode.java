@@ -26,9 +26,12 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -232,6 +235,10 @@ public class TestJoinNode {
     }
     
     public void helpTestJoinDirect(List[] expectedResults, int batchSize, int processingBytes) throws TeiidComponentException, TeiidProcessingException {
+    	helpTestJoinDirect(expectedResults, batchSize, processingBytes, true);
+    }
+    
+    public void helpTestJoinDirect(List[] expectedResults, int batchSize, int processingBytes, boolean ordered) throws TeiidComponentException, TeiidProcessingException {
         BufferManagerImpl mgr = BufferManagerFactory.getTestBufferManager(processingBytes, batchSize);
         mgr.setTargetBytesPerRow(100);
         CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
@@ -246,11 +253,16 @@ public class TestJoinNode {
         join.open();
         
         int currentRow = 1;
+        List<List<?>> actual = new ArrayList<List<?>>();
         while(true) {
             try {
                 TupleBatch batch = join.nextBatch();
                 for(;currentRow <= batch.getEndRow(); currentRow++) {
                     List tuple = batch.getTuple(currentRow);
+                    if (!ordered) {
+                    	actual.add(tuple);
+                    	continue;
+                    }
                     assertEquals("Rows don't match at " + currentRow, expectedResults[currentRow-1], tuple); //$NON-NLS-1$
                 }
                 if(batch.getTerminationFlag()) {
@@ -261,9 +273,21 @@ public class TestJoinNode {
             }
         }
         assertEquals(expectedResults.length, currentRow - 1);
+        if (!ordered) {
+        	assertEquals(sortByString(Arrays.asList(expectedResults)), sortByString(actual));
+        }
         join.close(); 
     }
     
+    private List<String> sortByString(List<? extends List> rows) {
+    	List<String> result = new ArrayList<String>(rows.size());
+    	for (List row : rows) {
+			result.add(row.toString());
+		}
+    	Collections.sort(result);
+    	return result;
+    }
+    
     @Test public void testNoRows() throws Exception {
         leftTuples = new List[0];
         rightTuples = new List[0];
@@ -831,4 +855,86 @@ public class TestJoinNode {
         helpTestJoinDirect(expected, 4, 1000);
     }
 
+    @Test public void testHashJoin() throws Exception {
+    	helpTestHashJoin(JoinType.JOIN_INNER, 100000);
+    }
+    
+    @Test public void testHashJoinPartitioned() throws Exception {
+    	helpTestHashJoin(JoinType.JOIN_INNER, 1);
+    }
+    
+    @Test public void testHashJoinLeftOuter() throws Exception {
+    	helpTestHashJoin(JoinType.JOIN_LEFT_OUTER, 100000);
+    }
+    
+    @Test public void testHashJoinLeftOuterPartitioned() throws Exception {
+    	helpTestHashJoin(JoinType.JOIN_LEFT_OUTER, 1);
+    }
+    
+    @Test public void testHashJoinPartitionedSkew() throws Exception {
+    	this.joinType = JoinType.JOIN_INNER;
+    	this.leftTuples = new List[] {Arrays.asList(1), Arrays.asList(1), Arrays.asList(2)};
+    	this.rightTuples = new List[50];
+    	for (int i = 0; i < this.rightTuples.length; i++) {
+    		this.rightTuples[i] = Arrays.asList(i == 0 ? 2 : 1);
+    	}
+    	List<List<?>> results = new ArrayList<List<?>>();
+    	for (int i = 0; i < 98; i++) {
+    		results.add(Arrays.asList(1, 1));
+    	}
+    	results.add(Arrays.asList(2, 2));
+    	expected = results.toArray(new List[results.size()]);
+    	helpCreateJoin();
+    	this.joinStrategy = new HashJoinStrategy();
+    	this.join.setJoinStrategy(joinStrategy);
+    	helpTestJoinDirect(expected, 2, 1, false);
+    }
+    
+    @Test public void testHashJoinRepartitionSpread() {
+    	Set<Integer> subPartitions = new HashSet<Integer>();
+    	for (int i = 0; i < 1000; i++) {
+    		List<?> key = Arrays.asList(i);
+    		if (HashJoinStrategy.partition(key, 4, 0) == 0) {
+    			subPartitions.add(HashJoinStrategy.partition(key, 4, 1));
+    		}
+    	}
+    	assertEquals(4, subPartitions.size());
+    }
+
+	private void helpTestHashJoin(JoinType type, int processingBytes) throws TeiidComponentException, TeiidProcessingException {
+		this.joinType = type;
+        if (type == JoinType.JOIN_INNER) {
+	        expected = new List[] {
+	        	Arrays.asList(1, 1),    
+	            Arrays.asList(2, 2),    
+	            Arrays.asList(2, 2),    
+	            Arrays.asList(4, 4),    
+	            Arrays.asList(4, 4),    
+	            Arrays.asList(4, 4),    
+	            Arrays.asList(4, 4)            
+	        };
+        } else {
+	        expected = new List[] {
+	            Arrays.asList(1, 1),    
+	            Arrays.asList(2, 2),    
+	            Arrays.asList(2, 2),    
+	            Arrays.asList(3, null),    
+	            Arrays.asList(4, 4),    
+	            Arrays.asList(4, 4),    
+	            Arrays.asList(4, 4),    
+	            Arrays.asList(4, 4),            
+	            Arrays.asList(5, null),    
+	            Arrays.asList(10, null),            
+	            Arrays.asList(11, null),    
+	            Arrays.asList(11, null)            
+	        };
+        }
+        for (int batchSize : new int[] {1, 2, 100}) {
+	        helpCreateJoin();               
+	        this.joinStrategy = new HashJoinStrategy();
+	        this.join.setJoinStrategy(joinStrategy);
+	        helpTestJoinDirect(expected, batchSize, processingBytes, false);
+        }
+	}
+
 }
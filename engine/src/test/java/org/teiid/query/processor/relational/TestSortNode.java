@@ -26,8 +26,13 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 import org.junit.Test;
 import org.teiid.common.buffer.BlockedException;
@@ -349,4 +354,73 @@ public class TestSortNode {
 		assertNull(ts.nextTuple());
     }
 
+    @Test public void testParallelSort() throws Exception {
+    	helpTestParallelSort(BufferManagerFactory.getTestBufferManager(10000, 2), Mode.SORT, false);
+    }
+    
+    @Test public void testParallelSortYields() throws Exception {
+    	helpTestParallelSort(BufferManagerFactory.getTestBufferManager(10000, 2), Mode.SORT, true);
+    }
+    
+    @Test public void testParallelSortRemoveDup() throws Exception {
+    	helpTestParallelSort(BufferManagerFactory.getTestBufferManager(10000, 2), Mode.DUP_REMOVE_SORT, false);
+    }
+    
+    @Test public void testParallelMergeLowMemory() throws Exception {
+    	helpTestParallelSort(BufferManagerFactory.getTestBufferManager(0, 2), Mode.DUP_REMOVE_SORT, true);
+    }
+
+	private void helpTestParallelSort(BufferManager bm, Mode mode, boolean yield) throws Exception {
+		ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+        List<Integer> expected = new ArrayList<Integer>();
+        Random r = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+        	int val = r.nextInt(500);
+        	tsid.addTuple(Arrays.asList(val));
+        	expected.add(val);
+        }
+        tsid.close();
+        if (mode == Mode.SORT) {
+        	Collections.sort(expected);
+        } else {
+        	expected = new ArrayList<Integer>(new TreeSet<Integer>(expected));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+	    	SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.TRUE), mode, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+	    	CommandContext context = new CommandContext();
+	    	context.setExecutor(executor);
+	    	final Semaphore moreWork = new Semaphore(0);
+	    	if (yield) {
+	    		context.setMoreWorkCallback(new Runnable() {
+	    			@Override
+	    			public void run() {
+	    				moreWork.release();
+	    			}
+	    		});
+	    	}
+	    	su.setParallel(context, 0);
+	    	su.setParallelism(4);
+	    	TupleBuffer out = null;
+	    	while (out == null) {
+	    		try {
+	    			out = su.sort();
+	    		} catch (BlockedException e) {
+	    			assertTrue(yield);
+	    			moreWork.acquire();
+	    		}
+	    	}
+	    	assertEquals(expected.size(), out.getRowCount());
+	    	TupleSource ts = out.createIndexedTupleSource();
+	    	for (Integer val : expected) {
+	    		assertEquals(Arrays.asList(val), ts.nextTuple());
+	    	}
+	    	assertNull(ts.nextTuple());
+        } finally {
+        	executor.shutdownNow();
+        }
+	}
+
 }
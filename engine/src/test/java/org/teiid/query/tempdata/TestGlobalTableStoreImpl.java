@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (C) 2009 Red Hat, Inc.
+ * Licensed to Red Hat, Inc. under one or more contributor 
+ * license agreements.  See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.tempdata;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.query.metadata.QueryMetadataInterface;
+import org.teiid.query.optimizer.relational.RelationalPlanner;
+import org.teiid.query.sql.symbol.GroupSymbol;
+import org.teiid.query.unittest.RealMetadataFactory;
+
+@SuppressWarnings("nls")
+public class TestGlobalTableStoreImpl {
+	
+	private static final String MAT_TABLE_NAME = RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP9";
+	
+	private GlobalTableStoreImpl globalStore;
+	private TempTable table;
+	
+	@Before public void setUp() throws Exception {
+		QueryMetadataInterface metadata = RealMetadataFactory.exampleMaterializedView();
+		globalStore = new GlobalTableStoreImpl(BufferManagerFactory.getStandaloneBufferManager(), metadata);
+		GroupSymbol group = new GroupSymbol(MAT_TABLE_NAME);
+		group.setMetadataID(globalStore.getGlobalTempTableMetadataId(metadata.getGroupID("MatView.VGroup9")));
+		table = globalStore.createMatTable(MAT_TABLE_NAME, group);
+		assertTrue(table.isUpdatable());
+		globalStore.loaded(MAT_TABLE_NAME, table);
+		//the key column e2 is first
+		assertEquals(2, globalStore.updateMatViewRows(MAT_TABLE_NAME, Arrays.asList(Arrays.asList(1, "a"), Arrays.asList(2, "b")), false));
+	}
+	
+	private TempTable getCurrent() {
+		return globalStore.getTempTableStore().getTempTable(MAT_TABLE_NAME);
+	}
+	
+	@Test public void testUpdateInPlaceWithoutReaders() throws Exception {
+		globalStore.updateMatViewRow(MAT_TABLE_NAME, Arrays.asList(3, "c"), false);
+		assertSame(table, getCurrent());
+		assertEquals(3, table.getRowCount());
+		
+		//a transactional reader holds the table
+		table.getActive().incrementAndGet();
+		globalStore.updateMatViewRow(MAT_TABLE_NAME, Arrays.asList(4, "d"), false);
+		assertNotSame(table, getCurrent());
+		assertEquals(3, table.getRowCount());
+		assertEquals(4, getCurrent().getRowCount());
+	}
+	
+	@Test public void testSnapshotRead() throws Exception {
+		TupleSource ts = table.createTupleSource(table.getColumns(), null, null);
+		assertEquals(Arrays.asList(1, "a"), ts.nextTuple());
+		
+		//the open reader pins the table, so the update is made to a copy
+		globalStore.updateMatViewRow(MAT_TABLE_NAME, Arrays.asList(3, "c"), false);
+		TempTable current = getCurrent();
+		assertNotSame(table, current);
+		assertEquals(3, current.getRowCount());
+		
+		//the reader is unbuffered and continues over its unchanged snapshot
+		assertEquals(Arrays.asList(2, "b"), ts.nextTuple());
+		assertNull(ts.nextTuple());
+		ts.closeSource();
+		assertEquals(2, table.getRowCount());
+		
+		ts = current.createTupleSource(current.getColumns(), null, null);
+		ts.closeSource();
+		//without readers the update is in place
+		assertEquals(1, globalStore.updateMatViewRows(MAT_TABLE_NAME, Arrays.asList(Arrays.asList(3, "c")), true));
+		assertSame(current, getCurrent());
+		assertEquals(2, current.getRowCount());
+	}
+
+}
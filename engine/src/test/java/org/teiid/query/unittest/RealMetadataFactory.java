@@ -66,6 +66,7 @@ import org.teiid.query.metadata.TransformationMetadata;
 import org.teiid.query.optimizer.FakeFunctionMetadataSource;
 import org.teiid.query.parser.TestDDLParser;
 import org.teiid.query.sql.lang.SPParameter;
+import org.teiid.query.tempdata.TempTableDataManager;
 import org.teiid.query.validator.ValidatorReport;
 
 @SuppressWarnings("nls")
@@ -373,6 +374,11 @@ public class RealMetadataFactory {
                                       new String[] { "e1", "e2", "e3"}, //$NON-NLS-1$
                                       new String[] { DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.STRING});
         
+        Table physChanges = createPhysicalGroup("changes", physModel); //$NON-NLS-1$
+        createElements(physChanges,
+                                      new String[] { "k", "e2"}, //$NON-NLS-1$
+                                      new String[] { DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.INTEGER});
+        
         Table physGroup = createPhysicalGroup("MatTable", physModel); //$NON-NLS-1$
         createElements(physGroup,
                                       new String[] { "e1" }, //$NON-NLS-1$
@@ -480,6 +486,43 @@ public class RealMetadataFactory {
         
         createKey(KeyRecord.Type.Primary, "pk", vGroup7, vElements7.subList(1, 2));
         
+        //multiple indexes, one including an additional column
+        QueryNode vTrans8 = new QueryNode("SELECT x, 'z' || substring(x, 2) as y, 1 as z, x || 'w' as w FROM matsrc");         //$NON-NLS-1$ //$NON-NLS-2$
+        Table vGroup8 = createVirtualGroup("VGroup8", virtModel, vTrans8); //$NON-NLS-1$
+        vGroup8.setMaterialized(true);
+        List<Column> vElements8 = createElements(vGroup8,
+                                      new String[] { "x", "y", "z", "w" }, //$NON-NLS-1$
+                                      new String[] { DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.STRING});
+        
+        createKey(KeyRecord.Type.Primary, "pk", vGroup8, vElements8.subList(0, 1));
+        KeyRecord idx = createKey(KeyRecord.Type.Index, "idx", vGroup8, vElements8.subList(1, 2));
+        idx.setProperty(TempTableDataManager.INDEX_INCLUDE, "w"); //$NON-NLS-1$
+        createKey(KeyRecord.Type.Index, "idx1", vGroup8, vElements8.subList(2, 3));
+        
+        //incrementally refreshed
+        QueryNode vTrans9 = new QueryNode("/*+ cache(updatable) */ SELECT e1, e2 FROM MatTable.info");         //$NON-NLS-1$ //$NON-NLS-2$
+        Table vGroup9 = createVirtualGroup("VGroup9", virtModel, vTrans9); //$NON-NLS-1$
+        vGroup9.setMaterialized(true);
+        vGroup9.setProperty(TempTableDataManager.MATVIEW_VERSION_COLUMN, "e2"); //$NON-NLS-1$
+        vGroup9.setProperty(TempTableDataManager.MATVIEW_FULL_REFRESH_COUNT, "1"); //$NON-NLS-1$
+        List<Column> vElements9 = createElements(vGroup9,
+                                      new String[] { "e1", "e2" }, //$NON-NLS-1$
+                                      new String[] { DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.INTEGER});
+        
+        createKey(KeyRecord.Type.Primary, "pk", vGroup9, vElements9.subList(1, 2));
+        
+        QueryNode vTrans10 = new QueryNode("/*+ cache(updatable) */ SELECT e3, e2 FROM MatTable.info");         //$NON-NLS-1$ //$NON-NLS-2$
+        Table vGroup10 = createVirtualGroup("VGroup10", virtModel, vTrans10); //$NON-NLS-1$
+        vGroup10.setMaterialized(true);
+        vGroup10.setProperty(TempTableDataManager.MATVIEW_VERSION_COLUMN, "e2"); //$NON-NLS-1$
+        vGroup10.setProperty(TempTableDataManager.MATVIEW_CHANGE_TABLE, "MatTable.changes"); //$NON-NLS-1$
+        vGroup10.setProperty(TempTableDataManager.MATVIEW_CHANGE_KEY_COLUMN, "k"); //$NON-NLS-1$
+        List<Column> vElements10 = createElements(vGroup10,
+                                      new String[] { "e3", "e2" }, //$NON-NLS-1$
+                                      new String[] { DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.INTEGER});
+        
+        createKey(KeyRecord.Type.Primary, "pk", vGroup10, vElements10.subList(0, 1));
+        
         Schema sp = createVirtualModel("sp", metadataStore); //$NON-NLS-1$
         ColumnSet<Procedure> rs = createResultSet("sp1.vsprs1", new String[] { "StringKey" }, new String[] { DataTypeManager.DefaultDataTypes.STRING }); //$NON-NLS-1$ //$NON-NLS-2$
         ProcedureParameter param = createParameter("param1", ParameterInfo.IN, DataTypeManager.DefaultDataTypes.STRING); //$NON-NLS-1$
@@ -40,6 +40,7 @@ class CacheService<T> implements Service<SessionAwareCache<T>> {
 	private SessionAwareCache.Type type;
 	private String cacheName;
 	private int maxStaleness;
+	private long inFlightWait;
 	
 	public CacheService(String cacheName, SessionAwareCache.Type type, int maxStaleness){
 		this.cacheName = cacheName;
@@ -52,8 +53,13 @@ class CacheService<T> implements Service<SessionAwareCache<T>> {
 		this.cache = new SessionAwareCache<T>(this.cacheName, cacheFactoryInjector.getValue(), this.type, this.maxStaleness);
 		if (type == Type.RESULTSET) {
 			this.cache.setTupleBufferCache(this.tupleBufferCacheInjector.getValue());
+			this.cache.setInFlightWait(this.inFlightWait);
 		}
 	}
+	
+	public void setInFlightWait(long inFlightWait) {
+		this.inFlightWait = inFlightWait;
+	}
 
 	@Override
 	public void stop(StopContext context) {
@@ -21,6 +21,7 @@
  */
 package org.teiid.jboss;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
@@ -75,6 +76,8 @@ public class DQPCoreService extends DQPConfiguration implements Serializable, Se
 	private final InjectedValue<SessionAwareCache> preparedPlanCacheInjector = new InjectedValue<SessionAwareCache>();
 	private final InjectedValue<SessionAwareCache> resultSetCacheInjector = new InjectedValue<SessionAwareCache>();
 	private final InjectedValue<InternalEventDistributorFactory> eventDistributorFactoryInjector = new InjectedValue<InternalEventDistributorFactory>();
+	private final InjectedValue<String> dataDirInjector = new InjectedValue<String>();
+	private boolean preparedPlanCacheSnapshot;
 	
 	@Override
     public void start(final StartContext context) {
@@ -89,6 +92,9 @@ public class DQPCoreService extends DQPConfiguration implements Serializable, Se
 		this.dqpCore.setEventDistributor(getEventDistributorFactoryInjector().getValue().getReplicatedEventDistributor());
 		this.dqpCore.setResultsetCache(getResultSetCacheInjector().getValue());
 		this.dqpCore.setPreparedPlanCache(getPreparedPlanCacheInjector().getValue());
+		if (this.preparedPlanCacheSnapshot) {
+			setPreparedPlanCacheSnapshotFile(new File(getDataDirInjector().getValue(), "preparedplan-cache.ser").getAbsolutePath()); //$NON-NLS-1$
+		}
 		this.dqpCore.start(this);
 
 		
@@ -100,6 +106,10 @@ public class DQPCoreService extends DQPConfiguration implements Serializable, Se
 			@Override
 			public void removed(String name, int version, CompositeVDB vdb) {
 				recentlyRemoved.add(new VDBKey(name, version));
+				// unaffected prepared plans are planned again if the vdb is redeployed
+				if (getPreparedPlanCacheInjector().getValue() != null) {
+					getPreparedPlanCacheInjector().getValue().removeForRedeploy(vdb.getVDB());
+				}
 			}
 			
 			@Override
@@ -128,13 +138,11 @@ public class DQPCoreService extends DQPConfiguration implements Serializable, Se
 		        if (getResultSetCacheInjector().getValue() != null) {
 		        	getResultSetCacheInjector().getValue().clearForVDB(name, version);
 		        }
-		        if (getPreparedPlanCacheInjector().getValue() != null) {
-		        	getPreparedPlanCacheInjector().getValue().clearForVDB(name, version);
-		        }
 			}
 
 			@Override
 			public void finishedDeployment(String name, int version, CompositeVDB vdb) {
+				dqpCore.warmPreparedPlanCache(vdb.getVDB());
 			}			
 		}); 		
 
@@ -197,6 +205,14 @@ public class DQPCoreService extends DQPConfiguration implements Serializable, Se
 		return workManagerInjector;
 	}
 
+	public void setPreparedPlanCacheSnapshot(boolean preparedPlanCacheSnapshot) {
+		this.preparedPlanCacheSnapshot = preparedPlanCacheSnapshot;
+	}
+	
+	public InjectedValue<String> getDataDirInjector() {
+		return dataDirInjector;
+	}
+	
 	public InjectedValue<InternalEventDistributorFactory> getEventDistributorFactoryInjector() {
 		return eventDistributorFactoryInjector;
 	}
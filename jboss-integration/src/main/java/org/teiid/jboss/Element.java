@@ -56,6 +56,7 @@ enum Element {
 	EXCEPTION_ON_MAX_SOURCE_ROWS_ELEMENT("exception-on-max-source-rows", "exception-on-max-source-rows", ModelType.BOOLEAN, false, "true"),	
 	DETECTING_CHANGE_EVENTS_ELEMENT("detect-change-events", "detect-change-events", ModelType.BOOLEAN, false, "true"),
     QUERY_TIMEOUT("query-timeout", "query-timeout", ModelType.LONG, false, "0"),
+    USE_VIRTUAL_THREADS_ELEMENT("use-virtual-threads", "use-virtual-threads", ModelType.BOOLEAN, false, "false"),
     WORKMANAGER("workmanager", "workmanager", ModelType.STRING, false, "default"),
     
     POLICY_DECIDER_MODULE_ELEMENT("policy-decider-module", "policy-decider-module", ModelType.STRING, false, null),
@@ -75,6 +76,10 @@ enum Element {
 	MEMORY_BUFFER_SPACE_ATTRIBUTE("memory-buffer-space", "buffer-service-memory-buffer-space", ModelType.INT, false, "-1"),
 	MEMORY_BUFFER_OFFHEAP_ATTRIBUTE("memory-buffer-off-heap", "buffer-service-memory-buffer-off-heap", ModelType.BOOLEAN, false, "false"),
 	MAX_STORAGE_OBJECT_SIZE_ATTRIBUTE("max-storage-object-size", "buffer-service-max-storage-object-size", ModelType.INT, false, "8388608"),
+	EVICTION_POLICY_ATTRIBUTE("eviction-policy", "buffer-service-eviction-policy", ModelType.STRING, false, "LRFU"),
+	COMPRESS_BATCHES_ATTRIBUTE("compress-batches", "buffer-service-compress-batches", ModelType.BOOLEAN, false, "false"),
+	WRITE_BEHIND_THREADS_ATTRIBUTE("write-behind-threads", "buffer-service-write-behind-threads", ModelType.INT, false, "0"),
+	MEMORY_MAPPED_READS_ATTRIBUTE("memory-mapped-reads", "buffer-service-memory-mapped-reads", ModelType.BOOLEAN, false, "false"),
 	INLINE_LOBS("inline-lobs", "buffer-service-inline-lobs", ModelType.BOOLEAN, false, "true"),
 	
 	//prepared-plan-cache-config
@@ -82,6 +87,7 @@ enum Element {
 	PPC_ENABLE_ATTRIBUTE("enable", "preparedplan-cache-enable", ModelType.BOOLEAN, false, "true"),
 	PPC_NAME_ELEMENT("name", "preparedplan-cache-name", ModelType.STRING, false, "preparedplan"),
 	PPC_CONTAINER_NAME_ELEMENT("infinispan-container", "preparedplan-cache-infinispan-container", ModelType.STRING, false, null),
+	PPC_SNAPSHOT_ATTRIBUTE("snapshot", "preparedplan-cache-snapshot", ModelType.BOOLEAN, false, "false"),
 	
 	// Object Replicator
 	DISTRIBUTED_CACHE("distributed-cache"),
@@ -93,6 +99,7 @@ enum Element {
 	RSC_NAME_ELEMENT("name", "resultset-cache-name", ModelType.STRING, false, "resultset"),
 	RSC_CONTAINER_NAME_ELEMENT("infinispan-container", "resultset-cache-infinispan-container", ModelType.STRING, false, null),
 	RSC_MAX_STALENESS_ELEMENT("max-staleness", "resultset-cache-max-staleness", ModelType.INT, false, "60"),
+	RSC_IN_FLIGHT_WAIT_ELEMENT("in-flight-wait", "resultset-cache-in-flight-wait", ModelType.LONG, false, "0"),
 	
 	//transport
 	TRANSPORT_ELEMENT("transport"),
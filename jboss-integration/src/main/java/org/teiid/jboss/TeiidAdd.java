@@ -91,6 +91,7 @@ class TeiidAdd extends AbstractAddStepHandler implements DescriptionProvider {
 		Element.EXCEPTION_ON_MAX_SOURCE_ROWS_ELEMENT, 
 		Element.DETECTING_CHANGE_EVENTS_ELEMENT,
 		Element.QUERY_TIMEOUT,
+		Element.USE_VIRTUAL_THREADS_ELEMENT,
 		Element.WORKMANAGER,
 		Element.AUTHORIZATION_VALIDATOR_MODULE_ELEMENT,
 		Element.POLICY_DECIDER_MODULE_ELEMENT,
@@ -110,16 +111,22 @@ class TeiidAdd extends AbstractAddStepHandler implements DescriptionProvider {
 		Element.MEMORY_BUFFER_SPACE_ATTRIBUTE,
 		Element.MEMORY_BUFFER_OFFHEAP_ATTRIBUTE,
 		Element.MAX_STORAGE_OBJECT_SIZE_ATTRIBUTE,
+		Element.EVICTION_POLICY_ATTRIBUTE,
+		Element.COMPRESS_BATCHES_ATTRIBUTE,
+		Element.WRITE_BEHIND_THREADS_ATTRIBUTE,
+		Element.MEMORY_MAPPED_READS_ATTRIBUTE,
 		
 		// prepared plan cache
 		Element.PPC_NAME_ELEMENT,
 		Element.PPC_CONTAINER_NAME_ELEMENT,
 		Element.PPC_ENABLE_ATTRIBUTE,
+		Element.PPC_SNAPSHOT_ATTRIBUTE,
 		
 		// resultset cache
 		Element.RSC_NAME_ELEMENT,
 		Element.RSC_CONTAINER_NAME_ELEMENT,
 		Element.RSC_MAX_STALENESS_ELEMENT,
+		Element.RSC_IN_FLIGHT_WAIT_ELEMENT,
 		Element.RSC_ENABLE_ATTRIBUTE
 	};
 	
@@ -324,6 +331,9 @@ class TeiidAdd extends AbstractAddStepHandler implements DescriptionProvider {
 	    	}
 	    	
 	    	CacheService<CachedResults> resultSetService = new CacheService<CachedResults>(cacheName, SessionAwareCache.Type.RESULTSET, maxStaleness);
+	    	if (Element.RSC_IN_FLIGHT_WAIT_ELEMENT.isDefined(operation)) {
+	    		resultSetService.setInFlightWait(Element.RSC_IN_FLIGHT_WAIT_ELEMENT.asLong(operation, context));
+	    	}
 	    	ServiceBuilder<SessionAwareCache<CachedResults>> resultsCacheBuilder = target.addService(TeiidServiceNames.CACHE_RESULTSET, resultSetService);
 	    	resultsCacheBuilder.addDependency(TeiidServiceNames.TUPLE_BUFFER, TupleBufferCache.class, resultSetService.tupleBufferCacheInjector);
 	    	resultsCacheBuilder.addDependency(cfName, CacheFactory.class, resultSetService.cacheFactoryInjector);
@@ -381,6 +391,10 @@ class TeiidAdd extends AbstractAddStepHandler implements DescriptionProvider {
         engineBuilder.addDependency(rsCache?DependencyType.REQUIRED:DependencyType.OPTIONAL, TeiidServiceNames.CACHE_RESULTSET, SessionAwareCache.class, engine.getResultSetCacheInjector());
         engineBuilder.addDependency(TeiidServiceNames.CACHE_PREPAREDPLAN, SessionAwareCache.class, engine.getPreparedPlanCacheInjector());
         engineBuilder.addDependency(TeiidServiceNames.EVENT_DISTRIBUTOR_FACTORY, InternalEventDistributorFactory.class, engine.getEventDistributorFactoryInjector());
+        if (ppCache && Element.PPC_SNAPSHOT_ATTRIBUTE.isDefined(operation) && Element.PPC_SNAPSHOT_ATTRIBUTE.asBoolean(operation, context)) {
+        	engine.setPreparedPlanCacheSnapshot(true);
+        	engineBuilder.addDependency(TeiidServiceNames.DATA_DIR, String.class, engine.getDataDirInjector());
+        }
         
         engineBuilder.setInitialMode(ServiceController.Mode.ACTIVE);
         ServiceController<DQPCore> controller = engineBuilder.install(); 
@@ -483,6 +497,18 @@ class TeiidAdd extends AbstractAddStepHandler implements DescriptionProvider {
     	if (Element.MAX_STORAGE_OBJECT_SIZE_ATTRIBUTE.isDefined(node)) {
     		bufferManger.setMaxStorageObjectSize(Element.MAX_STORAGE_OBJECT_SIZE_ATTRIBUTE.asInt(node, context));
     	}
+    	if (Element.EVICTION_POLICY_ATTRIBUTE.isDefined(node)) {
+    		bufferManger.setEvictionPolicy(Element.EVICTION_POLICY_ATTRIBUTE.asString(node, context));
+    	}
+    	if (Element.COMPRESS_BATCHES_ATTRIBUTE.isDefined(node)) {
+    		bufferManger.setCompressBatches(Element.COMPRESS_BATCHES_ATTRIBUTE.asBoolean(node, context));
+    	}
+    	if (Element.WRITE_BEHIND_THREADS_ATTRIBUTE.isDefined(node)) {
+    		bufferManger.setWriteBehindThreads(Element.WRITE_BEHIND_THREADS_ATTRIBUTE.asInt(node, context));
+    	}
+    	if (Element.MEMORY_MAPPED_READS_ATTRIBUTE.isDefined(node)) {
+    		bufferManger.setMemoryMappedReads(Element.MEMORY_MAPPED_READS_ATTRIBUTE.asBoolean(node, context));
+    	}
     	if (Element.INLINE_LOBS.isDefined(node)) {
     		bufferManger.setInlineLobs(Element.INLINE_LOBS.asBoolean(node, context));
     	}     	
@@ -525,6 +551,9 @@ class TeiidAdd extends AbstractAddStepHandler implements DescriptionProvider {
     	}	 
     	if (Element.QUERY_TIMEOUT.isDefined(node)) {
     		engine.setQueryTimeout(Element.QUERY_TIMEOUT.asLong(node, context));
+    	}
+    	if (Element.USE_VIRTUAL_THREADS_ELEMENT.isDefined(node)) {
+    		engine.setUseVirtualThreads(Element.USE_VIRTUAL_THREADS_ELEMENT.asBoolean(node, context));
     	}
 		return engine;
 	}    
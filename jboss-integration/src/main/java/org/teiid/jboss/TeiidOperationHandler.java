@@ -616,7 +616,17 @@ class CacheStatistics extends BaseCachehandler {
 		}
 		
 		ModelNode result = context.getResult();
-		CacheStatisticsMetadata stats = buildCacheStats(cacheType, cache);
+		CacheStatisticsMetadata stats = null;
+		if (operation.hasDefined(OperationsConstants.VDB_NAME) && operation.hasDefined(OperationsConstants.VDB_VERSION)) {
+			String vdbName = operation.get(OperationsConstants.VDB_NAME).asString();
+			int vdbVersion = operation.get(OperationsConstants.VDB_VERSION).asInt();
+			if (!isValidVDB(context, vdbName, vdbVersion)) {
+				throw new OperationFailedException(new ModelNode().set(IntegrationPlugin.Util.gs(IntegrationPlugin.Event.TEIID50096, vdbName, vdbVersion)));				
+			}
+			stats = buildCacheStats(cacheType, cache, vdbName, vdbVersion);
+		} else {
+			stats = buildCacheStats(cacheType, cache);
+		}
 		VDBMetadataMapper.CacheStatisticsMetadataMapper.INSTANCE.wrap(stats, result);
 	}
 	
@@ -626,14 +636,33 @@ class CacheStatistics extends BaseCachehandler {
 		stats.setHitRatio(cache.getRequestCount() == 0?0:((double)cache.getCacheHitCount()/cache.getRequestCount())*100);
 		stats.setTotalEntries(cache.getTotalCacheEntries());
 		stats.setRequestCount(cache.getRequestCount());
+		stats.setSemanticHitCount(cache.getSemanticHitCount());
 		return stats;
 	}	
 	
+	private CacheStatisticsMetadata buildCacheStats(String name, SessionAwareCache cache, String vdbName, int vdbVersion) {
+		CacheStatisticsMetadata stats = new CacheStatisticsMetadata();
+		stats.setName(name);
+		int requests = cache.getRequestCount(vdbName, vdbVersion);
+		stats.setHitRatio(requests == 0?0:((double)cache.getCacheHitCount(vdbName, vdbVersion)/requests)*100);
+		stats.setTotalEntries(cache.getTotalCacheEntries(vdbName, vdbVersion));
+		stats.setRequestCount(requests);
+		return stats;
+	}
+	
 	protected void describeParameters(ModelNode operationNode, ResourceBundle bundle) {
 		operationNode.get(REQUEST_PROPERTIES, OperationsConstants.CACHE_TYPE, TYPE).set(ModelType.STRING);
 		operationNode.get(REQUEST_PROPERTIES, OperationsConstants.CACHE_TYPE, REQUIRED).set(true);
 		operationNode.get(REQUEST_PROPERTIES, OperationsConstants.CACHE_TYPE, DESCRIPTION).set(getParameterDescription(bundle, OperationsConstants.CACHE_TYPE));
 		
+		operationNode.get(REQUEST_PROPERTIES, OperationsConstants.VDB_NAME, TYPE).set(ModelType.STRING);
+		operationNode.get(REQUEST_PROPERTIES, OperationsConstants.VDB_NAME, REQUIRED).set(false);
+		operationNode.get(REQUEST_PROPERTIES, OperationsConstants.VDB_NAME, DESCRIPTION).set(getParameterDescription(bundle, OperationsConstants.VDB_NAME));
+		
+		operationNode.get(REQUEST_PROPERTIES, OperationsConstants.VDB_VERSION, TYPE).set(ModelType.INT);
+		operationNode.get(REQUEST_PROPERTIES, OperationsConstants.VDB_VERSION, REQUIRED).set(false);
+		operationNode.get(REQUEST_PROPERTIES, OperationsConstants.VDB_VERSION, DESCRIPTION).set(getParameterDescription(bundle, OperationsConstants.VDB_VERSION)); 
+		
 		ModelNode reply = operationNode.get(REPLY_PROPERTIES);
 		reply.get(TYPE).set(ModelType.OBJECT);		
 		VDBMetadataMapper.CacheStatisticsMetadataMapper.INSTANCE.describe(reply.get(VALUE_TYPE));
@@ -70,6 +70,7 @@ class TeiidSubsystemParser implements XMLStreamConstants, XMLElementReader<List<
     	writeElement(writer, Element.EXCEPTION_ON_MAX_SOURCE_ROWS_ELEMENT, node);
     	writeElement(writer, Element.DETECTING_CHANGE_EVENTS_ELEMENT, node);
     	writeElement(writer, Element.QUERY_TIMEOUT, node);
+    	writeElement(writer, Element.USE_VIRTUAL_THREADS_ELEMENT, node);
     	writeElement(writer, Element.WORKMANAGER, node);
 
     	writeElement(writer, Element.AUTHORIZATION_VALIDATOR_MODULE_ELEMENT, node);
@@ -194,6 +195,10 @@ class TeiidSubsystemParser implements XMLStreamConstants, XMLElementReader<List<
 		writeAttribute(writer, Element.MEMORY_BUFFER_SPACE_ATTRIBUTE, node);
 		writeAttribute(writer, Element.MEMORY_BUFFER_OFFHEAP_ATTRIBUTE, node);
 		writeAttribute(writer, Element.MAX_STORAGE_OBJECT_SIZE_ATTRIBUTE, node);
+		writeAttribute(writer, Element.EVICTION_POLICY_ATTRIBUTE, node);
+		writeAttribute(writer, Element.COMPRESS_BATCHES_ATTRIBUTE, node);
+		writeAttribute(writer, Element.WRITE_BEHIND_THREADS_ATTRIBUTE, node);
+		writeAttribute(writer, Element.MEMORY_MAPPED_READS_ATTRIBUTE, node);
 	}
 
 	private void writeResultsetCacheConfiguration(XMLExtendedStreamWriter writer, ModelNode node) throws XMLStreamException {
@@ -201,12 +206,14 @@ class TeiidSubsystemParser implements XMLStreamConstants, XMLElementReader<List<
 		writeAttribute(writer, Element.RSC_CONTAINER_NAME_ELEMENT, node);
 		writeAttribute(writer, Element.RSC_ENABLE_ATTRIBUTE, node);
 		writeAttribute(writer, Element.RSC_MAX_STALENESS_ELEMENT, node);
+		writeAttribute(writer, Element.RSC_IN_FLIGHT_WAIT_ELEMENT, node);
 	}
 
 	private void writePreparedPlanCacheConfiguration(XMLExtendedStreamWriter writer, ModelNode node) throws XMLStreamException {
 		writeAttribute(writer, Element.PPC_NAME_ELEMENT, node);
 		writeAttribute(writer, Element.PPC_CONTAINER_NAME_ELEMENT, node);
 		writeAttribute(writer, Element.PPC_ENABLE_ATTRIBUTE, node);
+		writeAttribute(writer, Element.PPC_SNAPSHOT_ATTRIBUTE, node);
 	}
 
 	private boolean has(ModelNode node, String name) {
@@ -268,6 +275,7 @@ class TeiidSubsystemParser implements XMLStreamConstants, XMLElementReader<List<
     				case ALLOW_ENV_FUNCTION_ELEMENT:
     				case EXCEPTION_ON_MAX_SOURCE_ROWS_ELEMENT:
     				case DETECTING_CHANGE_EVENTS_ELEMENT:    					
+    				case USE_VIRTUAL_THREADS_ELEMENT:
     					bootServices.get(reader.getLocalName()).set(Boolean.parseBoolean(reader.getElementText()));
     					break;
 
@@ -625,6 +633,18 @@ class TeiidSubsystemParser implements XMLStreamConstants, XMLElementReader<List<
     			case MAX_STORAGE_OBJECT_SIZE_ATTRIBUTE:
     				node.get(element.getModelName()).set(Integer.parseInt(attrValue));
     				break;    				
+    			case EVICTION_POLICY_ATTRIBUTE:
+    				node.get(element.getModelName()).set(attrValue);
+    				break;
+    			case COMPRESS_BATCHES_ATTRIBUTE:
+    				node.get(element.getModelName()).set(Boolean.parseBoolean(attrValue));
+    				break;
+    			case WRITE_BEHIND_THREADS_ATTRIBUTE:
+    				node.get(element.getModelName()).set(Integer.parseInt(attrValue));
+    				break;
+    			case MEMORY_MAPPED_READS_ATTRIBUTE:
+    				node.get(element.getModelName()).set(Boolean.parseBoolean(attrValue));
+    				break;
     			default:
     				throw ParseUtils.unexpectedAttribute(reader, i);    			
     			}
@@ -647,6 +667,9 @@ class TeiidSubsystemParser implements XMLStreamConstants, XMLElementReader<List<
     			case PPC_ENABLE_ATTRIBUTE:
     				node.get(element.getModelName()).set(Boolean.parseBoolean(attrValue));
     				break;
+    			case PPC_SNAPSHOT_ATTRIBUTE:
+    				node.get(element.getModelName()).set(Boolean.parseBoolean(attrValue));
+    				break;
     			case PPC_NAME_ELEMENT:
     				node.get(element.getModelName()).set(attrValue);
     				break;
@@ -675,6 +698,9 @@ class TeiidSubsystemParser implements XMLStreamConstants, XMLElementReader<List<
     			case RSC_MAX_STALENESS_ELEMENT:
     				node.get(element.getModelName()).set(Integer.parseInt(attrValue));
     				break;
+    			case RSC_IN_FLIGHT_WAIT_ELEMENT:
+    				node.get(element.getModelName()).set(Long.parseLong(attrValue));
+    				break;
     			case RSC_NAME_ELEMENT:
     				node.get(element.getModelName()).set(attrValue);
     				break;
@@ -89,6 +89,7 @@ public class EmbeddedConfiguration extends DQPConfiguration {
 	private String bufferDirectory;
 	private CacheFactory cacheFactory;
 	private int maxResultSetCacheStaleness = 60;
+	private long resultSetCacheInFlightWait;
 	private String infinispanConfigFile = "infinispan-config.xml"; //$NON-NLS-1$
 	private String jgroupsConfigFile;
 	
@@ -206,6 +207,16 @@ public class EmbeddedConfiguration extends DQPConfiguration {
 	public void setMaxResultSetCacheStaleness(int maxResultSetCacheStaleness) {
 		this.maxResultSetCacheStaleness = maxResultSetCacheStaleness;
 	}
+	/**
+	 * @return the max milliseconds a request waits on an identical request that is producing 
+	 * results for the result set cache, 0 to not wait
+	 */
+	public long getResultSetCacheInFlightWait() {
+		return resultSetCacheInFlightWait;
+	}
+	public void setResultSetCacheInFlightWait(long resultSetCacheInFlightWait) {
+		this.resultSetCacheInFlightWait = resultSetCacheInFlightWait;
+	}
 	public String getJgroupsConfigFile() {
 		return jgroupsConfigFile;
 	}
@@ -353,6 +353,7 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 		rs = new SessionAwareCache<CachedResults>("resultset", config.getCacheFactory(), SessionAwareCache.Type.RESULTSET, config.getMaxResultSetCacheStaleness()); //$NON-NLS-1$
 		ppc = new SessionAwareCache<PreparedPlan>("preparedplan", config.getCacheFactory(), SessionAwareCache.Type.PREPAREDPLAN, 0); //$NON-NLS-1$
 		rs.setTupleBufferCache(bs.getTupleBufferCache());
+		rs.setInFlightWait(config.getResultSetCacheInFlightWait());
 		this.dqp.setResultsetCache(rs);
 
 		ppc.setTupleBufferCache(bs.getTupleBufferCache());
@@ -408,7 +409,8 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 					replicator.stop(vdb.getVDB().getAttachment(GlobalTableStore.class));
 				}
 				rs.clearForVDB(name, 1);
-				ppc.clearForVDB(name, 1);
+				//unaffected prepared plans are planned again if the vdb is redeployed
+				ppc.removeForRedeploy(vdb.getVDB());
 			}
 
 			@Override
@@ -423,6 +425,7 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 					}
 				}
 				vdb.getVDB().addAttchment(GlobalTableStore.class, gts);
+				dqp.warmPreparedPlanCache(vdb.getVDB());
 			}
 		});
 		this.repo.setSystemFunctionManager(new SystemFunctionManager());
@@ -30,6 +30,7 @@ import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.TupleBufferCache;
 import org.teiid.common.buffer.impl.BufferFrontedFileStoreCache;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
+import org.teiid.common.buffer.impl.BufferManagerImpl.EvictionPolicy;
 import org.teiid.common.buffer.impl.FileStorageManager;
 import org.teiid.common.buffer.impl.MemoryStorageManager;
 import org.teiid.common.buffer.impl.SplittableStorageManager;
@@ -66,6 +67,10 @@ public class BufferServiceImpl implements BufferService, Serializable {
     private long memoryBufferSpace = -1;
     private int maxStorageObjectSize = BufferFrontedFileStoreCache.DEFAuLT_MAX_OBJECT_SIZE;
     private boolean memoryBufferOffHeap;
+    private String evictionPolicy = EvictionPolicy.LRFU.name();
+    private boolean compressBatches;
+    private int writeBehindThreads;
+    private boolean memoryMappedReads;
 	private FileStorageManager fsm;
 	
     /**
@@ -85,6 +90,8 @@ public class BufferServiceImpl implements BufferService, Serializable {
             this.bufferMgr.setMaxReserveKB(this.maxReserveKb);
             this.bufferMgr.setMaxProcessingKB(this.maxProcessingKb);
             this.bufferMgr.setInlineLobs(inlineLobs);
+            this.bufferMgr.setEvictionPolicy(getEvictionPolicyValue());
+            this.bufferMgr.setCompressBatches(compressBatches);
             this.bufferMgr.initialize();
             
             // If necessary, add disk storage manager
@@ -101,6 +108,8 @@ public class BufferServiceImpl implements BufferService, Serializable {
                 fsm.setStorageDirectory(bufferDir.getCanonicalPath());
                 fsm.setMaxOpenFiles(maxOpenFiles);
                 fsm.setMaxBufferSpace(maxBufferSpace*MB);
+                fsm.setWriteBehindThreads(writeBehindThreads);
+                fsm.setMemoryMappedReads(memoryMappedReads);
                 SplittableStorageManager ssm = new SplittableStorageManager(fsm);
                 ssm.setMaxFileSize(maxFileSize);
                 BufferFrontedFileStoreCache fsc = new BufferFrontedFileStoreCache();
@@ -243,6 +252,115 @@ public class BufferServiceImpl implements BufferService, Serializable {
 	public long getReadAttempts() {
 		return bufferMgr.getReadAttempts();
 	}
+	
+	public long getMemoryHitCount() {
+		return bufferMgr.getMemoryHitCount();
+	}
+	
+	public long getReferenceHitCount() {
+		return bufferMgr.getReferenceHitCount();
+	}
+	
+	public long getPromotionCount() {
+		return bufferMgr.getPromotionCount();
+	}
+	
+	public long getGhostHitCount() {
+		return bufferMgr.getGhostHitCount();
+	}
+	
+	public long getProbationEvictionCount() {
+		return bufferMgr.getProbationEvictionCount();
+	}
+	
+	public long getUncompressedBytes() {
+		return bufferMgr.getUncompressedBytes();
+	}
+	
+	public long getCompressedBytes() {
+		return bufferMgr.getCompressedBytes();
+	}
+	
+	/**
+	 * @return the ratio of the uncompressed to compressed size of the batches written to the cache
+	 */
+	public double getCompressionRatio() {
+		long compressed = bufferMgr.getCompressedBytes();
+		if (compressed == 0) {
+			return 1;
+		}
+		return bufferMgr.getUncompressedBytes()/(double)compressed;
+	}
+	
+	public long getCompressionTime() {
+		return bufferMgr.getCompressionTime();
+	}
+	
+	public boolean isCompressBatches() {
+		return compressBatches;
+	}
+	
+	public void setCompressBatches(boolean compressBatches) {
+		this.compressBatches = compressBatches;
+	}
+	
+	public int getWriteBehindThreads() {
+		return writeBehindThreads;
+	}
+	
+	/**
+	 * Set the number of background threads used to write spilled batches to disk.
+	 * @param writeBehindThreads
+	 */
+	public void setWriteBehindThreads(int writeBehindThreads) {
+		this.writeBehindThreads = writeBehindThreads;
+	}
+	
+	public long getWriteBehindKb() {
+		if (fsm == null) {
+			return 0;
+		}
+		return fsm.getWriteBehindBytes()/1024;
+	}
+	
+	public boolean isMemoryMappedReads() {
+		return memoryMappedReads;
+	}
+	
+	public void setMemoryMappedReads(boolean memoryMappedReads) {
+		this.memoryMappedReads = memoryMappedReads;
+	}
+	
+	public long getMappedReads() {
+		if (fsm == null) {
+			return 0;
+		}
+		return fsm.getMappedReads();
+	}
+	
+	public String getEvictionPolicy() {
+		return evictionPolicy;
+	}
+	
+	private EvictionPolicy getEvictionPolicyValue() {
+		if (evictionPolicy != null) {
+			try {
+				return EvictionPolicy.valueOf(evictionPolicy.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				//fall through to the default
+			}
+		}
+		LogManager.logWarning(LogConstants.CTX_DQP, RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40106, evictionPolicy, EvictionPolicy.LRFU));
+		return EvictionPolicy.LRFU;
+	}
+	
+	/**
+	 * Set the eviction policy for batches held in memory, either LRFU or TWO_QUEUE.
+	 * @param evictionPolicy
+	 */
+	public void setEvictionPolicy(String evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+	}
 
     public int getMemoryBufferSpace() {
 		return (int)memoryBufferSpace;
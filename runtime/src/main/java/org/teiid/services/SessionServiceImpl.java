@@ -176,6 +176,14 @@ public class SessionServiceImpl implements SessionService {
         newSession.setClientHostName(properties.getProperty(TeiidURL.CONNECTION.CLIENT_HOSTNAME));
         newSession.setIPAddress(properties.getProperty(TeiidURL.CONNECTION.CLIENT_IP_ADDRESS));
         newSession.setClientHardwareAddress(properties.getProperty(TeiidURL.CONNECTION.CLIENT_MAC));
+        String maxObjectSize = properties.getProperty(TeiidURL.CONNECTION.CLIENT_MAX_OBJECT_SIZE);
+        if (maxObjectSize != null) {
+        	try {
+        		newSession.setClientMaxObjectSize(Integer.parseInt(maxObjectSize));
+        	} catch (NumberFormatException e) {
+        		LogManager.logDetail(LogConstants.CTX_SECURITY, "Ignoring invalid client max object size", maxObjectSize); //$NON-NLS-1$
+        	}
+        }
         newSession.setSecurityDomain(securityDomain);
         if (vdb != null) {
 	        newSession.setVDBName(vdb.getName());
@@ -49,6 +49,7 @@ import org.teiid.api.exception.query.QueryParserException;
 import org.teiid.client.BatchSerializer;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
 import org.teiid.common.buffer.TupleBatch;
 import org.teiid.common.buffer.impl.BufferFrontedFileStoreCache;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
@@ -378,6 +379,30 @@ public class TestEnginePerformance {
 		helpTestLike(50000, 16);
 	}
 	
+	@Test public void runReservation_1() throws Exception {
+		helpTestReservation(1000000, 1);
+	}
+	
+	@Test public void runReservation_4() throws Exception {
+		helpTestReservation(1000000, 4);
+	}
+	
+	@Test public void runReservation_16() throws Exception {
+		helpTestReservation(1000000, 16);
+	}
+	
+	private void helpTestReservation(int iterations, int threadCount) throws InterruptedException, Exception {
+		final int size = bm.getMaxProcessingSize() >> 4;
+		runTask(iterations, threadCount, new Task() {
+			@Override
+			public Void call() throws Exception {
+				int reserved = bm.reserveBuffers(size, BufferReserveMode.NO_WAIT);
+				bm.releaseBuffers(reserved);
+				return null;
+			}
+		});
+	}
+	
 	@Test public void runBatchSerialization_String() throws Exception {
 		String[] types = new String[] {DataTypeManager.DefaultDataTypes.STRING};
 		int size = 1024;